@@ -0,0 +1,54 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pager.Pager;
+import parser.PageParser;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PageParser#parsePageInfo} on a full leaf page of the synthetic
+ * table, which parses every cell and record header on the page.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PageParseBenchmark {
+
+    @Param({"1024", "4096", "16384", "65536"})
+    public int pageSize;
+
+    /** Length of the TEXT column. */
+    @Param({"16", "256"})
+    public int rowWidth;
+
+    private MemorySegment page;
+
+    @Setup
+    public void setup() throws IOException {
+        Path file = Files.createTempFile("synthetic", ".db");
+        try {
+            // Enough rows that page 2, the first leaf, is full
+            SyntheticDatabase.create(file, pageSize, 2 * pageSize / 16, rowWidth, 42);
+            try (Pager pager = Pager.open(file.toString())) {
+                // Copied to the heap so it outlives the pager
+                page = MemorySegment.ofArray(pager.readPage(2).toArray(ValueLayout.JAVA_BYTE));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public PageParser.PageInfo parsePageInfo() {
+        return PageParser.parsePageInfo(page, false, 2);
+    }
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import dataTypes.SQLiteRecord;
+import helpers.VarintReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.foreign.MemorySegment;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Record decoding over rows of the synthetic table: a new record with
+ * boxed values per row, one record reset per row and read through the
+ * typed accessors, and a single projected column read straight from the
+ * payload. Run with {@code -prof gc} to see the allocation per record.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordBenchmark {
+
+    private static final int COUNT = 1024;
+
+    /** Length of the TEXT column. */
+    @Param({"16", "256"})
+    public int rowWidth;
+
+    private MemorySegment segment;
+    private final int[] offsets = new int[COUNT];
+    private final int[] sizes = new int[COUNT];
+
+    private final SQLiteRecord record = new SQLiteRecord();
+    private final VarintReader varints = new VarintReader();
+    private final int[] projection = {1};
+    private final Object[] values = new Object[1];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < COUNT; i++) {
+            byte[] row = SyntheticDatabase.encodeRow(rowWidth, random);
+            offsets[i] = out.size();
+            sizes[i] = row.length;
+            out.writeBytes(row);
+        }
+        segment = MemorySegment.ofArray(out.toByteArray());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void parseValues(Blackhole bh) {
+        for (int i = 0; i < COUNT; i++) {
+            SQLiteRecord parsed = SQLiteRecord.parse(segment, offsets[i], sizes[i]);
+            for (int c = 0; c < parsed.getColumnCount(); c++) {
+                bh.consume(parsed.getValue(c));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void resetTyped(Blackhole bh) {
+        for (int i = 0; i < COUNT; i++) {
+            record.reset(segment, offsets[i], sizes[i]);
+            bh.consume(record.isNull(0));
+            bh.consume(record.getLong(1));
+            bh.consume(record.getDouble(2));
+            bh.consume(record.getText(3));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void projectOneColumn(Blackhole bh) {
+        for (int i = 0; i < COUNT; i++) {
+            SQLiteRecord.decodeColumns(segment, offsets[i], sizes[i], projection, values, varints);
+            bh.consume(values[0]);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package benchmarks;
+
+import btree.BTreeWalker;
+import btree.SchemaCache;
+import btree.SchemaReader;
+import dataTypes.RowCursor;
+import dataTypes.SQLiteRecord;
+import dataTypes.TableInfo;
+import org.openjdk.jmh.annotations.*;
+import pager.Pager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Table access through the B-tree over the synthetic table: a full scan
+ * reading one column of every row, a row count from the leaf page headers,
+ * and lookups of random rowids. The page cache holds the whole file, so
+ * these measure decoding and tree navigation rather than I/O.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScanBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"1024", "4096", "16384", "65536"})
+    public int pageSize;
+
+    /** Length of the TEXT column. */
+    @Param({"16", "256"})
+    public int rowWidth;
+
+    @Param({"100000"})
+    public int rows;
+
+    private Path file;
+    private Pager pager;
+    private TableInfo table;
+    private final long[] rowids = new long[LOOKUPS];
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("synthetic", ".db");
+        SyntheticDatabase.create(file, pageSize, rows, rowWidth, 42);
+        pager = Pager.open(file.toString());
+        table = SchemaReader.read(pager).getTable(SyntheticDatabase.TABLE);
+
+        Random random = new Random(7);
+        for (int i = 0; i < LOOKUPS; i++) {
+            rowids[i] = 1 + random.nextInt(rows);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pager.close();
+        Files.delete(file);
+        Files.deleteIfExists(SchemaCache.cacheFile(file.toString()));
+    }
+
+    @Benchmark
+    public long fullScan() throws IOException {
+        long sum = 0;
+        try (RowCursor cursor = table.openCursor()) {
+            while (cursor.next()) {
+                sum += cursor.currentRecord().getLong(1);
+            }
+        }
+        return sum;
+    }
+
+    // The walker itself: TableInfo.countRows() remembers its count after the first call
+    @Benchmark
+    public long countRows() throws IOException {
+        return new BTreeWalker(pager).countRows(table.getRootPage());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public long lookupByRowid() {
+        long sum = 0;
+        for (long rowid : rowids) {
+            SQLiteRecord record = table.getRecordByRowid(rowid);
+            sum += record.getLong(1);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,320 @@
+package benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes a valid SQLite database with one table, so benchmarks need no
+ * external files:
+ * <pre>
+ * CREATE TABLE t(id INTEGER PRIMARY KEY, n INTEGER, r REAL, s TEXT)
+ * </pre>
+ * Rows have rowids 1 to {@code rows}; {@code n} and {@code r} are random
+ * and {@code s} is {@code textLength} random lowercase letters. The same
+ * arguments always give the same file. Leaf pages are filled completely
+ * and the interior levels built on top of them, so the tree is as deep as
+ * the page size makes it. Every row fits in its cell: no overflow pages.
+ */
+public final class SyntheticDatabase {
+
+    public static final String TABLE = "t";
+    public static final String SQL = "CREATE TABLE t(id INTEGER PRIMARY KEY, n INTEGER, r REAL, s TEXT)";
+
+    private static final byte INTERIOR_TABLE = 0x05;
+    private static final byte LEAF_TABLE = 0x0D;
+
+    private final int pageSize;
+    private final List<byte[]> pages = new ArrayList<>();
+
+    private SyntheticDatabase(int pageSize) {
+        if (pageSize < 512 || pageSize > 65536 || Integer.bitCount(pageSize) != 1) {
+            throw new IllegalArgumentException("Page size must be a power of two from 512 to 65536: " + pageSize);
+        }
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Write the database to {@code file}, replacing it.
+     *
+     * @param textLength length of the {@code s} column, which sets the row width
+     */
+    public static void create(Path file, int pageSize, int rows, int textLength, long seed) throws IOException {
+        SyntheticDatabase database = new SyntheticDatabase(pageSize);
+        int maxLocal = pageSize - 35;
+        int width = encodeRow(textLength, new Random(seed)).length;
+        if (width > maxLocal) {
+            throw new IllegalArgumentException("Rows of " + width + " bytes overflow " + pageSize + " byte pages");
+        }
+
+        database.pages.add(new byte[pageSize]); // page 1, written last
+        int root = database.writeTable(rows, textLength, new Random(seed));
+        database.writeSchema(root);
+        database.writeTo(file);
+    }
+
+    /**
+     * Encode one record of the table, as stored in a leaf cell.
+     */
+    public static byte[] encodeRow(int textLength, Random random) {
+        long n = random.nextLong() >> random.nextInt(64);
+        double r = random.nextDouble() * 1000;
+        byte[] s = new byte[textLength];
+        for (int i = 0; i < textLength; i++) {
+            s[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return encodeRecord(null, n, r, s);
+    }
+
+    /**
+     * Encode a record of NULL, INTEGER (Long), REAL (Double), TEXT (String
+     * or UTF-8 byte[]) values.
+     */
+    public static byte[] encodeRecord(Object... values) {
+        long[] serialTypes = new long[values.length];
+        int headerSize = 0;
+        for (int i = 0; i < values.length; i++) {
+            serialTypes[i] = serialType(values[i]);
+            headerSize += Varints.length(serialTypes[i]);
+        }
+        // The header size counts its own varint
+        headerSize += Varints.length(headerSize + 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Varints.write(out, headerSize);
+        for (long serialType : serialTypes) {
+            Varints.write(out, serialType);
+        }
+        for (int i = 0; i < values.length; i++) {
+            writeValue(out, values[i], serialTypes[i]);
+        }
+        return out.toByteArray();
+    }
+
+    private static long serialType(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Long l) {
+            long v = l;
+            if (v == 0) return 8;
+            if (v == 1) return 9;
+            if (v >= -128 && v <= 127) return 1;
+            if (v >= -32768 && v <= 32767) return 2;
+            if (v >= -8388608 && v <= 8388607) return 3;
+            if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) return 4;
+            if (v >= -(1L << 47) && v < (1L << 47)) return 5;
+            return 6;
+        }
+        if (value instanceof Double) {
+            return 7;
+        }
+        return 13 + 2L * text(value).length;
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Object value, long serialType) {
+        if (serialType == 7) {
+            writeBigEndian(out, Double.doubleToLongBits((Double) value), 8);
+        } else if (serialType >= 13) {
+            out.writeBytes(text(value));
+        } else if (serialType >= 1 && serialType <= 6) {
+            int[] sizes = {0, 1, 2, 3, 4, 6, 8};
+            writeBigEndian(out, (Long) value, sizes[(int) serialType]);
+        }
+    }
+
+    private static byte[] text(Object value) {
+        return value instanceof byte[] bytes ? bytes : value.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeBigEndian(ByteArrayOutputStream out, long value, int size) {
+        for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    // Leaf pages, then interior levels up to the root; returns the root page
+    private int writeTable(int rows, int textLength, Random random) {
+        List<long[]> children = new ArrayList<>(); // {page number, largest rowid}
+        PageBuilder leaf = new PageBuilder(LEAF_TABLE, 0);
+        for (long rowid = 1; rowid <= rows; rowid++) {
+            byte[] payload = encodeRow(textLength, random);
+            byte[] cell = new byte[Varints.length(payload.length) + Varints.length(rowid) + payload.length];
+            int pos = Varints.encode(payload.length, cell, 0);
+            pos += Varints.encode(rowid, cell, pos);
+            System.arraycopy(payload, 0, cell, pos, payload.length);
+            if (!leaf.fits(cell)) {
+                children.add(new long[]{addPage(leaf.finish(0)), rowid - 1});
+                leaf = new PageBuilder(LEAF_TABLE, 0);
+            }
+            leaf.add(cell);
+        }
+        children.add(new long[]{addPage(leaf.finish(0)), rows});
+
+        while (children.size() > 1) {
+            children = writeInteriorLevel(children);
+        }
+        return (int) children.get(0)[0];
+    }
+
+    // One level of interior pages over `children`; returns the new pages
+    private List<long[]> writeInteriorLevel(List<long[]> children) {
+        // Group the children: all but the last of a group become cells, the
+        // last one the right-most pointer
+        List<List<long[]>> groups = new ArrayList<>();
+        List<long[]> group = new ArrayList<>();
+        int used = 12;
+        for (long[] child : children) {
+            int size = 2 + 4 + Varints.length(child[1]);
+            group.add(child);
+            if (used + size > pageSize) {
+                groups.add(group);
+                group = new ArrayList<>();
+                used = 12;
+            } else {
+                used += size;
+            }
+        }
+        if (!group.isEmpty()) {
+            if (group.size() == 1 && !groups.isEmpty()) {
+                // Not a page with no cells: borrow the previous right-most child
+                List<long[]> previous = groups.get(groups.size() - 1);
+                group.add(0, previous.remove(previous.size() - 1));
+            }
+            groups.add(group);
+        }
+
+        List<long[]> parents = new ArrayList<>();
+        for (List<long[]> members : groups) {
+            PageBuilder interior = new PageBuilder(INTERIOR_TABLE, 0);
+            for (int i = 0; i < members.size() - 1; i++) {
+                long[] child = members.get(i);
+                byte[] cell = new byte[4 + Varints.length(child[1])];
+                ByteBuffer.wrap(cell).putInt((int) child[0]);
+                Varints.encode(child[1], cell, 4);
+                interior.add(cell);
+            }
+            long[] last = members.get(members.size() - 1);
+            parents.add(new long[]{addPage(interior.finish((int) last[0])), last[1]});
+        }
+        return parents;
+    }
+
+    private void writeSchema(int rootPage) {
+        byte[] payload = encodeRecord("table", TABLE, TABLE, (long) rootPage, SQL);
+        byte[] cell = new byte[Varints.length(payload.length) + 1 + payload.length];
+        int pos = Varints.encode(payload.length, cell, 0);
+        pos += Varints.encode(1, cell, pos);
+        System.arraycopy(payload, 0, cell, pos, payload.length);
+
+        PageBuilder schema = new PageBuilder(LEAF_TABLE, 100);
+        schema.add(cell);
+        byte[] page = schema.finish(0);
+
+        ByteBuffer header = ByteBuffer.wrap(page, 0, 100);
+        header.put("SQLite format 3\0".getBytes(StandardCharsets.US_ASCII));
+        header.putShort((short) (pageSize == 65536 ? 1 : pageSize));
+        header.put((byte) 1);   // file format write version: legacy
+        header.put((byte) 1);   // read version
+        header.put((byte) 0);   // reserved bytes per page
+        header.put((byte) 64);  // maximum embedded payload fraction
+        header.put((byte) 32);  // minimum embedded payload fraction
+        header.put((byte) 32);  // leaf payload fraction
+        header.putInt(1);       // 24: file change counter
+        header.putInt(pages.size()); // 28: database size in pages
+        header.putInt(0);       // 32: first freelist trunk page
+        header.putInt(0);       // 36: freelist pages
+        header.putInt(1);       // 40: schema cookie
+        header.putInt(4);       // 44: schema format number
+        header.putInt(0);       // 48: default page cache size
+        header.putInt(0);       // 52: largest root page, no auto-vacuum
+        header.putInt(1);       // 56: UTF-8
+        header.position(92);
+        header.putInt(1);       // 92: version-valid-for, the change counter
+        header.putInt(3045000); // 96: SQLITE_VERSION_NUMBER
+        pages.set(0, page);
+    }
+
+    private int addPage(byte[] page) {
+        pages.add(page);
+        return pages.size();
+    }
+
+    private void writeTo(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (byte[] page : pages) {
+                ByteBuffer buffer = ByteBuffer.wrap(page);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills one B-tree page: cell pointers grow up from the header, cell
+     * content down from the end of the page.
+     */
+    private final class PageBuilder {
+        private final byte[] page = new byte[pageSize];
+        private final byte type;
+        private final int headerStart;
+        private final int headerSize;
+        private int cells;
+        private int contentStart = pageSize;
+
+        PageBuilder(byte type, int headerStart) {
+            this.type = type;
+            this.headerStart = headerStart;
+            this.headerSize = type == INTERIOR_TABLE ? 12 : 8;
+        }
+
+        boolean fits(byte[] cell) {
+            int pointersEnd = headerStart + headerSize + 2 * (cells + 1);
+            return contentStart - cell.length >= pointersEnd;
+        }
+
+        void add(byte[] cell) {
+            contentStart -= cell.length;
+            System.arraycopy(cell, 0, page, contentStart, cell.length);
+            int pointer = headerStart + headerSize + 2 * cells++;
+            page[pointer] = (byte) (contentStart >>> 8);
+            page[pointer + 1] = (byte) contentStart;
+        }
+
+        byte[] finish(int rightMostPointer) {
+            ByteBuffer header = ByteBuffer.wrap(page, headerStart, headerSize);
+            header.put(type);
+            header.putShort((short) 0);      // no freeblocks
+            header.putShort((short) cells);
+            header.putShort((short) (contentStart == 65536 ? 0 : contentStart));
+            header.put((byte) 0);            // fragmented bytes
+            if (type == INTERIOR_TABLE) {
+                header.putInt(rightMostPointer);
+            }
+            return page;
+        }
+    }
+
+    /**
+     * {@code SyntheticDatabase <file> [pageSize] [rows] [textLength]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SyntheticDatabase <file> [pageSize] [rows] [textLength]");
+            System.exit(1);
+        }
+        int pageSize = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        int textLength = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+        create(Path.of(args[0]), pageSize, rows, textLength, 42);
+    }
+}
@@ -0,0 +1,72 @@
+package benchmarks;
+
+import helpers.VarintDecoder;
+import helpers.VarintReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.foreign.MemorySegment;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the allocating {@link VarintDecoder#decodeVarint} with
+ * {@link VarintReader}. Run with {@code -prof gc} to see the allocation
+ * rate per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VarintBenchmark {
+
+    private static final int COUNT = 4096;
+
+    /** Share of one and two byte varints, as in typical cell data. */
+    @Param({"95", "50"})
+    public int shortPercent;
+
+    private byte[] bytes;
+    private MemorySegment segment;
+    private final VarintReader reader = new VarintReader();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < COUNT; i++) {
+            long value;
+            if (random.nextInt(100) < shortPercent) {
+                value = random.nextInt(16384);
+            } else {
+                value = random.nextLong() >>> random.nextInt(64);
+            }
+            Varints.write(out, value);
+        }
+        bytes = out.toByteArray();
+        segment = MemorySegment.ofArray(bytes);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void decodeVarintArray(Blackhole bh) {
+        int pos = 0;
+        for (int i = 0; i < COUNT; i++) {
+            long[] result = VarintDecoder.decodeVarint(bytes, pos);
+            bh.consume(result[0]);
+            pos += (int) result[1];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void varintReader(Blackhole bh) {
+        VarintReader varints = reader.reset(segment, 0);
+        for (int i = 0; i < COUNT; i++) {
+            bh.consume(varints.readVarint());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * SQLite varint encoding, used to build benchmark input.
+ */
+public final class Varints {
+
+    private Varints() {
+    }
+
+    public static void write(ByteArrayOutputStream out, long value) {
+        byte[] buffer = new byte[9];
+        int length = encode(value, buffer, 0);
+        out.write(buffer, 0, length);
+    }
+
+    /**
+     * Encode {@code value} at {@code offset}.
+     *
+     * @return number of bytes written, 1 to 9
+     */
+    public static int encode(long value, byte[] buffer, int offset) {
+        if ((value & 0xFF00000000000000L) != 0) {
+            // Nine bytes: the last one carries a full 8 bits
+            buffer[offset + 8] = (byte) value;
+            value >>>= 8;
+            for (int i = 7; i >= 0; i--) {
+                buffer[offset + i] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            return 9;
+        }
+
+        byte[] reversed = new byte[9];
+        int length = 0;
+        do {
+            reversed[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        } while (value != 0);
+        reversed[0] &= 0x7F;
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = reversed[length - 1 - i];
+        }
+        return length;
+    }
+
+    public static int length(long value) {
+        if ((value & 0xFF00000000000000L) != 0) {
+            return 9;
+        }
+        int length = 1;
+        while ((value >>>= 7) != 0) {
+            length++;
+        }
+        return length;
+    }
+}
@@ -1,48 +1,163 @@
+import export.ExportFormat;
+import metrics.Metrics;
+import pager.Pager;
+import query.SqlException;
+import server.QueryServer;
+
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
 
 
 public class Main {
 
-  private static final int SQLITE_HEADER_SIZE = 100; // SQLite header is 100 bytes
+  private static final int DEFAULT_PORT = 8080;
 
   public static void main(String[] args) throws IOException {
 
     if (args.length < 2) {
-      System.err.println("Usage: java Main <database path> <command>");
+      System.err.println("Usage: java Main <database path> <command> [--verbose]");
+      System.err.println("       java Main <database path> \"SELECT ...\"");
+      System.err.println("       java Main <database path> .count [table...]");
+      System.err.println("       java Main <database path> .export <table> <file> [csv|jsonl]");
+      System.err.println("       java Main <database path> .export_columnar <table> <file>");
+      System.err.println("       java Main <database path> .stats [command...]");
+      System.err.println("       java Main <database path> .serve [port] [more database paths...]");
       System.exit(1);
     }
 
     String databaseFilePath = args[0];
-    String command = args[1];
 
-    // Only read the header
-    byte[] header = readDatabaseHeader(databaseFilePath);
-    if (header == null) {
-      System.err.println("Failed to read database file");
-      System.exit(1);
-    }
+    // Open the file once; every command shares this pager and its page cache
+    try (Pager pager = openPager(databaseFilePath)) {
+      if (pager == null) {
+        System.err.println("Failed to read database file");
+        System.exit(1);
+      }
 
+      // Only read the header
+      byte[] header = pager.readHeader();
 
-    if (!isValidSQLiteFile(header)) {
-      System.err.println("Invalid SQLite database file");
-      System.exit(1);
+      if (!isValidSQLiteFile(header)) {
+        System.err.println("Invalid SQLite database file");
+        System.exit(1);
+      }
+
+      run(pager, databaseFilePath, args);
     }
+  }
+
+
+  private static void run(Pager pager, String databaseFilePath, String[] args) throws IOException {
+    String command = args[1];
+    boolean verbose = args.length > 2 && args[2].equals("--verbose");
 
     switch (command) {
-      case ".dbinfo" -> SQLiteInfoReader.displayDatabaseInfo(databaseFilePath);
-      case ".analyse" -> SQLiteInfoReader.analyseDatabasePages(databaseFilePath);
-      case ".tables" -> SQLiteInfoReader.dotTableCommand(databaseFilePath);
+      case ".dbinfo" -> SQLiteInfoReader.displayDatabaseInfo(pager, databaseFilePath);
+      case ".analyse" -> SQLiteInfoReader.analyseDatabasePages(pager, verbose);
+      case ".tables" -> SQLiteInfoReader.dotTableCommand(pager);
+      case ".integrity_check" -> {
+        if (!SQLiteInfoReader.integrityCheck(pager)) {
+          System.exit(2);
+        }
+      }
+      case ".count" -> SQLiteInfoReader.countRows(pager, Arrays.copyOfRange(args, 2, args.length));
+      case ".export" -> export(pager, args);
+      case ".export_columnar" -> exportColumnar(pager, args);
+      case ".stats" -> stats(pager, databaseFilePath, args);
+      case ".serve" -> serve(pager, databaseFilePath, args);
       default -> {
+        if (!command.startsWith(".")) {
+          runQuery(pager, command);
+          return;
+        }
         System.err.println("Unknown command: " + command);
-        System.err.println("Available commands: .dbinfo  .analyse .tables");
+        System.err.println("Available commands: .dbinfo  .analyse .tables .count .integrity_check .export .export_columnar .stats .serve, or a SELECT statement");
         System.exit(1);
       }
     }
   }
 
 
+  // Run the command that follows, if any, then print the metrics recorded so far
+  private static void stats(Pager pager, String databaseFilePath, String[] args) throws IOException {
+    if (args.length > 2) {
+      String[] inner = new String[args.length - 1];
+      inner[0] = databaseFilePath;
+      System.arraycopy(args, 2, inner, 1, args.length - 2);
+      run(pager, databaseFilePath, inner);
+    }
+    Metrics.print(System.out);
+  }
+
+
+  // The format is taken from the file extension unless it is given
+  private static void export(Pager pager, String[] args) throws IOException {
+    if (args.length < 4) {
+      System.err.println("Usage: java Main <database path> .export <table> <file> [csv|jsonl]");
+      System.exit(1);
+    }
+    ExportFormat format;
+    try {
+      format = args.length > 4 ? ExportFormat.parse(args[4]) : ExportFormat.forFile(args[3]);
+    } catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+      return;
+    }
+    SQLiteInfoReader.exportTable(pager, args[2], args[3], format);
+  }
+
+
+  private static void exportColumnar(Pager pager, String[] args) throws IOException {
+    if (args.length < 4) {
+      System.err.println("Usage: java Main <database path> .export_columnar <table> <file>");
+      System.exit(1);
+    }
+    SQLiteInfoReader.exportColumnar(pager, args[2], args[3]);
+  }
+
+
+  private static void runQuery(Pager pager, String sql) throws IOException {
+    try {
+      SQLiteInfoReader.runQuery(pager, sql);
+    } catch (SqlException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+
+  // Serve queries until the process is stopped, then print the latency summary
+  private static void serve(Pager pager, String databaseFilePath, String[] args) throws IOException {
+    int port = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+    QueryServer server = new QueryServer();
+    server.addDatabase(databaseFilePath, pager);
+    for (int i = 3; i < args.length; i++) {
+      server.addDatabase(args[i]);
+    }
+    server.start(port);
+    System.out.println("Serving on http://localhost:" + server.getPort() + "/databases");
+
+    CountDownLatch stopped = new CountDownLatch(1);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        server.close();
+      } catch (IOException e) {
+        System.err.println("Error closing server: " + e.getMessage());
+      }
+      System.out.println(server.latencySummary());
+      stopped.countDown();
+    }));
+    try {
+      stopped.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
   private static boolean isValidSQLiteFile(byte[] header) {
     if (header == null || header.length < 16) {
       return false;
@@ -52,14 +167,9 @@ public class Main {
   }
 
 
-  private static byte[] readDatabaseHeader(String filePath) {
-    try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
-      if (file.length() < SQLITE_HEADER_SIZE) {
-        return null;
-      }
-      byte[] header = new byte[SQLITE_HEADER_SIZE];
-      file.readFully(header);
-      return header;
+  private static Pager openPager(String filePath) {
+    try {
+      return Pager.open(filePath);
     } catch (IOException e) {
       System.err.println("Error reading file: " + e.getMessage());
       return null;
@@ -67,5 +177,3 @@ public class Main {
   }
 
 }
-
-
@@ -1,15 +1,24 @@
-import dataTypes.CellInfo;
+import btree.IntegrityChecker;
+import btree.PageAnalyzer;
+import btree.PageMap;
+import btree.PageStatistics;
+import btree.SchemaReader;
+import columnar.ColumnarWriter;
 import dataTypes.DatabaseSchema;
-import dataTypes.SQLiteRecord;
+import dataTypes.TableInfo;
+import export.ExportFormat;
+import export.TableExporter;
+import pager.Pager;
 import parser.HeaderParser;
 import parser.PageParser;
+import query.Query;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Path;
 import java.util.List;
 
 public class SQLiteInfoReader {
-    private static final int SQLITE_HEADER_SIZE = 100;
 
     /**
      * display SQLite database file information
@@ -17,152 +26,210 @@ public class SQLiteInfoReader {
      * @param dbPath filepath of .db file
      */
     public static void displayDatabaseInfo(String dbPath) throws IOException {
-        try (RandomAccessFile file = new RandomAccessFile(dbPath, "r")) {
-            byte[] header = new byte[SQLITE_HEADER_SIZE];
-            file.readFully(header);
+        try (Pager pager = Pager.open(dbPath)) {
+            displayDatabaseInfo(pager, dbPath);
+        }
+    }
 
-            System.out.println("=== SQLite Database Information ===");
-            System.out.println("File: " + dbPath);
-            System.out.println("File size: " + file.length() + " bytes");
+    public static void displayDatabaseInfo(Pager pager, String dbPath) throws IOException {
+        byte[] header = pager.readHeader();
 
-            HeaderParser.parserHeader(header);
-        }
+        System.out.println("=== SQLite Database Information ===");
+        System.out.println("File: " + dbPath);
+        System.out.println("File size: " + pager.getFileSize() + " bytes");
+
+        HeaderParser.parserHeader(header);
     }
 
 
     public static void analyseDatabasePages(String dbPath) throws IOException {
-        try (RandomAccessFile file = new RandomAccessFile(dbPath, "r")) {
-            byte[] header = new byte[SQLITE_HEADER_SIZE];
-            file.readFully(header);
-            int pageSize = getPageSize(header);
-            long fileSize = file.length();
-            int totalPages = (int)(fileSize / pageSize);
-
-            System.out.println("Total pages in database: " + totalPages);
-            System.out.println("Page size: " + pageSize + " bytes");
-            System.out.println();
+        try (Pager pager = Pager.open(dbPath)) {
+            analyseDatabasePages(pager);
+        }
+    }
 
-            // Iterate through all pages
-            for (int pageNum = 0; pageNum < totalPages; pageNum++) {
-                // Seek to the start of the current page
-                file.seek((long)pageNum * pageSize);
+    public static void analyseDatabasePages(Pager pager) throws IOException {
+        analyseDatabasePages(pager, false);
+    }
 
-                // Read the page
-                byte[] page = new byte[pageSize];
-                file.readFully(page);
+    /**
+     * Summarise page usage across the file, analysing pages in parallel.
+     *
+     * @param verbose print every page and cell instead of the summary
+     */
+    public static void analyseDatabasePages(Pager pager, boolean verbose) throws IOException {
+        if (verbose) {
+            dumpDatabasePages(pager);
+            return;
+        }
 
-                System.out.println("=== Analyzing Page " + (pageNum + 1) + " of " + totalPages + " ===");
+        PageStatistics stats = new PageAnalyzer(pager).analyse();
 
-                // Parse the page - pass true for first page, false for others
-                PageParser.parsePage(page, pageNum == 0);
+        System.out.println("Total pages in database: " + pager.getPageCount());
+        System.out.println("Page size: " + pager.getPageSize() + " bytes");
+        System.out.println();
+        stats.print(System.out);
+    }
 
-                System.out.println(); // Add spacing between pages
+    // One page at a time, printing every cell. Overflow and freelist pages are not read
+    private static void dumpDatabasePages(Pager pager) throws IOException {
+        int pageSize = pager.getPageSize();
+        int totalPages = (int) pager.getPageCount();
+        PageMap pageMap = PageMap.build(pager);
+
+        System.out.println("Total pages in database: " + totalPages);
+        System.out.println("Page size: " + pageSize + " bytes");
+        System.out.println();
+
+        // Iterate through all pages
+        for (int pageNum = 0; pageNum < totalPages; pageNum++) {
+            if (pageMap.isSkippable(pageNum + 1)) {
+                System.out.println("=== Skipping Page " + (pageNum + 1) + " of " + totalPages + " ("
+                        + pageMap.kind(pageNum + 1).name().toLowerCase() + ") ===");
+                System.out.println();
+                continue;
             }
+
+            // Read the page (page numbers are 1-based in the file)
+            MemorySegment page = pager.readPage(pageNum + 1);
+
+            System.out.println("=== Analyzing Page " + (pageNum + 1) + " of " + totalPages + " ===");
+
+            // Parse the page - pass true for first page, false for others
+            PageParser.parsePage(page, pageNum == 0, pager);
+
+            System.out.println(); // Add spacing between pages
+        }
+    }
+
+    /**
+     * Check the structure of every B-tree, the freelist and page use, and
+     * print "ok" or each problem found with its page and cell.
+     */
+    public static boolean integrityCheck(Pager pager) throws IOException {
+        IntegrityChecker.Result result = new IntegrityChecker(pager).check();
+        if (result.isOk()) {
+            System.out.println("ok");
+            return true;
+        }
+        for (IntegrityChecker.Problem problem : result.problems()) {
+            System.out.println(problem);
         }
+        if (result.problemCount() > result.problems().size()) {
+            System.out.println("... and " + (result.problemCount() - result.problems().size()) + " more problems");
+        }
+        System.out.println(result.problemCount() + " problems in " + result.pagesChecked() + " pages");
+        return false;
     }
 
     public static void dotTableCommand(String dbPath) throws IOException {
-        DatabaseSchema schema = new DatabaseSchema();
-
-        try (RandomAccessFile file = new RandomAccessFile(dbPath, "r")) {
-            byte[] header = new byte[SQLITE_HEADER_SIZE];
-            file.readFully(header);
-            int pageSize = getPageSize(header);
-            long totalPages = file.length() / pageSize;
-
-            // First, read the sqlite_master table from page 1
-            file.seek(0);
-            byte[] firstPage = new byte[pageSize];
-            file.readFully(firstPage);
-
-            // Parse the first page to get sqlite_master records
-            PageParser.PageInfo firstPageInfo = PageParser.parsePageInfo(firstPage, true, 0);
-
-            // Extract schema records
-            for (CellInfo cell : firstPageInfo.cells) {
-                if (!cell.hasError() && cell.getRecord() != null) {
-                    SQLiteRecord record = cell.getRecord();
-                    record.setRecordType(SQLiteRecord.RecordType.SCHEMA_RECORD);
-                    record.setPageNumber(0);
-                    record.setCellIndex(cell.getCellIndex());
-                    schema.addRecord(record);
-                }
-            }
+        try (Pager pager = Pager.open(dbPath)) {
+            dotTableCommand(pager);
+        }
+    }
 
-            // Now parse all pages to collect table records
-            // This is a simple approach
-            for (int pageNum = 1; pageNum < totalPages; pageNum++) {
-                file.seek((long)pageNum * pageSize);
-                byte[] page = new byte[pageSize];
-                file.readFully(page);
-
-                PageParser.PageInfo pageInfo = PageParser.parsePageInfo(page, false, pageNum);
-
-                // Only process table leaf pages
-                if (pageInfo.isTableLeafPage()) {
-                    for (CellInfo cell : pageInfo.cells) {
-                        if (!cell.hasError() && cell.getRecord() != null) {
-                            SQLiteRecord record = cell.getRecord();
-                            record.setPageNumber(pageNum);
-                            record.setCellIndex(cell.getCellIndex());
-                            record.setRecordType(SQLiteRecord.RecordType.TABLE_RECORD);
-
-                            // Try to determine which table this record belongs to
-                            // by checking which table's root page this is
-                            String tableName = schema.findTableByPage(pageNum);
-                            if (tableName != null) {
-                                record.setTableName(tableName);
-                            }
-
-                            schema.addRecord(record);
-                        }
-                    }
+    public static void dotTableCommand(Pager pager) throws IOException {
+        // Read sqlite_master, the B-tree rooted at page 1. Tables are
+        // streamed from their own B-tree when queried, never loaded whole
+        DatabaseSchema schema = SchemaReader.read(pager);
+
+        // Print results
+        System.out.println("=== Tables in database ===");
+        List<String> tableNames = schema.getTableNames();
+
+        if (tableNames.isEmpty()) {
+            System.out.println("No user tables found.");
+        } else {
+            // Format output in columns
+            int maxWidth = tableNames.stream().mapToInt(String::length).max().orElse(0);
+            int columnsPerRow = Math.max(1, 80 / (maxWidth + 2));
+
+            for (int i = 0; i < tableNames.size(); i++) {
+                System.out.printf("%-" + (maxWidth + 2) + "s", tableNames.get(i));
+                if ((i + 1) % columnsPerRow == 0) {
+                    System.out.println();
                 }
             }
+            if (tableNames.size() % columnsPerRow != 0) {
+                System.out.println();
+            }
+        }
 
-            // Print results
-            System.out.println("=== Tables in database ===");
-            List<String> tableNames = schema.getTableNames();
-
-            if (tableNames.isEmpty()) {
-                System.out.println("No user tables found.");
-            } else {
-                // Format output in columns
-                int maxWidth = tableNames.stream().mapToInt(String::length).max().orElse(0);
-                int columnsPerRow = Math.max(1, 80 / (maxWidth + 2));
-
-                for (int i = 0; i < tableNames.size(); i++) {
-                    System.out.printf("%-" + (maxWidth + 2) + "s", tableNames.get(i));
-                    if ((i + 1) % columnsPerRow == 0) {
-                        System.out.println();
-                    }
-                }
-                if (tableNames.size() % columnsPerRow != 0) {
-                    System.out.println();
-                }
+        // Print detailed information
+        System.out.println("\n=== Detailed Table Information ===");
+        schema.printSummary();
+        SchemaReader.saveCounts(pager, schema);
+    }
+
+    /**
+     * Print the row count of each named table, or of every table when no
+     * name is given. Counts come from the leaf page headers of each table's
+     * B-tree, so no row is decoded.
+     */
+    public static void countRows(Pager pager, String... tableNames) throws IOException {
+        DatabaseSchema schema = SchemaReader.read(pager);
+        List<String> names = tableNames.length > 0 ? List.of(tableNames) : schema.getTableNames();
+        for (String tableName : names) {
+            TableInfo table = schema.getTable(tableName);
+            if (table == null) {
+                System.err.println("No such table: " + tableName);
+                continue;
             }
+            System.out.println(tableName + "|" + table.countRows());
+        }
+        SchemaReader.saveCounts(pager, schema);
+    }
 
-            // Print detailed information
-            System.out.println("\n=== Detailed Table Information ===");
-            schema.printSummary();
+    /**
+     * Write the rows of a table to a CSV or JSON Lines file, encoded in
+     * parallel, and print how much was written and how fast.
+     */
+    public static void exportTable(Pager pager, String tableName, String file, ExportFormat format) throws IOException {
+        DatabaseSchema schema = SchemaReader.read(pager);
+        TableInfo table = schema.getTable(tableName);
+        if (table == null) {
+            System.err.println("No such table: " + tableName);
+            return;
         }
+        TableExporter.Summary summary = new TableExporter(pager, table, format).export(Path.of(file));
+        System.out.println("Table: " + summary.table());
+        System.out.println("Format: " + summary.format().name().toLowerCase());
+        System.out.println("Rows: " + summary.rows());
+        System.out.println("Bytes written: " + summary.bytes());
+        System.out.printf("Time: %.3f s (%.0f rows/s, %.1f MB/s)%n",
+                summary.nanos() / 1e9, summary.rowsPerSecond(), summary.megabytesPerSecond());
     }
 
+    /**
+     * Write a table to a columnar file and print how much was written and
+     * how fast.
+     */
+    public static void exportColumnar(Pager pager, String tableName, String file) throws IOException {
+        DatabaseSchema schema = SchemaReader.read(pager);
+        TableInfo table = schema.getTable(tableName);
+        if (table == null) {
+            System.err.println("No such table: " + tableName);
+            return;
+        }
+        ColumnarWriter.Summary summary = ColumnarWriter.export(table, Path.of(file));
+        System.out.println("Table: " + summary.table());
+        System.out.println("Rows: " + summary.rows() + " in " + summary.rowGroups() + " row groups");
+        System.out.println("Columns: " + summary.columns());
+        System.out.println("Bytes written: " + summary.bytes());
+        System.out.printf("Time: %.3f s (%.0f rows/s, %.1f MB/s)%n",
+                summary.nanos() / 1e9, summary.rowsPerSecond(), summary.megabytesPerSecond());
+    }
 
     /**
-     * Parse page size from big-endian format to int
+     * Run a SELECT statement and print its rows in the sqlite3 shell's
+     * default list format.
      *
-     * @param header byte array of the header
-     * @return page size as int
+     * @throws query.SqlException if the statement is not valid for this database
      */
-    private static int getPageSize(byte[] header) {
-        // Read 2 bytes at offset 16 as big-endian unsigned short
-        int b1 = header[16] & 0xFF;
-        int b2 = header[17] & 0xFF;
-        int pageSize = (b1 << 8) | b2;
-
-        // Special case: if stored value is 1, actual page size is 65536
-        return (pageSize == 1) ? 65536 : pageSize;
+    public static void runQuery(Pager pager, String sql) throws IOException {
+        DatabaseSchema schema = SchemaReader.read(pager);
+        Query.prepare(schema, sql).print(System.out);
+        SchemaReader.saveCounts(pager, schema);
     }
 
 }
@@ -0,0 +1,83 @@
+package btree;
+
+import helpers.SegmentReader;
+import helpers.VarintReader;
+import parser.PageParser;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Direct reads of B-tree page headers and cell pointers, for code that
+ * navigates a tree without building a full {@link PageParser.PageInfo}.
+ * Page numbers are 1-based; page 1 has the 100-byte file header in front
+ * of its B-tree header.
+ */
+public class BTreePage {
+
+    public static final byte INDEX_INTERIOR = 0x02;
+    public static final byte TABLE_INTERIOR = 0x05;
+    public static final byte INDEX_LEAF = 0x0A;
+    public static final byte TABLE_LEAF = 0x0D;
+
+    public static int headerOffset(long pageNumber) {
+        return pageNumber == 1 ? 100 : 0;
+    }
+
+    public static byte pageType(MemorySegment page, long pageNumber) {
+        return SegmentReader.readByte(page, headerOffset(pageNumber));
+    }
+
+    public static boolean isBTreePage(byte pageType) {
+        return pageType == INDEX_INTERIOR || pageType == TABLE_INTERIOR
+                || pageType == INDEX_LEAF || pageType == TABLE_LEAF;
+    }
+
+    public static int cellCount(MemorySegment page, long pageNumber) {
+        return SegmentReader.readUnsignedShort(page, headerOffset(pageNumber) + 3);
+    }
+
+    public static int rightMostPointer(MemorySegment page, long pageNumber) {
+        return SegmentReader.readInt(page, headerOffset(pageNumber) + 8);
+    }
+
+    /**
+     * @return offset of cell {@code index} within the page
+     */
+    public static int cellOffset(MemorySegment page, long pageNumber, byte pageType, int index) {
+        int pointerArrayStart = headerOffset(pageNumber) + PageParser.getHeaderSize(pageType);
+        return SegmentReader.readUnsignedShort(page, pointerArrayStart + index * 2);
+    }
+
+    /**
+     * @return left child page number of the interior cell at {@code cellOffset}
+     */
+    public static int leftChild(MemorySegment page, int cellOffset) {
+        return SegmentReader.readInt(page, cellOffset);
+    }
+
+    /**
+     * @return integer key of the table interior cell at {@code cellOffset}
+     */
+    public static long tableInteriorKey(MemorySegment page, int cellOffset, VarintReader varints) {
+        return varints.reset(page, cellOffset + 4).readVarint();
+    }
+
+    /**
+     * @return rowid of the table leaf cell at {@code cellOffset}
+     */
+    public static long tableLeafRowid(MemorySegment page, int cellOffset, VarintReader varints) {
+        varints.reset(page, cellOffset).readVarint(); // payload size
+        return varints.readVarint();
+    }
+
+    /**
+     * Child page {@code index} of an interior page, where index
+     * {@code cellCount} is the right-most pointer.
+     */
+    public static int childPage(MemorySegment page, long pageNumber, byte pageType, int index) {
+        if (index == cellCount(page, pageNumber)) {
+            return rightMostPointer(page, pageNumber);
+        }
+        return leftChild(page, cellOffset(page, pageNumber, pageType, index));
+    }
+}
@@ -0,0 +1,210 @@
+package btree;
+
+import dataTypes.IndexInfo;
+import dataTypes.RowCursor;
+import dataTypes.RowFilter;
+import dataTypes.RowSource;
+import dataTypes.SQLiteRecord;
+import pager.Pager;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Row source for a table stored in the database file: full scans walk the
+ * table B-tree, and index lookups search an index B-tree and then fetch
+ * each matching row by rowid. Every cursor or count reads one
+ * {@link Pager#snapshot() snapshot}, so an index lookup sees its entries
+ * and their rows as of the same commit.
+ */
+public class BTreeRowSource implements RowSource {
+    private final Pager pager;
+    private final long rootPage;
+    private final int rowidColumn;
+
+    public BTreeRowSource(Pager pager, long rootPage) {
+        this(pager, rootPage, -1);
+    }
+
+    /**
+     * @param rowidColumn INTEGER PRIMARY KEY column of the table, or -1
+     */
+    public BTreeRowSource(Pager pager, long rootPage, int rowidColumn) {
+        this.pager = pager;
+        this.rootPage = rootPage;
+        this.rowidColumn = rowidColumn;
+    }
+
+    @Override
+    public RowCursor openCursor() {
+        return newTableCursor(pager.snapshot());
+    }
+
+    // Leaf page headers hold the cell counts; no cell is decoded
+    @Override
+    public long countRows() throws IOException {
+        return new BTreeWalker(pager.snapshot()).countRows(rootPage);
+    }
+
+    // Interior and leaf pages of the tree, not counting overflow pages
+    @Override
+    public long countPages() throws IOException {
+        return new BTreeWalker(pager.snapshot()).countPages(rootPage);
+    }
+
+    /**
+     * Scan with the filter tested on each leaf cell's raw bytes, before a
+     * record is built for it.
+     */
+    @Override
+    public RowCursor openCursor(RowFilter filter) {
+        TableCursor cursor = newTableCursor(pager.snapshot());
+        cursor.setFilter(filter);
+        return cursor;
+    }
+
+    @Override
+    public RowCursor openRowidCursor(long[] rowids) {
+        long[] sorted = Arrays.stream(rowids).sorted().distinct().toArray();
+        return new RowidCursor(newTableCursor(pager.snapshot()), sorted);
+    }
+
+    private TableCursor newTableCursor(Pager snapshot) {
+        TableCursor cursor = new TableCursor(snapshot, rootPage);
+        cursor.setRowidColumn(rowidColumn);
+        return cursor;
+    }
+
+    @Override
+    public RowCursor openIndexCursor(IndexInfo index,
+                                     Object[] lower, boolean lowerInclusive,
+                                     Object[] upper, boolean upperInclusive) {
+        // One snapshot for both, or a refresh between them could pair entries with rows of another commit
+        Pager snapshot = pager.snapshot();
+        IndexCursor indexCursor = new IndexCursor(snapshot, index.getRootPage(), index.getDescendingFlags());
+        return new IndexedRowCursor(indexCursor, newTableCursor(snapshot),
+                lower, lowerInclusive, upper, upperInclusive);
+    }
+
+    // Rows whose index keys fall in a range, fetched by rowid in index order
+    private static class IndexedRowCursor implements RowCursor {
+        private final IndexCursor index;
+        private final TableCursor table;
+        private final Object[] lower;
+        private final boolean lowerInclusive;
+        private final Object[] upper;
+        private final boolean upperInclusive;
+        private boolean started;
+        private boolean finished;
+
+        IndexedRowCursor(IndexCursor index, TableCursor table,
+                         Object[] lower, boolean lowerInclusive,
+                         Object[] upper, boolean upperInclusive) {
+            this.index = index;
+            this.table = table;
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            while (!finished) {
+                boolean found;
+                if (!started) {
+                    started = true;
+                    found = lower != null ? index.seek(lower, lowerInclusive) : index.first();
+                } else {
+                    found = index.next();
+                }
+
+                if (!found || pastUpperBound()) {
+                    finished = true;
+                    return false;
+                }
+                if (table.seek(index.rowid())) {
+                    return true;
+                }
+                // An entry without a row means a damaged file; skip it
+            }
+            return false;
+        }
+
+        private boolean pastUpperBound() {
+            if (upper == null) {
+                return false;
+            }
+            int c = index.compareKey(upper);
+            return c > 0 || (c == 0 && !upperInclusive);
+        }
+
+        @Override
+        public long rowid() { return table.rowid(); }
+
+        @Override
+        public int columnCount() { return table.columnCount(); }
+
+        @Override
+        public Object column(int i) { return table.column(i); }
+
+        @Override
+        public void readColumns(int[] columns, Object[] values) { table.readColumns(columns, values); }
+
+        @Override
+        public SQLiteRecord record() { return table.record(); }
+
+        @Override
+        public SQLiteRecord currentRecord() { return table.currentRecord(); }
+
+        @Override
+        public void close() {
+            index.close();
+            table.close();
+        }
+    }
+    // Rows for a sorted list of rowids; each seek starts from the previous path
+    private static class RowidCursor implements RowCursor {
+        private final TableCursor table;
+        private final long[] rowids;
+        private int next;
+
+        RowidCursor(TableCursor table, long[] rowids) {
+            this.table = table;
+            this.rowids = rowids;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            while (next < rowids.length) {
+                if (table.seek(rowids[next++])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long rowid() { return table.rowid(); }
+
+        @Override
+        public int columnCount() { return table.columnCount(); }
+
+        @Override
+        public Object column(int i) { return table.column(i); }
+
+        @Override
+        public void readColumns(int[] columns, Object[] values) { table.readColumns(columns, values); }
+
+        @Override
+        public SQLiteRecord record() { return table.record(); }
+
+        @Override
+        public SQLiteRecord currentRecord() { return table.currentRecord(); }
+
+        @Override
+        public void close() {
+            table.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package btree;
+
+import dataTypes.CellInfo;
+import dataTypes.SQLiteRecord;
+import pager.Pager;
+import parser.PageParser;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Depth-first traversal of one B-tree, starting at its root page.
+ * <p>
+ * Interior pages are followed through the left child pointer of every cell
+ * and then the right-most pointer, so leaves are visited in key order and
+ * only pages that belong to the tree are read.
+ */
+public class BTreeWalker {
+
+    // SQLite trees are never this deep; a deeper walk means a page cycle
+    private static final int MAX_DEPTH = 64;
+
+    private final Pager pager;
+
+    @FunctionalInterface
+    public interface PageVisitor {
+        void visit(long pageNumber, MemorySegment page, byte pageType) throws IOException;
+    }
+
+    // Each walk sees one view of the database, see Pager.snapshot()
+    public BTreeWalker(Pager pager) {
+        this.pager = pager.snapshot();
+    }
+
+    /**
+     * Visit every page of the tree, parents before their children.
+     *
+     * @param rootPage 1-based root page number
+     */
+    public void walk(long rootPage, PageVisitor visitor) throws IOException {
+        walk(rootPage, visitor, 0);
+    }
+
+    /**
+     * Visit the leaf pages of the tree in key order.
+     *
+     * @param rootPage 1-based root page number
+     */
+    public void forEachLeaf(long rootPage, PageVisitor visitor) throws IOException {
+        walk(rootPage, (pageNumber, page, pageType) -> {
+            if (!PageParser.isInteriorPage(pageType)) {
+                visitor.visit(pageNumber, page, pageType);
+            }
+        });
+    }
+
+    /**
+     * Count the rows of a table B-tree by adding up the cell counts in its
+     * leaf page headers. No cell is read.
+     *
+     * @param rootPage 1-based root page number
+     */
+    public long countRows(long rootPage) throws IOException {
+        long[] rows = {0};
+        forEachLeaf(rootPage, (pageNumber, page, pageType) -> rows[0] += BTreePage.cellCount(page, pageNumber));
+        return rows[0];
+    }
+
+    /**
+     * Count the interior and leaf pages of a B-tree.
+     *
+     * @param rootPage 1-based root page number
+     */
+    public long countPages(long rootPage) throws IOException {
+        long[] pages = {0};
+        walk(rootPage, (pageNumber, page, pageType) -> pages[0]++);
+        return pages[0];
+    }
+
+    /**
+     * Parse every record stored in a table B-tree.
+     *
+     * @param rootPage 1-based root page number
+     * @return records in rowid order
+     */
+    public List<SQLiteRecord> readRecords(long rootPage) throws IOException {
+        List<SQLiteRecord> records = new ArrayList<>();
+        int usableSize = pager.getUsableSize();
+        forEachLeaf(rootPage, (pageNumber, page, pageType) -> {
+            PageParser.PageInfo pageInfo = PageParser.parsePageInfo(page, pageNumber == 1, (int) pageNumber,
+                    pager, usableSize);
+            for (CellInfo cell : pageInfo.cells) {
+                if (!cell.hasError() && cell.getRecord() != null) {
+                    SQLiteRecord record = cell.getRecord();
+                    record.setRowId(cell.getRowId());
+                    record.setPageNumber((int) pageNumber);
+                    record.setCellIndex(cell.getCellIndex());
+                    records.add(record);
+                }
+            }
+        });
+        return records;
+    }
+
+    private void walk(long pageNumber, PageVisitor visitor, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("B-tree deeper than " + MAX_DEPTH + " levels at page " + pageNumber
+                    + ", the file probably contains a page cycle");
+        }
+
+        MemorySegment page = pager.readPage(pageNumber);
+        byte pageType = BTreePage.pageType(page, pageNumber);
+        if (!BTreePage.isBTreePage(pageType)) {
+            throw new IOException("Page " + pageNumber + " is not a b-tree page (type 0x"
+                    + String.format("%02X", pageType) + ")");
+        }
+
+        visitor.visit(pageNumber, page, pageType);
+
+        if (PageParser.isInteriorPage(pageType)) {
+            int numCells = BTreePage.cellCount(page, pageNumber);
+            for (int i = 0; i <= numCells; i++) {
+                walk(BTreePage.childPage(page, pageNumber, pageType, i), visitor, depth + 1);
+            }
+        }
+    }
+}
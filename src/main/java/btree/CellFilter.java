@@ -0,0 +1,219 @@
+package btree;
+
+import dataTypes.RowFilter;
+import dataTypes.RowFilter.Op;
+import dataTypes.SQLiteRecord;
+import helpers.VarintReader;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A {@link RowFilter} compiled to checks on the raw bytes of a table leaf
+ * cell. The record header is walked only as far as the highest column a
+ * condition needs, and each value is compared where it lies in the page:
+ * integers as big-endian bytes, TEXT and BLOB with a byte mismatch against
+ * the constant's UTF-8 bytes. An equality test on TEXT first checks the
+ * serial type, which encodes the length, so most rows are rejected without
+ * looking at their bytes. Nothing is allocated per cell.
+ * <p>
+ * Only payloads held entirely in the cell are handled here; the cursor
+ * tests a row with overflow pages on its decoded record. Not thread-safe.
+ */
+final class CellFilter {
+
+    // Value classes in SQLite sort order
+    private static final int NULL = 0;
+    private static final int NUMBER = 1;
+    private static final int TEXT = 2;
+    private static final int BLOB = 3;
+
+    private final Compiled[] conditions; // sorted by column, rowid first
+    private final int lastColumn;
+    private final long[] serialTypes;
+    private final int[] offsets;
+    private final VarintReader varints = new VarintReader();
+
+    private static final class Compiled {
+        final int column; // -1 for the rowid
+        final Op op;
+        final int valueClass;
+        final boolean integral;
+        final long longValue;
+        final double doubleValue;
+        final MemorySegment bytes;
+        final long serialType; // serial type a TEXT or BLOB equal to the constant has
+
+        Compiled(int column, Op op, Object value) {
+            this.column = column;
+            this.op = op;
+            long l = 0;
+            double d = 0;
+            MemorySegment b = null;
+            long st = -1;
+            boolean isIntegral = false;
+            if (value == null) {
+                valueClass = NULL;
+            } else if (value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte) {
+                valueClass = NUMBER;
+                isIntegral = true;
+                l = ((Number) value).longValue();
+                d = l;
+            } else if (value instanceof Number number) {
+                valueClass = NUMBER;
+                d = number.doubleValue();
+            } else if (value instanceof byte[] blob) {
+                valueClass = BLOB;
+                b = MemorySegment.ofArray(blob);
+                st = 12 + 2L * blob.length;
+            } else {
+                byte[] text = value.toString().getBytes(StandardCharsets.UTF_8);
+                valueClass = TEXT;
+                b = MemorySegment.ofArray(text);
+                st = 13 + 2L * text.length;
+            }
+            this.integral = isIntegral;
+            this.longValue = l;
+            this.doubleValue = d;
+            this.bytes = b;
+            this.serialType = st;
+        }
+    }
+
+    /**
+     * @param rowidColumn the INTEGER PRIMARY KEY column, which is stored as
+     *                    the rowid, or -1
+     */
+    CellFilter(RowFilter filter, int rowidColumn) {
+        List<RowFilter.Condition> source = filter.getConditions();
+        conditions = new Compiled[source.size()];
+        int last = -1;
+        for (int i = 0; i < conditions.length; i++) {
+            RowFilter.Condition condition = source.get(i);
+            int column = condition.column() == rowidColumn ? RowFilter.ROWID : condition.column();
+            conditions[i] = new Compiled(column, condition.op(), condition.value());
+            last = Math.max(last, column);
+        }
+        Arrays.sort(conditions, Comparator.comparingInt(c -> c.column));
+        lastColumn = last;
+        serialTypes = new long[last + 1];
+        offsets = new int[last + 1];
+    }
+
+    /**
+     * @param payloadOffset start of the record in the page
+     * @param payloadSize   record size, all of it in the page
+     */
+    boolean test(MemorySegment page, int payloadOffset, int payloadSize, long rowid) {
+        int columns = lastColumn >= 0 ? readHeader(page, payloadOffset, payloadSize) : 0;
+        for (Compiled condition : conditions) {
+            boolean ok;
+            if (condition.column == RowFilter.ROWID) {
+                ok = testRowid(condition, rowid);
+            } else if (condition.column >= columns) {
+                // A row written before ALTER TABLE ADD COLUMN: the value is NULL
+                ok = testValue(condition, 0, page, 0);
+            } else {
+                ok = testValue(condition, serialTypes[condition.column], page, offsets[condition.column]);
+            }
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Serial types and value offsets up to lastColumn; returns the columns read
+    private int readHeader(MemorySegment page, int payloadOffset, int payloadSize) {
+        varints.reset(page, payloadOffset);
+        int headerSize = (int) varints.readVarint();
+        if (headerSize > payloadSize) {
+            throw new IllegalArgumentException("Header size " + headerSize
+                    + " exceeds payload size " + payloadSize);
+        }
+        int headerEnd = payloadOffset + headerSize;
+        int valueOffset = headerEnd;
+        int column = 0;
+        while (column <= lastColumn && varints.position() < headerEnd) {
+            long serialType = varints.readVarint();
+            serialTypes[column] = serialType;
+            offsets[column++] = valueOffset;
+            valueOffset += SQLiteRecord.ColumnType.sizeOf(serialType);
+        }
+        if (valueOffset > payloadOffset + payloadSize) {
+            throw new IllegalArgumentException("Record values run past payload size " + payloadSize);
+        }
+        return column;
+    }
+
+    private static boolean testRowid(Compiled condition, long rowid) {
+        return switch (condition.op) {
+            case IS_NULL -> false;
+            case IS_NOT_NULL -> true;
+            default -> condition.valueClass != NULL && RowFilter.holds(condition.op, compareRowid(condition, rowid));
+        };
+    }
+
+    // The rowid is a number, so it sorts before any TEXT or BLOB constant
+    private static int compareRowid(Compiled condition, long rowid) {
+        if (condition.valueClass != NUMBER) {
+            return Integer.compare(NUMBER, condition.valueClass);
+        }
+        return compareNumber(condition, rowid);
+    }
+
+    private static boolean testValue(Compiled condition, long serialType, MemorySegment page, int offset) {
+        if (condition.op == Op.IS_NULL) return serialType == 0;
+        if (condition.op == Op.IS_NOT_NULL) return serialType != 0;
+        if (serialType == 0 || condition.valueClass == NULL) return false;
+
+        // TEXT and BLOB equality: the serial type must match exactly
+        if (condition.op == Op.EQ && condition.bytes != null && serialType != condition.serialType) {
+            return false;
+        }
+        return RowFilter.holds(condition.op, compare(condition, serialType, page, offset));
+    }
+
+    // Stored value compared with the constant
+    private static int compare(Compiled condition, long serialType, MemorySegment page, int offset) {
+        int valueClass = valueClass(serialType);
+        if (valueClass != condition.valueClass) {
+            return Integer.compare(valueClass, condition.valueClass);
+        }
+        if (valueClass == NUMBER) {
+            if (serialType == 7) {
+                return Double.compare(SQLiteRecord.readReal(page, offset), condition.doubleValue);
+            }
+            return compareNumber(condition, SQLiteRecord.readInteger(page, offset, serialType));
+        }
+        int length = SQLiteRecord.ColumnType.sizeOf(serialType);
+        int expectedLength = (int) condition.bytes.byteSize();
+        long mismatch = MemorySegment.mismatch(page, offset, offset + length, condition.bytes, 0, expectedLength);
+        if (mismatch < 0) {
+            return 0;
+        }
+        if (mismatch >= length || mismatch >= expectedLength) {
+            return Integer.compare(length, expectedLength);
+        }
+        // UTF-8 byte order is code point order, matching the BINARY collation
+        return Integer.compare(page.get(ValueLayout.JAVA_BYTE, offset + mismatch) & 0xFF,
+                condition.bytes.get(ValueLayout.JAVA_BYTE, mismatch) & 0xFF);
+    }
+
+    private static int compareNumber(Compiled condition, long value) {
+        return condition.integral
+                ? Long.compare(value, condition.longValue)
+                : Double.compare((double) value, condition.doubleValue);
+    }
+
+    private static int valueClass(long serialType) {
+        if (serialType == 0) return NULL;
+        if (serialType < 12) return NUMBER;
+        return serialType % 2 == 0 ? BLOB : TEXT;
+    }
+}
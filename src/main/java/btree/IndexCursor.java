@@ -0,0 +1,241 @@
+package btree;
+
+import dataTypes.SQLiteRecord;
+import dataTypes.ValueComparator;
+import helpers.VarintReader;
+import pager.CellPayload;
+import pager.Pager;
+import parser.CellParser;
+import parser.PageParser;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.util.Arrays;
+
+/**
+ * Cursor over the entries of an index B-tree, in key order.
+ * <p>
+ * Every index entry is a record of the indexed columns followed by the
+ * rowid. Unlike table B-trees, interior cells of an index hold entries too,
+ * so an interior cell is visited after the subtree to its left.
+ * {@link #seek(Object[], boolean)} finds the first entry at or after a key
+ * with a binary search on each level, comparing keys with SQLite's value
+ * ordering.
+ */
+public class IndexCursor implements AutoCloseable {
+
+    // SQLite trees are never this deep; a deeper path means a page cycle
+    private static final int MAX_DEPTH = 64;
+
+    private final Pager pager;
+    private final long rootPage;
+    private final boolean[] descending;
+
+    // Path from the root to the current page
+    private final long[] pageNumbers = new long[MAX_DEPTH];
+    private final MemorySegment[] pages = new MemorySegment[MAX_DEPTH];
+    private final byte[] pageTypes = new byte[MAX_DEPTH];
+    private final int[] cellCounts = new int[MAX_DEPTH];
+    private final int[] indexes = new int[MAX_DEPTH];
+    private final boolean[] descended = new boolean[MAX_DEPTH];
+    private int depth = -1;
+
+    private final SQLiteRecord entry = new SQLiteRecord();
+    private final SQLiteRecord probe = new SQLiteRecord();
+    private final VarintReader varints = new VarintReader();
+    private int usableSize;
+
+    /**
+     * Like a {@link TableCursor}, the cursor reads a snapshot of the pager.
+     *
+     * @param rootPage   1-based root page of an index B-tree
+     * @param descending per-column DESC flags of the index, or null if all ascending
+     */
+    public IndexCursor(Pager pager, long rootPage, boolean[] descending) {
+        this.pager = pager.snapshot();
+        this.rootPage = rootPage;
+        this.descending = descending;
+    }
+
+    /**
+     * Position on the first entry of the index.
+     */
+    public boolean first() throws IOException {
+        return seek(null, true);
+    }
+
+    /**
+     * Position on the first entry whose key is at or after {@code key}
+     * (strictly after if not inclusive). The key may be a prefix of the
+     * indexed columns.
+     *
+     * @return false if no such entry exists
+     */
+    public boolean seek(Object[] key, boolean inclusive) throws IOException {
+        depth = -1;
+        push(rootPage);
+        while (true) {
+            int pos = key == null ? 0 : search(key, inclusive);
+            indexes[depth] = pos;
+            if (!PageParser.isInteriorPage(pageTypes[depth])) {
+                break;
+            }
+            descended[depth] = true;
+            push(BTreePage.childPage(pages[depth], pageNumbers[depth], pageTypes[depth], pos));
+        }
+        return advance();
+    }
+
+    public boolean next() throws IOException {
+        if (depth < 0) {
+            return false;
+        }
+        // On a leaf this moves to the next cell; on an interior cell it
+        // moves to the subtree to its right
+        indexes[depth]++;
+        descended[depth] = false;
+        return advance();
+    }
+
+    /**
+     * @return the current entry; reused when the cursor moves
+     */
+    public SQLiteRecord entry() {
+        checkPositioned();
+        return entry;
+    }
+
+    /**
+     * @return the rowid stored as the last column of the current entry
+     */
+    public long rowid() {
+        checkPositioned();
+        return entry.getLong(entry.getColumnCount() - 1);
+    }
+
+    /**
+     * Compare the current entry with a key prefix, in index order.
+     */
+    public int compareKey(Object[] key) {
+        checkPositioned();
+        return compare(entry, key);
+    }
+
+    @Override
+    public void close() {
+        depth = -1;
+        Arrays.fill(pages, null);
+    }
+
+    private boolean advance() throws IOException {
+        while (depth >= 0) {
+            int index = indexes[depth];
+            if (!PageParser.isInteriorPage(pageTypes[depth])) {
+                if (index < cellCounts[depth]) {
+                    load(entry, index);
+                    return true;
+                }
+            } else if (!descended[depth]) {
+                descended[depth] = true;
+                push(BTreePage.childPage(pages[depth], pageNumbers[depth], pageTypes[depth], index));
+                continue;
+            } else if (index < cellCounts[depth]) {
+                // Left subtree done, now the interior entry itself
+                load(entry, index);
+                return true;
+            }
+            pages[depth] = null;
+            depth--;
+        }
+        return false;
+    }
+
+    // First cell on the current page at or after the key
+    private int search(Object[] key, boolean inclusive) throws IOException {
+        int lo = 0;
+        int hi = cellCounts[depth];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            load(probe, mid);
+            int c = compare(probe, key);
+            if (c < 0 || (c == 0 && !inclusive)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int compare(SQLiteRecord record, Object[] key) {
+        int columns = Math.min(key.length, record.getColumnCount());
+        for (int i = 0; i < columns; i++) {
+            int c = ValueComparator.compareValues(record.getValue(i), key[i]);
+            if (descending != null && i < descending.length && descending[i]) {
+                c = -c;
+            }
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    // Parse a cell of the current page into a record
+    private void load(SQLiteRecord record, int index) throws IOException {
+        MemorySegment page = pages[depth];
+        byte pageType = pageTypes[depth];
+        int pos = BTreePage.cellOffset(page, pageNumbers[depth], pageType, index);
+        if (pageType == BTreePage.INDEX_INTERIOR) {
+            pos += 4; // left child pointer
+        }
+
+        varints.reset(page, pos);
+        int payloadSize = (int) varints.readVarint();
+        int payloadOffset = (int) varints.position();
+        int localSize = CellParser.localPayloadSize(payloadSize, usableSize, pageType);
+        try {
+            if (localSize == payloadSize) {
+                record.reset(page, payloadOffset, payloadSize);
+            } else {
+                record.reset(CellPayload.inCell(pager, usableSize, page, payloadOffset, payloadSize, localSize));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot decode index entry " + index + " on page "
+                    + pageNumbers[depth] + ": " + e.getMessage(), e);
+        }
+        record.setRecordType(SQLiteRecord.RecordType.INDEX_RECORD);
+        record.setPageNumber((int) pageNumbers[depth]);
+        record.setCellIndex(index);
+    }
+
+    private void push(long pageNumber) throws IOException {
+        if (depth + 1 >= MAX_DEPTH) {
+            throw new IOException("B-tree deeper than " + MAX_DEPTH + " levels at page " + pageNumber
+                    + ", the file probably contains a page cycle");
+        }
+        if (usableSize == 0) {
+            usableSize = pager.getUsableSize();
+        }
+        MemorySegment page = pager.readPage(pageNumber);
+        byte pageType = BTreePage.pageType(page, pageNumber);
+        if (pageType != BTreePage.INDEX_LEAF && pageType != BTreePage.INDEX_INTERIOR) {
+            throw new IOException("Page " + pageNumber + " is not an index b-tree page (type 0x"
+                    + String.format("%02X", pageType) + ")");
+        }
+
+        depth++;
+        pageNumbers[depth] = pageNumber;
+        pages[depth] = page;
+        pageTypes[depth] = pageType;
+        cellCounts[depth] = BTreePage.cellCount(page, pageNumber);
+        indexes[depth] = 0;
+        descended[depth] = false;
+    }
+
+    private void checkPositioned() {
+        if (depth < 0) {
+            throw new IllegalStateException("Cursor is not positioned on an entry");
+        }
+    }
+}
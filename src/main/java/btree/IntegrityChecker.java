@@ -0,0 +1,563 @@
+package btree;
+
+import dataTypes.CellInfo;
+import dataTypes.DatabaseSchema;
+import dataTypes.IndexInfo;
+import dataTypes.SQLiteRecord;
+import dataTypes.TableInfo;
+import dataTypes.ValueComparator;
+import helpers.SegmentReader;
+import helpers.VarintReader;
+import pager.Pager;
+import parser.CellParser;
+import parser.PageParser;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Checks the structure of a database file, like SQLite's
+ * {@code PRAGMA integrity_check}.
+ * <p>
+ * Every B-tree named in {@code sqlite_master} is walked on a fork-join
+ * pool, one task per page, so separate trees and the subtrees of one tree
+ * are checked concurrently. For each page the checker verifies:
+ * <ul>
+ *   <li>the page type, and that children of a table page are table pages
+ *       and children of an index page are index pages;</li>
+ *   <li>that all leaves of a tree are at the same depth;</li>
+ *   <li>key order: rowids increase along table leaves and stay within the
+ *       range the parent's keys give each child, and index entries do the
+ *       same in index order;</li>
+ *   <li>that the cell pointer array ends before the cell content area, and
+ *       each cell lies inside the content area without overlapping
+ *       another cell or a freeblock;</li>
+ *   <li>that the freeblock chain is in bounds and ascending, and that the
+ *       fragmented byte count in the header matches the bytes left over;</li>
+ *   <li>that each overflow chain has the length its payload needs.</li>
+ * </ul>
+ * Page use is recorded in a shared bitmap as the trees, overflow chains,
+ * freelist and pointer map are walked, so a page reached twice and a page
+ * never reached are both reported.
+ * <p>
+ * Index order is checked with the BINARY collation, so it is skipped for
+ * indexes on expressions, indexes whose terms or key columns declare
+ * another collation and the automatic indexes of UNIQUE constraints.
+ */
+public class IntegrityChecker {
+
+    /** Problems listed in a result, as SQLite's default; the rest are only counted. */
+    public static final int MAX_PROBLEMS = 100;
+
+    // Problems held while checking, so the first MAX_PROBLEMS by page can be picked
+    private static final int MAX_COLLECTED = 100_000;
+
+    // SQLite trees are never this deep; a deeper walk means a page cycle
+    private static final int MAX_DEPTH = 64;
+
+    // Page holding the bytes SQLite locks at 1 GiB; it is never used
+    private static final long LOCK_BYTE_OFFSET = 1L << 30;
+
+    private static final ThreadLocal<VarintReader> VARINTS = ThreadLocal.withInitial(VarintReader::new);
+
+    private final Pager pager;
+    private final int usableSize;
+    private final long pageCount;
+    private final AtomicLongArray used;
+    private final ConcurrentLinkedQueue<Problem> problems = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger problemCount = new AtomicInteger();
+
+    /**
+     * A problem found on a page, and in one of its cells if {@code cell} is
+     * not negative.
+     */
+    public record Problem(long page, int cell, String tree, String message) {
+        @Override
+        public String toString() {
+            String where = cell >= 0 ? "Page " + page + " cell " + cell : "Page " + page;
+            return tree != null ? where + " (" + tree + "): " + message : where + ": " + message;
+        }
+    }
+
+    /** What the check found; {@code problems} is sorted by page and cell. */
+    public record Result(long pagesChecked, int problemCount, List<Problem> problems) {
+        public boolean isOk() { return problemCount == 0; }
+    }
+
+    // A B-tree to check; index order is compared with these flags, or not at all if null
+    private record Tree(String name, boolean index, boolean[] descending, AtomicInteger leafDepth) {
+        Tree(String name, boolean index, boolean[] descending) {
+            this(name, index, descending, new AtomicInteger(-1));
+        }
+    }
+
+    // The check reads one view of the database, see Pager.snapshot()
+    public IntegrityChecker(Pager pager) throws IOException {
+        this.pager = pager.snapshot();
+        this.usableSize = pager.getUsableSize();
+        this.pageCount = pager.getPageCount();
+        this.used = new AtomicLongArray((int) ((pageCount + 64) / 64));
+    }
+
+    /**
+     * Check the file on the common fork-join pool.
+     */
+    public Result check() throws IOException {
+        return check(ForkJoinPool.commonPool());
+    }
+
+    public Result check(ForkJoinPool pool) throws IOException {
+        List<PageTask> roots = new ArrayList<>();
+        roots.add(new PageTask(new Tree("sqlite_master", false, null), SchemaReader.SCHEMA_ROOT_PAGE, 0, null, null));
+        addTrees(roots);
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(roots);
+            }
+        });
+
+        checkFreelist();
+        markSpecialPages();
+        for (long page = 1; page <= pageCount; page++) {
+            if (!isUsed(page)) {
+                report(page, -1, null, "never used");
+            }
+        }
+
+        List<Problem> sorted = new ArrayList<>(problems);
+        sorted.sort((a, b) -> a.page() != b.page() ? Long.compare(a.page(), b.page())
+                : Integer.compare(a.cell(), b.cell()));
+        return new Result(pageCount, problemCount.get(), sorted.subList(0, Math.min(sorted.size(), MAX_PROBLEMS)));
+    }
+
+    // Add a root task for every B-tree in sqlite_master
+    private void addTrees(List<PageTask> roots) throws IOException {
+        DatabaseSchema schema;
+        try {
+            schema = SchemaReader.read(pager);
+        } catch (IOException | RuntimeException e) {
+            schema = null; // the walk of sqlite_master below reports what is wrong
+        }
+        BTreeWalker walker = new BTreeWalker(pager);
+        List<SQLiteRecord> records;
+        try {
+            records = walker.readRecords(SchemaReader.SCHEMA_ROOT_PAGE);
+        } catch (IOException e) {
+            report(SchemaReader.SCHEMA_ROOT_PAGE, -1, "sqlite_master", e.getMessage());
+            return;
+        }
+        for (SQLiteRecord record : records) {
+            if (record.getColumnCount() < 5 || !(record.getValue(3) instanceof Number root) || root.longValue() <= 0) {
+                continue; // views and triggers have no B-tree
+            }
+            String type = String.valueOf(record.getValue(0));
+            String name = String.valueOf(record.getValue(1));
+            Object sql = record.getValue(4);
+            boolean withoutRowid = sql != null
+                    && sql.toString().toUpperCase(Locale.ROOT).replaceAll("\\s+", " ").contains("WITHOUT ROWID");
+            boolean index = type.equals("index") || withoutRowid;
+            Tree tree = new Tree(name, index, index && schema != null ? orderFlags(schema, name) : null);
+            roots.add(new PageTask(tree, root.longValue(), 0, null, null));
+        }
+    }
+
+    // Descending flags of an index whose order can be checked, else null
+    private static boolean[] orderFlags(DatabaseSchema schema, String indexName) {
+        IndexInfo info = schema.getIndex(indexName);
+        if (info == null || !info.isUsableForLookups()) {
+            return null;
+        }
+        TableInfo table = schema.getTable(info.getTableName());
+        if (table == null) {
+            return null;
+        }
+        return table.hasBinaryOrder(info) ? info.getDescendingFlags() : null;
+    }
+
+    @SuppressWarnings("serial") // only ever run on the pool, never serialized
+    private class PageTask extends RecursiveAction {
+        private final Tree tree;
+        private final long pageNumber;
+        private final int depth;
+        // Exclusive lower and inclusive (tables) or exclusive (indexes) upper key bounds, null if open
+        private final Object lower;
+        private final Object upper;
+
+        PageTask(Tree tree, long pageNumber, int depth, Object lower, Object upper) {
+            this.tree = tree;
+            this.pageNumber = pageNumber;
+            this.depth = depth;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                List<PageTask> children = checkPage(this);
+                invokeAll(children);
+            } catch (IOException | RuntimeException e) {
+                report(pageNumber, -1, tree.name(), "cannot be read: " + e.getMessage());
+            }
+        }
+    }
+
+    private List<PageTask> checkPage(PageTask task) throws IOException {
+        Tree tree = task.tree;
+        long pageNumber = task.pageNumber;
+        if (!markUsed(pageNumber, tree.name(), "b-tree")) {
+            return List.of();
+        }
+        if (task.depth > MAX_DEPTH) {
+            report(pageNumber, -1, tree.name(), "b-tree deeper than " + MAX_DEPTH + " levels");
+            return List.of();
+        }
+
+        MemorySegment page = pager.readPage(pageNumber);
+        byte pageType = BTreePage.pageType(page, pageNumber);
+        if (!BTreePage.isBTreePage(pageType)) {
+            report(pageNumber, -1, tree.name(), String.format("not a b-tree page (type 0x%02X)", pageType));
+            return List.of();
+        }
+        boolean indexPage = pageType == BTreePage.INDEX_INTERIOR || pageType == BTreePage.INDEX_LEAF;
+        if (indexPage != tree.index()) {
+            report(pageNumber, -1, tree.name(), (indexPage ? "index" : "table") + " page in a "
+                    + (tree.index() ? "index" : "table") + (task.depth == 0 ? " tree" : " tree below its parent"));
+            return List.of();
+        }
+        boolean interior = PageParser.isInteriorPage(pageType);
+        if (!interior) {
+            int expected = tree.leafDepth().compareAndExchange(-1, task.depth);
+            if (expected != -1 && expected != task.depth) {
+                report(pageNumber, -1, tree.name(), "leaf at depth " + task.depth + ", other leaves at depth " + expected);
+            }
+        }
+
+        int cells = checkLayout(tree, page, pageNumber, pageType);
+        if (cells < 0) {
+            return List.of(); // cell pointers cannot be trusted
+        }
+        return checkCells(task, page, pageType, cells);
+    }
+
+    /**
+     * Check the page header, cell extents, freeblocks and fragmentation.
+     *
+     * @return number of cells, or -1 if the cell pointer array is unusable
+     */
+    private int checkLayout(Tree tree, MemorySegment page, long pageNumber, byte pageType) {
+        int headerOffset = BTreePage.headerOffset(pageNumber);
+        int numCells = BTreePage.cellCount(page, pageNumber);
+        int contentStart = contentStart(page, pageNumber);
+        int pointerArrayEnd = headerOffset + PageParser.getHeaderSize(pageType) + numCells * 2;
+        if (pointerArrayEnd > contentStart || contentStart > usableSize) {
+            report(pageNumber, -1, tree.name(), "cell pointer array ends at " + pointerArrayEnd
+                    + ", past the cell content area at " + contentStart + " (usable size " + usableSize + ")");
+            return -1;
+        }
+
+        BitSet covered = new BitSet(usableSize);
+        int coveredBytes = 0;
+        boolean complete = true; // every cell and freeblock accounted for
+        VarintReader varints = VARINTS.get();
+        for (int i = 0; i < numCells; i++) {
+            int offset = BTreePage.cellOffset(page, pageNumber, pageType, i);
+            if (offset < contentStart || offset > usableSize - 4) {
+                report(pageNumber, i, tree.name(), "cell offset " + offset + " is outside the cell content area "
+                        + contentStart + ".." + (usableSize - 4));
+                complete = false;
+                continue;
+            }
+            int size;
+            try {
+                size = cellSize(page, offset, pageType, varints);
+            } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+                report(pageNumber, i, tree.name(), "cell header runs off the page");
+                complete = false;
+                continue;
+            }
+            if (offset + size > usableSize) {
+                report(pageNumber, i, tree.name(), "cell of " + size + " bytes at offset " + offset
+                        + " extends past the end of the page");
+                complete = false;
+                continue;
+            }
+            if (covered.nextSetBit(offset) >= 0 && covered.nextSetBit(offset) < offset + size) {
+                report(pageNumber, i, tree.name(), "cell at offset " + offset + " overlaps another cell");
+            }
+            covered.set(offset, offset + size);
+            coveredBytes += size;
+        }
+
+        int freeblock = SegmentReader.readUnsignedShort(page, headerOffset + 1);
+        int previousEnd = 0;
+        int blocks = 0;
+        while (freeblock != 0) {
+            if (freeblock < contentStart || freeblock + 4 > usableSize) {
+                report(pageNumber, -1, tree.name(), "freeblock at offset " + freeblock
+                        + " is outside the cell content area " + contentStart + ".." + usableSize);
+                return numCells;
+            }
+            if (freeblock < previousEnd || ++blocks > usableSize / 4) {
+                report(pageNumber, -1, tree.name(), "freeblock chain goes backwards at offset " + freeblock);
+                return numCells;
+            }
+            int size = SegmentReader.readUnsignedShort(page, freeblock + 2);
+            if (size < 4 || freeblock + size > usableSize) {
+                report(pageNumber, -1, tree.name(), "freeblock at offset " + freeblock + " has bad size " + size);
+                return numCells;
+            }
+            if (covered.nextSetBit(freeblock) >= 0 && covered.nextSetBit(freeblock) < freeblock + size) {
+                report(pageNumber, -1, tree.name(), "freeblock at offset " + freeblock + " overlaps a cell");
+            }
+            covered.set(freeblock, freeblock + size);
+            coveredBytes += size;
+            previousEnd = freeblock + size;
+            freeblock = SegmentReader.readUnsignedShort(page, freeblock);
+        }
+
+        int fragmented = SegmentReader.readUnsignedByte(page, headerOffset + 7);
+        int leftOver = usableSize - contentStart - coveredBytes;
+        if (complete && leftOver != fragmented && covered.cardinality() == coveredBytes) {
+            report(pageNumber, -1, tree.name(), "fragmentation of " + leftOver + " bytes reported as " + fragmented);
+        }
+        return numCells;
+    }
+
+    private static int contentStart(MemorySegment page, long pageNumber) {
+        int start = SegmentReader.readUnsignedShort(page, BTreePage.headerOffset(pageNumber) + 5);
+        return start == 0 ? 65536 : start; // 0 stands for 65536 on 64KiB pages
+    }
+
+    // Bytes the cell takes in the page, including its overflow page pointer
+    private int cellSize(MemorySegment page, int offset, byte pageType, VarintReader varints) {
+        if (pageType == BTreePage.TABLE_INTERIOR) {
+            varints.reset(page, offset + 4).readVarint();
+            return (int) (varints.position() - offset);
+        }
+        varints.reset(page, pageType == BTreePage.INDEX_INTERIOR ? offset + 4 : offset);
+        long payloadSize = varints.readVarint();
+        if (pageType == BTreePage.TABLE_LEAF) {
+            varints.readVarint(); // rowid
+        }
+        int localSize = CellParser.localPayloadSize(payloadSize, usableSize, pageType);
+        int size = (int) (varints.position() - offset) + localSize + (localSize < payloadSize ? 4 : 0);
+        return Math.max(size, 4); // SQLite pads smaller cells to 4 bytes
+    }
+
+    // Key order, overflow chains and the child tasks of an interior page
+    private List<PageTask> checkCells(PageTask task, MemorySegment page, byte pageType, int numCells) {
+        Tree tree = task.tree;
+        long pageNumber = task.pageNumber;
+        VarintReader varints = VARINTS.get();
+        boolean interior = PageParser.isInteriorPage(pageType);
+        List<PageTask> children = new ArrayList<>(interior ? numCells + 1 : 0);
+
+        int contentStart = contentStart(page, pageNumber);
+        Object previous = task.lower;
+        for (int i = 0; i < numCells; i++) {
+            int offset = BTreePage.cellOffset(page, pageNumber, pageType, i);
+            if (offset < contentStart || offset > usableSize - 4) {
+                continue; // reported by checkLayout
+            }
+            Object key;
+            try {
+                key = cellKey(tree, page, pageNumber, pageType, offset, i, varints);
+            } catch (IndexOutOfBoundsException | IllegalArgumentException | IllegalStateException e) {
+                report(pageNumber, i, tree.name(), "cannot be decoded: " + e.getMessage());
+                continue;
+            }
+
+            if (key != null) {
+                if (previous != null && compareKeys(tree, previous, key) >= 0) {
+                    report(pageNumber, i, tree.name(), "key " + describe(key) + " is not greater than "
+                            + describe(previous) + (previous == task.lower ? ", the lower bound from the parent" : ""));
+                }
+                if (task.upper != null) {
+                    int c = compareKeys(tree, key, task.upper);
+                    if (c > 0 || (c == 0 && tree.index())) {
+                        report(pageNumber, i, tree.name(), "key " + describe(key) + " is past "
+                                + describe(task.upper) + ", the upper bound from the parent");
+                    }
+                }
+            }
+
+            if (interior) {
+                long child = SegmentReader.readInt(page, offset) & 0xFFFFFFFFL;
+                children.add(new PageTask(tree, child, task.depth + 1, previous, key));
+            }
+            if (key != null) {
+                previous = key;
+            }
+        }
+        if (interior) {
+            long right = BTreePage.rightMostPointer(page, pageNumber) & 0xFFFFFFFFL;
+            children.add(new PageTask(tree, right, task.depth + 1, previous, task.upper));
+        }
+        return children;
+    }
+
+    /**
+     * Key of a cell for ordering: the rowid of a table cell, or the record
+     * of an index cell (null if the index order is not checked). Follows
+     * the overflow chain of a cell that spills.
+     */
+    private Object cellKey(Tree tree, MemorySegment page, long pageNumber, byte pageType, int offset,
+                           int cell, VarintReader varints) {
+        if (pageType == BTreePage.TABLE_INTERIOR) {
+            return BTreePage.tableInteriorKey(page, offset, varints);
+        }
+        varints.reset(page, pageType == BTreePage.INDEX_INTERIOR ? offset + 4 : offset);
+        long payloadSize = varints.readVarint();
+        Long rowid = pageType == BTreePage.TABLE_LEAF ? varints.readVarint() : null;
+        int localSize = CellParser.localPayloadSize(payloadSize, usableSize, pageType);
+        if (localSize < payloadSize) {
+            long first = SegmentReader.readInt(page, varints.position() + localSize) & 0xFFFFFFFFL;
+            long pages = (payloadSize - localSize + usableSize - 5) / (usableSize - 4);
+            checkOverflowChain(tree, pageNumber, cell, first, pages);
+        }
+        if (rowid != null || tree.descending() == null) {
+            return rowid;
+        }
+        CellInfo info = CellParser.parseCellInfo(page, offset, pageType, pager, usableSize);
+        if (info.hasError() || info.getRecord() == null) {
+            throw new IllegalStateException(info.hasError() ? info.getError() : "no record");
+        }
+        return info.getRecord();
+    }
+
+    private void checkOverflowChain(Tree tree, long pageNumber, int cell, long first, long pages) {
+        long overflow = first;
+        for (long n = 0; n < pages; n++) {
+            if (overflow == 0) {
+                report(pageNumber, cell, tree.name(), "overflow chain ends after " + n + " of " + pages + " pages");
+                return;
+            }
+            if (!markUsed(overflow, tree.name(), "overflow")) {
+                return;
+            }
+            try {
+                overflow = SegmentReader.readInt(pager.readPage(overflow), 0) & 0xFFFFFFFFL;
+            } catch (IOException e) {
+                report(overflow, -1, tree.name(), "cannot be read: " + e.getMessage());
+                return;
+            }
+        }
+        if (overflow != 0) {
+            report(pageNumber, cell, tree.name(), "overflow chain continues past the " + pages + " pages it needs");
+        }
+    }
+
+    private static int compareKeys(Tree tree, Object a, Object b) {
+        if (a instanceof Long x && b instanceof Long y) {
+            return Long.compare(x, y);
+        }
+        SQLiteRecord ra = (SQLiteRecord) a;
+        SQLiteRecord rb = (SQLiteRecord) b;
+        boolean[] descending = tree.descending();
+        int columns = Math.min(ra.getColumnCount(), rb.getColumnCount());
+        for (int i = 0; i < columns; i++) {
+            int c = ValueComparator.compareValues(ra.getValue(i), rb.getValue(i));
+            if (i < descending.length && descending[i]) {
+                c = -c;
+            }
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(ra.getColumnCount(), rb.getColumnCount());
+    }
+
+    private static String describe(Object key) {
+        return key instanceof SQLiteRecord record ? record.getValues().toString() : String.valueOf(key);
+    }
+
+    // Trunk pages list their leaves; the total must match header offset 36
+    private void checkFreelist() throws IOException {
+        byte[] header = pager.readHeader();
+        MemorySegment headerSegment = MemorySegment.ofArray(header);
+        long trunk = SegmentReader.readInt(headerSegment, 32) & 0xFFFFFFFFL;
+        long expected = SegmentReader.readInt(headerSegment, 36) & 0xFFFFFFFFL;
+        long found = 0;
+        while (trunk != 0) {
+            if (!markUsed(trunk, "freelist", "freelist trunk")) {
+                break;
+            }
+            found++;
+            MemorySegment page = pager.readPage(trunk);
+            int leaves = SegmentReader.readInt(page, 4);
+            if (leaves < 0 || leaves > (usableSize - 8) / 4) {
+                report(trunk, -1, "freelist", "trunk lists " + leaves + " leaves");
+                break;
+            }
+            for (int i = 0; i < leaves; i++) {
+                if (markUsed(SegmentReader.readInt(page, 8 + i * 4) & 0xFFFFFFFFL, "freelist", "freelist leaf")) {
+                    found++;
+                }
+            }
+            trunk = SegmentReader.readInt(page, 0) & 0xFFFFFFFFL;
+        }
+        if (found != expected) {
+            report(1, -1, "freelist", "header counts " + expected + " free pages, the freelist holds " + found);
+        }
+    }
+
+    // Pointer map pages of an auto-vacuum file and the lock-byte page are in use without a reference
+    private void markSpecialPages() throws IOException {
+        MemorySegment header = MemorySegment.ofArray(pager.readHeader());
+        if (SegmentReader.readInt(header, 52) != 0) {
+            int entries = usableSize / 5;
+            for (long mapPage = 2; mapPage <= pageCount; mapPage += entries + 1) {
+                markUsed(mapPage, null, "pointer map");
+            }
+        }
+        long lockPage = LOCK_BYTE_OFFSET / pager.getPageSize() + 1;
+        if (lockPage <= pageCount) {
+            markUsed(lockPage, null, "lock-byte");
+        }
+    }
+
+    /**
+     * Record that the page is in use.
+     *
+     * @return false, after reporting it, if the page is out of range or
+     *         already in use
+     */
+    private boolean markUsed(long pageNumber, String tree, String use) {
+        if (pageNumber < 1 || pageNumber > pageCount) {
+            report(pageNumber, -1, tree, use + " page number out of range (1-" + pageCount + ")");
+            return false;
+        }
+        int word = (int) (pageNumber >>> 6);
+        long bit = 1L << (pageNumber & 63);
+        long old;
+        do {
+            old = used.get(word);
+            if ((old & bit) != 0) {
+                report(pageNumber, -1, tree, use + " page is referenced more than once");
+                return false;
+            }
+        } while (!used.compareAndSet(word, old, old | bit));
+        return true;
+    }
+
+    private boolean isUsed(long pageNumber) {
+        return (used.get((int) (pageNumber >>> 6)) & (1L << (pageNumber & 63))) != 0;
+    }
+
+    private void report(long pageNumber, int cell, String tree, String message) {
+        if (problemCount.getAndIncrement() < MAX_COLLECTED) {
+            problems.add(new Problem(pageNumber, cell, tree, message));
+        }
+    }
+}
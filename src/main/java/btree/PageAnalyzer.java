@@ -0,0 +1,207 @@
+package btree;
+
+import helpers.SegmentReader;
+import helpers.VarintReader;
+import metrics.Metrics;
+import metrics.PageParseEvent;
+import pager.Pager;
+import parser.CellParser;
+import parser.PageParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Collects {@link PageStatistics} for every page of a database file.
+ * <p>
+ * The page range is split into fork-join tasks that read and parse pages
+ * concurrently through the shared {@link Pager}. Each task fills its own
+ * statistics, which are merged as the tasks join, so no counter is shared
+ * between threads. Cells are read straight from the page: only the
+ * payload size varint of each cell is decoded, no records are built.
+ * <p>
+ * Overflow, freelist and pointer map pages are counted from a {@link PageMap} built
+ * first and are never read. If the freelist or an overflow chain is too
+ * damaged to map, every page is read and classified by its type byte.
+ */
+public class PageAnalyzer {
+
+    // Pages per leaf task; small enough to balance, large enough to amortise the fork
+    private static final int PAGES_PER_TASK = 256;
+
+    // Each worker thread reuses one reader for all of its cells
+    private static final ThreadLocal<VarintReader> VARINTS = ThreadLocal.withInitial(VarintReader::new);
+
+    private final Pager pager;
+    private final int usableSize;
+    private final PageMap pageMap;
+
+    // The analysis reads one view of the database, see Pager.snapshot()
+    public PageAnalyzer(Pager pager) throws IOException {
+        this.pager = pager.snapshot();
+        this.usableSize = pager.getUsableSize();
+        PageMap map;
+        try {
+            map = PageMap.build(pager);
+        } catch (IOException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            map = null; // corrupt chains: fall back to reading every page
+        }
+        this.pageMap = map;
+    }
+
+    /**
+     * Analyse every page of the file on the common fork-join pool.
+     */
+    public PageStatistics analyse() throws IOException {
+        return analyse(ForkJoinPool.commonPool());
+    }
+
+    public PageStatistics analyse(ForkJoinPool pool) throws IOException {
+        try {
+            return pool.invoke(new RangeTask(1, pager.getPageCount() + 1));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Analyse pages {@code [fromPage, toPage)} on the calling thread.
+     */
+    public PageStatistics analyseRange(long fromPage, long toPage) throws IOException {
+        PageStatistics stats = new PageStatistics();
+        VarintReader varints = VARINTS.get();
+        for (long pageNumber = fromPage; pageNumber < toPage; pageNumber++) {
+            PageMap.PageKind kind = pageMap != null ? pageMap.kind(pageNumber) : PageMap.PageKind.BTREE;
+            if (kind != PageMap.PageKind.BTREE) {
+                switch (kind) {
+                    case OVERFLOW -> stats.overflowPages++;
+                    case FREELIST -> stats.freelistPages++;
+                    default -> stats.otherPages++;
+                }
+                continue;
+            }
+            MemorySegment page = pager.readPage(pageNumber);
+            PageParseEvent event = new PageParseEvent();
+            event.begin();
+            long start = Metrics.Stage.PAGE_PARSE.start();
+            int errors = 0;
+            try {
+                analysePage(pageNumber, page, stats, varints);
+            } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+                stats.addMalformed(pageNumber, e.getMessage());
+                errors = 1;
+            }
+            Metrics.Stage.PAGE_PARSE.stop(start);
+            Metrics.Counter.PAGES_PARSED.increment();
+            Metrics.Counter.DECODE_ERRORS.add(errors);
+            if (event.shouldCommit()) {
+                event.pageNumber = pageNumber;
+                event.pageType = BTreePage.pageType(page, pageNumber) & 0xFF;
+                event.cells = errors == 0 && BTreePage.isBTreePage(BTreePage.pageType(page, pageNumber))
+                        ? BTreePage.cellCount(page, pageNumber) : 0;
+                event.errors = errors;
+                event.commit();
+            }
+        }
+        return stats;
+    }
+
+    private void analysePage(long pageNumber, MemorySegment page, PageStatistics stats, VarintReader varints) {
+        int headerOffset = BTreePage.headerOffset(pageNumber);
+        byte pageType = BTreePage.pageType(page, pageNumber);
+        if (!BTreePage.isBTreePage(pageType)) {
+            stats.otherPages++;
+            return;
+        }
+
+        int numCells = BTreePage.cellCount(page, pageNumber);
+        Metrics.Counter.CELLS_DECODED.add(numCells);
+        int cellContentStart = SegmentReader.readUnsignedShort(page, headerOffset + 5);
+        if (cellContentStart == 0) {
+            cellContentStart = 65536; // 0 stands for 65536 on 64KiB pages
+        }
+        int pointerArrayEnd = headerOffset + PageParser.getHeaderSize(pageType) + numCells * 2;
+        if (pointerArrayEnd > cellContentStart || cellContentStart > usableSize) {
+            throw new IllegalArgumentException("cell pointer array ends at " + pointerArrayEnd
+                    + ", past the cell content area at " + cellContentStart);
+        }
+
+        // Count the page only once its header is known to be sane
+        switch (pageType) {
+            case BTreePage.TABLE_INTERIOR -> { stats.tableInteriorPages++; stats.tableInteriorCells += numCells; }
+            case BTreePage.TABLE_LEAF -> { stats.tableLeafPages++; stats.tableLeafCells += numCells; }
+            case BTreePage.INDEX_INTERIOR -> { stats.indexInteriorPages++; stats.indexInteriorCells += numCells; }
+            default -> { stats.indexLeafPages++; stats.indexLeafCells += numCells; }
+        }
+        stats.btreeBytes += usableSize - headerOffset;
+        stats.unallocatedBytes += cellContentStart - pointerArrayEnd;
+        stats.fragmentedBytes += SegmentReader.readUnsignedByte(page, headerOffset + 7);
+        stats.freeblockBytes += freeblockBytes(page, headerOffset);
+
+        if (pageType == BTreePage.TABLE_INTERIOR) {
+            return; // interior table cells hold no payload
+        }
+        for (int i = 0; i < numCells; i++) {
+            int cellOffset = BTreePage.cellOffset(page, pageNumber, pageType, i);
+            if (pageType == BTreePage.INDEX_INTERIOR) {
+                cellOffset += 4; // left child pointer
+            }
+            long payloadSize = varints.reset(page, cellOffset).readVarint();
+            stats.addPayload(payloadSize);
+            if (CellParser.localPayloadSize(payloadSize, usableSize, pageType) < payloadSize) {
+                stats.overflowCells++;
+            }
+        }
+    }
+
+    // Total size of the freeblock chain; each block starts with the next offset and its size
+    private int freeblockBytes(MemorySegment page, int headerOffset) {
+        int total = 0;
+        int offset = SegmentReader.readUnsignedShort(page, headerOffset + 1);
+        int blocks = 0;
+        while (offset != 0) {
+            if (offset + 4 > usableSize || ++blocks > usableSize / 4) {
+                throw new IllegalArgumentException("freeblock chain is corrupt at offset " + offset);
+            }
+            total += SegmentReader.readUnsignedShort(page, offset + 2);
+            int next = SegmentReader.readUnsignedShort(page, offset);
+            if (next != 0 && next <= offset) {
+                throw new IllegalArgumentException("freeblock chain goes backwards at offset " + offset);
+            }
+            offset = next;
+        }
+        return total;
+    }
+
+    @SuppressWarnings("serial") // only ever run on the pool, never serialized
+    private class RangeTask extends RecursiveTask<PageStatistics> {
+        private final long fromPage;
+        private final long toPage;
+
+        RangeTask(long fromPage, long toPage) {
+            this.fromPage = fromPage;
+            this.toPage = toPage;
+        }
+
+        @Override
+        protected PageStatistics compute() {
+            if (toPage - fromPage <= PAGES_PER_TASK) {
+                try {
+                    return analyseRange(fromPage, toPage);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            long middle = (fromPage + toPage) >>> 1;
+            RangeTask left = new RangeTask(fromPage, middle);
+            RangeTask right = new RangeTask(middle, toPage);
+            left.fork();
+            PageStatistics stats = right.compute();
+            // Merge in page order so the result is the same however tasks were scheduled
+            return left.join().merge(stats);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package btree;
+
+import dataTypes.SQLiteRecord;
+import helpers.SegmentReader;
+import helpers.VarintReader;
+import pager.Pager;
+import parser.CellParser;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+
+/**
+ * What every page of a database file is used for, two bits per page.
+ * <p>
+ * Pages on the freelist are found by following the trunk chain that starts
+ * at header offset 32; each trunk lists its leaf pages. Overflow pages are
+ * found by walking every B-tree named in {@code sqlite_master} and
+ * following the overflow chain of each cell that spills, reading only the
+ * next-page pointer of each overflow page. In an auto-vacuum database the
+ * pointer map pages already record both, so they are read instead.
+ * <p>
+ * Free, overflow and pointer map pages hold no B-tree cells, but a
+ * freelist leaf often still holds the B-tree page it used to be, and a
+ * pointer map page can start with a B-tree type byte. Whole-file passes
+ * consult the map to skip them without reading them.
+ */
+public final class PageMap {
+
+    public enum PageKind {
+        /** A B-tree page, or a page none of the chains reach. */
+        BTREE,
+        OVERFLOW,
+        FREELIST,
+        POINTER_MAP
+    }
+
+    private static final PageKind[] KINDS = PageKind.values();
+
+    // Pointer map entry types
+    private static final int PTRMAP_FREE_PAGE = 2;
+    private static final int PTRMAP_OVERFLOW_FIRST = 3;
+    private static final int PTRMAP_OVERFLOW_NEXT = 4;
+
+    private final long pageCount;
+    private final long[] bits;
+    private final long[] counts = new long[KINDS.length];
+
+    private PageMap(long pageCount) {
+        this.pageCount = pageCount;
+        this.bits = new long[(int) ((pageCount * 2 + 63) / 64)];
+        counts[PageKind.BTREE.ordinal()] = pageCount;
+    }
+
+    /**
+     * Classify every page of the database.
+     */
+    public static PageMap build(Pager pager) throws IOException {
+        long pageCount = pager.getPageCount();
+        if (pageCount > Integer.MAX_VALUE) {
+            throw new IOException("Too many pages to classify: " + pageCount);
+        }
+        PageMap map = new PageMap(pageCount);
+        byte[] header = pager.readHeader();
+        map.addFreelist(pager, SegmentReader.readInt(MemorySegment.ofArray(header), 32));
+        if (SegmentReader.readInt(MemorySegment.ofArray(header), 52) != 0) {
+            map.addPointerMap(pager);
+        } else {
+            map.addBTrees(pager);
+        }
+        return map;
+    }
+
+    public long getPageCount() { return pageCount; }
+
+    /**
+     * @param pageNumber 1-based page number
+     */
+    public PageKind kind(long pageNumber) {
+        if (pageNumber < 1 || pageNumber > pageCount) {
+            return PageKind.BTREE;
+        }
+        long index = (pageNumber - 1) * 2;
+        return KINDS[(int) (bits[(int) (index >>> 6)] >>> (index & 63)) & 3];
+    }
+
+    /**
+     * @return true if the page is known to hold no B-tree cells, so a pass
+     *         over B-tree pages need not read it
+     */
+    public boolean isSkippable(long pageNumber) {
+        return kind(pageNumber) != PageKind.BTREE;
+    }
+
+    public long count(PageKind kind) {
+        return counts[kind.ordinal()];
+    }
+
+    private void set(long pageNumber, PageKind kind) throws IOException {
+        if (pageNumber < 1 || pageNumber > pageCount) {
+            throw new IOException("Page " + pageNumber + " of a " + kind.name().toLowerCase()
+                    + " chain is out of range (1-" + pageCount + ")");
+        }
+        PageKind old = kind(pageNumber);
+        if (old != PageKind.BTREE) {
+            throw new IOException("Page " + pageNumber + " is used as both " + old.name().toLowerCase()
+                    + " and " + kind.name().toLowerCase());
+        }
+        long index = (pageNumber - 1) * 2;
+        bits[(int) (index >>> 6)] |= (long) kind.ordinal() << (index & 63);
+        counts[PageKind.BTREE.ordinal()]--;
+        counts[kind.ordinal()]++;
+    }
+
+    // Trunk pages: next trunk, leaf count, then the leaf page numbers
+    private void addFreelist(Pager pager, int firstTrunk) throws IOException {
+        int usableSize = pager.getUsableSize();
+        for (long trunk = firstTrunk; trunk != 0; ) {
+            set(trunk, PageKind.FREELIST); // a cycle fails here on the second visit
+            MemorySegment page = pager.readPage(trunk);
+            int leaves = SegmentReader.readInt(page, 4);
+            if (leaves < 0 || leaves > (usableSize - 8) / 4) {
+                throw new IOException("Freelist trunk page " + trunk + " lists " + leaves + " leaves");
+            }
+            for (int i = 0; i < leaves; i++) {
+                set(SegmentReader.readInt(page, 8 + i * 4) & 0xFFFFFFFFL, PageKind.FREELIST);
+            }
+            trunk = SegmentReader.readInt(page, 0) & 0xFFFFFFFFL;
+        }
+    }
+
+    // One 5-byte entry (type, parent) per page after each pointer map page
+    private void addPointerMap(Pager pager) throws IOException {
+        int entries = pager.getUsableSize() / 5;
+        for (long mapPage = 2; mapPage <= pageCount; mapPage += entries + 1) {
+            set(mapPage, PageKind.POINTER_MAP);
+            MemorySegment page = pager.readPage(mapPage);
+            for (int i = 0; i < entries && mapPage + 1 + i <= pageCount; i++) {
+                long pageNumber = mapPage + 1 + i;
+                PageKind kind = switch (SegmentReader.readUnsignedByte(page, i * 5)) {
+                    case PTRMAP_OVERFLOW_FIRST, PTRMAP_OVERFLOW_NEXT -> PageKind.OVERFLOW;
+                    case PTRMAP_FREE_PAGE -> PageKind.FREELIST;
+                    default -> PageKind.BTREE; // root, other B-tree page or unused entry
+                };
+                // Free pages are already known from the freelist
+                if (kind != PageKind.BTREE && kind(pageNumber) == PageKind.BTREE) {
+                    set(pageNumber, kind);
+                }
+            }
+        }
+    }
+
+    private void addBTrees(Pager pager) throws IOException {
+        int usableSize = pager.getUsableSize();
+        BTreeWalker walker = new BTreeWalker(pager);
+        VarintReader varints = new VarintReader();
+        BTreeWalker.PageVisitor visitor = (pageNumber, page, pageType) -> {
+            if (pageType != BTreePage.TABLE_INTERIOR) {
+                addOverflowChains(pager, page, pageNumber, pageType, usableSize, varints);
+            }
+        };
+
+        walker.walk(SchemaReader.SCHEMA_ROOT_PAGE, visitor);
+        for (SQLiteRecord record : walker.readRecords(SchemaReader.SCHEMA_ROOT_PAGE)) {
+            if (record.getColumnCount() > 3 && record.getValue(3) instanceof Number root && root.longValue() > 0) {
+                walker.walk(root.longValue(), visitor);
+            }
+        }
+    }
+
+    private void addOverflowChains(Pager pager, MemorySegment page, long pageNumber, byte pageType,
+                                   int usableSize, VarintReader varints) throws IOException {
+        int numCells = BTreePage.cellCount(page, pageNumber);
+        for (int i = 0; i < numCells; i++) {
+            int cellOffset = BTreePage.cellOffset(page, pageNumber, pageType, i);
+            if (pageType == BTreePage.INDEX_INTERIOR) {
+                cellOffset += 4; // left child pointer
+            }
+            varints.reset(page, cellOffset);
+            long payloadSize = varints.readVarint();
+            if (pageType == BTreePage.TABLE_LEAF) {
+                varints.readVarint(); // rowid
+            }
+            int localSize = CellParser.localPayloadSize(payloadSize, usableSize, pageType);
+            if (localSize >= payloadSize) {
+                continue;
+            }
+
+            long overflowPages = (payloadSize - localSize + usableSize - 5) / (usableSize - 4);
+            long overflow = SegmentReader.readInt(page, varints.position() + localSize) & 0xFFFFFFFFL;
+            for (long n = 0; n < overflowPages && overflow != 0; n++) {
+                set(overflow, PageKind.OVERFLOW);
+                if (n + 1 < overflowPages) {
+                    overflow = SegmentReader.readInt(pager.readPage(overflow), 0) & 0xFFFFFFFFL;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package btree;
+
+import java.io.PrintStream;
+
+/**
+ * Space and content statistics for a range of database pages.
+ * <p>
+ * Statistics for disjoint page ranges are combined with {@link #merge}.
+ * Every field is a sum, a bucket count or the lowest failing page, so the
+ * merged result does not depend on the order the ranges were analysed in.
+ */
+public class PageStatistics {
+
+    // Payload sizes are bucketed by bit length: 0, 1, 2-3, 4-7, ...
+    static final int PAYLOAD_BUCKETS = 32;
+
+    long tableInteriorPages;
+    long tableLeafPages;
+    long indexInteriorPages;
+    long indexLeafPages;
+    long overflowPages;
+    long freelistPages;
+    long otherPages;
+
+    long tableInteriorCells;
+    long tableLeafCells;
+    long indexInteriorCells;
+    long indexLeafCells;
+
+    long unallocatedBytes;   // gap between the cell pointer array and the cell content area
+    long freeblockBytes;
+    long fragmentedBytes;
+    long btreeBytes;         // usable bytes of all b-tree pages
+
+    long payloadBytes;
+    long overflowCells;
+    final long[] payloadHistogram = new long[PAYLOAD_BUCKETS];
+
+    long malformedPages;
+    long firstMalformedPage;
+    String firstMalformedError;
+
+    void addPayload(long payloadSize) {
+        payloadBytes += payloadSize;
+        int bucket = 64 - Long.numberOfLeadingZeros(payloadSize);
+        payloadHistogram[Math.min(bucket, PAYLOAD_BUCKETS - 1)]++;
+    }
+
+    void addMalformed(long pageNumber, String error) {
+        malformedPages++;
+        if (firstMalformedError == null || pageNumber < firstMalformedPage) {
+            firstMalformedPage = pageNumber;
+            firstMalformedError = error;
+        }
+    }
+
+    /**
+     * Add the statistics of another page range to this one.
+     */
+    public PageStatistics merge(PageStatistics other) {
+        tableInteriorPages += other.tableInteriorPages;
+        tableLeafPages += other.tableLeafPages;
+        indexInteriorPages += other.indexInteriorPages;
+        indexLeafPages += other.indexLeafPages;
+        overflowPages += other.overflowPages;
+        freelistPages += other.freelistPages;
+        otherPages += other.otherPages;
+
+        tableInteriorCells += other.tableInteriorCells;
+        tableLeafCells += other.tableLeafCells;
+        indexInteriorCells += other.indexInteriorCells;
+        indexLeafCells += other.indexLeafCells;
+
+        unallocatedBytes += other.unallocatedBytes;
+        freeblockBytes += other.freeblockBytes;
+        fragmentedBytes += other.fragmentedBytes;
+        btreeBytes += other.btreeBytes;
+
+        payloadBytes += other.payloadBytes;
+        overflowCells += other.overflowCells;
+        for (int i = 0; i < PAYLOAD_BUCKETS; i++) {
+            payloadHistogram[i] += other.payloadHistogram[i];
+        }
+
+        if (other.firstMalformedError != null) {
+            malformedPages += other.malformedPages - 1;
+            addMalformed(other.firstMalformedPage, other.firstMalformedError);
+        }
+        return this;
+    }
+
+    public long getBTreePages() {
+        return tableInteriorPages + tableLeafPages + indexInteriorPages + indexLeafPages;
+    }
+
+    public long getOverflowPages() { return overflowPages; }
+    public long getFreelistPages() { return freelistPages; }
+    public long getOtherPages() { return otherPages; }
+
+    public long getCells() {
+        return tableInteriorCells + tableLeafCells + indexInteriorCells + indexLeafCells;
+    }
+
+    public long getFreeBytes() {
+        return unallocatedBytes + freeblockBytes + fragmentedBytes;
+    }
+
+    public long getPayloadBytes() { return payloadBytes; }
+    public long getOverflowCells() { return overflowCells; }
+    public long getMalformedPages() { return malformedPages; }
+
+    public void print(PrintStream out) {
+        out.println("=== Page Types ===");
+        out.printf("Table interior pages: %d%n", tableInteriorPages);
+        out.printf("Table leaf pages:     %d%n", tableLeafPages);
+        out.printf("Index interior pages: %d%n", indexInteriorPages);
+        out.printf("Index leaf pages:     %d%n", indexLeafPages);
+        out.printf("Overflow pages:       %d%n", overflowPages);
+        out.printf("Freelist pages:       %d%n", freelistPages);
+        out.printf("Other pages:          %d (pointer map or unused)%n", otherPages);
+        out.println();
+
+        out.println("=== Cells ===");
+        out.printf("Table interior cells: %d%n", tableInteriorCells);
+        out.printf("Table leaf cells:     %d%n", tableLeafCells);
+        out.printf("Index interior cells: %d%n", indexInteriorCells);
+        out.printf("Index leaf cells:     %d%n", indexLeafCells);
+        out.printf("Cells with overflow:  %d%n", overflowCells);
+        out.println();
+
+        out.println("=== Free Space in B-tree Pages ===");
+        out.printf("Unallocated bytes:    %d%n", unallocatedBytes);
+        out.printf("Freeblock bytes:      %d%n", freeblockBytes);
+        out.printf("Fragmented bytes:     %d%n", fragmentedBytes);
+        out.printf("Free space:           %.1f%%%n",
+                btreeBytes == 0 ? 0.0 : 100.0 * getFreeBytes() / btreeBytes);
+        out.println();
+
+        out.println("=== Payload Sizes ===");
+        out.printf("Total payload bytes:  %d%n", payloadBytes);
+        for (int i = 0; i < PAYLOAD_BUCKETS; i++) {
+            if (payloadHistogram[i] > 0) {
+                out.printf("  %-22s %d%n", bucketLabel(i), payloadHistogram[i]);
+            }
+        }
+
+        if (malformedPages > 0) {
+            out.println();
+            out.printf("Malformed pages: %d (first: page %d, %s)%n",
+                    malformedPages, firstMalformedPage, firstMalformedError);
+        }
+    }
+
+    private static String bucketLabel(int bucket) {
+        if (bucket == 0) {
+            return "0 bytes:";
+        }
+        long low = 1L << (bucket - 1);
+        if (bucket == PAYLOAD_BUCKETS - 1) {
+            return low + "+ bytes:";
+        }
+        long high = (1L << bucket) - 1;
+        return low == high ? low + " bytes:" : low + "-" + high + " bytes:";
+    }
+}
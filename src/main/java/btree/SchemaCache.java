@@ -0,0 +1,279 @@
+package btree;
+
+import dataTypes.DatabaseSchema;
+import dataTypes.IndexInfo;
+import dataTypes.TableInfo;
+import pager.Pager;
+import pager.WalIndex;
+import parser.HeaderParser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Sidecar file next to a database, {@code <db>-schema}, holding its parsed
+ * schema: tables with their column layout and root page, indexes with
+ * their columns, and the row and page counts of each table once known.
+ * <p>
+ * The cache is keyed on the file change counter (header offset 24), which
+ * every write bumps, and the schema cookie (offset 40), which every schema
+ * change bumps, plus the page size and page count. In WAL mode the header
+ * is read through the log, and since a commit there need not touch the
+ * counter the key also holds the log's salts and committed frame count.
+ * When they all match, a warm start reads neither {@code sqlite_master}
+ * nor any CREATE statement.
+ * <p>
+ * Row and page counts are only kept for files in rollback-journal mode.
+ * A WAL commit does not bump the change counter, so once a log whose
+ * commits changed rows but not the page count is checkpointed and
+ * removed, the key is the same as before and the counts would be stale.
+ * <p>
+ * The cache is best effort: a missing, stale or damaged file reads as a
+ * miss, and a file that cannot be written (say, a read-only directory) is
+ * skipped. Set {@code -Dsqlite.schemaCache=false} to turn it off.
+ */
+public final class SchemaCache {
+
+    /** System property that turns the cache off when set to false. */
+    public static final String ENABLED_PROPERTY = "sqlite.schemaCache";
+
+    private static final long MAGIC = 0x53514C5343484D33L; // "SQLSCHM3"
+
+    private SchemaCache() {
+    }
+
+    public static boolean isEnabled(Pager pager) {
+        return pager.getPath() != null
+                && !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+    }
+
+    public static Path cacheFile(String dbPath) {
+        return Path.of(dbPath + "-schema");
+    }
+
+    /**
+     * @return the cached schema, without row sources, or null if there is
+     *         no valid cache for the file as it is now
+     */
+    static DatabaseSchema load(Pager pager) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(cacheFile(pager.getPath()));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (bytes.length < 8) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        long stored = 0;
+        for (int i = bytes.length - 8; i < bytes.length; i++) {
+            stored = stored << 8 | (bytes[i] & 0xFF);
+        }
+        if (stored != crc.getValue()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8))) {
+            if (in.readLong() != MAGIC || !readKey(in).equals(key(pager))) {
+                return null;
+            }
+            return readSchema(in, keepsCounts(pager));
+        } catch (IOException | RuntimeException e) {
+            return null; // damaged: parse the file instead
+        }
+    }
+
+    /**
+     * Write the schema and the counts known so far, replacing any older
+     * cache. Failures are ignored.
+     */
+    static void store(Pager pager, DatabaseSchema schema) {
+        Path file = cacheFile(pager.getPath());
+        Path temp = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeLong(MAGIC);
+                writeKey(out, key(pager));
+                writeSchema(out, schema, keepsCounts(pager));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeLong(crc.getValue());
+            }
+
+            // Write and rename, so a reader never sees half a file
+            temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try (BufferedOutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                bytes.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            for (TableInfo table : schema.getAllTables()) {
+                table.setCounts(table.getKnownRowCount(), table.getKnownPageCount());
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            // Read-only location or similar: run without a cache
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // nothing more to do
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether row and page counts may be cached for the file: not
+     *         in WAL mode, where the key does not follow every commit
+     */
+    static boolean keepsCounts(Pager pager) {
+        try {
+            return !HeaderParser.isWalMode(pager.readHeader());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Change counter, schema cookie, page size and page count from the header,
+    // then the WAL salts and committed frames
+    private static List<Long> key(Pager pager) throws IOException {
+        byte[] header = pager.readHeader();
+        WalIndex wal = pager.getWal();
+        return List.of((long) HeaderParser.getChangeCounter(header), (long) HeaderParser.getSchemaCookie(header),
+                (long) pager.getPageSize(), pager.getPageCount(),
+                wal == null ? 0L : wal.getSalt1() & 0xFFFFFFFFL,
+                wal == null ? 0L : wal.getSalt2() & 0xFFFFFFFFL,
+                wal == null ? 0L : wal.getFrameCount());
+    }
+
+    private static void writeKey(DataOutputStream out, List<Long> key) throws IOException {
+        out.writeInt(key.size());
+        for (long part : key) {
+            out.writeLong(part);
+        }
+    }
+
+    private static List<Long> readKey(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<Long> key = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            key.add(in.readLong());
+        }
+        return key;
+    }
+
+    private static void writeSchema(DataOutputStream out, DatabaseSchema schema, boolean counts) throws IOException {
+        out.writeInt(schema.getAllTables().size());
+        for (TableInfo table : schema.getAllTables()) {
+            writeString(out, table.getName());
+            writeString(out, table.getSql());
+            out.writeInt(table.getRootPage());
+            List<String> names = table.getColumnNames();
+            List<String> types = table.getColumnTypes();
+            out.writeInt(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                writeString(out, names.get(i));
+                writeString(out, types.get(i));
+            }
+            out.writeInt(table.getPrimaryKeyColumn());
+            out.writeBoolean(table.getRowidColumn() >= 0);
+            out.writeBoolean(table.isPrimaryKeyAutoIncrement());
+            out.writeLong(counts ? table.getKnownRowCount() : -1);
+            out.writeLong(counts ? table.getKnownPageCount() : -1);
+        }
+
+        out.writeInt(schema.getAllIndexes().size());
+        for (IndexInfo index : schema.getAllIndexes()) {
+            writeString(out, index.getName());
+            writeString(out, index.getTableName());
+            out.writeInt(index.getRootPage());
+            writeString(out, index.getSql());
+            List<String> columns = index.getColumnNames();
+            out.writeInt(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                writeString(out, columns.get(i));
+                out.writeBoolean(index.isDescending(i));
+            }
+            out.writeBoolean(index.isUsableForLookups());
+        }
+    }
+
+    private static DatabaseSchema readSchema(DataInputStream in, boolean counts) throws IOException {
+        DatabaseSchema schema = new DatabaseSchema();
+        int tableCount = in.readInt();
+        for (int t = 0; t < tableCount; t++) {
+            TableInfo table = new TableInfo(readString(in));
+            String sql = readString(in);
+            table.setRootPage(in.readInt());
+            int columnCount = in.readInt();
+            List<String> names = new ArrayList<>(columnCount);
+            List<String> types = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                names.add(readString(in));
+                types.add(readString(in));
+            }
+            int primaryKeyColumn = in.readInt();
+            boolean primaryKeyIsRowid = in.readBoolean();
+            boolean autoIncrement = in.readBoolean();
+            table.restoreLayout(sql, names, types, primaryKeyColumn, primaryKeyIsRowid, autoIncrement);
+            long rows = in.readLong();
+            long pages = in.readLong();
+            table.setCounts(counts ? rows : -1, counts ? pages : -1);
+            schema.addTable(table);
+        }
+
+        int indexCount = in.readInt();
+        for (int x = 0; x < indexCount; x++) {
+            String name = readString(in);
+            String tableName = readString(in);
+            int rootPage = in.readInt();
+            String sql = readString(in);
+            int columnCount = in.readInt();
+            List<String> columns = new ArrayList<>(columnCount);
+            boolean[] descending = new boolean[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                columns.add(readString(in));
+                descending[i] = in.readBoolean();
+            }
+            schema.addIndex(new IndexInfo(name, tableName, rootPage, sql, columns, descending, in.readBoolean()));
+        }
+        return schema;
+    }
+
+    // Length-prefixed UTF-8, -1 for null; writeUTF stops at 64 KiB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+}
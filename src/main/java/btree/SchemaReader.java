@@ -0,0 +1,63 @@
+package btree;
+
+import dataTypes.DatabaseSchema;
+import dataTypes.SQLiteRecord;
+import dataTypes.TableInfo;
+import pager.Pager;
+
+import java.io.IOException;
+
+/**
+ * Loads the {@code sqlite_master} table, which is the B-tree rooted at
+ * page 1, into a {@link DatabaseSchema}. Every table with a B-tree is
+ * backed by a {@link BTreeRowSource}, so its rows are streamed on demand
+ * rather than loaded up front.
+ * <p>
+ * For a pager opened on a file path, the parsed schema is kept in a
+ * {@link SchemaCache} sidecar and read from there while the file is
+ * unchanged.
+ */
+public class SchemaReader {
+
+    public static final int SCHEMA_ROOT_PAGE = 1;
+
+    public static DatabaseSchema read(Pager pager) throws IOException {
+        boolean cached = SchemaCache.isEnabled(pager);
+        DatabaseSchema schema = cached ? SchemaCache.load(pager) : null;
+        if (schema == null) {
+            schema = parse(pager);
+            if (cached) {
+                SchemaCache.store(pager, schema);
+            }
+        }
+
+        for (TableInfo table : schema.getAllTables()) {
+            int rootPage = table.getRootPage();
+            if (rootPage > 0) { // virtual tables have no B-tree
+                table.setRowSource(new BTreeRowSource(pager, rootPage, table.getRowidColumn()));
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Write row and page counts taken since the schema was read to the
+     * schema cache, so the next run does not count again. Files in WAL
+     * mode keep no counts there.
+     */
+    public static void saveCounts(Pager pager, DatabaseSchema schema) {
+        if (SchemaCache.isEnabled(pager) && SchemaCache.keepsCounts(pager)
+                && schema.getAllTables().stream().anyMatch(TableInfo::hasNewCounts)) {
+            SchemaCache.store(pager, schema);
+        }
+    }
+
+    private static DatabaseSchema parse(Pager pager) throws IOException {
+        DatabaseSchema schema = new DatabaseSchema();
+        for (SQLiteRecord record : new BTreeWalker(pager).readRecords(SCHEMA_ROOT_PAGE)) {
+            record.setRecordType(SQLiteRecord.RecordType.SCHEMA_RECORD);
+            schema.addRecord(record);
+        }
+        return schema;
+    }
+}
@@ -0,0 +1,385 @@
+package btree;
+
+import dataTypes.RowCursor;
+import dataTypes.RowFilter;
+import dataTypes.SQLiteRecord;
+import helpers.VarintReader;
+import pager.CellPayload;
+import pager.Pager;
+import parser.CellParser;
+import parser.PageParser;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.util.Arrays;
+
+/**
+ * Streaming cursor over the leaf cells of a table B-tree, in rowid order.
+ * <p>
+ * The cursor keeps one entry per tree level on a fixed-size stack, so a
+ * scan uses the same memory whatever the size of the table. The header of
+ * the current row's record is only parsed when a column is read, into one
+ * record object that is reused for every row.
+ * <p>
+ * With a {@link RowFilter} set, cells are tested on their raw bytes as the
+ * cursor reaches them, and the cursor only stops on rows that pass.
+ */
+public class TableCursor implements RowCursor {
+
+    // SQLite trees are never this deep; a deeper path means a page cycle
+    private static final int MAX_DEPTH = 64;
+
+    private final Pager pager;
+    private final long rootPage;
+
+    // Path from the root to the current page
+    private final long[] pageNumbers = new long[MAX_DEPTH];
+    private final MemorySegment[] pages = new MemorySegment[MAX_DEPTH];
+    private final byte[] pageTypes = new byte[MAX_DEPTH];
+    private final int[] cellCounts = new int[MAX_DEPTH];
+    private final int[] indexes = new int[MAX_DEPTH];
+    // Rowid range covered by each page: (lower, upper], open where unbounded
+    private final long[] lowerKeys = new long[MAX_DEPTH];
+    private final long[] upperKeys = new long[MAX_DEPTH];
+    private final boolean[] hasLower = new boolean[MAX_DEPTH];
+    private final boolean[] hasUpper = new boolean[MAX_DEPTH];
+    private int depth = -1;
+    private boolean started;
+
+    // Current row
+    private long rowid;
+    private int payloadOffset;
+    private int payloadSize;
+    private int localSize;
+    private boolean recordParsed;
+    private final SQLiteRecord record = new SQLiteRecord();
+    private final VarintReader varints = new VarintReader();
+    private int rowidColumn = -1;
+    private int usableSize;
+    private RowFilter filter;
+    private CellFilter cellFilter;
+
+    /**
+     * The cursor reads a {@link Pager#snapshot() snapshot} of the pager, so
+     * commits picked up while it is open do not change the rows it returns.
+     *
+     * @param rootPage 1-based root page of a table B-tree
+     */
+    public TableCursor(Pager pager, long rootPage) {
+        this.pager = pager.snapshot();
+        this.rootPage = rootPage;
+    }
+
+    /**
+     * Set the INTEGER PRIMARY KEY column, which reads as the rowid.
+     */
+    public void setRowidColumn(int rowidColumn) {
+        this.rowidColumn = rowidColumn;
+    }
+
+    /**
+     * Only stop on rows that pass {@code filter}; null to stop on every row.
+     */
+    public void setFilter(RowFilter filter) {
+        this.filter = filter == null || filter.isEmpty() ? null : filter;
+        this.cellFilter = this.filter == null ? null : new CellFilter(this.filter, rowidColumn);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (!started) {
+            started = true;
+            push(rootPage);
+        } else if (depth >= 0) {
+            indexes[depth]++;
+        }
+        return advance();
+    }
+
+    /**
+     * Position the cursor on a row by rowid. Each page on the way down is
+     * searched by binary search over its cell pointer array, so only one
+     * page per tree level is read. The search starts from the lowest page
+     * on the current path whose key range holds the rowid, so a series of
+     * seeks in ascending order shares the upper levels of the tree.
+     *
+     * @return true if the row exists; otherwise the cursor is left on the
+     * first row with a larger rowid, or exhausted
+     */
+    public boolean seek(long targetRowid) throws IOException {
+        return seekAtLeast(targetRowid) && rowid == targetRowid;
+    }
+
+    /**
+     * Position the cursor on the first row whose rowid is at least
+     * {@code targetRowid}, searching as {@link #seek} does.
+     *
+     * @return false if there is no such row and the cursor is exhausted
+     */
+    public boolean seekAtLeast(long targetRowid) throws IOException {
+        recordParsed = false;
+        if (!started || depth < 0) {
+            started = true;
+            depth = -1;
+            push(rootPage);
+        } else {
+            while (depth > 0 && !inRange(depth, targetRowid)) {
+                pages[depth] = null;
+                depth--;
+            }
+        }
+
+        while (PageParser.isInteriorPage(pageTypes[depth])) {
+            // An interior key is the largest rowid in its left subtree
+            int child = searchInterior(targetRowid);
+            indexes[depth] = child + 1;
+            pushChild(child);
+        }
+        indexes[depth] = searchLeaf(targetRowid);
+
+        return advance();
+    }
+
+    private boolean inRange(int level, long targetRowid) {
+        return (!hasLower[level] || targetRowid > lowerKeys[level])
+                && (!hasUpper[level] || targetRowid <= upperKeys[level]);
+    }
+
+    // First interior cell whose key is >= rowid, or cellCount for the right-most child
+    private int searchInterior(long targetRowid) {
+        MemorySegment page = pages[depth];
+        int lo = 0;
+        int hi = cellCounts[depth];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cellOffset = BTreePage.cellOffset(page, pageNumbers[depth], pageTypes[depth], mid);
+            if (BTreePage.tableInteriorKey(page, cellOffset, varints) < targetRowid) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // First leaf cell whose rowid is >= rowid
+    private int searchLeaf(long targetRowid) {
+        MemorySegment page = pages[depth];
+        int lo = 0;
+        int hi = cellCounts[depth];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cellOffset = BTreePage.cellOffset(page, pageNumbers[depth], pageTypes[depth], mid);
+            if (BTreePage.tableLeafRowid(page, cellOffset, varints) < targetRowid) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    public long rowid() {
+        checkPositioned();
+        return rowid;
+    }
+
+    @Override
+    public int columnCount() {
+        return currentRecord().getColumnCount();
+    }
+
+    @Override
+    public Object column(int index) {
+        return currentRecord().getValue(index);
+    }
+
+    /**
+     * Decode just the requested columns straight from the cell, without
+     * building the record, unless it is already parsed or spills onto
+     * overflow pages.
+     */
+    @Override
+    public void readColumns(int[] columns, Object[] values) {
+        checkPositioned();
+        if (recordParsed || localSize < payloadSize) {
+            RowCursor.super.readColumns(columns, values);
+            return;
+        }
+        try {
+            SQLiteRecord.decodeColumns(pages[depth], payloadOffset, payloadSize, columns, values, varints);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Cannot decode row " + rowid + " on page "
+                    + pageNumbers[depth] + ": " + e.getMessage(), e);
+        }
+        for (int i = 0; i < columns.length; i++) {
+            // An INTEGER PRIMARY KEY is stored as NULL and reads as the rowid
+            if (columns[i] == rowidColumn && values[i] == null) {
+                values[i] = rowid;
+            }
+        }
+    }
+
+    @Override
+    public SQLiteRecord record() {
+        return currentRecord().detach();
+    }
+
+    /**
+     * @return page number of the leaf holding the current row
+     */
+    public long pageNumber() {
+        checkPositioned();
+        return pageNumbers[depth];
+    }
+
+    /**
+     * @return index of the current row within its leaf page
+     */
+    public int cellIndex() {
+        checkPositioned();
+        return indexes[depth];
+    }
+
+    @Override
+    public void close() {
+        depth = -1;
+        recordParsed = false;
+        Arrays.fill(pages, null);
+    }
+
+    // Walk forward until the stack top is a leaf positioned on a cell
+    private boolean advance() throws IOException {
+        while (depth >= 0) {
+            if (!PageParser.isInteriorPage(pageTypes[depth])) {
+                if (indexes[depth] < cellCounts[depth]) {
+                    readCell();
+                    if (filter == null || accept()) {
+                        return true;
+                    }
+                    indexes[depth]++;
+                    continue;
+                }
+            } else if (indexes[depth] <= cellCounts[depth]) {
+                int child = indexes[depth];
+                indexes[depth]++;
+                pushChild(child);
+                continue;
+            }
+            pages[depth] = null;
+            depth--;
+        }
+        return false;
+    }
+
+    // Test the current cell against the filter
+    private boolean accept() {
+        if (localSize < payloadSize) {
+            // Part of the record is on overflow pages: test the decoded row
+            return filter.test(currentRecord());
+        }
+        try {
+            return cellFilter.test(pages[depth], payloadOffset, payloadSize, rowid);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Cannot decode row " + rowid + " on page "
+                    + pageNumbers[depth] + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void push(long pageNumber) throws IOException {
+        if (depth + 1 >= MAX_DEPTH) {
+            throw new IOException("B-tree deeper than " + MAX_DEPTH + " levels at page " + pageNumber
+                    + ", the file probably contains a page cycle");
+        }
+        if (usableSize == 0) {
+            usableSize = pager.getUsableSize();
+        }
+        MemorySegment page = pager.readPage(pageNumber);
+        byte pageType = BTreePage.pageType(page, pageNumber);
+        if (pageType != BTreePage.TABLE_LEAF && pageType != BTreePage.TABLE_INTERIOR) {
+            throw new IOException("Page " + pageNumber + " is not a table b-tree page (type 0x"
+                    + String.format("%02X", pageType) + ")");
+        }
+
+        depth++;
+        pageNumbers[depth] = pageNumber;
+        pages[depth] = page;
+        pageTypes[depth] = pageType;
+        cellCounts[depth] = BTreePage.cellCount(page, pageNumber);
+        indexes[depth] = 0;
+        hasLower[depth] = false;
+        hasUpper[depth] = false;
+    }
+
+    // Push a child of the interior page on top, narrowing its key range
+    private void pushChild(int child) throws IOException {
+        int parent = depth;
+        MemorySegment page = pages[parent];
+        long parentPage = pageNumbers[parent];
+        byte parentType = pageTypes[parent];
+
+        boolean lowerBound = hasLower[parent];
+        long lower = lowerKeys[parent];
+        if (child > 0) {
+            lowerBound = true;
+            lower = BTreePage.tableInteriorKey(page, BTreePage.cellOffset(page, parentPage, parentType, child - 1), varints);
+        }
+        boolean upperBound = hasUpper[parent];
+        long upper = upperKeys[parent];
+        if (child < cellCounts[parent]) {
+            upperBound = true;
+            upper = BTreePage.tableInteriorKey(page, BTreePage.cellOffset(page, parentPage, parentType, child), varints);
+        }
+
+        push(BTreePage.childPage(page, parentPage, parentType, child));
+        hasLower[depth] = lowerBound;
+        lowerKeys[depth] = lower;
+        hasUpper[depth] = upperBound;
+        upperKeys[depth] = upper;
+    }
+
+    // Decode the cell header only; the record itself is parsed lazily
+    private void readCell() {
+        MemorySegment page = pages[depth];
+        int pos = BTreePage.cellOffset(page, pageNumbers[depth], pageTypes[depth], indexes[depth]);
+
+        varints.reset(page, pos);
+        payloadSize = (int) varints.readVarint();
+        rowid = varints.readVarint();
+
+        payloadOffset = (int) varints.position();
+        localSize = CellParser.localPayloadSize(payloadSize, usableSize, BTreePage.TABLE_LEAF);
+        recordParsed = false;
+    }
+
+    @Override
+    public SQLiteRecord currentRecord() {
+        checkPositioned();
+        if (!recordParsed) {
+            try {
+                if (localSize == payloadSize) {
+                    record.reset(pages[depth], payloadOffset, payloadSize);
+                } else {
+                    record.reset(CellPayload.inCell(pager, usableSize, pages[depth],
+                            payloadOffset, payloadSize, localSize));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Cannot decode row " + rowid + " on page "
+                        + pageNumbers[depth] + ": " + e.getMessage(), e);
+            }
+            record.setRowId(rowid);
+            record.setRowidColumn(rowidColumn);
+            record.setPageNumber((int) pageNumbers[depth]);
+            record.setCellIndex(indexes[depth]);
+            recordParsed = true;
+        }
+        return record;
+    }
+
+    private void checkPositioned() {
+        if (depth < 0) {
+            throw new IllegalStateException("Cursor is not positioned on a row");
+        }
+    }
+}
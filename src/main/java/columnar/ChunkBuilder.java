@@ -0,0 +1,319 @@
+package columnar;
+
+import dataTypes.SQLiteRecord;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Collects one column of a row group straight from records, then picks an
+ * encoding for the chunk and writes it.
+ * <p>
+ * Values are read with the record's typed accessors: integers and reals
+ * go into one {@code long[]} (reals as their raw bits) and TEXT and BLOB
+ * bytes are copied into one shared array, so no value object is created.
+ * The builder is reused for every row group of its column.
+ */
+final class ChunkBuilder {
+
+    private final byte[] types = new byte[ColumnarFormat.ROW_GROUP_ROWS];
+    private final long[] values = new long[ColumnarFormat.ROW_GROUP_ROWS];
+    private final int[] offsets = new int[ColumnarFormat.ROW_GROUP_ROWS + 1]; // value bytes of row i: offsets[i] to offsets[i + 1]
+    private byte[] bytes = new byte[16 * 1024];
+    private int rows;
+    private int typeMask; // bit 1 << type for every type seen
+    private int nullCount;
+
+    int rows() { return rows; }
+
+    void clear() {
+        rows = 0;
+        typeMask = 0;
+        nullCount = 0;
+    }
+
+    /**
+     * Add the value of a record column as the next row. Columns past the
+     * end of a short row are NULL.
+     */
+    void add(SQLiteRecord record, int column) {
+        int row = rows++;
+        offsets[row + 1] = offsets[row];
+        if (column >= record.getColumnCount() || record.isNull(column)) {
+            setType(row, ColumnarFormat.NULL);
+            nullCount++;
+            return;
+        }
+        long serialType = record.getSerialType(column);
+        if (serialType == 7) {
+            setType(row, ColumnarFormat.REAL);
+            values[row] = Double.doubleToRawLongBits(record.getDouble(column));
+        } else if (serialType >= 12) {
+            setType(row, serialType % 2 == 0 ? ColumnarFormat.BLOB_VALUE : ColumnarFormat.TEXT_VALUE);
+            int length = record.getValueLength(column);
+            ensureBytes(offsets[row] + length);
+            record.copyValueBytes(column, bytes, offsets[row]);
+            offsets[row + 1] = offsets[row] + length;
+        } else {
+            setType(row, ColumnarFormat.INTEGER); // includes an INTEGER PRIMARY KEY read from the rowid
+            values[row] = record.getLong(column);
+        }
+    }
+
+    /** Add a rowid as the next row. */
+    void addInteger(long value) {
+        int row = rows++;
+        offsets[row + 1] = offsets[row];
+        setType(row, ColumnarFormat.INTEGER);
+        values[row] = value;
+    }
+
+    private void setType(int row, byte type) {
+        types[row] = type;
+        typeMask |= 1 << type;
+    }
+
+    private void ensureBytes(long size) {
+        if (size > bytes.length) {
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Column chunk holds more than 2 GiB of values");
+            }
+            bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(size, 2L * bytes.length)));
+        }
+    }
+
+    /**
+     * Write the chunk in the smallest encoding its types allow.
+     *
+     * @return the chunk description, without its place in the file
+     */
+    ChunkInfo write(DataOutputStream out) throws IOException {
+        int nonNull = typeMask & ~(1 << ColumnarFormat.NULL);
+        if (nonNull == 0) {
+            return new ChunkInfo(0, 0, ColumnarFormat.NULLS, rows, nullCount, null, null);
+        }
+        if (nonNull == 1 << ColumnarFormat.INTEGER) {
+            writeNullBitmap(out);
+            return writeIntegers(out);
+        }
+        if (nonNull == 1 << ColumnarFormat.REAL) {
+            writeNullBitmap(out);
+            return writeReals(out);
+        }
+        if (nonNull == 1 << ColumnarFormat.TEXT_VALUE) {
+            writeNullBitmap(out);
+            ChunkInfo dictionary = writeDictionary(out);
+            if (dictionary != null) {
+                return dictionary;
+            }
+            writeBytes(out);
+            return textInfo(ColumnarFormat.TEXT);
+        }
+        if (nonNull == 1 << ColumnarFormat.BLOB_VALUE) {
+            writeNullBitmap(out);
+            writeBytes(out);
+            return new ChunkInfo(0, 0, ColumnarFormat.BLOBS, rows, nullCount, null, null);
+        }
+        writeMixed(out);
+        return new ChunkInfo(0, 0, ColumnarFormat.MIXED, rows, nullCount, null, null);
+    }
+
+    private void writeNullBitmap(DataOutputStream out) throws IOException {
+        if (nullCount == 0) {
+            return;
+        }
+        long[] bitmap = new long[ColumnarFormat.bitmapWords(rows)];
+        for (int i = 0; i < rows; i++) {
+            if (types[i] == ColumnarFormat.NULL) {
+                bitmap[i >>> 6] |= 1L << (i & 63);
+            }
+        }
+        for (long word : bitmap) {
+            out.writeLong(word);
+        }
+    }
+
+    // Deltas between neighbours, less the smallest, bit-packed; a NULL repeats the value before it
+    private ChunkInfo writeIntegers(DataOutputStream out) throws IOException {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        boolean seen = false;
+        for (int i = 0; i < rows; i++) {
+            if (types[i] == ColumnarFormat.NULL) {
+                continue;
+            }
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+            if (!seen) {
+                // Leading NULLs take the first value, so their deltas are 0
+                for (int j = 0; j < i; j++) {
+                    values[j] = values[i];
+                }
+                seen = true;
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            if (types[i] == ColumnarFormat.NULL && i > 0) {
+                values[i] = values[i - 1];
+            }
+        }
+
+        long minDelta = Long.MAX_VALUE;
+        long[] deltas = new long[Math.max(0, rows - 1)];
+        for (int i = 1; i < rows; i++) {
+            deltas[i - 1] = values[i] - values[i - 1]; // wraps, and unwraps the same way
+            minDelta = Math.min(minDelta, deltas[i - 1]);
+        }
+        long maxOffset = 0;
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] -= minDelta;
+            if (Long.compareUnsigned(deltas[i], maxOffset) > 0) {
+                maxOffset = deltas[i];
+            }
+        }
+        int width = ColumnarFormat.bitWidth(maxOffset);
+
+        out.writeLong(values[0]);
+        out.writeLong(deltas.length == 0 ? 0 : minDelta);
+        out.writeByte(width);
+        for (long word : ColumnarFormat.pack(deltas, deltas.length, width)) {
+            out.writeLong(word);
+        }
+        return new ChunkInfo(0, 0, ColumnarFormat.INTEGERS, rows, nullCount, min, max);
+    }
+
+    private ChunkInfo writeReals(DataOutputStream out) throws IOException {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < rows; i++) {
+            long bits = types[i] == ColumnarFormat.NULL ? 0 : values[i];
+            if (types[i] != ColumnarFormat.NULL) {
+                double value = Double.longBitsToDouble(bits);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            out.writeLong(bits);
+        }
+        return new ChunkInfo(0, 0, ColumnarFormat.REALS, rows, nullCount, min, max);
+    }
+
+    private void writeBytes(DataOutputStream out) throws IOException {
+        for (int i = 0; i <= rows; i++) {
+            out.writeInt(offsets[i]);
+        }
+        out.write(bytes, 0, offsets[rows]);
+    }
+
+    /**
+     * Write TEXT as a dictionary of its distinct values and a code per
+     * row, if there are few enough distinct values to pay off.
+     *
+     * @return the chunk description, or null, having written nothing, if
+     *         the column has too many distinct values
+     */
+    private ChunkInfo writeDictionary(DataOutputStream out) throws IOException {
+        int nonNull = rows - nullCount;
+        int limit = nonNull / 2;
+        int[] slots = new int[Integer.highestOneBit(Math.max(4, limit * 2)) << 1];
+        Arrays.fill(slots, -1);
+        int[] firstRow = new int[Math.max(1, limit)];
+        long[] codes = new long[rows];
+        int distinct = 0;
+        int mask = slots.length - 1;
+        for (int i = 0; i < rows; i++) {
+            if (types[i] == ColumnarFormat.NULL) {
+                continue;
+            }
+            int slot = hash(i) & mask;
+            while (slots[slot] >= 0 && !sameBytes(firstRow[slots[slot]], i)) {
+                slot = (slot + 1) & mask;
+            }
+            if (slots[slot] < 0) {
+                if (distinct == limit) {
+                    return null;
+                }
+                firstRow[distinct] = i;
+                slots[slot] = distinct++;
+            }
+            codes[i] = slots[slot];
+        }
+
+        int dictionaryBytes = 0;
+        out.writeInt(distinct);
+        out.writeInt(0);
+        for (int d = 0; d < distinct; d++) {
+            dictionaryBytes += length(firstRow[d]);
+            out.writeInt(dictionaryBytes);
+        }
+        for (int d = 0; d < distinct; d++) {
+            out.write(bytes, offsets[firstRow[d]], length(firstRow[d]));
+        }
+        int width = ColumnarFormat.bitWidth(distinct - 1);
+        out.writeByte(width);
+        for (long word : ColumnarFormat.pack(codes, rows, width)) {
+            out.writeLong(word);
+        }
+        return textInfo(ColumnarFormat.TEXT_DICTIONARY);
+    }
+
+    private ChunkInfo textInfo(byte encoding) {
+        int min = -1;
+        int max = -1;
+        for (int i = 0; i < rows; i++) {
+            if (types[i] == ColumnarFormat.NULL) {
+                continue;
+            }
+            if (min < 0 || compareBytes(i, min) < 0) {
+                min = i;
+            }
+            if (max < 0 || compareBytes(i, max) > 0) {
+                max = i;
+            }
+        }
+        return new ChunkInfo(0, 0, encoding, rows, nullCount, statText(min), statText(max));
+    }
+
+    private String statText(int row) {
+        if (row < 0 || length(row) > ColumnarFormat.MAX_TEXT_STAT_BYTES) {
+            return null;
+        }
+        return new String(bytes, offsets[row], length(row), StandardCharsets.UTF_8);
+    }
+
+    private void writeMixed(DataOutputStream out) throws IOException {
+        out.write(types, 0, rows);
+        for (int i = 0; i < rows; i++) {
+            switch (types[i]) {
+                case ColumnarFormat.INTEGER, ColumnarFormat.REAL -> out.writeLong(values[i]);
+                case ColumnarFormat.TEXT_VALUE, ColumnarFormat.BLOB_VALUE -> {
+                    out.writeInt(length(i));
+                    out.write(bytes, offsets[i], length(i));
+                }
+                default -> { }
+            }
+        }
+    }
+
+    private int length(int row) {
+        return offsets[row + 1] - offsets[row];
+    }
+
+    private int hash(int row) {
+        int h = 1;
+        for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private boolean sameBytes(int a, int b) {
+        return Arrays.equals(bytes, offsets[a], offsets[a + 1], bytes, offsets[b], offsets[b + 1]);
+    }
+
+    // UTF-8 bytes compare unsigned in code point order, SQLite's BINARY collation
+    private int compareBytes(int a, int b) {
+        return Arrays.compareUnsigned(bytes, offsets[a], offsets[a + 1], bytes, offsets[b], offsets[b + 1]);
+    }
+}
@@ -0,0 +1,32 @@
+package columnar;
+
+/**
+ * Where one column chunk of a row group is stored and what it holds.
+ *
+ * @param offset    byte offset of the chunk in the file
+ * @param length    bytes the chunk takes
+ * @param encoding  one of the encodings in {@link ColumnarFormat}
+ * @param rows      rows in the row group
+ * @param nullCount NULL values in the chunk
+ * @param min       smallest value, a {@code Long}, {@code Double} or
+ *                  {@code String}, or null if not known
+ * @param max       largest value, as {@code min}
+ */
+public record ChunkInfo(long offset, int length, byte encoding, int rows, int nullCount, Object min, Object max) {
+
+    ChunkInfo at(long offset, int length) {
+        return new ChunkInfo(offset, length, encoding, rows, nullCount, min, max);
+    }
+
+    public String encodingName() {
+        return switch (encoding) {
+            case ColumnarFormat.NULLS -> "nulls";
+            case ColumnarFormat.INTEGERS -> "delta";
+            case ColumnarFormat.REALS -> "real";
+            case ColumnarFormat.TEXT -> "text";
+            case ColumnarFormat.BLOBS -> "blob";
+            case ColumnarFormat.TEXT_DICTIONARY -> "dictionary";
+            default -> "mixed";
+        };
+    }
+}
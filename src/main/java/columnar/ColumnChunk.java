@@ -0,0 +1,198 @@
+package columnar;
+
+import helpers.SegmentReader;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The values of one column in one row group, read from the mapped file.
+ * <p>
+ * Integers are unpacked once when the chunk is opened; every other
+ * encoding is read in place from the mapping when a row is asked for.
+ * Values come back as the types {@code SQLiteRecord.getValue} returns:
+ * {@code Long}, {@code Double}, {@code String}, {@code byte[]} or null.
+ */
+public final class ColumnChunk {
+
+    private final MemorySegment data;
+    private final byte encoding;
+    private final int rows;
+    private final long nullBitmap; // offset of the NULL bitmap, or -1 when there are no NULLs
+    private long[] integers;
+    private long offsetsStart;    // TEXT, BLOBS and dictionary values: rows + 1 (or count + 1) ints
+    private long bytesStart;
+    private long codesStart;      // dictionary codes
+    private int codeWidth;
+    private long[] mixedPositions; // MIXED: where each row's value starts
+
+    ColumnChunk(MemorySegment data, ChunkInfo info) {
+        this.data = data;
+        this.encoding = info.encoding();
+        this.rows = info.rows();
+        long pos = 0;
+        if (info.nullCount() > 0 && encoding != ColumnarFormat.NULLS && encoding != ColumnarFormat.MIXED) {
+            nullBitmap = 0;
+            pos = (long) ColumnarFormat.bitmapWords(rows) * Long.BYTES;
+        } else {
+            nullBitmap = -1;
+        }
+
+        switch (encoding) {
+            case ColumnarFormat.INTEGERS -> readIntegers(pos);
+            case ColumnarFormat.REALS -> bytesStart = pos;
+            case ColumnarFormat.TEXT, ColumnarFormat.BLOBS -> {
+                offsetsStart = pos;
+                bytesStart = pos + (long) (rows + 1) * Integer.BYTES;
+            }
+            case ColumnarFormat.TEXT_DICTIONARY -> {
+                int count = SegmentReader.readInt(data, pos);
+                offsetsStart = pos + Integer.BYTES;
+                bytesStart = offsetsStart + (long) (count + 1) * Integer.BYTES;
+                long end = bytesStart + SegmentReader.readInt(data, offsetsStart + (long) count * Integer.BYTES);
+                codeWidth = SegmentReader.readUnsignedByte(data, end);
+                codesStart = end + 1;
+            }
+            case ColumnarFormat.MIXED -> indexMixed();
+            case ColumnarFormat.NULLS -> { }
+            default -> throw new IllegalArgumentException("Unknown chunk encoding: " + encoding);
+        }
+    }
+
+    public int rows() { return rows; }
+
+    public boolean isNull(int row) {
+        return type(row) == ColumnarFormat.NULL;
+    }
+
+    /**
+     * Integer value of a row. REAL values are truncated and NULL reads as
+     * 0, as in {@code SQLiteRecord.getLong}.
+     */
+    public long getLong(int row) {
+        return switch (type(row)) {
+            case ColumnarFormat.NULL -> 0;
+            case ColumnarFormat.INTEGER -> integers != null ? integers[row] : SegmentReader.readLong(data, mixedPositions[row]);
+            case ColumnarFormat.REAL -> (long) getDouble(row);
+            default -> throw new IllegalStateException("Row " + row + " is not numeric");
+        };
+    }
+
+    /**
+     * Floating point value of a row. Integers are widened and NULL reads
+     * as 0.0.
+     */
+    public double getDouble(int row) {
+        return switch (type(row)) {
+            case ColumnarFormat.REAL -> SegmentReader.readDouble(data,
+                    encoding == ColumnarFormat.MIXED ? mixedPositions[row] : bytesStart + (long) row * Long.BYTES);
+            default -> getLong(row);
+        };
+    }
+
+    /** TEXT value of a row, or null for NULL. */
+    public String getText(int row) {
+        byte type = type(row);
+        if (type == ColumnarFormat.NULL) {
+            return null;
+        }
+        if (type != ColumnarFormat.TEXT_VALUE) {
+            throw new IllegalStateException("Row " + row + " is not TEXT");
+        }
+        return new String(bytes(row), StandardCharsets.UTF_8);
+    }
+
+    /** BLOB value of a row, or null for NULL. */
+    public byte[] getBlob(int row) {
+        byte type = type(row);
+        if (type == ColumnarFormat.NULL) {
+            return null;
+        }
+        if (type != ColumnarFormat.BLOB_VALUE) {
+            throw new IllegalStateException("Row " + row + " is not a BLOB");
+        }
+        return bytes(row);
+    }
+
+    public Object get(int row) {
+        return switch (type(row)) {
+            case ColumnarFormat.INTEGER -> getLong(row);
+            case ColumnarFormat.REAL -> getDouble(row);
+            case ColumnarFormat.TEXT_VALUE -> getText(row);
+            case ColumnarFormat.BLOB_VALUE -> getBlob(row);
+            default -> null;
+        };
+    }
+
+    // Value type of a row, as in the MIXED encoding
+    byte type(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+        if (encoding == ColumnarFormat.MIXED) {
+            return SegmentReader.readByte(data, row);
+        }
+        if (encoding == ColumnarFormat.NULLS || nullBitmap >= 0
+                && (SegmentReader.readLong(data, nullBitmap + (long) (row >>> 6) * Long.BYTES) >>> (row & 63) & 1) != 0) {
+            return ColumnarFormat.NULL;
+        }
+        return switch (encoding) {
+            case ColumnarFormat.INTEGERS -> ColumnarFormat.INTEGER;
+            case ColumnarFormat.REALS -> ColumnarFormat.REAL;
+            case ColumnarFormat.BLOBS -> ColumnarFormat.BLOB_VALUE;
+            default -> ColumnarFormat.TEXT_VALUE;
+        };
+    }
+
+    private byte[] bytes(int row) {
+        if (encoding == ColumnarFormat.MIXED) {
+            long pos = mixedPositions[row];
+            return SegmentReader.readBytes(data, pos + Integer.BYTES, SegmentReader.readInt(data, pos));
+        }
+        int index = encoding == ColumnarFormat.TEXT_DICTIONARY ? (int) unpack(codesStart, row, codeWidth) : row;
+        int start = SegmentReader.readInt(data, offsetsStart + (long) index * Integer.BYTES);
+        int end = SegmentReader.readInt(data, offsetsStart + (long) (index + 1) * Integer.BYTES);
+        return SegmentReader.readBytes(data, bytesStart + start, end - start);
+    }
+
+    // Undo the delta encoding: every value is the one before plus the smallest delta plus its packed offset
+    private void readIntegers(long pos) {
+        long base = SegmentReader.readLong(data, pos);
+        long minDelta = SegmentReader.readLong(data, pos + Long.BYTES);
+        int width = SegmentReader.readUnsignedByte(data, pos + 2 * Long.BYTES);
+        long packed = pos + 2 * Long.BYTES + 1;
+        integers = new long[rows];
+        integers[0] = base;
+        for (int i = 1; i < rows; i++) {
+            integers[i] = integers[i - 1] + minDelta + unpack(packed, i - 1, width);
+        }
+    }
+
+    private long unpack(long start, int index, int width) {
+        if (width == 0) {
+            return 0;
+        }
+        long bit = (long) index * width;
+        long wordOffset = start + (bit >>> 6) * Long.BYTES;
+        int shift = (int) (bit & 63);
+        long value = SegmentReader.readLong(data, wordOffset) >>> shift;
+        if (shift + width > 64) {
+            value |= SegmentReader.readLong(data, wordOffset + Long.BYTES) << (64 - shift);
+        }
+        return width == 64 ? value : value & ((1L << width) - 1);
+    }
+
+    private void indexMixed() {
+        mixedPositions = new long[rows];
+        long pos = rows;
+        for (int i = 0; i < rows; i++) {
+            mixedPositions[i] = pos;
+            switch (SegmentReader.readByte(data, i)) {
+                case ColumnarFormat.INTEGER, ColumnarFormat.REAL -> pos += Long.BYTES;
+                case ColumnarFormat.TEXT_VALUE, ColumnarFormat.BLOB_VALUE ->
+                        pos += Integer.BYTES + SegmentReader.readInt(data, pos);
+                default -> { }
+            }
+        }
+    }
+}
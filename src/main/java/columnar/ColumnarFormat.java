@@ -0,0 +1,105 @@
+package columnar;
+
+/**
+ * Layout of a columnar table file, shared by {@link ColumnarWriter} and
+ * {@link ColumnarReader}.
+ * <p>
+ * A file starts with {@link #MAGIC}. Rows are cut into row groups of up to
+ * {@link #ROW_GROUP_ROWS} rows, and every column of a row group is stored
+ * as one chunk, written one after another. The footer describes the table
+ * (name, row count, column names and declared types) and, for every row
+ * group and column, where the chunk is, how it is encoded, its NULL count
+ * and its minimum and maximum. The file ends with the footer offset and
+ * the magic again, so a reader finds the footer from the end. All numbers
+ * are big-endian, as in the SQLite file.
+ * <p>
+ * Chunk encodings, each preceded by a NULL bitmap (one bit per row, set
+ * for NULL, in whole longs) when the chunk has NULLs:
+ * <ul>
+ *   <li>{@link #NULLS}: nothing, every value is NULL;</li>
+ *   <li>{@link #INTEGERS}: the first value, the smallest delta between
+ *       neighbours, a bit width, then each delta less the smallest one
+ *       bit-packed at that width;</li>
+ *   <li>{@link #REALS}: one 8-byte double per row;</li>
+ *   <li>{@link #TEXT} and {@link #BLOBS}: {@code rows + 1} int offsets,
+ *       then the value bytes;</li>
+ *   <li>{@link #TEXT_DICTIONARY}: the distinct values as in {@link #TEXT},
+ *       then a bit width and one bit-packed dictionary code per row;</li>
+ *   <li>{@link #MIXED}: a type byte per row, then each value in row order:
+ *       8 bytes for INTEGER and REAL, an int length and the bytes for
+ *       TEXT and BLOB.</li>
+ * </ul>
+ * Bit-packed values fill longs from the lowest bit up, a value running
+ * over into the next long when it does not fit.
+ */
+final class ColumnarFormat {
+
+    /** "SQLCOLM1". */
+    static final long MAGIC = 0x53514C434F4C4D31L;
+    static final int VERSION = 1;
+
+    static final int ROW_GROUP_ROWS = 65536;
+
+    // Value types, as in the MIXED encoding
+    static final byte NULL = 0;
+    static final byte INTEGER = 1;
+    static final byte REAL = 2;
+    static final byte TEXT_VALUE = 3;
+    static final byte BLOB_VALUE = 4;
+
+    // Chunk encodings
+    static final byte NULLS = 0;
+    static final byte INTEGERS = 1;
+    static final byte REALS = 2;
+    static final byte TEXT = 3;
+    static final byte BLOBS = 4;
+    static final byte TEXT_DICTIONARY = 5;
+    static final byte MIXED = 6;
+
+    // Kinds of chunk statistics in the footer
+    static final byte NO_STATS = 0;
+    static final byte INTEGER_STATS = 1;
+    static final byte REAL_STATS = 2;
+    static final byte TEXT_STATS = 3;
+
+    /** TEXT minimum and maximum longer than this are not kept. */
+    static final int MAX_TEXT_STAT_BYTES = 256;
+
+    private ColumnarFormat() {
+    }
+
+    /** Longs in a NULL bitmap for this many rows. */
+    static int bitmapWords(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    /** Longs holding {@code count} values of {@code width} bits. */
+    static int packedWords(int count, int width) {
+        return (int) (((long) count * width + 63) >>> 6);
+    }
+
+    /** Bits needed for an unsigned value. */
+    static int bitWidth(long maxUnsigned) {
+        return 64 - Long.numberOfLeadingZeros(maxUnsigned);
+    }
+
+    /**
+     * Pack values of {@code width} bits into longs, lowest bit first.
+     */
+    static long[] pack(long[] values, int count, int width) {
+        long[] words = new long[packedWords(count, width)];
+        if (width == 0) {
+            return words;
+        }
+        for (int i = 0; i < count; i++) {
+            long bit = (long) i * width;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            words[word] |= values[i] << shift;
+            if (shift + width > 64) {
+                words[word + 1] |= values[i] >>> (64 - shift);
+            }
+        }
+        return words;
+    }
+}
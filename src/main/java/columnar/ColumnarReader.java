@@ -0,0 +1,223 @@
+package columnar;
+
+import helpers.SegmentReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Reads a file written by {@link ColumnarWriter}.
+ * <p>
+ * The file is mapped once and only the footer is parsed up front. A scan
+ * names the columns it wants and touches only their chunks, and the
+ * minimum and maximum of each chunk let it skip whole row groups without
+ * reading them. The mapping is backed by a shared arena, so chunks can be
+ * read from any thread until the reader is closed.
+ */
+public final class ColumnarReader implements Closeable {
+
+    /**
+     * Receives the chunks of the selected columns for each row group a
+     * scan does not skip.
+     */
+    @FunctionalInterface
+    public interface RowGroupVisitor {
+        /**
+         * @param chunks one chunk per selected column, in the order asked for
+         * @return false to stop the scan
+         */
+        boolean visit(int rowGroup, ColumnChunk[] chunks) throws IOException;
+    }
+
+    private final Arena arena;
+    private final MemorySegment file;
+    private final String tableName;
+    private final long rowCount;
+    private final List<String> columnNames = new ArrayList<>();
+    private final List<String> columnTypes = new ArrayList<>();
+    private final ChunkInfo[][] rowGroups; // [row group][column], the rowids last
+
+    private ColumnarReader(Arena arena, MemorySegment file) throws IOException {
+        this.arena = arena;
+        this.file = file;
+        long size = file.byteSize();
+        if (size < 3 * Long.BYTES || SegmentReader.readLong(file, 0) != ColumnarFormat.MAGIC
+                || SegmentReader.readLong(file, size - Long.BYTES) != ColumnarFormat.MAGIC) {
+            throw new IOException("Not a columnar table file");
+        }
+        long footerOffset = SegmentReader.readLong(file, size - 2 * Long.BYTES);
+        if (footerOffset < Long.BYTES || footerOffset > size - 2 * Long.BYTES) {
+            throw new IOException("Footer offset " + footerOffset + " is outside the file");
+        }
+        byte[] footer = SegmentReader.readBytes(file, footerOffset, (int) (size - 2 * Long.BYTES - footerOffset));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer));
+        int version = in.readInt();
+        if (version != ColumnarFormat.VERSION) {
+            throw new IOException("Unsupported columnar file version " + version);
+        }
+        tableName = in.readUTF();
+        rowCount = in.readLong();
+        in.readInt(); // rows per row group
+        int columns = in.readInt();
+        for (int c = 0; c < columns; c++) {
+            columnNames.add(in.readUTF());
+            columnTypes.add(in.readUTF());
+        }
+        rowGroups = new ChunkInfo[in.readInt()][columns + 1];
+        for (ChunkInfo[] infos : rowGroups) {
+            int rows = in.readInt();
+            for (int c = 0; c <= columns; c++) {
+                long offset = in.readLong();
+                int length = in.readInt();
+                byte encoding = in.readByte();
+                int nullCount = in.readInt();
+                Object min = null;
+                Object max = null;
+                switch (in.readByte()) {
+                    case ColumnarFormat.INTEGER_STATS -> {
+                        min = in.readLong();
+                        max = in.readLong();
+                    }
+                    case ColumnarFormat.REAL_STATS -> {
+                        min = in.readDouble();
+                        max = in.readDouble();
+                    }
+                    case ColumnarFormat.TEXT_STATS -> {
+                        min = readText(in);
+                        max = readText(in);
+                    }
+                    default -> { }
+                }
+                if (offset < Long.BYTES || offset + length > footerOffset) {
+                    throw new IOException("Chunk of column " + c + " is outside the file");
+                }
+                infos[c] = new ChunkInfo(offset, length, encoding, rows, nullCount, min, max);
+            }
+        }
+    }
+
+    /**
+     * Map a columnar file and read its footer.
+     */
+    public static ColumnarReader open(Path path) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ColumnarReader(arena, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena));
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    public String getTableName() { return tableName; }
+    public long getRowCount() { return rowCount; }
+    public List<String> getColumnNames() { return Collections.unmodifiableList(columnNames); }
+    public List<String> getColumnTypes() { return Collections.unmodifiableList(columnTypes); }
+    public int getRowGroupCount() { return rowGroups.length; }
+
+    /**
+     * @return position of a column by name, ignoring case, or -1
+     */
+    public int getColumnIndex(String name) {
+        for (int c = 0; c < columnNames.size(); c++) {
+            if (columnNames.get(c).equalsIgnoreCase(name)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    public ChunkInfo getChunkInfo(int rowGroup, int column) {
+        checkColumn(column);
+        return rowGroups[rowGroup][column];
+    }
+
+    public ColumnChunk readChunk(int rowGroup, int column) {
+        checkColumn(column);
+        return chunk(rowGroups[rowGroup][column]);
+    }
+
+    /**
+     * @return the rowids of a row group
+     */
+    public ColumnChunk readRowids(int rowGroup) {
+        return chunk(rowGroups[rowGroup][columnNames.size()]);
+    }
+
+    /**
+     * Visit the chunks of some columns, row group by row group.
+     *
+     * @param columns        the columns to read
+     * @param rowGroupFilter given a row group number, false to skip it
+     *                       unread, usually decided from {@link #getChunkInfo}
+     */
+    public void scan(int[] columns, IntPredicate rowGroupFilter, RowGroupVisitor visitor) throws IOException {
+        for (int column : columns) {
+            checkColumn(column);
+        }
+        for (int g = 0; g < rowGroups.length; g++) {
+            if (rowGroupFilter != null && !rowGroupFilter.test(g)) {
+                continue;
+            }
+            ColumnChunk[] chunks = new ColumnChunk[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                chunks[i] = chunk(rowGroups[g][columns[i]]);
+            }
+            if (!visitor.visit(g, chunks)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Whether a row group may hold an integer or real value of a column
+     * in {@code [low, high]}, going by the chunk's minimum and maximum.
+     * Chunks without numeric statistics may hold anything.
+     */
+    public boolean mayContain(int rowGroup, int column, double low, double high) {
+        ChunkInfo info = getChunkInfo(rowGroup, column);
+        if (info.encoding() == ColumnarFormat.NULLS) {
+            return false;
+        }
+        if (info.min() instanceof Number min && info.max() instanceof Number max) {
+            return max.doubleValue() >= low && min.doubleValue() <= high;
+        }
+        return true;
+    }
+
+    private ColumnChunk chunk(ChunkInfo info) {
+        return new ColumnChunk(file.asSlice(info.offset(), info.length()), info);
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= columnNames.size()) {
+            throw new IndexOutOfBoundsException("Column " + column + " of " + columnNames.size());
+        }
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,178 @@
+package columnar;
+
+import dataTypes.RowCursor;
+import dataTypes.SQLiteRecord;
+import dataTypes.TableInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Export a table to a columnar file, see {@link ColumnarFormat}.
+ * <p>
+ * Rows are streamed from the table's leaf pages with a cursor, and each
+ * column value is copied from the record straight into the chunk being
+ * built for its column, so no row is ever decoded into objects. Memory
+ * use is one row group per column, whatever the size of the table. The
+ * rowids are kept as one more chunk after the table's columns.
+ */
+public final class ColumnarWriter {
+
+    /**
+     * What an export wrote and how long it took.
+     */
+    public record Summary(String table, long rows, int columns, int rowGroups, long bytes, long nanos) {
+
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes * 1e9 / nanos / (1024 * 1024);
+        }
+    }
+
+    private ColumnarWriter() {
+    }
+
+    /**
+     * Write every row of a table to {@code file}, replacing it. A file
+     * left half written by a failed export is deleted.
+     */
+    public static Summary export(TableInfo table, Path file) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return write(table, file, start);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private static Summary write(TableInfo table, Path file, long start) throws IOException {
+        List<String> names = table.getColumnNames();
+        List<String> types = table.getColumnTypes();
+        int columns = names.size();
+        ChunkBuilder[] builders = new ChunkBuilder[columns + 1];
+        for (int c = 0; c <= columns; c++) {
+            builders[c] = new ChunkBuilder();
+        }
+        ChunkBuilder rowids = builders[columns];
+        List<ChunkInfo[]> rowGroups = new ArrayList<>();
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(64 * 1024);
+        long rows = 0;
+        long position;
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 20);
+             RowCursor cursor = table.openCursor()) {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeLong(ColumnarFormat.MAGIC);
+            position = Long.BYTES;
+
+            while (cursor.next()) {
+                SQLiteRecord record = cursor.currentRecord();
+                for (int c = 0; c < columns; c++) {
+                    builders[c].add(record, c);
+                }
+                rowids.addInteger(cursor.rowid());
+                rows++;
+                if (rowids.rows() == ColumnarFormat.ROW_GROUP_ROWS) {
+                    position = flushRowGroup(builders, chunk, out, position, rowGroups);
+                }
+            }
+            if (rowids.rows() > 0) {
+                position = flushRowGroup(builders, chunk, out, position, rowGroups);
+            }
+
+            long footerOffset = position;
+            chunk.reset();
+            writeFooter(new DataOutputStream(chunk), table.getName(), names, types, rows, rowGroups);
+            chunk.writeTo(out);
+            position += chunk.size();
+            data.writeLong(footerOffset);
+            data.writeLong(ColumnarFormat.MAGIC);
+            position += 2 * Long.BYTES;
+        }
+        return new Summary(table.getName(), rows, columns, rowGroups.size(), position, System.nanoTime() - start);
+    }
+
+    // Encode each column of the buffered rows and append the chunks
+    private static long flushRowGroup(ChunkBuilder[] builders, ByteArrayOutputStream chunk, OutputStream out,
+                                      long position, List<ChunkInfo[]> rowGroups) throws IOException {
+        ChunkInfo[] infos = new ChunkInfo[builders.length];
+        DataOutputStream chunkData = new DataOutputStream(chunk);
+        for (int c = 0; c < builders.length; c++) {
+            chunk.reset();
+            ChunkInfo info = builders[c].write(chunkData);
+            chunkData.flush();
+            infos[c] = info.at(position, chunk.size());
+            chunk.writeTo(out);
+            position += chunk.size();
+            builders[c].clear();
+        }
+        rowGroups.add(infos);
+        return position;
+    }
+
+    private static void writeFooter(DataOutputStream out, String tableName, List<String> names, List<String> types,
+                                     long rows, List<ChunkInfo[]> rowGroups) throws IOException {
+        out.writeInt(ColumnarFormat.VERSION);
+        out.writeUTF(tableName);
+        out.writeLong(rows);
+        out.writeInt(ColumnarFormat.ROW_GROUP_ROWS);
+        out.writeInt(names.size());
+        for (int c = 0; c < names.size(); c++) {
+            out.writeUTF(names.get(c));
+            out.writeUTF(c < types.size() && types.get(c) != null ? types.get(c) : "");
+        }
+        out.writeInt(rowGroups.size());
+        for (ChunkInfo[] infos : rowGroups) {
+            out.writeInt(infos[0].rows());
+            for (ChunkInfo info : infos) {
+                out.writeLong(info.offset());
+                out.writeInt(info.length());
+                out.writeByte(info.encoding());
+                out.writeInt(info.nullCount());
+                writeStats(out, info);
+            }
+        }
+        out.flush();
+    }
+
+    private static void writeStats(DataOutputStream out, ChunkInfo info) throws IOException {
+        if (info.min() instanceof Long min && info.max() instanceof Long max) {
+            out.writeByte(ColumnarFormat.INTEGER_STATS);
+            out.writeLong(min);
+            out.writeLong(max);
+        } else if (info.min() instanceof Double min && info.max() instanceof Double max) {
+            out.writeByte(ColumnarFormat.REAL_STATS);
+            out.writeDouble(min);
+            out.writeDouble(max);
+        } else if (info.encoding() == ColumnarFormat.TEXT || info.encoding() == ColumnarFormat.TEXT_DICTIONARY) {
+            out.writeByte(ColumnarFormat.TEXT_STATS);
+            writeText(out, (String) info.min());
+            writeText(out, (String) info.max());
+        } else {
+            out.writeByte(ColumnarFormat.NO_STATS);
+        }
+    }
+
+    // Length and UTF-8 bytes, or -1 for a value too long to keep
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -12,6 +12,9 @@ public class CellInfo {
     private long payloadSize;
     private int headerSize;
 
+    // For cells whose payload continues on overflow pages
+    private long overflowPage;
+
     // For interior cells
     private int leftChildPage;
 
@@ -41,6 +44,10 @@ public class CellInfo {
     public int getHeaderSize() { return headerSize; }
     public void setHeaderSize(int headerSize) { this.headerSize = headerSize; }
 
+    public long getOverflowPage() { return overflowPage; }
+    public void setOverflowPage(long overflowPage) { this.overflowPage = overflowPage; }
+    public boolean hasOverflow() { return overflowPage != 0; }
+
     public int getLeftChildPage() { return leftChildPage; }
     public void setLeftChildPage(int leftChildPage) { this.leftChildPage = leftChildPage; }
 
@@ -70,6 +77,10 @@ public class CellInfo {
             System.out.println("Payload Size: " + payloadSize);
         }
 
+        if (hasOverflow()) {
+            System.out.println("First Overflow Page: " + overflowPage);
+        }
+
         if (record != null) {
             System.out.println("Record: " + record);
         }
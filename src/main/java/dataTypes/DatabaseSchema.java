@@ -5,12 +5,10 @@ import java.util.stream.Collectors;
 
 public class DatabaseSchema {
     private final Map<String, TableInfo> tables = new HashMap<>();
-    private final List<SQLiteRecord> allRecords = new ArrayList<>();
+    private final Map<String, IndexInfo> indexes = new HashMap<>();
     private final List<SQLiteRecord> schemaRecords = new ArrayList<>();
 
     public void addRecord(SQLiteRecord record) {
-        allRecords.add(record);
-
         if (record.isSchemaRecord()) {
             schemaRecords.add(record);
             processSchemaRecord(record);
@@ -28,9 +26,28 @@ public class DatabaseSchema {
                     k -> new TableInfo(k));
             table.setRootPage(schemaInfo.rootPage);
             table.setSql(schemaInfo.sql);
+        } else if (schemaInfo != null && schemaInfo.isIndex()) {
+            addIndex(new IndexInfo(schemaInfo.name, schemaInfo.tableName,
+                    schemaInfo.rootPage, schemaInfo.sql));
         }
     }
 
+    /**
+     * Add a table loaded some other way than from a schema record.
+     */
+    public void addTable(TableInfo table) {
+        tables.put(table.getName(), table);
+    }
+
+    /**
+     * Add an index and attach it to its table, creating the table if it is
+     * not known yet.
+     */
+    public void addIndex(IndexInfo index) {
+        indexes.put(index.getName(), index);
+        tables.computeIfAbsent(index.getTableName(), k -> new TableInfo(k)).addIndex(index);
+    }
+
     // Query methods
     public int getTableCount() {
         return (int) tables.values().stream()
@@ -49,6 +66,19 @@ public class DatabaseSchema {
         return tables.get(tableName);
     }
 
+    public IndexInfo getIndex(String indexName) {
+        return indexes.get(indexName);
+    }
+
+    public Collection<IndexInfo> getAllIndexes() {
+        return Collections.unmodifiableCollection(indexes.values());
+    }
+
+    // Includes internal sqlite_ tables
+    public Collection<TableInfo> getAllTables() {
+        return Collections.unmodifiableCollection(tables.values());
+    }
+
     public List<TableInfo> getTables(String... tableNames) {
         return Arrays.stream(tableNames)
                 .map(tables::get)
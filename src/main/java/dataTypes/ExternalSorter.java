@@ -0,0 +1,432 @@
+package dataTypes;
+
+import metrics.Metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Sorts rows on some of their columns in a fixed amount of memory.
+ * <p>
+ * Rows are added as records in SQLite's record format and collected into
+ * a run. Once a run holds its share of the memory budget it is handed to
+ * a fork-join task, which sorts it and writes it to a temporary file,
+ * while the next run fills. Runs are sorted on up to the pool's
+ * parallelism at once; past that, adding waits for the oldest. When all
+ * rows are in, the run files are merged through a heap, at most
+ * {@link #MAX_FAN_IN} at a time, so an input of any size is sorted with
+ * the same memory. Input that fits in one run is never written out.
+ * <p>
+ * Keys compare as {@link SQLiteRecord#compareColumn} orders them, in
+ * place in the record bytes. The sort is stable: rows with equal keys
+ * come out in the order they were added.
+ */
+public class ExternalSorter implements AutoCloseable {
+
+    /** System property giving the memory budget in bytes. */
+    public static final String MEMORY_PROPERTY = "sqlite.sortBytes";
+    public static final long DEFAULT_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    /** Most run files merged by one pass. */
+    static final int MAX_FAN_IN = 64;
+
+    private static final int MIN_RUN_BYTES = 64 * 1024;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    // Estimated heap per buffered row beyond its bytes: record object, arrays and list slot
+    private static final int ROW_OVERHEAD = 160;
+    private static final int COLUMN_OVERHEAD = 12;
+
+    // A buffered row: its record bytes and the record parsed over them
+    private record Entry(byte[] payload, SQLiteRecord record) { }
+
+    private final Comparator<SQLiteRecord> comparator;
+    private final int rowidColumn;
+    private final ForkJoinPool pool;
+    private final long runBytes;
+    private final int maxSorting;
+
+    private List<Entry> run = new ArrayList<>();
+    private long bufferedBytes;
+    private final ArrayDeque<ForkJoinTask<Path>> sorting = new ArrayDeque<>();
+    private final List<Path> runFiles = new ArrayList<>();
+    private boolean sorted;
+
+    /**
+     * Sort with the budget from {@link #MEMORY_PROPERTY} on the common
+     * fork-join pool.
+     */
+    public ExternalSorter(int[] keys, boolean[] descending, int rowidColumn) {
+        this(keys, descending, rowidColumn, Long.getLong(MEMORY_PROPERTY, DEFAULT_MEMORY_BYTES),
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param keys        columns to sort on, most significant first
+     * @param descending  per key, whether it sorts high to low
+     * @param rowidColumn INTEGER PRIMARY KEY column of the rows, which is
+     *                    stored as NULL and reads as the rowid, or -1
+     * @param memoryBytes rows buffered at once, across the run being filled
+     *                    and the runs being sorted
+     */
+    public ExternalSorter(int[] keys, boolean[] descending, int rowidColumn, long memoryBytes, ForkJoinPool pool) {
+        this.comparator = (a, b) -> {
+            for (int k = 0; k < keys.length; k++) {
+                int c = a.compareColumn(keys[k], b, keys[k]);
+                if (c != 0) {
+                    return descending[k] ? -c : c;
+                }
+            }
+            return 0;
+        };
+        this.rowidColumn = rowidColumn;
+        this.pool = pool;
+        this.maxSorting = Math.max(1, pool.getParallelism());
+        this.runBytes = Math.max(MIN_RUN_BYTES, memoryBytes / (maxSorting + 1));
+    }
+
+    /**
+     * Add a row, copying its record.
+     */
+    public void add(long rowid, SQLiteRecord record) throws IOException {
+        byte[] payload = new byte[record.getPayloadSize()];
+        record.copyPayload(payload, 0);
+        addPayload(rowid, payload);
+    }
+
+    /**
+     * Add a row given as the first {@code length} bytes of a record in
+     * SQLite's record format, copying them.
+     */
+    public void add(long rowid, byte[] record, int length) throws IOException {
+        byte[] payload = new byte[length];
+        System.arraycopy(record, 0, payload, 0, length);
+        addPayload(rowid, payload);
+    }
+
+    private void addPayload(long rowid, byte[] payload) throws IOException {
+        if (sorted) {
+            throw new IllegalStateException("Rows cannot be added once sorting has started");
+        }
+        SQLiteRecord record = SQLiteRecord.parse(payload, 0, payload.length);
+        record.setRowId(rowid);
+        record.setRowidColumn(rowidColumn);
+        run.add(new Entry(payload, record));
+        bufferedBytes += payload.length + ROW_OVERHEAD + (long) COLUMN_OVERHEAD * record.getColumnCount();
+        if (bufferedBytes >= runBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * Finish adding rows and read them back in order. Closing the cursor
+     * closes the sorter and deletes its files.
+     */
+    public RowCursor sort() throws IOException {
+        if (sorted) {
+            throw new IllegalStateException("Already sorted");
+        }
+        sorted = true;
+        if (runFiles.isEmpty() && sorting.isEmpty()) {
+            List<Entry> rows = run;
+            run = new ArrayList<>();
+            rows.sort((a, b) -> comparator.compare(a.record(), b.record()));
+            return new MemoryCursor(rows);
+        }
+        if (!run.isEmpty()) {
+            spill();
+        }
+        while (!sorting.isEmpty()) {
+            runFiles.add(join(sorting.removeFirst()));
+        }
+        // Merge neighbouring runs, keeping their order, until one pass can merge them all
+        while (runFiles.size() > MAX_FAN_IN) {
+            List<Path> merged = new ArrayList<>();
+            try {
+                for (int from = 0; from < runFiles.size(); from += MAX_FAN_IN) {
+                    List<Path> group = runFiles.subList(from, Math.min(from + MAX_FAN_IN, runFiles.size()));
+                    merged.add(group.size() == 1 ? group.get(0) : mergeToFile(group));
+                }
+            } catch (IOException | RuntimeException e) {
+                runFiles.addAll(merged); // deleted by close()
+                throw e;
+            }
+            runFiles.clear();
+            runFiles.addAll(merged);
+        }
+        return new MergeCursor(openReaders(runFiles), true);
+    }
+
+    // Hand the full run to a sort task, first waiting for the oldest if enough are in flight
+    private void spill() throws IOException {
+        while (sorting.size() >= maxSorting) {
+            runFiles.add(join(sorting.removeFirst()));
+        }
+        List<Entry> rows = run;
+        run = new ArrayList<>();
+        bufferedBytes = 0;
+        sorting.add(pool.submit(() -> {
+            try {
+                return writeRun(rows);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+
+    private Path writeRun(List<Entry> rows) throws IOException {
+        rows.sort((a, b) -> comparator.compare(a.record(), b.record()));
+        Path file = Files.createTempFile("sqlite-sort-", ".run");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE))) {
+            for (Entry entry : rows) {
+                writeRow(out, entry.record().getRowId(), entry.payload(), entry.payload().length);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        Metrics.Counter.SORT_SPILLS.increment();
+        return file;
+    }
+
+    // Run file rows: rowid, record length, record bytes
+    private static void writeRow(DataOutputStream out, long rowid, byte[] payload, int length) throws IOException {
+        out.writeLong(rowid);
+        out.writeInt(length);
+        out.write(payload, 0, length);
+    }
+
+    private Path mergeToFile(List<Path> group) throws IOException {
+        Path file = Files.createTempFile("sqlite-sort-", ".run");
+        try (MergeCursor merge = new MergeCursor(openReaders(group), false);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE))) {
+            while (merge.next()) {
+                RunReader reader = merge.current;
+                writeRow(out, reader.record.getRowId(), reader.buffer, reader.length);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        for (Path path : group) {
+            Files.deleteIfExists(path);
+        }
+        return file;
+    }
+
+    private List<RunReader> openReaders(List<Path> files) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                readers.add(new RunReader(files.get(i), i));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            throw e;
+        }
+        return readers;
+    }
+
+    private static Path join(ForkJoinTask<Path> task) throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Delete the run files and drop the buffered rows.
+     */
+    @Override
+    public void close() {
+        for (ForkJoinTask<Path> task : sorting) {
+            try {
+                Files.deleteIfExists(task.join());
+            } catch (IOException | RuntimeException e) {
+                // the task failed and cleaned up after itself
+            }
+        }
+        sorting.clear();
+        for (Path file : runFiles) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // left in the temporary directory
+            }
+        }
+        runFiles.clear();
+        run = new ArrayList<>();
+    }
+
+    // Sequential reader of one run file, holding its current row
+    private class RunReader {
+        private final DataInputStream in;
+        private final int index;
+        private final SQLiteRecord record = new SQLiteRecord();
+        private byte[] buffer = new byte[256];
+        private MemorySegment segment = MemorySegment.ofArray(buffer);
+        private int length;
+
+        RunReader(Path file, int index) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE));
+            this.index = index;
+            record.setRowidColumn(rowidColumn);
+        }
+
+        // Read the next row into the record; false at the end of the file
+        boolean advance() throws IOException {
+            long rowid;
+            try {
+                rowid = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            length = in.readInt();
+            if (length > buffer.length) {
+                buffer = new byte[Math.max(length, 2 * buffer.length)];
+                segment = MemorySegment.ofArray(buffer);
+            }
+            in.readFully(buffer, 0, length);
+            record.reset(segment, 0, length);
+            record.setRowId(rowid);
+            return true;
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing was written
+            }
+        }
+    }
+
+    // Rows of a run that never left memory
+    private class MemoryCursor implements RowCursor {
+        private final List<Entry> rows;
+        private int position = -1;
+
+        MemoryCursor(List<Entry> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean next() {
+            return ++position < rows.size();
+        }
+
+        @Override
+        public long rowid() { return currentRecord().getRowId(); }
+
+        @Override
+        public int columnCount() { return currentRecord().getColumnCount(); }
+
+        @Override
+        public Object column(int index) { return currentRecord().getValue(index); }
+
+        @Override
+        public SQLiteRecord record() { return currentRecord(); }
+
+        @Override
+        public SQLiteRecord currentRecord() {
+            if (position < 0 || position >= rows.size()) {
+                throw new IllegalStateException("Cursor is not positioned on a row");
+            }
+            return rows.get(position).record();
+        }
+
+        @Override
+        public void close() {
+            position = rows.size();
+            ExternalSorter.this.close();
+        }
+    }
+
+    // k-way merge of run files; ties go to the earlier run, which keeps the sort stable
+    private class MergeCursor implements RowCursor {
+        private final List<RunReader> readers;
+        private final PriorityQueue<RunReader> heap;
+        private final boolean last; // the final merge, which closes the sorter with it
+        private RunReader current;
+
+        MergeCursor(List<RunReader> readers, boolean last) throws IOException {
+            this.readers = readers;
+            this.last = last;
+            this.heap = new PriorityQueue<>(Math.max(1, readers.size()), (a, b) -> {
+                int c = comparator.compare(a.record, b.record);
+                return c != 0 ? c : Integer.compare(a.index, b.index);
+            });
+            try {
+                for (RunReader reader : readers) {
+                    if (reader.advance()) {
+                        heap.add(reader);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        // The previous row's reader moves on only now, so its record stays valid until here
+        @Override
+        public boolean next() throws IOException {
+            if (current != null && current.advance()) {
+                heap.add(current);
+            }
+            current = heap.poll();
+            return current != null;
+        }
+
+        @Override
+        public long rowid() { return currentRecord().getRowId(); }
+
+        @Override
+        public int columnCount() { return currentRecord().getColumnCount(); }
+
+        @Override
+        public Object column(int index) { return currentRecord().getValue(index); }
+
+        @Override
+        public SQLiteRecord record() { return currentRecord().detach(); }
+
+        @Override
+        public SQLiteRecord currentRecord() {
+            if (current == null) {
+                throw new IllegalStateException("Cursor is not positioned on a row");
+            }
+            return current.record;
+        }
+
+        @Override
+        public void close() {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            heap.clear();
+            current = null;
+            if (last) {
+                ExternalSorter.this.close();
+            }
+        }
+    }
+}
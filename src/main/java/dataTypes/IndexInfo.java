@@ -0,0 +1,143 @@
+package dataTypes;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An index from {@code sqlite_master}: its root page and the table
+ * columns it is keyed on.
+ * <p>
+ * Index entries are records holding the indexed columns followed by the
+ * rowid of the table row. Indexes created implicitly for UNIQUE and
+ * PRIMARY KEY constraints have no SQL, and expression or partial indexes
+ * cannot answer plain column lookups, so those report
+ * {@link #isUsableForLookups()} as false. So do indexes with a term
+ * COLLATE other than BINARY: their keys are not in the order lookups
+ * seek in. A collation a key column declares is inherited by the index
+ * and checked with {@link TableInfo#hasBinaryOrder}.
+ */
+public class IndexInfo {
+    /** The collation SQLite uses when none is given, comparing bytes. */
+    public static final String BINARY = "BINARY";
+
+    private static final Pattern COLLATE = Pattern.compile("(?i)\\bCOLLATE\\s+[\"'`\\[]?(\\w+)");
+
+    private final String name;
+    private final String tableName;
+    private final int rootPage;
+    private final String sql;
+    private final List<String> columnNames = new ArrayList<>();
+    private final List<Boolean> descending = new ArrayList<>();
+    private boolean usable;
+
+    public IndexInfo(String name, String tableName, int rootPage, String sql) {
+        this.name = name;
+        this.tableName = tableName;
+        this.rootPage = rootPage;
+        this.sql = sql;
+        parseColumns();
+    }
+
+    /**
+     * An index whose columns were parsed from its SQL earlier.
+     */
+    public IndexInfo(String name, String tableName, int rootPage, String sql,
+                     List<String> columnNames, boolean[] descending, boolean usable) {
+        this.name = name;
+        this.tableName = tableName;
+        this.rootPage = rootPage;
+        this.sql = sql;
+        this.columnNames.addAll(columnNames);
+        for (boolean flag : descending) {
+            this.descending.add(flag);
+        }
+        this.usable = usable;
+    }
+
+    public String getName() { return name; }
+    public String getTableName() { return tableName; }
+    public int getRootPage() { return rootPage; }
+    public String getSql() { return sql; }
+    public List<String> getColumnNames() { return Collections.unmodifiableList(columnNames); }
+    public boolean isDescending(int column) { return descending.get(column); }
+    public boolean isUsableForLookups() { return usable; }
+
+    public boolean[] getDescendingFlags() {
+        boolean[] flags = new boolean[descending.size()];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = descending.get(i);
+        }
+        return flags;
+    }
+
+    // True if the index is keyed first on the given column
+    public boolean hasLeadingColumn(String columnName) {
+        return usable && !columnNames.isEmpty() && columnNames.get(0).equalsIgnoreCase(columnName);
+    }
+
+    // Parse "CREATE [UNIQUE] INDEX name ON table (col [COLLATE x] [ASC|DESC], ...) [WHERE ...]"
+    private void parseColumns() {
+        if (sql == null || sql.isEmpty()) {
+            return;
+        }
+
+        String upperSql = sql.toUpperCase();
+        int onIndex = upperSql.indexOf(" ON ");
+        int startIndex = onIndex == -1 ? -1 : upperSql.indexOf('(', onIndex);
+        if (startIndex == -1) {
+            return;
+        }
+
+        // Find the matching closing parenthesis
+        int depth = 0;
+        int endIndex = -1;
+        for (int i = startIndex; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                endIndex = i;
+                break;
+            }
+        }
+        if (endIndex == -1) {
+            return;
+        }
+
+        boolean partial = upperSql.substring(endIndex).contains("WHERE");
+        boolean plainColumns = true;
+
+        for (String term : sql.substring(startIndex + 1, endIndex).split(",")) {
+            term = term.trim();
+            if (term.contains("(")) {
+                plainColumns = false; // expression index
+            }
+            String[] parts = term.split("\\s+");
+            String columnName = parts[0]
+                    .replace("\"", "")
+                    .replace("'", "")
+                    .replace("`", "")
+                    .replace("[", "")
+                    .replace("]", "");
+            columnNames.add(columnName);
+            descending.add(parts[parts.length - 1].equalsIgnoreCase("DESC"));
+            if (!collation(term).equals(BINARY)) {
+                plainColumns = false; // keys in NOCASE, RTRIM or custom order
+            }
+        }
+
+        usable = plainColumns && !partial && !columnNames.isEmpty();
+    }
+
+    // Collation named by COLLATE in an index term or column definition, upper case; BINARY if none
+    static String collation(String definition) {
+        Matcher matcher = COLLATE.matcher(definition);
+        return matcher.find() ? matcher.group(1).toUpperCase(Locale.ROOT) : BINARY;
+    }
+
+    @Override
+    public String toString() {
+        return "Index: " + name + " ON " + tableName + columnNames + " (root page " + rootPage + ")";
+    }
+}
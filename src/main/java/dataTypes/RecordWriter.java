@@ -0,0 +1,201 @@
+package dataTypes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds a record in SQLite's record format from typed values, so rows
+ * that did not come from a page can be stored and read back as a
+ * {@link SQLiteRecord}.
+ * <p>
+ * Integers take the smallest serial type that holds them, with 0 and 1
+ * stored in the header alone, as SQLite writes them. The writer is reused
+ * for every row: {@link #reset}, add the values in column order, then
+ * {@link #finish}.
+ */
+public final class RecordWriter {
+
+    private long[] serialTypes = new long[16];
+    private int columns;
+    private byte[] body = new byte[256];
+    private int bodySize;
+    private byte[] record = new byte[256];
+    private int size;
+
+    public void reset() {
+        columns = 0;
+        bodySize = 0;
+        size = 0;
+    }
+
+    public void addNull() {
+        addSerialType(0);
+    }
+
+    public void addLong(long value) {
+        if (value == 0 || value == 1) {
+            addSerialType(8 + value);
+            return;
+        }
+        int serialType;
+        int bytes;
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            serialType = 1;
+            bytes = 1;
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            serialType = 2;
+            bytes = 2;
+        } else if (value >= -(1 << 23) && value < 1 << 23) {
+            serialType = 3;
+            bytes = 3;
+        } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            serialType = 4;
+            bytes = 4;
+        } else if (value >= -(1L << 47) && value < 1L << 47) {
+            serialType = 5;
+            bytes = 6;
+        } else {
+            serialType = 6;
+            bytes = 8;
+        }
+        addSerialType(serialType);
+        writeBigEndian(value, bytes);
+    }
+
+    public void addDouble(double value) {
+        addSerialType(7);
+        writeBigEndian(Double.doubleToRawLongBits(value), 8);
+    }
+
+    public void addText(String value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        addSerialType(13 + 2L * bytes.length);
+        appendBody(bytes, bytes.length);
+    }
+
+    public void addBlob(byte[] value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        addSerialType(12 + 2L * value.length);
+        appendBody(value, value.length);
+    }
+
+    /**
+     * Add a column of another record, copying TEXT and BLOB bytes without
+     * decoding them. Columns past the end of a short row are NULL.
+     */
+    public void add(SQLiteRecord source, int column) {
+        if (column >= source.getColumnCount() || source.isNull(column)) {
+            addNull();
+            return;
+        }
+        long serialType = source.getSerialType(column);
+        if (serialType == 7) {
+            addDouble(source.getDouble(column));
+        } else if (serialType >= 12) {
+            int length = source.getValueLength(column);
+            addSerialType(serialType);
+            ensureBody(length);
+            source.copyValueBytes(column, body, bodySize);
+            bodySize += length;
+        } else {
+            addLong(source.getLong(column)); // includes an INTEGER PRIMARY KEY read from the rowid
+        }
+    }
+
+    /**
+     * Write the header in front of the values.
+     *
+     * @return size of the record, whose bytes are {@link #bytes()}
+     */
+    public int finish() {
+        int typesSize = 0;
+        for (int i = 0; i < columns; i++) {
+            typesSize += varintSize(serialTypes[i]);
+        }
+        // The header size counts its own varint
+        int headerSize = typesSize + 1;
+        while (varintSize(headerSize) + typesSize != headerSize) {
+            headerSize = varintSize(headerSize) + typesSize;
+        }
+        size = headerSize + bodySize;
+        if (size > record.length) {
+            record = new byte[Math.max(size, 2 * record.length)];
+        }
+        int pos = writeVarint(record, 0, headerSize);
+        for (int i = 0; i < columns; i++) {
+            pos = writeVarint(record, pos, serialTypes[i]);
+        }
+        System.arraycopy(body, 0, record, pos, bodySize);
+        return size;
+    }
+
+    /** @return the record built by {@link #finish}; valid until the next row */
+    public byte[] bytes() { return record; }
+
+    public int size() { return size; }
+
+    private void addSerialType(long serialType) {
+        if (columns == serialTypes.length) {
+            serialTypes = Arrays.copyOf(serialTypes, columns * 2);
+        }
+        serialTypes[columns++] = serialType;
+    }
+
+    private void writeBigEndian(long value, int bytes) {
+        ensureBody(bytes);
+        for (int i = bytes - 1; i >= 0; i--) {
+            body[bodySize + i] = (byte) value;
+            value >>= 8;
+        }
+        bodySize += bytes;
+    }
+
+    private void appendBody(byte[] bytes, int length) {
+        ensureBody(length);
+        System.arraycopy(bytes, 0, body, bodySize, length);
+        bodySize += length;
+    }
+
+    private void ensureBody(int more) {
+        if (bodySize + more > body.length) {
+            body = Arrays.copyOf(body, Math.max(bodySize + more, 2 * body.length));
+        }
+    }
+
+    private static int varintSize(long value) {
+        if ((value & ~0x00FFFFFFFFFFFFFFL) != 0) {
+            return 9;
+        }
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    // Big-endian groups of 7 bits with a continuation bit; a 9th byte carries 8 bits
+    private static int writeVarint(byte[] target, int pos, long value) {
+        int size = varintSize(value);
+        if (size == 9) {
+            target[pos + 8] = (byte) value;
+            value >>>= 8;
+            for (int i = 7; i >= 0; i--) {
+                target[pos + i] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            return pos + 9;
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            target[pos + i] = (byte) ((value & 0x7F) | (i == size - 1 ? 0 : 0x80));
+            value >>>= 7;
+        }
+        return pos + size;
+    }
+}
@@ -0,0 +1,56 @@
+package dataTypes;
+
+import java.io.IOException;
+
+/**
+ * Pull-based iteration over the rows of a table, one row at a time.
+ * <p>
+ * A cursor only holds the current row. Values returned by
+ * {@link #column(int)} are decoded on demand, and a row is only kept
+ * beyond the next call to {@link #next()} when the caller asks for it
+ * with {@link #record()}.
+ */
+public interface RowCursor extends AutoCloseable {
+
+    /**
+     * Move to the next row.
+     *
+     * @return false once the table is exhausted
+     */
+    boolean next() throws IOException;
+
+    long rowid();
+
+    int columnCount();
+
+    Object column(int index);
+
+    /**
+     * Read several columns of the current row, {@code columns[i]} into
+     * {@code values[i]}. Columns the row does not have read as NULL.
+     * Cursors over stored tables decode only these columns and skip the
+     * others unread.
+     */
+    default void readColumns(int[] columns, Object[] values) {
+        int count = columnCount();
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = columns[i] < count ? column(columns[i]) : null;
+        }
+    }
+
+    /**
+     * @return the current row as a record the caller may keep
+     */
+    SQLiteRecord record();
+
+    /**
+     * @return the current row without copying it, valid only until the
+     *         next call to {@link #next()}
+     */
+    default SQLiteRecord currentRecord() {
+        return record();
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,86 @@
+package dataTypes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A conjunction of column conditions, each comparing one column with a
+ * constant, that a {@link RowSource} can push down into its scan.
+ * <p>
+ * Comparisons follow SQLite: INTEGER and REAL compare by value, NULL
+ * sorts before numbers, numbers before TEXT and TEXT before BLOB, and a
+ * comparison with NULL on either side is never true; use
+ * {@link Op#IS_NULL} to find NULLs. A B-tree row source compiles the
+ * conditions to checks on the raw cell bytes, so rows that fail are
+ * skipped without building a record. {@link #test(SQLiteRecord)} is the
+ * reference implementation over decoded values.
+ */
+public final class RowFilter {
+
+    /** Column number that stands for the rowid. */
+    public static final int ROWID = -1;
+
+    public enum Op { EQ, NE, LT, LE, GT, GE, IS_NULL, IS_NOT_NULL }
+
+    /**
+     * @param column table column number, or {@link #ROWID}
+     * @param value  a Long, Integer, Double, String or byte[]; ignored for
+     *               the NULL tests
+     */
+    public record Condition(int column, Op op, Object value) { }
+
+    private final List<Condition> conditions = new ArrayList<>();
+
+    public RowFilter where(int column, Op op, Object value) {
+        conditions.add(new Condition(column, op, value));
+        return this;
+    }
+
+    public List<Condition> getConditions() {
+        return Collections.unmodifiableList(conditions);
+    }
+
+    public boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    public boolean test(SQLiteRecord record) {
+        for (Condition condition : conditions) {
+            Object value = condition.column() == ROWID
+                    ? (Object) record.getRowId()
+                    : condition.column() < record.getColumnCount() ? record.getValue(condition.column()) : null;
+            if (!matches(condition.op(), value, condition.value())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean matches(Op op, Object value, Object expected) {
+        if (op == Op.IS_NULL) return value == null;
+        if (op == Op.IS_NOT_NULL) return value != null;
+        if (value == null || expected == null) return false;
+        return holds(op, ValueComparator.compareValues(value, expected));
+    }
+
+    /**
+     * @param comparison the column value compared with the constant
+     */
+    public static boolean holds(Op op, int comparison) {
+        return switch (op) {
+            case EQ -> comparison == 0;
+            case NE -> comparison != 0;
+            case LT -> comparison < 0;
+            case LE -> comparison <= 0;
+            case GT -> comparison > 0;
+            case GE -> comparison >= 0;
+            default -> throw new IllegalArgumentException("Not a comparison: " + op);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return conditions.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package dataTypes;
+
+import java.io.IOException;
+
+/**
+ * Opens cursors over the rows of one table, so that {@link TableInfo}
+ * can query a table without holding its records in memory.
+ */
+@FunctionalInterface
+public interface RowSource {
+    RowCursor openCursor() throws IOException;
+
+    /**
+     * @return the number of rows, by default counted with a cursor
+     */
+    default long countRows() throws IOException {
+        long rows = 0;
+        try (RowCursor cursor = openCursor()) {
+            while (cursor.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the number of pages the rows are stored on, 0 for sources
+     *         not backed by the database file
+     */
+    default long countPages() throws IOException {
+        return 0;
+    }
+
+    /**
+     * Open a cursor over the rows that pass a filter. By default each row
+     * is decoded and tested; sources that can test rows more cheaply
+     * override this.
+     */
+    default RowCursor openCursor(RowFilter filter) throws IOException {
+        RowCursor cursor = openCursor();
+        return new RowCursor() {
+            @Override
+            public boolean next() throws IOException {
+                while (cursor.next()) {
+                    if (filter.test(cursor.currentRecord())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public long rowid() { return cursor.rowid(); }
+
+            @Override
+            public int columnCount() { return cursor.columnCount(); }
+
+            @Override
+            public Object column(int index) { return cursor.column(index); }
+
+            @Override
+            public void readColumns(int[] columns, Object[] values) { cursor.readColumns(columns, values); }
+
+            @Override
+            public SQLiteRecord record() { return cursor.record(); }
+
+            @Override
+            public SQLiteRecord currentRecord() { return cursor.currentRecord(); }
+
+            @Override
+            public void close() { cursor.close(); }
+        };
+    }
+
+    /**
+     * Open a cursor over the rows whose index key lies between two bounds,
+     * in index order. Bounds are key prefixes compared in the index's own
+     * order; a null bound leaves that side open.
+     *
+     * @throws UnsupportedOperationException if this source cannot read indexes
+     */
+    default RowCursor openIndexCursor(IndexInfo index,
+                                      Object[] lower, boolean lowerInclusive,
+                                      Object[] upper, boolean upperInclusive) throws IOException {
+        throw new UnsupportedOperationException("Index lookups are not supported by this row source");
+    }
+
+    /**
+     * Open a cursor over the rows with the given rowids, in ascending rowid
+     * order. Missing rowids are skipped.
+     *
+     * @throws UnsupportedOperationException if this source cannot seek by rowid
+     */
+    default RowCursor openRowidCursor(long[] rowids) throws IOException {
+        throw new UnsupportedOperationException("Rowid lookups are not supported by this row source");
+    }
+}
@@ -1,19 +1,60 @@
 package dataTypes;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import helpers.VarintDecoder;
-
+import java.util.Objects;
+import helpers.SegmentReader;
+import helpers.VarintReader;
+import pager.CellPayload;
+
+/**
+ * A record in SQLite's record format.
+ * <p>
+ * Parsing only reads the record header: the serial type of every column
+ * and, from the serial type sizes, where each value starts. A value is
+ * decoded the first time it is read and cached after that, so callers that
+ * touch a few columns of a wide row never pay for the rest.
+ * <p>
+ * Serial types and value offsets are held in primitive arrays. The typed
+ * accessors ({@link #getLong}, {@link #getDouble}, {@link #isNull},
+ * {@link #getText}, {@link #getBlob}) read straight from the payload and
+ * never box; only {@link #getValue} keeps a cache of boxed values.
+ * <p>
+ * A record points into the page it was parsed from. Use {@link #detach()}
+ * to keep a record after the page source is closed.
+ * <p>
+ * A record too large for its cell continues on overflow pages. Values that
+ * reach past the cell are read from the overflow chain when accessed, and
+ * {@link #openStream} / {@link #openChannel} read a large TEXT or BLOB a
+ * page at a time instead of building it in one array.
+ */
 public class SQLiteRecord {
-    private final List<Long> serialTypes;
-    private final List<Object> values;
-    private final int headerSize;
-    private final int dataSize;
+    private static final Object NOT_DECODED = new Object();
+
+    private MemorySegment data;
+    private int payloadStart;
+    private int payloadSize;
+    private int localEnd;                 // end of the payload bytes held in data
+    private CellPayload overflow;         // set when the payload continues on overflow pages
+    private int columnCount;
+    private long[] serialTypes = new long[8];
+    private int[] offsets = new int[8];   // absolute offset of each value in data
+    private Object[] values;              // boxed values, allocated by getValue only
+    private int headerSize;
+    private int dataSize;
+    private VarintReader varints;
 
     private String tableName;
+    private long rowId;
+    private int rowidColumn = -1;
     private int pageNumber;
     private int cellIndex;
     private RecordType recordType;
@@ -24,32 +65,445 @@ public class SQLiteRecord {
         INDEX_RECORD, // Index data
     }
 
-    private SQLiteRecord(List<Long> serialTypes, List<Object> values,
-                         int headerSize, int dataSize) {
-        this.serialTypes = serialTypes;
-        this.values = values;
-        this.headerSize = headerSize;
-        this.dataSize = dataSize;
+    public SQLiteRecord() {
         this.recordType = RecordType.TABLE_RECORD; // default
     }
 
     public static SQLiteRecord parse(byte[] data, int offset, int payloadSize) {
-        RecordParser parser = new RecordParser(data, offset, payloadSize);
-        return parser.parse();
+        return parse(MemorySegment.ofArray(data), offset, payloadSize);
+    }
+
+    public static SQLiteRecord parse(MemorySegment data, int offset, int payloadSize) {
+        SQLiteRecord record = new SQLiteRecord();
+        record.reset(data, offset, payloadSize);
+        return record;
+    }
+
+    /**
+     * Re-point this record at another payload, reusing its buffers. Values
+     * decoded for the previous payload are discarded; metadata is kept.
+     */
+    public void reset(MemorySegment data, int offset, int payloadSize) {
+        RecordParser.parseHeader(this, data, offset, payloadSize, payloadSize);
+        this.data = data;
+        this.payloadStart = offset;
+        this.payloadSize = payloadSize;
+        this.localEnd = offset + payloadSize;
+        this.overflow = null;
+    }
+
+    /**
+     * Re-point this record at a cell payload that may continue on overflow
+     * pages. Only the record header is read here; a header that itself runs
+     * past the cell is copied, values never are.
+     */
+    public void reset(CellPayload payload) {
+        if (payload.size() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Payload of " + payload.size() + " bytes is too large");
+        }
+        int size = (int) payload.size();
+        MemorySegment local = payload.local();
+        if (!payload.hasOverflow()) {
+            reset(local, 0, size);
+            return;
+        }
+
+        if (varints == null) {
+            varints = new VarintReader();
+        }
+        long headerSizeValue = varints.reset(local, 0).readVarint();
+        MemorySegment header = local;
+        if (headerSizeValue > payload.localSize() && headerSizeValue <= size) {
+            header = MemorySegment.ofArray(readPayload(payload, 0, (int) headerSizeValue));
+        }
+        RecordParser.parseHeader(this, header, 0, size, (int) Math.min(size, header.byteSize()));
+        this.data = local;
+        this.payloadStart = 0;
+        this.payloadSize = size;
+        this.localEnd = payload.localSize();
+        this.overflow = payload;
+    }
+
+    /**
+     * @return a copy of this record backed by its own heap copy of the
+     * payload, independent of the page it was parsed from
+     */
+    public SQLiteRecord detach() {
+        SQLiteRecord copy = new SQLiteRecord();
+        if (overflow != null) {
+            // Copy the part held in the cell only; overflow pages stay where they are
+            copy.overflow = overflow.detach();
+            copy.data = copy.overflow.local();
+        } else {
+            copy.data = MemorySegment.ofArray(SegmentReader.readBytes(data, payloadStart, payloadSize));
+        }
+        copy.payloadStart = 0;
+        copy.payloadSize = payloadSize;
+        copy.localEnd = localEnd - payloadStart;
+        int columns = columnCount;
+        copy.columnCount = columns;
+        copy.serialTypes = Arrays.copyOf(serialTypes, columns);
+        copy.offsets = new int[columns];
+        copy.values = values != null ? Arrays.copyOf(values, columns) : null;
+        for (int i = 0; i < columns; i++) {
+            copy.offsets[i] = offsets[i] - payloadStart;
+        }
+        copy.headerSize = headerSize;
+        copy.dataSize = dataSize;
+        copy.tableName = tableName;
+        copy.rowId = rowId;
+        copy.rowidColumn = rowidColumn;
+        copy.pageNumber = pageNumber;
+        copy.cellIndex = cellIndex;
+        copy.recordType = recordType;
+        return copy;
     }
 
     // Getters
-    public List<Object> getValues() { return values; }
-    public Object getValue(int column) { return values.get(column); }
-    public int getColumnCount() { return values.size(); }
-    public long getSerialType(int column) { return serialTypes.get(column); }
+    public List<Object> getValues() {
+        List<Object> result = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            result.add(getValue(i));
+        }
+        return result;
+    }
+
+    public Object getValue(int column) {
+        Objects.checkIndex(column, columnCount);
+        if (values == null) {
+            values = new Object[serialTypes.length];
+            Arrays.fill(values, NOT_DECODED);
+        }
+        Object value = values[column];
+        if (value == NOT_DECODED) {
+            if (isRowidAlias(column)) {
+                value = rowId;
+            } else {
+                MemorySegment valueData = valueData(column);
+                value = RecordParser.decodeValue(valueData, valuePos(column, valueData), serialTypes[column]);
+            }
+            values[column] = value;
+        }
+        return value;
+    }
+
+    public boolean isNull(int column) {
+        return getSerialType(column) == 0 && !isRowidAlias(column);
+    }
+
+    // An INTEGER PRIMARY KEY column is stored as NULL and read from the rowid
+    private boolean isRowidAlias(int column) {
+        return column == rowidColumn && serialTypes[column] == 0;
+    }
+
+    /**
+     * Integer value of a column without boxing. REAL values are truncated
+     * and NULL reads as 0, as in SQLite's {@code sqlite3_column_int64}.
+     */
+    public long getLong(int column) {
+        long serialType = getSerialType(column);
+        MemorySegment valueData = valueData(column);
+        int pos = valuePos(column, valueData);
+        if (serialType == 7) {
+            return (long) RecordParser.readFloat64(valueData, pos);
+        }
+        if (serialType >= 12) {
+            throw new IllegalStateException("Column " + column + " is " +
+                    ColumnType.fromSerialType(serialType).type + ", not numeric");
+        }
+        if (isRowidAlias(column)) {
+            return rowId;
+        }
+        return RecordParser.readInteger(valueData, pos, serialType);
+    }
+
+    /**
+     * Floating point value of a column without boxing. Integers are
+     * widened and NULL reads as 0.0.
+     */
+    public double getDouble(int column) {
+        long serialType = getSerialType(column);
+        if (serialType == 7) {
+            MemorySegment valueData = valueData(column);
+            return RecordParser.readFloat64(valueData, valuePos(column, valueData));
+        }
+        return getLong(column);
+    }
+
+    // TEXT value of a column, or null for NULL
+    public String getText(int column) {
+        long serialType = getSerialType(column);
+        if (serialType == 0) {
+            return null;
+        }
+        if (serialType < 13 || serialType % 2 == 0) {
+            throw new IllegalStateException("Column " + column + " is " +
+                    ColumnType.fromSerialType(serialType).type + ", not TEXT");
+        }
+        MemorySegment valueData = valueData(column);
+        return RecordParser.readText(valueData, valuePos(column, valueData), (int)(serialType - 13) / 2);
+    }
+
+    // BLOB value of a column, or null for NULL
+    public byte[] getBlob(int column) {
+        long serialType = getSerialType(column);
+        if (serialType == 0) {
+            return null;
+        }
+        if (serialType < 12 || serialType % 2 != 0) {
+            throw new IllegalStateException("Column " + column + " is " +
+                    ColumnType.fromSerialType(serialType).type + ", not BLOB");
+        }
+        MemorySegment valueData = valueData(column);
+        return RecordParser.readBlob(valueData, valuePos(column, valueData), (int)(serialType - 12) / 2);
+    }
+
+    /**
+     * Copy the stored bytes of a TEXT or BLOB value into {@code target},
+     * without building a {@code String} or {@code byte[]} for it. TEXT is
+     * copied in the database encoding.
+     *
+     * @return number of bytes copied, {@link #getValueLength}
+     */
+    public int copyValueBytes(int column, byte[] target, int targetOffset) {
+        checkStreamable(column);
+        int length = getValueLength(column);
+        MemorySegment valueData = valueData(column);
+        MemorySegment.copy(valueData, ValueLayout.JAVA_BYTE, valuePos(column, valueData), target, targetOffset, length);
+        return length;
+    }
+
+    /**
+     * @return number of bytes the value of a column takes in the record
+     */
+    public int getValueLength(int column) {
+        return ColumnType.sizeOf(getSerialType(column));
+    }
+
+    /**
+     * @return size of the whole record in bytes, header included
+     */
+    public int getPayloadSize() { return payloadSize; }
+
+    /**
+     * Copy the whole record, header and values, into {@code target}. A
+     * record that continues on overflow pages is read from them.
+     *
+     * @return number of bytes copied, {@link #getPayloadSize}
+     */
+    public int copyPayload(byte[] target, int targetOffset) {
+        if (overflow == null) {
+            MemorySegment.copy(data, ValueLayout.JAVA_BYTE, payloadStart, target, targetOffset, payloadSize);
+        } else {
+            System.arraycopy(readPayload(overflow, 0, payloadSize), 0, target, targetOffset, payloadSize);
+        }
+        return payloadSize;
+    }
+
+    /**
+     * Compare a column of this record with a column of another in SQLite
+     * order: NULL, then numbers by value, then TEXT in BINARY collation,
+     * then BLOBs, as {@link ValueComparator} orders decoded values. Values
+     * are compared in place, without decoding TEXT or BLOBs. Columns past
+     * the end of a short row are NULL.
+     */
+    public int compareColumn(int column, SQLiteRecord other, int otherColumn) {
+        int classA = sortClass(column);
+        int classB = other.sortClass(otherColumn);
+        if (classA != classB) {
+            return Integer.compare(classA, classB);
+        }
+        switch (classA) {
+            case 0 -> {
+                return 0;
+            }
+            case 1 -> {
+                if (serialTypes[column] != 7 && other.serialTypes[otherColumn] != 7) {
+                    return Long.compare(getLong(column), other.getLong(otherColumn));
+                }
+                return Double.compare(getDouble(column), other.getDouble(otherColumn));
+            }
+            default -> {
+                // UTF-8 bytes compare unsigned in code point order, the BINARY collation
+                MemorySegment dataA = valueData(column);
+                MemorySegment dataB = other.valueData(otherColumn);
+                long posA = valuePos(column, dataA);
+                long posB = other.valuePos(otherColumn, dataB);
+                int lengthA = getValueLength(column);
+                int lengthB = other.getValueLength(otherColumn);
+                long mismatch = MemorySegment.mismatch(dataA, posA, posA + lengthA, dataB, posB, posB + lengthB);
+                if (mismatch < 0) {
+                    return 0;
+                }
+                if (mismatch == Math.min(lengthA, lengthB)) {
+                    return Integer.compare(lengthA, lengthB);
+                }
+                return Integer.compare(SegmentReader.readUnsignedByte(dataA, posA + mismatch),
+                        SegmentReader.readUnsignedByte(dataB, posB + mismatch));
+            }
+        }
+    }
+
+    // 0 NULL, 1 number, 2 TEXT, 3 BLOB
+    private int sortClass(int column) {
+        if (column >= columnCount) {
+            return 0;
+        }
+        long serialType = serialTypes[column];
+        if (serialType == 0) {
+            return isRowidAlias(column) ? 1 : 0;
+        }
+        if (serialType < 12) {
+            return 1;
+        }
+        return serialType % 2 == 1 ? 2 : 3;
+    }
+
+    /**
+     * Stream the bytes of a TEXT or BLOB value. Values on overflow pages
+     * are read one page at a time, so this never holds the whole value in
+     * memory. A NULL reads as an empty stream.
+     */
+    public InputStream openStream(int column) throws IOException {
+        checkStreamable(column);
+        return payload().openStream(offsets[column] - payloadStart, getValueLength(column));
+    }
+
+    /**
+     * Channel over the bytes of a TEXT or BLOB value, read the same way as
+     * {@link #openStream}.
+     */
+    public ReadableByteChannel openChannel(int column) throws IOException {
+        checkStreamable(column);
+        return payload().openChannel(offsets[column] - payloadStart, getValueLength(column));
+    }
+
+    /**
+     * @return true if the record continues on overflow pages
+     */
+    public boolean hasOverflow() {
+        return overflow != null;
+    }
+
+    private void checkStreamable(int column) {
+        long serialType = getSerialType(column);
+        if (serialType != 0 && serialType < 12) {
+            throw new IllegalStateException("Column " + column + " is " +
+                    ColumnType.fromSerialType(serialType).type + ", not TEXT or BLOB");
+        }
+    }
+
+    private CellPayload payload() {
+        if (overflow != null) {
+            return overflow;
+        }
+        return new CellPayload(null, data.asSlice(payloadStart, payloadSize), 0, payloadSize, 0);
+    }
+
+    // Segment to decode a value from: the page, or a heap copy of a value that runs onto overflow pages
+    private MemorySegment valueData(int column) {
+        if (overflow == null) {
+            return data;
+        }
+        int length = ColumnType.sizeOf(serialTypes[column]);
+        if (offsets[column] + length <= localEnd) {
+            return data;
+        }
+        return MemorySegment.ofArray(readPayload(overflow, offsets[column] - payloadStart, length));
+    }
+
+    private int valuePos(int column, MemorySegment valueData) {
+        return valueData == data ? offsets[column] : 0;
+    }
+
+    private byte[] readPayload(CellPayload payload, long offset, int length) {
+        try {
+            return payload.readBytes(offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read overflow pages of row " + rowId
+                    + " on page " + pageNumber, e);
+        }
+    }
+
+    public int getColumnCount() { return columnCount; }
+
+    public long getSerialType(int column) {
+        Objects.checkIndex(column, columnCount);
+        return serialTypes[column];
+    }
+
+    /**
+     * Decode some columns of the record at {@code offset} without parsing
+     * the whole record. The header is read only as far as the highest
+     * requested column. The other values are skipped by the size their
+     * serial type gives and are never read. The payload must be held
+     * entirely in {@code data}. Columns past the end of a short row read as
+     * NULL.
+     *
+     * @param columns column numbers, in any order
+     * @param values  receives the value of {@code columns[i]} in {@code values[i]}
+     * @param varints reader to decode the header with, reset here
+     */
+    public static void decodeColumns(MemorySegment data, int offset, int payloadSize,
+                                     int[] columns, Object[] values, VarintReader varints) {
+        int last = -1;
+        for (int column : columns) {
+            last = Math.max(last, column);
+        }
+        Arrays.fill(values, 0, columns.length, null);
+
+        varints.reset(data, offset);
+        long headerSize = varints.readVarint();
+        if (headerSize > payloadSize) {
+            throw new IllegalArgumentException("Header size " + headerSize +
+                    " exceeds payload size " + payloadSize);
+        }
+        int headerEnd = offset + (int) headerSize;
+        int payloadEnd = offset + payloadSize;
+        int valueOffset = headerEnd;
+        for (int column = 0; column <= last && varints.position() < headerEnd; column++) {
+            long serialType = varints.readVarint();
+            int size = ColumnType.sizeOf(serialType);
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] == column) {
+                    if (valueOffset + size > payloadEnd) {
+                        throw new IllegalArgumentException("Column " + column + " runs past payload size " + payloadSize);
+                    }
+                    values[i] = RecordParser.decodeValue(data, valueOffset, serialType);
+                }
+            }
+            valueOffset += size;
+        }
+    }
+
+    /**
+     * Decode an integer of serial type 0-6, 8 or 9 stored at an offset, for
+     * callers that read values in place without parsing a record.
+     */
+    public static long readInteger(MemorySegment data, int offset, long serialType) {
+        return RecordParser.readInteger(data, offset, serialType);
+    }
+
+    /**
+     * Decode a REAL (serial type 7) stored at an offset.
+     */
+    public static double readReal(MemorySegment data, int offset) {
+        return RecordParser.readFloat64(data, offset);
+    }
+
+    public int getHeaderSize() { return headerSize; }
+    public int getDataSize() { return dataSize; }
     public String getTableName() { return tableName; }
+    public long getRowId() { return rowId; }
+    public int getRowidColumn() { return rowidColumn; }
     public int getPageNumber() { return pageNumber; }
     public int getCellIndex() { return cellIndex; }
     public RecordType getRecordType() { return recordType; }
 
     // setters for metadata
     public void setTableName(String tableName) { this.tableName = tableName; }
+    public void setRowId(long rowId) { this.rowId = rowId; }
+    public void setRowidColumn(int rowidColumn) { this.rowidColumn = rowidColumn; }
     public void setPageNumber(int pageNumber) { this.pageNumber = pageNumber; }
     public void setCellIndex(int cellIndex) { this.cellIndex = cellIndex; }
     public void setRecordType(RecordType type) { this.recordType = type; }
@@ -61,16 +515,16 @@ public class SQLiteRecord {
 
     // Helper method for schema records
     public SchemaInfo getSchemaInfo() {
-        if (!isSchemaRecord() || values.size() < 5) {
+        if (!isSchemaRecord() || getColumnCount() < 5) {
             return null;
         }
 
         return new SchemaInfo(
-                (String) values.get(0),  // type
-                (String) values.get(1),  // name
-                (String) values.get(2),  // tbl_name
-                ((Number) values.get(3)).intValue(),  // rootpage
-                (String) values.get(4)   // sql
+                (String) getValue(0),  // type
+                (String) getValue(1),  // name
+                (String) getValue(2),  // tbl_name
+                ((Number) getValue(3)).intValue(),  // rootpage
+                (String) getValue(4)   // sql
         );
     }
 
@@ -92,18 +546,26 @@ public class SQLiteRecord {
         public boolean isTable() {
             return "table".equalsIgnoreCase(type);
         }
+
+        public boolean isIndex() {
+            return "index".equalsIgnoreCase(type);
+        }
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Record[");
-        for (int i = 0; i < values.size(); i++) {
+        for (int i = 0; i < getColumnCount(); i++) {
             if (i > 0) sb.append(", ");
-            Object value = values.get(i);
-            if (value instanceof byte[]) {
-                sb.append("BLOB(").append(((byte[])value).length).append(" bytes)");
-            } else if (value instanceof String) {
+            long serialType = getSerialType(i);
+            if (serialType >= 12 && serialType % 2 == 0) {
+                // Size from the serial type, so large BLOBs are not read
+                sb.append("BLOB(").append(getValueLength(i)).append(" bytes)");
+                continue;
+            }
+            Object value = getValue(i);
+            if (value instanceof String) {
                 sb.append("\"").append(value).append("\"");
             } else {
                 sb.append(value);
@@ -115,92 +577,110 @@ public class SQLiteRecord {
 
     // Inner parser class
     private static class RecordParser {
-        private final byte[] data;
-        private final int startOffset;
-        private final int payloadSize;
-        private final int endOffset;
-        private int pos;
-
-        RecordParser(byte[] data, int offset, int payloadSize) {
-            this.data = data;
-            this.startOffset = offset;
-            this.payloadSize = payloadSize;
-            this.endOffset = offset + payloadSize;
-            this.pos = offset;
 
+        // Read the serial types and compute where each value starts
+        // available is how much of the payload data holds, from offset
+        static void parseHeader(SQLiteRecord record, MemorySegment data, int offset,
+                                int payloadSize, int available) {
             // Validate inputs
-            if (offset < 0 || offset >= data.length) {
+            if (offset < 0 || offset >= data.byteSize()) {
                 throw new IllegalArgumentException("Invalid offset: " + offset);
             }
-            if (payloadSize < 0 || offset + payloadSize > data.length) {
+            if (payloadSize < 0 || available > payloadSize || offset + available > data.byteSize()) {
                 throw new IllegalArgumentException("Invalid payload size: " + payloadSize +
                         " at offset " + offset +
-                        " (data length: " + data.length + ")");
+                        " (data length: " + data.byteSize() + ")");
             }
-        }
-
-        SQLiteRecord parse() {
-
-            if (pos >= endOffset) {
+            if (payloadSize == 0) {
                 throw new IllegalArgumentException("No data for header size varint");
             }
 
-            // Read header size varint
-            long[] result = VarintDecoder.decodeVarint(data, pos);
-            long headerSizeValue = result[0];
-            int headerSizeBytes = (int)result[1];
+            // One reader per record, reused on every reset
+            if (record.varints == null) {
+                record.varints = new VarintReader();
+            }
+            VarintReader varints = record.varints.reset(data, offset);
+            int endOffset = offset + payloadSize;
 
+            // Read header size varint
+            long headerSizeValue = varints.readVarint();
 
             if (headerSizeValue > payloadSize) {
                 throw new IllegalArgumentException("Header size " + headerSizeValue +
                         " exceeds payload size " + payloadSize);
             }
 
-            pos += headerSizeBytes;
+            if (headerSizeValue > available) {
+                throw new IllegalArgumentException("Header size " + headerSizeValue +
+                        " runs past the " + available + " bytes available");
+            }
 
             int headerSize = (int)headerSizeValue;
-            int headerEnd = startOffset + headerSize;
+            int headerEnd = offset + headerSize;
 
 
-            // Read all serial types
-            List<Long> serialTypes = new ArrayList<>();
+            // Read all serial types; values start right after the header
+            int valueOffset = headerEnd;
+            int column = 0;
 
-            while (pos < headerEnd) {
-                result = VarintDecoder.decodeVarint(data, pos);
-                long serialType = result[0];
+            while (varints.position() < headerEnd) {
+                long serialType = varints.readVarint();
 
-                serialTypes.add(serialType);
-                pos += (int)result[1];
+                if (column == record.offsets.length) {
+                    int capacity = Math.max(8, column * 2);
+                    record.serialTypes = Arrays.copyOf(record.serialTypes, capacity);
+                    record.offsets = Arrays.copyOf(record.offsets, capacity);
+                    record.values = null;
+                }
+                record.serialTypes[column] = serialType;
+                record.offsets[column++] = valueOffset;
+                valueOffset += ColumnType.sizeOf(serialType);
             }
 
-            // Now parse the actual values
-            List<Object> values = new ArrayList<>();
-            for (Long serialType : serialTypes) {
-                Object value = parseValue(serialType);
-                values.add(value);
+            if (valueOffset > endOffset) {
+                throw new IllegalArgumentException("Record values end at " + (valueOffset - offset) +
+                        ", past payload size " + payloadSize);
             }
 
-            int dataSize = pos - (startOffset + headerSize);
-            return new SQLiteRecord(serialTypes, values, headerSize, dataSize);
+            if (record.values != null) {
+                Arrays.fill(record.values, 0, column, NOT_DECODED);
+            }
+            record.columnCount = column;
+            record.headerSize = headerSize;
+            record.dataSize = valueOffset - headerEnd;
+        }
+
+        // Integer serial types 0-6, 8 and 9 (NULL reads as 0)
+        static long readInteger(MemorySegment data, int pos, long serialType) {
+            return switch ((int) serialType) {
+                case 1 -> readInt8(data, pos);
+                case 2 -> readInt16(data, pos);
+                case 3 -> readInt24(data, pos);
+                case 4 -> readInt32(data, pos);
+                case 5 -> readInt48(data, pos);
+                case 6 -> readInt64(data, pos);
+                case 9 -> 1L;
+                default -> 0L; // NULL and the constant 0
+            };
         }
 
-        private Object parseValue(long serialType) {
+        static Object decodeValue(MemorySegment data, int pos, long serialType) {
             if (serialType == 0) {
                 return null; // NULL
             } else if (serialType == 1) {
-                return readInt8();
+                return readInt8(data, pos);
             } else if (serialType == 2) {
-                return readInt16();
+                return readInt16(data, pos);
             } else if (serialType == 3) {
-                return readInt24();
+                return readInt24(data, pos);
             } else if (serialType == 4) {
-                return readInt32();
+                return readInt32(data, pos);
             } else if (serialType == 5) {
-                return readInt48();
+                return readInt48(data, pos);
             } else if (serialType == 6) {
-                return readInt64();
+                return readInt64(data, pos);
             } else if (serialType == 7) {
-                return readFloat64();
+                return readFloat64(data, pos);
             } else if (serialType == 8) {
                 return 0L; // Integer constant 0
             } else if (serialType == 9) {
@@ -208,25 +688,23 @@ public class SQLiteRecord {
             } else if (serialType >= 12 && serialType % 2 == 0) {
                 // BLOB
                 int length = (int)(serialType - 12) / 2;
-                return readBlob(length);
+                return readBlob(data, pos, length);
             } else if (serialType >= 13) {
                 // TEXT
                 int length = (int)(serialType - 13) / 2;
-                return readText(length);
+                return readText(data, pos, length);
             } else {
                 throw new IllegalArgumentException("Unknown serial type: " + serialType);
             }
         }
 
-        private long readInt8() {
-            byte value = data[pos++];
+        private static long readInt8(MemorySegment data, int pos) {
+            byte value = SegmentReader.readByte(data, pos);
             return value; // Sign extension is automatic
         }
 
-        private long readInt16() {
-            int value = ((data[pos] & 0xFF) << 8) |
-                    (data[pos + 1] & 0xFF);
-            pos += 2;
+        private static long readInt16(MemorySegment data, int pos) {
+            int value = SegmentReader.readUnsignedShort(data, pos);
             // Sign extend if negative
             if ((value & 0x8000) != 0) {
                 value |= 0xFFFF0000;
@@ -234,11 +712,9 @@ public class SQLiteRecord {
             return value;
         }
 
-        private long readInt24() {
-            int value = ((data[pos] & 0xFF) << 16) |
-                    ((data[pos + 1] & 0xFF) << 8) |
-                    (data[pos + 2] & 0xFF);
-            pos += 3;
+        private static long readInt24(MemorySegment data, int pos) {
+            int value = (SegmentReader.readUnsignedByte(data, pos) << 16) |
+                    SegmentReader.readUnsignedShort(data, pos + 1);
             // Sign extend if negative
             if ((value & 0x800000) != 0) {
                 value |= 0xFF000000;
@@ -246,20 +722,15 @@ public class SQLiteRecord {
             return value;
         }
 
-        private long readInt32() {
-            int value = ByteBuffer.wrap(data, pos, 4)
-                    .order(ByteOrder.BIG_ENDIAN)
-                    .getInt();
-            pos += 4;
-            return value;
+        private static long readInt32(MemorySegment data, int pos) {
+            return SegmentReader.readInt(data, pos);
         }
 
-        private long readInt48() {
+        private static long readInt48(MemorySegment data, int pos) {
             long value = 0;
             for (int i = 0; i < 6; i++) {
-                value = (value << 8) | (data[pos + i] & 0xFF);
+                value = (value << 8) | SegmentReader.readUnsignedByte(data, pos + i);
             }
-            pos += 6;
             // Sign extend if negative
             if ((value & 0x800000000000L) != 0) {
                 value |= 0xFFFF000000000000L;
@@ -267,33 +738,20 @@ public class SQLiteRecord {
             return value;
         }
 
-        private long readInt64() {
-            long value = ByteBuffer.wrap(data, pos, 8)
-                    .order(ByteOrder.BIG_ENDIAN)
-                    .getLong();
-            pos += 8;
-            return value;
+        private static long readInt64(MemorySegment data, int pos) {
+            return SegmentReader.readLong(data, pos);
         }
 
-        private double readFloat64() {
-            double value = ByteBuffer.wrap(data, pos, 8)
-                    .order(ByteOrder.BIG_ENDIAN)
-                    .getDouble();
-            pos += 8;
-            return value;
+        static double readFloat64(MemorySegment data, int pos) {
+            return SegmentReader.readDouble(data, pos);
         }
 
-        private byte[] readBlob(int length) {
-            byte[] blob = new byte[length];
-            System.arraycopy(data, pos, blob, 0, length);
-            pos += length;
-            return blob;
+        static byte[] readBlob(MemorySegment data, int pos, int length) {
+            return SegmentReader.readBytes(data, pos, length);
         }
 
-        private String readText(int length) {
-            String text = new String(data, pos, length, StandardCharsets.UTF_8);
-            pos += length;
-            return text;
+        static String readText(MemorySegment data, int pos, int length) {
+            return new String(SegmentReader.readBytes(data, pos, length), StandardCharsets.UTF_8);
         }
     }
 
@@ -330,6 +788,19 @@ public class SQLiteRecord {
             throw new IllegalArgumentException("Unknown serial type: " + serialType);
         }
 
+        /**
+         * Number of payload bytes taken by a value of the given serial type,
+         * without allocating a {@link ColumnType}.
+         */
+        public static int sizeOf(long serialType) {
+            if (serialType >= 12) {
+                return (int)((serialType - 12) / 2); // BLOB and TEXT share the formula
+            } else if (serialType < 0 || serialType == 10 || serialType == 11) {
+                throw new IllegalArgumentException("Unknown serial type: " + serialType);
+            }
+            return serialType == 7 ? 8 : getIntegerBytes(serialType);
+        }
+
         private static int getIntegerBytes(long serialType) {
             return switch ((int)serialType) {
                 case 1 -> 1;
@@ -1,19 +1,31 @@
 package dataTypes;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class TableInfo {
     private final String name;
     private final List<SQLiteRecord> records = new ArrayList<>();
+    private final List<IndexInfo> indexes = new ArrayList<>();
+    private RowSource rowSource;
     private int rootPage = -1;
     private String sql;
     private List<String> columnNames = new ArrayList<>();
     private List<String> columnTypes = new ArrayList<>();
+    private ColumnDefinitions definitions; // parsed on first use, see getDeclaredType
     private Map<String, Integer> columnIndexMap = new HashMap<>();
     private boolean isPrimaryKeyAutoIncrement = false;
+    private int primaryKeyColumn = -1;
+    private boolean primaryKeyIsRowid = false;
+
+    // Counts of a table stored in the file, -1 until known
+    private long rowCount = -1;
+    private long pageCount = -1;
+    private boolean countsChanged;
 
     public TableInfo(String name) {
         this.name = name;
@@ -21,13 +33,12 @@ public class TableInfo {
 
     public void addRecord(SQLiteRecord record) {
         record.setTableName(this.name);
+        record.setRowidColumn(getRowidColumn());
         records.add(record);
     }
 
     // Getters and setters
     public String getName() { return name; }
-    public List<SQLiteRecord> getRecords() { return new ArrayList<>(records); }
-    public int getRecordCount() { return records.size(); }
     public int getRootPage() { return rootPage; }
     public void setRootPage(int rootPage) { this.rootPage = rootPage; }
     public String getSql() { return sql; }
@@ -37,6 +48,147 @@ public class TableInfo {
         parseColumnNames();
     }
 
+    /**
+     * Set the SQL together with the column layout parsed from it earlier,
+     * instead of parsing it again.
+     */
+    public void restoreLayout(String sql, List<String> columnNames, List<String> columnTypes,
+                              int primaryKeyColumn, boolean primaryKeyIsRowid, boolean autoIncrement) {
+        this.sql = sql;
+        this.columnNames = new ArrayList<>(columnNames);
+        this.columnTypes = new ArrayList<>(columnTypes);
+        this.definitions = null;
+        this.columnIndexMap = new HashMap<>();
+        for (int i = 0; i < columnNames.size(); i++) {
+            columnIndexMap.put(columnNames.get(i).toLowerCase(), i);
+        }
+        this.primaryKeyColumn = primaryKeyColumn;
+        this.primaryKeyIsRowid = primaryKeyIsRowid;
+        this.isPrimaryKeyAutoIncrement = autoIncrement;
+    }
+
+    public boolean isPrimaryKeyAutoIncrement() { return isPrimaryKeyAutoIncrement; }
+
+    /**
+     * Back this table by a row source. Queries then stream rows from the
+     * source instead of reading records added with {@link #addRecord}.
+     */
+    public void setRowSource(RowSource rowSource) { this.rowSource = rowSource; }
+    public boolean isStreaming() { return rowSource != null; }
+
+    public void addIndex(IndexInfo index) { indexes.add(index); }
+    public List<IndexInfo> getIndexes() { return Collections.unmodifiableList(indexes); }
+
+    /**
+     * @return an index that can answer lookups on the column, or null
+     */
+    public IndexInfo findIndexOn(String columnName) {
+        if (rowSource == null) {
+            return null; // in-memory tables are always scanned
+        }
+        for (IndexInfo index : indexes) {
+            if (index.hasLeadingColumn(columnName) && hasBinaryOrder(index)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Open a cursor over the rows of this table.
+     */
+    public RowCursor openCursor() throws IOException {
+        return rowSource != null ? rowSource.openCursor() : new ListRowCursor(records);
+    }
+
+    /**
+     * Open a cursor over the rows that pass a filter. Tables stored in the
+     * database file test the filter on the raw cells, so rows that fail it
+     * are never decoded.
+     */
+    public RowCursor openCursor(RowFilter filter) throws IOException {
+        RowSource source = rowSource != null ? rowSource : () -> new ListRowCursor(records);
+        return source.openCursor(filter);
+    }
+
+    // Materializes every row; prefer openCursor() for large tables
+    public List<SQLiteRecord> getRecords() {
+        if (rowSource == null) {
+            return new ArrayList<>(records);
+        }
+        List<SQLiteRecord> result = new ArrayList<>();
+        scan(cursor -> {
+            result.add(cursor.record());
+            return true;
+        });
+        return result;
+    }
+
+    public int getRecordCount() {
+        return (int) Math.min(Integer.MAX_VALUE, countRows());
+    }
+
+    /**
+     * Count the rows of the table. A table stored in the database file is
+     * counted from its B-tree's leaf page headers, without decoding a row,
+     * and the count is kept after the first call.
+     */
+    public long countRows() {
+        if (rowSource == null) {
+            return records.size();
+        }
+        if (rowCount < 0) {
+            try {
+                rowCount = rowSource.countRows();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to count rows of table " + name, e);
+            }
+            countsChanged = true;
+        }
+        return rowCount;
+    }
+
+    /**
+     * Count the interior and leaf pages of the table's B-tree, 0 for a table
+     * held in memory. Kept after the first call, like {@link #countRows()}.
+     */
+    public long countPages() {
+        if (rowSource == null) {
+            return 0;
+        }
+        if (pageCount < 0) {
+            try {
+                pageCount = rowSource.countPages();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to count pages of table " + name, e);
+            }
+            countsChanged = true;
+        }
+        return pageCount;
+    }
+
+    /**
+     * Seed the counts, e.g. from a cache, so they are not counted again.
+     *
+     * @param rows  row count, or -1 if unknown
+     * @param pages page count, or -1 if unknown
+     */
+    public void setCounts(long rows, long pages) {
+        rowCount = rows;
+        pageCount = pages;
+        countsChanged = false;
+    }
+
+    // Counts known so far without counting, -1 if not
+    public long getKnownRowCount() { return rowCount; }
+    public long getKnownPageCount() { return pageCount; }
+
+    /**
+     * @return whether a count was taken since the table was loaded or
+     *         {@link #setCounts} was last called
+     */
+    public boolean hasNewCounts() { return countsChanged; }
+
     // Get column names
     public List<String> getColumnNames() {
         return new ArrayList<>(columnNames);
@@ -47,11 +199,59 @@ public class TableInfo {
         return new ArrayList<>(columnTypes);
     }
 
+    /**
+     * The type a column was declared with, without its constraints, or ""
+     * for a column declared without one. Column affinity follows from this;
+     * {@link #getColumnTypes()} keeps only the first word and reports an
+     * untyped column as TEXT.
+     */
+    public String getDeclaredType(int column) {
+        List<String> types = definitions().types();
+        return column < types.size() ? types.get(column) : "";
+    }
+
+    /**
+     * The collation a column declares with COLLATE, upper case, or BINARY
+     * for a column that declares none. Its indexes inherit it.
+     */
+    public String getCollation(int column) {
+        List<String> collations = definitions().collations();
+        return column < collations.size() ? collations.get(column) : IndexInfo.BINARY;
+    }
+
+    /**
+     * @return whether the index's keys are in BINARY order, the order
+     *         {@code ValueComparator} seeks in: no key column declares
+     *         another collation, which the index would inherit
+     */
+    public boolean hasBinaryOrder(IndexInfo index) {
+        for (String column : index.getColumnNames()) {
+            int i = getColumnIndex(column);
+            if (i < 0 || !getCollation(i).equals(IndexInfo.BINARY)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // Get column count
     public int getColumnCount() {
         return columnNames.size();
     }
 
+    // Index of the single-column primary key, or -1
+    public int getPrimaryKeyColumn() {
+        return primaryKeyColumn;
+    }
+
+    /**
+     * @return index of the INTEGER PRIMARY KEY column, which SQLite stores
+     * as the rowid rather than in the record, or -1 if there is none
+     */
+    public int getRowidColumn() {
+        return primaryKeyIsRowid ? primaryKeyColumn : -1;
+    }
+
     // Get column index by name
     public int getColumnIndex(String columnName) {
         Integer index = columnIndexMap.get(columnName.toLowerCase());
@@ -65,50 +265,139 @@ public class TableInfo {
             return Collections.emptyList();
         }
 
-        return records.stream()
-                .map(record -> record.getValue(index))
-                .collect(Collectors.toList());
+        List<Object> values = new ArrayList<>();
+        int[] projection = {index};
+        Object[] value = new Object[1];
+        scan(cursor -> {
+            cursor.readColumns(projection, value);
+            values.add(value[0]);
+            return true;
+        });
+        return values;
     }
 
     // Get records where column matches value
     public List<SQLiteRecord> getRecordsWhere(String columnName, Object value) {
+        return getRecordsWhere(columnName, value, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get at most {@code limit} records where the column matches the value.
+     * The scan stops at the limit, so a common value costs no more than the
+     * rows returned.
+     */
+    public List<SQLiteRecord> getRecordsWhere(String columnName, Object value, int limit) {
         int index = getColumnIndex(columnName);
         if (index == -1) {
             return Collections.emptyList();
         }
 
-        return records.stream()
-                .filter(record -> {
-                    Object recordValue = record.getValue(index);
-                    if (value == null) {
-                        return recordValue == null;
-                    }
-                    return value.equals(recordValue);
-                })
-                .collect(Collectors.toList());
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        if (index == getRowidColumn() && isIntegral(value)) {
+            SQLiteRecord record = getRecordByRowid(((Number) value).longValue());
+            return record != null ? List.of(record) : Collections.emptyList();
+        }
+
+        List<SQLiteRecord> result = new ArrayList<>();
+        IndexInfo keyIndex = findIndexOn(columnName);
+        if (keyIndex != null && value != null) {
+            // Point lookup; rows are still checked, comparing by value
+            // as the scan's filter does, so 3 matches 3L and 2.0
+            Object[] key = {value};
+            scanIndex(keyIndex, key, true, key, true, cursor -> {
+                if (ValueComparator.compareValues(cursor.column(index), value) == 0) {
+                    result.add(cursor.record());
+                }
+                return result.size() < limit;
+            });
+            return result;
+        }
+
+        scan(new RowFilter().where(index, equalityOp(value), value), cursor -> {
+            result.add(cursor.record());
+            return result.size() < limit;
+        });
+        return result;
     }
 
-    // Get records matching multiple column conditions
+    /**
+     * Get records matching multiple column conditions. Columns are resolved
+     * once and the conditions pushed into the scan, which compares them
+     * with the stored bytes before a record is built. Numbers compare by
+     * value, so 5 matches both INTEGER 5 and REAL 5.0.
+     */
     public List<SQLiteRecord> getRecordsWhere(Map<String, Object> conditions) {
-        return records.stream()
-                .filter(record -> {
-                    for (Map.Entry<String, Object> entry : conditions.entrySet()) {
-                        int index = getColumnIndex(entry.getKey());
-                        if (index == -1) {
-                            return false;
-                        }
-                        Object recordValue = record.getValue(index);
-                        Object expectedValue = entry.getValue();
-
-                        if (expectedValue == null) {
-                            if (recordValue != null) return false;
-                        } else {
-                            if (!expectedValue.equals(recordValue)) return false;
-                        }
-                    }
-                    return true;
-                })
-                .collect(Collectors.toList());
+        RowFilter filter = new RowFilter();
+        for (Map.Entry<String, Object> entry : conditions.entrySet()) {
+            int index = getColumnIndex(entry.getKey());
+            if (index == -1) {
+                return Collections.emptyList();
+            }
+            filter.where(index, equalityOp(entry.getValue()), entry.getValue());
+        }
+
+        List<SQLiteRecord> result = new ArrayList<>();
+        scan(filter, cursor -> {
+            result.add(cursor.record());
+            return true;
+        });
+        return result;
+    }
+
+    // A null value asks for NULLs
+    private static RowFilter.Op equalityOp(Object value) {
+        return value == null ? RowFilter.Op.IS_NULL : RowFilter.Op.EQ;
+    }
+
+    /**
+     * Get records whose column value lies between two bounds, using an index
+     * on the column when there is one. A null bound leaves that side open;
+     * values are compared with SQLite's ordering (NULL &lt; numbers &lt; TEXT
+     * &lt; BLOB) and NULL values never match.
+     */
+    public List<SQLiteRecord> getRecordsInRange(String columnName,
+                                                Object lower, boolean lowerInclusive,
+                                                Object upper, boolean upperInclusive) {
+        int index = getColumnIndex(columnName);
+        if (index == -1) {
+            return Collections.emptyList();
+        }
+
+        Predicate<Object> inRange = v -> {
+            if (v == null) return false;
+            if (lower != null) {
+                int c = ValueComparator.compareValues(v, lower);
+                if (c < 0 || (c == 0 && !lowerInclusive)) return false;
+            }
+            if (upper != null) {
+                int c = ValueComparator.compareValues(v, upper);
+                if (c > 0 || (c == 0 && !upperInclusive)) return false;
+            }
+            return true;
+        };
+
+        List<SQLiteRecord> result = new ArrayList<>();
+        Predicate<RowCursor> collect = cursor -> {
+            if (inRange.test(cursor.column(index))) {
+                result.add(cursor.record());
+            }
+            return true;
+        };
+
+        IndexInfo keyIndex = findIndexOn(columnName);
+        if (keyIndex != null && !keyIndex.isDescending(0)) {
+            // NULLs sort first in an index, so an open lower bound
+            // starts just after them
+            scanIndex(keyIndex,
+                    new Object[]{lower}, lower != null && lowerInclusive,
+                    upper != null ? new Object[]{upper} : null, upperInclusive,
+                    collect);
+        } else {
+            scan(collect);
+        }
+        return result;
     }
 
     // Get distinct values for a column
@@ -118,54 +407,154 @@ public class TableInfo {
             return Collections.emptySet();
         }
 
-        return records.stream()
-                .map(record -> record.getValue(index))
-                .collect(Collectors.toSet());
+        Set<Object> values = new HashSet<>();
+        int[] projection = {index};
+        Object[] value = new Object[1];
+        scan(cursor -> {
+            cursor.readColumns(projection, value);
+            values.add(value[0]);
+            return true;
+        });
+        return values;
     }
 
-    // Get record by primary key (assumes first column is primary key)
+    /**
+     * Get record by primary key. An INTEGER PRIMARY KEY is looked up as the
+     * rowid; any other single-column key goes through getRecordsWhere. Tables
+     * without a declared key fall back to matching the first column.
+     */
     public SQLiteRecord getRecordByPrimaryKey(Object primaryKey) {
         if (columnNames.isEmpty()) {
             return null;
         }
 
-        return records.stream()
-                .filter(record -> primaryKey.equals(record.getValue(0)))
-                .findFirst()
-                .orElse(null);
+        if (primaryKeyColumn >= 0) {
+            List<SQLiteRecord> matches = getRecordsWhere(columnNames.get(primaryKeyColumn), primaryKey);
+            return matches.isEmpty() ? null : matches.get(0);
+        }
+
+        SQLiteRecord[] found = {null};
+        scan(cursor -> {
+            if (primaryKey.equals(cursor.column(0))) {
+                found[0] = cursor.record();
+                return false;
+            }
+            return true;
+        });
+        return found[0];
+    }
+
+    // Get record by rowid, seeking the table B-tree when possible
+    public SQLiteRecord getRecordByRowid(long rowid) {
+        List<SQLiteRecord> records = getRecordsByRowids(rowid);
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    /**
+     * Get records for several rowids at once, in ascending rowid order.
+     * The rowids are sorted first so that lookups sharing interior pages
+     * read them only once.
+     */
+    public List<SQLiteRecord> getRecordsByRowids(long... rowids) {
+        List<SQLiteRecord> result = new ArrayList<>();
+        if (rowSource == null) {
+            Set<Long> wanted = new HashSet<>();
+            for (long rowid : rowids) {
+                wanted.add(rowid);
+            }
+            scan(cursor -> {
+                if (wanted.contains(cursor.rowid())) {
+                    result.add(cursor.record());
+                }
+                return true;
+            });
+            result.sort(Comparator.comparingLong(SQLiteRecord::getRowId));
+            return result;
+        }
+
+        try (RowCursor cursor = rowSource.openRowidCursor(rowids)) {
+            visit(cursor, c -> result.add(c.record()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to look up rows in table " + name, e);
+        }
+        return result;
     }
 
-    // Sort records by column
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte;
+    }
+
+    // Sort records by column. The sort spills to disk; the list is what holds every row
     public List<SQLiteRecord> getRecordsSortedBy(String columnName, boolean ascending) {
         int index = getColumnIndex(columnName);
         if (index == -1) {
-            return new ArrayList<>(records);
+            return getRecords();
         }
+        List<SQLiteRecord> result = new ArrayList<>();
+        try (RowCursor cursor = openSortedCursor(index, ascending)) {
+            while (cursor.next()) {
+                result.add(cursor.record());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sort table " + name, e);
+        }
+        return result;
+    }
 
-        Comparator<SQLiteRecord> comparator = (r1, r2) -> {
-            Object v1 = r1.getValue(index);
-            Object v2 = r2.getValue(index);
-
-            if (v1 == null && v2 == null) return 0;
-            if (v1 == null) return ascending ? -1 : 1;
-            if (v2 == null) return ascending ? 1 : -1;
-
-            if (v1 instanceof Comparable && v2 instanceof Comparable) {
-                @SuppressWarnings("unchecked")
-                Comparable<Object> c1 = (Comparable<Object>) v1;
-                return c1.compareTo(v2);
+    /**
+     * Open a cursor over the rows in order of one column, in SQLite's
+     * order for mixed types with NULLs first. Rows with equal values keep
+     * their rowid order. The rows are sorted by an {@link ExternalSorter},
+     * so a table of any size sorts in the sorter's memory budget.
+     */
+    public RowCursor openSortedCursor(int column, boolean ascending) throws IOException {
+        ExternalSorter sorter = new ExternalSorter(new int[] {column}, new boolean[] {!ascending}, getRowidColumn());
+        try (RowCursor cursor = openCursor()) {
+            while (cursor.next()) {
+                sorter.add(cursor.rowid(), cursor.currentRecord());
             }
+            return sorter.sort();
+        } catch (IOException | RuntimeException e) {
+            sorter.close();
+            throw e;
+        }
+    }
 
-            return v1.toString().compareTo(v2.toString());
-        };
+    // Visit rows until the visitor returns false
+    private void scan(Predicate<RowCursor> visitor) {
+        try (RowCursor cursor = openCursor()) {
+            visit(cursor, visitor);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan table " + name, e);
+        }
+    }
 
-        if (!ascending) {
-            comparator = comparator.reversed();
+    // Visit the rows that pass a filter until the visitor returns false
+    private void scan(RowFilter filter, Predicate<RowCursor> visitor) {
+        try (RowCursor cursor = openCursor(filter)) {
+            visit(cursor, visitor);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan table " + name, e);
         }
+    }
 
-        return records.stream()
-                .sorted(comparator)
-                .collect(Collectors.toList());
+    // Visit rows found through an index until the visitor returns false
+    private void scanIndex(IndexInfo index, Object[] lower, boolean lowerInclusive,
+                           Object[] upper, boolean upperInclusive, Predicate<RowCursor> visitor) {
+        try (RowCursor cursor = rowSource.openIndexCursor(index, lower, lowerInclusive, upper, upperInclusive)) {
+            visit(cursor, visitor);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to search index " + index.getName(), e);
+        }
+    }
+
+    private static void visit(RowCursor cursor, Predicate<RowCursor> visitor) throws IOException {
+        while (cursor.next()) {
+            if (!visitor.test(cursor)) {
+                break;
+            }
+        }
     }
 
     // Parse column names and types from CREATE TABLE SQL
@@ -176,7 +565,11 @@ public class TableInfo {
 
         columnNames.clear();
         columnTypes.clear();
+        definitions = null;
         columnIndexMap.clear();
+        primaryKeyColumn = -1;
+        primaryKeyIsRowid = false;
+        List<String> tablePrimaryKey = null;
 
         // Remove CREATE TABLE and get the column definitions
         String upperSql = sql.toUpperCase();
@@ -199,7 +592,11 @@ public class TableInfo {
             // Skip constraints like PRIMARY KEY, FOREIGN KEY, CHECK, etc.
             String upperDef = columnDef.toUpperCase();
             if (upperDef.startsWith("PRIMARY KEY") ||
-                    upperDef.startsWith("FOREIGN KEY") ||
+                    (upperDef.startsWith("CONSTRAINT") && upperDef.contains("PRIMARY KEY"))) {
+                tablePrimaryKey = parseKeyColumns(columnDef);
+                continue;
+            }
+            if (upperDef.startsWith("FOREIGN KEY") ||
                     upperDef.startsWith("UNIQUE") ||
                     upperDef.startsWith("CHECK") ||
                     upperDef.startsWith("CONSTRAINT")) {
@@ -225,14 +622,94 @@ public class TableInfo {
                     columnTypes.add(type);
 
                     // Check for AUTOINCREMENT
-                    if (typeDef.toUpperCase().contains("AUTOINCREMENT")) {
+                    String upperTypeDef = typeDef.toUpperCase();
+                    if (upperTypeDef.contains("AUTOINCREMENT")) {
                         isPrimaryKeyAutoIncrement = true;
                     }
+
+                    // Column-level primary key
+                    if (upperTypeDef.contains("PRIMARY KEY")) {
+                        primaryKeyColumn = index - 1;
+                        primaryKeyIsRowid = type.equals("INTEGER") && !upperTypeDef.contains("PRIMARY KEY DESC");
+                    }
                 } else {
                     columnTypes.add("TEXT"); // Default type
                 }
             }
         }
+
+        // Table-level "PRIMARY KEY (column)"; an INTEGER column still aliases the rowid
+        if (tablePrimaryKey != null && tablePrimaryKey.size() == 1) {
+            Integer keyIndex = columnIndexMap.get(tablePrimaryKey.get(0).toLowerCase());
+            if (keyIndex != null) {
+                primaryKeyColumn = keyIndex;
+                primaryKeyIsRowid = columnTypes.get(keyIndex).equals("INTEGER");
+            }
+        }
+
+        // WITHOUT ROWID tables have no rowid to alias
+        if (upperSql.substring(endIndex).contains("WITHOUT ROWID")) {
+            primaryKeyIsRowid = false;
+        }
+    }
+
+    // Declared type and collation of each column: the type is the words after its name up to the first constraint
+    private static final Pattern DECLARED_TYPE = Pattern.compile(
+            "(?is)\\s*(.*?)\\s*(\\b(CONSTRAINT|PRIMARY|NOT|NULL|UNIQUE|CHECK|DEFAULT|COLLATE|REFERENCES|GENERATED|AS)\\b.*)?");
+
+    private record ColumnDefinitions(List<String> types, List<String> collations) {
+    }
+
+    private ColumnDefinitions definitions() {
+        ColumnDefinitions parsed = definitions;
+        if (parsed == null) {
+            parsed = parseDefinitions();
+            definitions = parsed;
+        }
+        return parsed;
+    }
+
+    private ColumnDefinitions parseDefinitions() {
+        List<String> types = new ArrayList<>();
+        List<String> collations = new ArrayList<>();
+        int startIndex = sql == null ? -1 : sql.indexOf('(');
+        int endIndex = sql == null ? -1 : sql.lastIndexOf(')');
+        if (startIndex == -1 || endIndex <= startIndex) {
+            return new ColumnDefinitions(List.of(), List.of());
+        }
+        for (String columnDef : splitColumnDefinitions(sql.substring(startIndex + 1, endIndex))) {
+            String upperDef = columnDef.trim().toUpperCase();
+            if (upperDef.startsWith("PRIMARY KEY") || upperDef.startsWith("FOREIGN KEY") ||
+                    upperDef.startsWith("UNIQUE") || upperDef.startsWith("CHECK") ||
+                    upperDef.startsWith("CONSTRAINT")) {
+                continue;
+            }
+            String[] parts = columnDef.trim().split("\\s+", 2);
+            Matcher matcher = DECLARED_TYPE.matcher(parts.length > 1 ? parts[1] : "");
+            types.add(matcher.matches() ? matcher.group(1) : "");
+            collations.add(IndexInfo.collation(parts.length > 1 ? parts[1] : ""));
+        }
+        return new ColumnDefinitions(List.copyOf(types), List.copyOf(collations));
+    }
+
+    // Column names listed in a "PRIMARY KEY (a, b)" table constraint
+    private List<String> parseKeyColumns(String constraint) {
+        List<String> keyColumns = new ArrayList<>();
+        int start = constraint.indexOf('(');
+        int end = constraint.lastIndexOf(')');
+        if (start == -1 || end <= start) {
+            return keyColumns;
+        }
+        for (String part : constraint.substring(start + 1, end).split(",")) {
+            String[] words = part.trim().split("\\s+");
+            keyColumns.add(words[0]
+                    .replace("\"", "")
+                    .replace("'", "")
+                    .replace("`", "")
+                    .replace("[", "")
+                    .replace("]", ""));
+        }
+        return keyColumns;
     }
 
     private List<String> splitColumnDefinitions(String columnDefs) {
@@ -362,12 +839,43 @@ public class TableInfo {
         }
     }
 
+    // Cursor over records held in memory
+    private static class ListRowCursor implements RowCursor {
+        private final Iterator<SQLiteRecord> iterator;
+        private SQLiteRecord current;
+
+        ListRowCursor(List<SQLiteRecord> records) {
+            this.iterator = records.iterator();
+        }
+
+        @Override
+        public boolean next() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+
+        @Override
+        public long rowid() { return current.getRowId(); }
+
+        @Override
+        public int columnCount() { return current.getColumnCount(); }
+
+        @Override
+        public Object column(int index) { return current.getValue(index); }
+
+        @Override
+        public SQLiteRecord record() { return current; }
+
+        @Override
+        public void close() { }
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Table: ").append(name).append("\n");
         sb.append("  Root Page: ").append(rootPage).append("\n");
-        sb.append("  Record Count: ").append(records.size()).append("\n");
+        sb.append("  Record Count: ").append(getRecordCount()).append("\n");
         sb.append("  Columns: ").append(columnNames).append("\n");
         if (sql != null) {
             sb.append("  SQL: ").append(sql.replaceAll("\n", "\n       "));
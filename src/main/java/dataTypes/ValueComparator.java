@@ -0,0 +1,67 @@
+package dataTypes;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Orders decoded values the way SQLite orders keys: NULL first, then
+ * numbers (INTEGER and REAL compared by value), then TEXT, then BLOB.
+ * TEXT uses the BINARY collation, which is code point order, and BLOBs
+ * compare as unsigned bytes.
+ */
+public class ValueComparator implements Comparator<Object> {
+
+    public static final ValueComparator INSTANCE = new ValueComparator();
+
+    @Override
+    public int compare(Object a, Object b) {
+        return compareValues(a, b);
+    }
+
+    public static int compareValues(Object a, Object b) {
+        int classA = typeClass(a);
+        int classB = typeClass(b);
+        if (classA != classB) {
+            return Integer.compare(classA, classB);
+        }
+
+        return switch (classA) {
+            case 0 -> 0;
+            case 1 -> compareNumbers((Number) a, (Number) b);
+            case 2 -> compareText(a.toString(), b.toString());
+            default -> Arrays.compareUnsigned((byte[]) a, (byte[]) b);
+        };
+    }
+
+    private static int typeClass(Object value) {
+        if (value == null) return 0;
+        if (value instanceof Number) return 1;
+        if (value instanceof byte[]) return 3;
+        return 2;
+    }
+
+    private static int compareNumbers(Number a, Number b) {
+        boolean integralA = a instanceof Long || a instanceof Integer || a instanceof Short || a instanceof Byte;
+        boolean integralB = b instanceof Long || b instanceof Integer || b instanceof Short || b instanceof Byte;
+        if (integralA && integralB) {
+            return Long.compare(a.longValue(), b.longValue());
+        }
+        return Double.compare(a.doubleValue(), b.doubleValue());
+    }
+
+    // Code point order matches the byte order of the UTF-8 encoding
+    private static int compareText(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int cpA = a.codePointAt(i);
+            int cpB = b.codePointAt(j);
+            if (cpA != cpB) {
+                return Integer.compare(cpA, cpB);
+            }
+            i += Character.charCount(cpA);
+            j += Character.charCount(cpB);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+}
@@ -0,0 +1,39 @@
+package export;
+
+import java.util.Locale;
+
+/**
+ * Text formats a table can be exported to.
+ */
+public enum ExportFormat {
+    /**
+     * RFC 4180 CSV with a header row and CRLF line ends. NULL is an empty
+     * field and a BLOB is written as an SQL literal, {@code X'0A1B'}.
+     */
+    CSV,
+    /**
+     * One JSON object per line, keyed by column name. A BLOB is written as
+     * a base64 string.
+     */
+    JSONL;
+
+    /**
+     * @return the format named {@code csv} or {@code jsonl}, ignoring case
+     * @throws IllegalArgumentException for any other name
+     */
+    public static ExportFormat parse(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "csv" -> CSV;
+            case "jsonl", "ndjson" -> JSONL;
+            default -> throw new IllegalArgumentException("Unknown export format: " + name + " (use csv or jsonl)");
+        };
+    }
+
+    /**
+     * @return the format a file name's extension suggests, CSV by default
+     */
+    public static ExportFormat forFile(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jsonl") || lower.endsWith(".ndjson") || lower.endsWith(".json") ? JSONL : CSV;
+    }
+}
@@ -0,0 +1,244 @@
+package export;
+
+import dataTypes.SQLiteRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Encodes rows as CSV or JSON Lines into a growing byte array.
+ * <p>
+ * Values are read with the record's typed accessors and written as bytes:
+ * integers digit by digit, TEXT by copying its UTF-8 bytes and escaping
+ * them in place, so no value object is built for a row. Reals are written
+ * in the shortest form that reads back as the same double.
+ */
+final class RowEncoder {
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INFINITY = "9.0e999".getBytes(StandardCharsets.US_ASCII); // as SQLite's json() writes it
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private final ExportFormat format;
+    private final byte[][] keys; // JSON: {"name": before each column
+    private byte[] bytes;
+    private int size;
+    private byte[] value = new byte[256];
+
+    RowEncoder(ExportFormat format, List<String> columnNames, int capacity) {
+        this.format = format;
+        this.bytes = new byte[Math.max(capacity, 64)];
+        this.keys = new byte[columnNames.size()][];
+        if (format == ExportFormat.JSONL) {
+            for (int c = 0; c < keys.length; c++) {
+                byte[] name = columnNames.get(c).getBytes(StandardCharsets.UTF_8);
+                int start = size;
+                append((byte) (c == 0 ? '{' : ','));
+                appendJsonString(name, name.length);
+                append((byte) ':');
+                keys[c] = Arrays.copyOfRange(bytes, start, size);
+                size = start;
+            }
+        }
+    }
+
+    byte[] bytes() { return bytes; }
+    int size() { return size; }
+
+    /** Write the CSV header row of column names. */
+    void header(List<String> columnNames) {
+        for (int c = 0; c < columnNames.size(); c++) {
+            if (c > 0) {
+                append((byte) ',');
+            }
+            byte[] name = columnNames.get(c).getBytes(StandardCharsets.UTF_8);
+            appendCsvText(name, name.length);
+        }
+        append((byte) '\r');
+        append((byte) '\n');
+    }
+
+    /**
+     * Write one row. Columns past the end of a short row are NULL.
+     */
+    void row(SQLiteRecord record) {
+        for (int c = 0; c < keys.length; c++) {
+            if (format == ExportFormat.JSONL) {
+                append(keys[c]);
+            } else if (c > 0) {
+                append((byte) ',');
+            }
+            value(record, c);
+        }
+        if (format == ExportFormat.JSONL) {
+            if (keys.length == 0) {
+                append((byte) '{');
+            }
+            append((byte) '}');
+            append((byte) '\n');
+        } else {
+            append((byte) '\r');
+            append((byte) '\n');
+        }
+    }
+
+    private void value(SQLiteRecord record, int column) {
+        if (column >= record.getColumnCount() || record.isNull(column)) {
+            if (format == ExportFormat.JSONL) {
+                append(NULL);
+            }
+            return;
+        }
+        long serialType = record.getSerialType(column);
+        if (serialType == 7) {
+            appendReal(record.getDouble(column));
+        } else if (serialType >= 12) {
+            int length = record.getValueLength(column);
+            if (length > value.length) {
+                value = new byte[Math.max(length, 2 * value.length)];
+            }
+            record.copyValueBytes(column, value, 0);
+            boolean text = serialType % 2 == 1;
+            if (format == ExportFormat.JSONL) {
+                if (text) {
+                    appendJsonString(value, length);
+                } else {
+                    append((byte) '"');
+                    append(Base64.getEncoder().encode(Arrays.copyOf(value, length)));
+                    append((byte) '"');
+                }
+            } else if (text) {
+                appendCsvText(value, length);
+            } else {
+                appendBlobLiteral(value, length);
+            }
+        } else {
+            appendLong(record.getLong(column)); // includes an INTEGER PRIMARY KEY read from the rowid
+        }
+    }
+
+    private void appendReal(double real) {
+        if (Double.isInfinite(real)) {
+            if (real < 0) {
+                append((byte) '-');
+            }
+            append(INFINITY);
+            return;
+        }
+        append(Double.toString(real).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void appendLong(long number) {
+        if (number == Long.MIN_VALUE) {
+            append(Long.toString(number).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        ensure(20);
+        if (number < 0) {
+            bytes[size++] = '-';
+            number = -number;
+        }
+        int digits = 1;
+        for (long rest = number; rest >= 10; rest /= 10) {
+            digits++;
+        }
+        for (int i = size + digits - 1; i >= size; i--) {
+            bytes[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        size += digits;
+    }
+
+    // Quoted, with quotes doubled, when the text holds a comma, quote or line break, or is empty
+    private void appendCsvText(byte[] text, int length) {
+        boolean quote = length == 0;
+        for (int i = 0; i < length && !quote; i++) {
+            byte b = text[i];
+            quote = b == ',' || b == '"' || b == '\r' || b == '\n';
+        }
+        if (!quote) {
+            append(text, length);
+            return;
+        }
+        ensure(length * 2 + 2);
+        bytes[size++] = '"';
+        for (int i = 0; i < length; i++) {
+            if (text[i] == '"') {
+                bytes[size++] = '"';
+            }
+            bytes[size++] = text[i];
+        }
+        bytes[size++] = '"';
+    }
+
+    private void appendBlobLiteral(byte[] blob, int length) {
+        ensure(length * 2 + 3);
+        bytes[size++] = 'X';
+        bytes[size++] = '\'';
+        for (int i = 0; i < length; i++) {
+            bytes[size++] = HEX[(blob[i] >> 4) & 0xF];
+            bytes[size++] = HEX[blob[i] & 0xF];
+        }
+        bytes[size++] = '\'';
+    }
+
+    // UTF-8 passes through; quotes, backslashes and control characters are escaped
+    private void appendJsonString(byte[] text, int length) {
+        ensure(length + 2);
+        bytes[size++] = '"';
+        for (int i = 0; i < length; i++) {
+            byte b = text[i];
+            if (b == '"' || b == '\\') {
+                ensure(2 + length - i);
+                bytes[size++] = '\\';
+                bytes[size++] = b;
+            } else if (b >= 0 && b < 0x20) {
+                ensure(6 + length - i);
+                bytes[size++] = '\\';
+                switch (b) {
+                    case '\n' -> bytes[size++] = 'n';
+                    case '\r' -> bytes[size++] = 'r';
+                    case '\t' -> bytes[size++] = 't';
+                    default -> {
+                        bytes[size++] = 'u';
+                        bytes[size++] = '0';
+                        bytes[size++] = '0';
+                        bytes[size++] = HEX[b >> 4];
+                        bytes[size++] = HEX[b & 0xF];
+                    }
+                }
+            } else {
+                bytes[size++] = b;
+            }
+        }
+        ensure(1);
+        bytes[size++] = '"';
+    }
+
+    private void append(byte b) {
+        ensure(1);
+        bytes[size++] = b;
+    }
+
+    private void append(byte[] data) {
+        append(data, data.length);
+    }
+
+    private void append(byte[] data, int length) {
+        ensure(length);
+        System.arraycopy(data, 0, bytes, size, length);
+        size += length;
+    }
+
+    private void ensure(int more) {
+        if (size + more > bytes.length) {
+            long needed = (long) size + more;
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Export chunk larger than 2 GiB");
+            }
+            bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, 2L * bytes.length)));
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package export;
+
+import btree.BTreePage;
+import btree.TableCursor;
+import dataTypes.TableInfo;
+import helpers.VarintReader;
+import pager.Pager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Exports a table stored in the database file to CSV or JSON Lines.
+ * <p>
+ * The calling thread walks only the interior pages of the table B-tree and
+ * cuts the rows into chunks of {@link #LEAVES_PER_CHUNK} leaf pages, each
+ * given by the rowid range its leaves cover. Every chunk is encoded by a
+ * fork-join task with its own cursor, seeked to the start of the range.
+ * The calling thread writes the encoded chunks in rowid order through one
+ * large buffer onto a file channel. At most {@code 2 * parallelism} chunks
+ * are in flight: once that many are waiting, the oldest is written before
+ * another is started, so memory use does not grow with the table.
+ */
+public class TableExporter {
+
+    // About 64 KB of rows per task with 4 KB pages
+    private static final int LEAVES_PER_CHUNK = 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    // SQLite trees are never this deep; a deeper path means a page cycle
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * What an export wrote and how long it took.
+     */
+    public record Summary(String table, ExportFormat format, long rows, long bytes, long nanos) {
+
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes * 1e9 / nanos / (1024 * 1024);
+        }
+    }
+
+    // Encoded rows of one rowid range
+    private record Chunk(byte[] bytes, int length, long rows) { }
+
+    private final Pager pager;
+    private final TableInfo table;
+    private final ExportFormat format;
+    private final List<String> columnNames;
+    private final VarintReader varints = new VarintReader();
+
+    /**
+     * The exporter reads the database as it is when the exporter is made,
+     * so every chunk of an export comes from the same commit.
+     */
+    public TableExporter(Pager pager, TableInfo table, ExportFormat format) {
+        this.pager = pager.snapshot();
+        this.table = table;
+        this.format = format;
+        this.columnNames = table.getColumnNames();
+    }
+
+    /**
+     * Export on the common fork-join pool.
+     */
+    public Summary export(Path file) throws IOException {
+        return export(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Write every row of the table to {@code file}, replacing it. A file
+     * left half written by a failed export is deleted.
+     */
+    public Summary export(Path file, ForkJoinPool pool) throws IOException {
+        if (table.getRootPage() < 1) {
+            throw new IOException("Table " + table.getName() + " is not stored in the database file");
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Pipeline run = new Pipeline(channel, pool);
+            try {
+                run.writeHeader();
+                splitRanges(run);
+                run.finish();
+            } catch (IOException | RuntimeException e) {
+                run.cancel();
+                throw e;
+            }
+            return new Summary(table.getName(), format, run.rows, run.bytes, System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    // Walk the interior pages down to the parents of the leaves, cutting a range every LEAVES_PER_CHUNK leaves
+    private void splitRanges(Pipeline run) throws IOException {
+        long root = table.getRootPage();
+        int leafDepth = leafDepth(root);
+        splitRanges(run, root, 0, leafDepth, false, 0);
+        run.submit(false, 0); // the rows after the last cut
+    }
+
+    private void splitRanges(Pipeline run, long pageNumber, int depth, int leafDepth,
+                             boolean hasUpper, long upper) throws IOException {
+        if (depth == leafDepth) {
+            return; // the root is the only leaf
+        }
+        MemorySegment page = pager.readPage(pageNumber);
+        byte pageType = BTreePage.pageType(page, pageNumber);
+        if (pageType != BTreePage.TABLE_INTERIOR) {
+            throw new IOException("Page " + pageNumber + " is not a table interior page (type 0x"
+                    + String.format("%02X", pageType) + ")");
+        }
+        int cellCount = BTreePage.cellCount(page, pageNumber);
+        for (int child = 0; child <= cellCount; child++) {
+            // An interior key is the largest rowid in its left subtree
+            boolean childHasUpper = child < cellCount || hasUpper;
+            long childUpper = child < cellCount
+                    ? BTreePage.tableInteriorKey(page, BTreePage.cellOffset(page, pageNumber, pageType, child), varints)
+                    : upper;
+            if (depth + 1 < leafDepth) {
+                splitRanges(run, BTreePage.childPage(page, pageNumber, pageType, child), depth + 1, leafDepth,
+                        childHasUpper, childUpper);
+            } else if (++run.leaves % LEAVES_PER_CHUNK == 0 && childHasUpper) {
+                run.submit(true, childUpper);
+            }
+        }
+    }
+
+    // Levels above the leaves, following left-most children
+    private int leafDepth(long root) throws IOException {
+        int depth = 0;
+        long pageNumber = root;
+        while (true) {
+            MemorySegment page = pager.readPage(pageNumber);
+            byte pageType = BTreePage.pageType(page, pageNumber);
+            if (pageType == BTreePage.TABLE_LEAF) {
+                return depth;
+            }
+            if (pageType != BTreePage.TABLE_INTERIOR || ++depth > MAX_DEPTH) {
+                throw new IOException("Page " + pageNumber + " of table " + table.getName()
+                        + " is not a table b-tree page or the tree has a cycle");
+            }
+            pageNumber = BTreePage.childPage(page, pageNumber, pageType, 0);
+        }
+    }
+
+    // Encode the rows with rowids in (lower, upper]; open where there is no bound
+    private Chunk encode(boolean hasLower, long lower, boolean hasUpper, long upper) throws IOException {
+        RowEncoder encoder = new RowEncoder(format, columnNames, LEAVES_PER_CHUNK * pager.getPageSize() * 2);
+        long rows = 0;
+        try (TableCursor cursor = new TableCursor(pager, table.getRootPage())) {
+            cursor.setRowidColumn(table.getRowidColumn());
+            boolean positioned = hasLower ? lower < Long.MAX_VALUE && cursor.seekAtLeast(lower + 1) : cursor.next();
+            while (positioned && (!hasUpper || cursor.rowid() <= upper)) {
+                encoder.row(cursor.currentRecord());
+                rows++;
+                positioned = cursor.next();
+            }
+        }
+        return new Chunk(encoder.bytes(), encoder.size(), rows);
+    }
+
+    // State of one export: the chunks in flight, oldest first, and the output
+    private class Pipeline {
+        private final FileChannel channel;
+        private final ForkJoinPool pool;
+        private final int maxInFlight;
+        private final ArrayDeque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>();
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        private boolean hasLower;
+        private long lower;
+        private long leaves;
+        private long rows;
+        private long bytes;
+
+        Pipeline(FileChannel channel, ForkJoinPool pool) {
+            this.channel = channel;
+            this.pool = pool;
+            this.maxInFlight = 2 * pool.getParallelism();
+        }
+
+        void writeHeader() throws IOException {
+            if (format == ExportFormat.CSV) {
+                RowEncoder encoder = new RowEncoder(format, columnNames, 256);
+                encoder.header(columnNames);
+                write(encoder.bytes(), encoder.size());
+            }
+        }
+
+        // Start encoding the rows after the previous cut, up to and including rowid upper
+        void submit(boolean hasUpper, long upper) throws IOException {
+            while (inFlight.size() >= maxInFlight) {
+                writeOldest();
+            }
+            boolean fromLower = hasLower;
+            long from = lower;
+            inFlight.add(pool.submit(() -> {
+                try {
+                    return encode(fromLower, from, hasUpper, upper);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            hasLower = true;
+            lower = upper;
+        }
+
+        void finish() throws IOException {
+            while (!inFlight.isEmpty()) {
+                writeOldest();
+            }
+            flush();
+        }
+
+        void cancel() {
+            for (ForkJoinTask<Chunk> task : inFlight) {
+                task.cancel(true);
+            }
+            inFlight.clear();
+        }
+
+        private void writeOldest() throws IOException {
+            Chunk chunk;
+            try {
+                chunk = inFlight.removeFirst().join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            rows += chunk.rows();
+            write(chunk.bytes(), chunk.length());
+        }
+
+        private void write(byte[] data, int length) throws IOException {
+            bytes += length;
+            int offset = 0;
+            while (offset < length) {
+                int n = Math.min(buffer.remaining(), length - offset);
+                buffer.put(data, offset, n);
+                offset += n;
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
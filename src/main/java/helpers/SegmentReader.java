@@ -0,0 +1,51 @@
+package helpers;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * Big-endian reads from a {@link MemorySegment}. SQLite stores every
+ * multi-byte integer big-endian and without alignment.
+ */
+public class SegmentReader {
+
+    private static final ValueLayout.OfShort SHORT_BE =
+            ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfInt INT_BE =
+            ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG_BE =
+            ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE_BE =
+            ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    public static byte readByte(MemorySegment segment, long offset) {
+        return segment.get(ValueLayout.JAVA_BYTE, offset);
+    }
+
+    public static int readUnsignedByte(MemorySegment segment, long offset) {
+        return segment.get(ValueLayout.JAVA_BYTE, offset) & 0xFF;
+    }
+
+    public static int readUnsignedShort(MemorySegment segment, long offset) {
+        return segment.get(SHORT_BE, offset) & 0xFFFF;
+    }
+
+    public static int readInt(MemorySegment segment, long offset) {
+        return segment.get(INT_BE, offset);
+    }
+
+    public static long readLong(MemorySegment segment, long offset) {
+        return segment.get(LONG_BE, offset);
+    }
+
+    public static double readDouble(MemorySegment segment, long offset) {
+        return segment.get(DOUBLE_BE, offset);
+    }
+
+    public static byte[] readBytes(MemorySegment segment, long offset, int length) {
+        byte[] bytes = new byte[length];
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, offset, bytes, 0, length);
+        return bytes;
+    }
+}
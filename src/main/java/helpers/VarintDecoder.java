@@ -1,19 +1,27 @@
 package helpers;
 
+import java.lang.foreign.MemorySegment;
+
 public class VarintDecoder {
 
-    // Decode a varint and return [value, bytesRead]
+    // Decode a varint and return [value, bytesRead].
+    // Allocates per call; hot paths use VarintReader instead.
 
     public static long[] decodeVarint(byte[] data, int offset) {
+        return decodeVarint(MemorySegment.ofArray(data), offset);
+    }
+
+    public static long[] decodeVarint(MemorySegment data, long offset) {
         long value = 0;
         int bytesRead = 0;
+        long limit = data.byteSize();
 
         for (int i = 0; i < 9; i++) {
-            if (offset + i >= data.length) {
+            if (offset + i >= limit) {
                 throw new IllegalArgumentException("Varint extends beyond data");
             }
 
-            byte b = data[offset + i];
+            byte b = SegmentReader.readByte(data, offset + i);
 
             if (i < 8) {
                 value = (value << 7) | (b & 0x7F);
@@ -0,0 +1,84 @@
+package helpers;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Allocation-free varint decoding over a {@link MemorySegment}.
+ * <p>
+ * The reader keeps a position that {@link #readVarint()} advances past each
+ * varint, so the value and the number of bytes read come back without a
+ * {@code long[]} per call. One reader is meant to be reused for many cells
+ * via {@link #reset(MemorySegment, long)}. Not thread-safe.
+ */
+public final class VarintReader {
+    private MemorySegment data;
+    private long position;
+    private long limit;
+
+    public VarintReader() {
+        this(MemorySegment.NULL, 0);
+    }
+
+    public VarintReader(MemorySegment data, long position) {
+        reset(data, position);
+    }
+
+    public VarintReader reset(MemorySegment data, long position) {
+        this.data = data;
+        this.position = position;
+        this.limit = data.byteSize();
+        return this;
+    }
+
+    public long position() { return position; }
+
+    public void position(long position) { this.position = position; }
+
+    public void skip(long bytes) { this.position += bytes; }
+
+    /**
+     * Decode the varint at the current position and move past it.
+     */
+    public long readVarint() {
+        long p = position;
+        // Fast path: one and two byte varints cover nearly all real data
+        // (small integers, rowids under 16384, serial types of short values)
+        if (p + 1 < limit) {
+            byte b0 = data.get(ValueLayout.JAVA_BYTE, p);
+            if (b0 >= 0) {
+                position = p + 1;
+                return b0;
+            }
+            byte b1 = data.get(ValueLayout.JAVA_BYTE, p + 1);
+            if (b1 >= 0) {
+                position = p + 2;
+                return ((long) (b0 & 0x7F) << 7) | b1;
+            }
+        }
+        return readVarintSlow(p);
+    }
+
+    private long readVarintSlow(long p) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            if (p + i >= limit) {
+                throw new IllegalArgumentException("Varint extends beyond data");
+            }
+            byte b = data.get(ValueLayout.JAVA_BYTE, p + i);
+            value = (value << 7) | (b & 0x7F);
+            if (b >= 0) {
+                position = p + i + 1;
+                return value;
+            }
+        }
+
+        // The ninth byte contributes all 8 bits
+        if (p + 8 >= limit) {
+            throw new IllegalArgumentException("Varint extends beyond data");
+        }
+        value = (value << 8) | (data.get(ValueLayout.JAVA_BYTE, p + 8) & 0xFF);
+        position = p + 9;
+        return value;
+    }
+}
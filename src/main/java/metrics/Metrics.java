@@ -0,0 +1,129 @@
+package metrics;
+
+import helpers.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters and stage latencies for the hot paths: page reads,
+ * page parsing, cell decoding and query execution.
+ * <p>
+ * Counters are {@link LongAdder}s and stage timings
+ * {@link LatencyHistogram}s, so recording from many threads never
+ * contends. Recording can be switched off with
+ * {@code -Dsqlite.metrics=false}; the flag is a static final, so the JIT
+ * drops the recording code entirely. The same paths also emit JDK Flight
+ * Recorder events ({@link PageReadEvent}, {@link PageParseEvent},
+ * {@link QueryEvent}), which cost nothing unless a recording enables them.
+ */
+public final class Metrics {
+
+    /** System property that turns recording off when set to false. */
+    public static final String ENABLED_PROPERTY = "sqlite.metrics";
+
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+
+    public enum Counter {
+        PAGES_READ,       // pages read from the file, i.e. cache misses
+        BYTES_READ,       // bytes of those pages
+        PAGE_CACHE_HITS,  // pages served from the pager cache
+        PAGES_PARSED,     // pages parsed or analysed whole
+        CELLS_DECODED,    // cells on those pages
+        DECODE_ERRORS,    // cells or pages that could not be decoded
+        ROWS_SCANNED,     // rows query scans produced, after pushed-down filters
+        QUERIES,          // queries run
+        QUERY_ROWS,       // rows returned by queries
+        SORT_SPILLS; // sorted runs written to temporary files
+
+        private final LongAdder adder = new LongAdder();
+
+        public void increment() {
+            if (ENABLED) {
+                adder.increment();
+            }
+        }
+
+        public void add(long amount) {
+            if (ENABLED) {
+                adder.add(amount);
+            }
+        }
+
+        public long get() {
+            return adder.sum();
+        }
+    }
+
+    public enum Stage {
+        PAGE_READ,   // reading a page that missed the cache
+        PAGE_PARSE,  // parsing or analysing one page
+        QUERY;       // a query from open to close
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        /**
+         * @return start time to pass to {@link #stop}, 0 when recording is off
+         */
+        public long start() {
+            return ENABLED ? System.nanoTime() : 0;
+        }
+
+        public void stop(long start) {
+            if (ENABLED) {
+                histogram.record(System.nanoTime() - start);
+            }
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return every counter by its lower-case name, in declaration order
+     */
+    public static Map<String, Long> counters() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (Counter counter : Counter.values()) {
+            snapshot.put(counter.name().toLowerCase(Locale.ROOT), counter.get());
+        }
+        return snapshot;
+    }
+
+    public static void reset() {
+        for (Counter counter : Counter.values()) {
+            counter.adder.reset();
+        }
+        for (Stage stage : Stage.values()) {
+            stage.histogram.reset();
+        }
+    }
+
+    /**
+     * Print the counters, then a line per stage with its latency
+     * percentiles in microseconds.
+     */
+    public static void print(PrintStream out) {
+        if (!ENABLED) {
+            out.println("Metrics are disabled (-D" + ENABLED_PROPERTY + "=false)");
+            return;
+        }
+        for (Map.Entry<String, Long> counter : counters().entrySet()) {
+            out.printf("%-16s %d%n", counter.getKey(), counter.getValue());
+        }
+        out.printf("%-16s %10s %10s %10s %10s %10s %10s%n", "stage", "count", "mean_us", "p50_us", "p90_us", "p99_us", "max_us");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = stage.histogram;
+            out.printf("%-16s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", stage.name().toLowerCase(Locale.ROOT),
+                    h.getCount(), h.getMean() / 1000, h.getPercentile(0.50) / 1000.0, h.getPercentile(0.90) / 1000.0,
+                    h.getPercentile(0.99) / 1000.0, h.getMax() / 1000.0);
+        }
+    }
+}
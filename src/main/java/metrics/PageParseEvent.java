@@ -0,0 +1,30 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A B-tree page parsed or analysed whole, header and every cell.
+ */
+@Name("sqlite.PageParse")
+@Label("Page Parse")
+@Category({"SQLite", "Parser"})
+@Description("A B-tree page parsed or analysed with all of its cells")
+@StackTrace(false)
+public class PageParseEvent extends jdk.jfr.Event {
+
+    @Label("Page Number")
+    public long pageNumber;
+
+    @Label("Page Type")
+    public int pageType;
+
+    @Label("Cells")
+    public int cells;
+
+    @Label("Errors")
+    public int errors;
+}
@@ -0,0 +1,26 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A page read from the database file because it was not in the pager cache.
+ */
+@Name("sqlite.PageRead")
+@Label("Page Read")
+@Category({"SQLite", "Pager"})
+@Description("A database page read from the file on a cache miss")
+@StackTrace(false)
+public class PageReadEvent extends jdk.jfr.Event {
+
+    @Label("Page Number")
+    public long pageNumber;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
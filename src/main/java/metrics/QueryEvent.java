@@ -0,0 +1,22 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A SELECT statement, from opening its pipeline to closing it.
+ */
+@Name("sqlite.Query")
+@Label("Query")
+@Category({"SQLite", "Query"})
+@Description("A SELECT statement from open to close")
+public class QueryEvent extends jdk.jfr.Event {
+
+    @Label("SQL")
+    public String sql;
+
+    @Label("Rows")
+    public long rows;
+}
@@ -0,0 +1,279 @@
+package pager;
+
+import helpers.SegmentReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+
+/**
+ * The payload of a B-tree cell: the bytes stored in the cell itself,
+ * followed by any that spilled onto a chain of overflow pages.
+ * <p>
+ * Each overflow page starts with the 4-byte number of the next page in the
+ * chain (0 on the last one) and holds {@code usableSize - 4} payload bytes.
+ * Reads walk the chain page by page through the {@link Pager}, so a large
+ * value can be streamed without ever holding all of it in memory.
+ */
+public final class CellPayload {
+
+    private final Pager pager;
+    private final MemorySegment local;
+    private final long firstOverflowPage;
+    private final long size;
+    private final int chunkSize;
+
+    /**
+     * @param pager pager to read overflow pages from, or null if the
+     *              payload is known to be stored entirely in the cell
+     * @param local payload bytes stored in the cell
+     * @param firstOverflowPage first page of the overflow chain, 0 if none
+     * @param size total payload size in bytes
+     * @param usableSize usable size of a page, see {@link Pager#getUsableSize()}
+     */
+    public CellPayload(Pager pager, MemorySegment local, long firstOverflowPage, long size, int usableSize) {
+        if (size < local.byteSize()) {
+            throw new IllegalArgumentException("Payload size " + size + " is smaller than its local part "
+                    + local.byteSize());
+        }
+        this.pager = pager;
+        this.local = local;
+        this.firstOverflowPage = firstOverflowPage;
+        this.size = size;
+        this.chunkSize = usableSize - 4;
+    }
+
+    /**
+     * Payload of a cell whose local part ends with the 4-byte number of
+     * its first overflow page.
+     *
+     * @param offset offset of the payload within the page
+     * @param localSize payload bytes stored in the cell
+     */
+    public static CellPayload inCell(Pager pager, int usableSize, MemorySegment page,
+                                     int offset, long payloadSize, int localSize) {
+        MemorySegment local = page.asSlice(offset, localSize);
+        long firstOverflowPage = localSize < payloadSize
+                ? Integer.toUnsignedLong(SegmentReader.readInt(page, offset + localSize))
+                : 0;
+        return new CellPayload(pager, local, firstOverflowPage, payloadSize, usableSize);
+    }
+
+    public long size() { return size; }
+    public int localSize() { return (int) local.byteSize(); }
+    public MemorySegment local() { return local; }
+    public long getFirstOverflowPage() { return firstOverflowPage; }
+
+    public boolean hasOverflow() {
+        return size > local.byteSize();
+    }
+
+    /**
+     * @return number of overflow pages the chain should have
+     */
+    public long overflowPageCount() {
+        long overflowBytes = size - local.byteSize();
+        if (overflowBytes == 0) {
+            return 0;
+        }
+        return (overflowBytes + chunkSize - 1) / chunkSize;
+    }
+
+    /**
+     * Copy of this payload whose local part is on the heap, so it does not
+     * point into a page. Overflow pages are still read through the pager.
+     */
+    public CellPayload detach() {
+        MemorySegment copy = MemorySegment.ofArray(SegmentReader.readBytes(local, 0, localSize()));
+        return new CellPayload(pager, copy, firstOverflowPage, size, chunkSize + 4);
+    }
+
+    /**
+     * Read part of the payload into a new array.
+     */
+    public byte[] readBytes(long offset, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        Reader reader = new Reader(offset, length);
+        reader.read(MemorySegment.ofArray(bytes), 0, length);
+        return bytes;
+    }
+
+    /**
+     * Stream part of the payload; overflow pages are read as the stream
+     * reaches them.
+     */
+    public InputStream openStream(long offset, long length) throws IOException {
+        return new PayloadInputStream(new Reader(offset, length));
+    }
+
+    /**
+     * Channel over part of the payload; overflow pages are read as the
+     * channel reaches them.
+     */
+    public ReadableByteChannel openChannel(long offset, long length) throws IOException {
+        return new PayloadChannel(new Reader(offset, length));
+    }
+
+    // Position in the payload: the local part first, then each overflow page
+    private final class Reader {
+        private MemorySegment chunk;
+        private long chunkPos;
+        private long chunkEnd;
+        private long nextPage;
+        private long pagesRead;
+        private long remaining;
+
+        Reader(long offset, long length) throws IOException {
+            Objects.checkFromIndexSize(offset, length, size);
+            this.remaining = length;
+            this.chunk = local;
+            this.chunkPos = 0;
+            this.chunkEnd = local.byteSize();
+            this.nextPage = firstOverflowPage;
+            if (length > 0) {
+                skipBytes(offset);
+            }
+        }
+
+        long remaining() {
+            return remaining;
+        }
+
+        long bufferedBytes() {
+            return Math.min(remaining, chunkEnd - chunkPos);
+        }
+
+        int read(MemorySegment dst, long dstOffset, int length) throws IOException {
+            int n = (int) Math.min(length, remaining);
+            int copied = 0;
+            while (copied < n) {
+                if (chunkPos == chunkEnd) {
+                    nextChunk();
+                }
+                int k = (int) Math.min(n - copied, chunkEnd - chunkPos);
+                MemorySegment.copy(chunk, chunkPos, dst, dstOffset + copied, k);
+                chunkPos += k;
+                copied += k;
+            }
+            remaining -= n;
+            return n;
+        }
+
+        long skip(long n) throws IOException {
+            long skipped = Math.min(Math.max(n, 0), remaining);
+            skipBytes(skipped);
+            remaining -= skipped;
+            return skipped;
+        }
+
+        // Move forward without copying; whole pages are passed over via their links
+        private void skipBytes(long n) throws IOException {
+            while (n > 0) {
+                if (chunkPos == chunkEnd) {
+                    nextChunk();
+                }
+                long k = Math.min(n, chunkEnd - chunkPos);
+                chunkPos += k;
+                n -= k;
+            }
+        }
+
+        private void nextChunk() throws IOException {
+            if (pager == null) {
+                throw new IOException("Payload continues on overflow page " + nextPage
+                        + " but no pager is available to read it");
+            }
+            if (nextPage == 0) {
+                throw new IOException("Overflow chain ends after " + pagesRead + " pages, "
+                        + overflowPageCount() + " expected");
+            }
+            if (pagesRead >= overflowPageCount()) {
+                throw new IOException("Overflow chain is longer than its payload at page " + nextPage
+                        + ", the file probably contains a page cycle");
+            }
+            if (nextPage > pager.getPageCount()) {
+                throw new IOException("Overflow page " + nextPage + " is past the end of the file ("
+                        + pager.getPageCount() + " pages)");
+            }
+            MemorySegment page = pager.readPage(nextPage);
+            pagesRead++;
+            chunk = page;
+            chunkPos = 4;
+            chunkEnd = Math.min(page.byteSize(), 4L + chunkSize);
+            nextPage = Integer.toUnsignedLong(SegmentReader.readInt(page, 0));
+        }
+    }
+
+    private static final class PayloadInputStream extends InputStream {
+        private final Reader reader;
+
+        PayloadInputStream(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (reader.remaining() == 0) {
+                return -1;
+            }
+            return reader.read(MemorySegment.ofArray(b), off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return reader.skip(n);
+        }
+
+        @Override
+        public int available() {
+            return (int) reader.bufferedBytes();
+        }
+    }
+
+    private static final class PayloadChannel implements ReadableByteChannel {
+        private final Reader reader;
+        private boolean open = true;
+
+        PayloadChannel(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            if (reader.remaining() == 0) {
+                return dst.hasRemaining() ? -1 : 0;
+            }
+            // The segment view starts at the buffer's position
+            int n = reader.read(MemorySegment.ofBuffer(dst), 0, dst.remaining());
+            dst.position(dst.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
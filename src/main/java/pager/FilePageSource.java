@@ -0,0 +1,63 @@
+package pager;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fallback page source that reads every page with a positional
+ * {@link FileChannel#read(ByteBuffer, long)}. Positional reads need no lock,
+ * so concurrent readers (virtual threads included) never queue behind each
+ * other. Each call returns a fresh heap copy of the page.
+ */
+public class FilePageSource implements PageSource {
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int pageSize;
+    private final long size;
+
+    public FilePageSource(String dbPath) throws IOException {
+        this.file = new RandomAccessFile(dbPath, "r");
+        try {
+            this.pageSize = PageSource.readPageSize(file);
+            this.size = file.length();
+            this.channel = file.getChannel();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getPageSize() { return pageSize; }
+
+    @Override
+    public long getPageCount() { return size / pageSize; }
+
+    @Override
+    public long size() { return size; }
+
+    @Override
+    public MemorySegment readPage(long pageNumber) throws IOException {
+        if (pageNumber < 1 || pageNumber > getPageCount()) {
+            throw new IOException("Page " + pageNumber + " out of range (1-" + getPageCount() + ")");
+        }
+        byte[] page = new byte[pageSize];
+        ByteBuffer buffer = ByteBuffer.wrap(page);
+        long position = (pageNumber - 1) * pageSize;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file in page " + pageNumber);
+            }
+        }
+        return MemorySegment.ofArray(page);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
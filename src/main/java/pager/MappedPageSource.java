@@ -0,0 +1,63 @@
+package pager;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+
+/**
+ * Page source that maps the whole database file once and hands out
+ * zero-copy slices of the mapping.
+ * <p>
+ * Unlike {@code MappedByteBuffer}, a {@link MemorySegment} mapping is not
+ * limited to 2 GB, so one mapping covers the file regardless of its size.
+ * The mapping is backed by a shared arena and can be read from any thread;
+ * it is released when the source is closed.
+ */
+public class MappedPageSource implements PageSource {
+    private final Arena arena;
+    private final MemorySegment file;
+    private final int pageSize;
+    private final long pageCount;
+
+    public MappedPageSource(String dbPath) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(dbPath, "r");
+             FileChannel channel = raf.getChannel()) {
+            this.pageSize = PageSource.readPageSize(raf);
+            long size = channel.size();
+            this.pageCount = size / pageSize;
+
+            Arena shared = Arena.ofShared();
+            try {
+                this.file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, shared);
+            } catch (IOException | RuntimeException e) {
+                shared.close();
+                throw e;
+            }
+            this.arena = shared;
+        }
+    }
+
+    @Override
+    public int getPageSize() { return pageSize; }
+
+    @Override
+    public long getPageCount() { return pageCount; }
+
+    @Override
+    public long size() { return file.byteSize(); }
+
+    @Override
+    public MemorySegment readPage(long pageNumber) throws IOException {
+        if (pageNumber < 1 || pageNumber > pageCount) {
+            throw new IOException("Page " + pageNumber + " out of range (1-" + pageCount + ")");
+        }
+        return file.asSlice((pageNumber - 1) * pageSize, pageSize);
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,39 @@
+package pager;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * A page held in the {@link Pager} cache.
+ * <p>
+ * A page returned by {@link Pager#acquire(long)} is pinned and will not be
+ * evicted until it is closed, so it is normally used with try-with-resources.
+ */
+public final class Page implements AutoCloseable {
+    private final Pager pager;
+    private final long pageNumber;
+    private final MemorySegment data;
+    int pinCount;
+
+    Page(Pager pager, long pageNumber, MemorySegment data) {
+        this.pager = pager;
+        this.pageNumber = pageNumber;
+        this.data = data;
+    }
+
+    public long getPageNumber() { return pageNumber; }
+    public MemorySegment getData() { return data; }
+
+    public boolean isPinned() {
+        synchronized (pager.lock) {
+            return pinCount > 0;
+        }
+    }
+
+    /**
+     * Unpin the page so it becomes eligible for eviction again.
+     */
+    @Override
+    public void close() {
+        pager.release(this);
+    }
+}
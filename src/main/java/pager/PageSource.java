@@ -0,0 +1,78 @@
+package pager;
+
+import parser.HeaderParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Source of raw database pages.
+ * <p>
+ * Pages are numbered the way SQLite numbers them: the first page of the file
+ * is page 1. Implementations hand out a {@link MemorySegment} per page so the
+ * parsers can work the same way over a memory-mapped file or a heap copy.
+ */
+public interface PageSource extends Closeable {
+
+    int SQLITE_HEADER_SIZE = 100;
+
+    /** System property used to force a page source ("mmap" or "file"). */
+    String PAGE_SOURCE_PROPERTY = "sqlite.pageSource";
+
+    int getPageSize();
+
+    long getPageCount();
+
+    /** @return size of the database file in bytes */
+    long size();
+
+    /**
+     * Read a page from the file.
+     *
+     * @param pageNumber 1-based page number
+     * @return segment covering exactly one page
+     */
+    MemorySegment readPage(long pageNumber) throws IOException;
+
+    /**
+     * Open the best available page source for a file. The whole file is
+     * memory-mapped when possible, otherwise pages are read with
+     * {@link RandomAccessFile}.
+     *
+     * @param dbPath filepath of .db file
+     * @return an open page source, to be closed by the caller
+     */
+    static PageSource open(String dbPath) throws IOException {
+        String mode = System.getProperty(PAGE_SOURCE_PROPERTY, "mmap");
+        Exception mapFailure = null;
+        if (!"file".equalsIgnoreCase(mode)) {
+            try {
+                return new MappedPageSource(dbPath);
+            } catch (IOException | UnsupportedOperationException e) {
+                mapFailure = e;
+            }
+        }
+
+        // Errors that are not about mapping (missing file, bad header) surface here
+        PageSource fallback = new FilePageSource(dbPath);
+        if (mapFailure != null) {
+            System.err.println("Memory mapping failed (" + mapFailure.getMessage() + "), falling back to file reads");
+        }
+        return fallback;
+    }
+
+    /**
+     * Read the 100 byte database header and return the page size.
+     */
+    static int readPageSize(RandomAccessFile file) throws IOException {
+        if (file.length() < SQLITE_HEADER_SIZE) {
+            throw new IOException("File too small to be a SQLite database");
+        }
+        byte[] header = new byte[SQLITE_HEADER_SIZE];
+        file.seek(0);
+        file.readFully(header);
+        return HeaderParser.getPageSize(header);
+    }
+}
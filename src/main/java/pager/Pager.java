@@ -0,0 +1,386 @@
+package pager;
+
+import helpers.SegmentReader;
+import metrics.Metrics;
+import metrics.PageReadEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the {@link PageSource} of a database and serves pages through a
+ * bounded LRU cache.
+ * <p>
+ * All page access should go through a pager so that pages read repeatedly
+ * in one process (page 1 above all) are served from memory. Pages are
+ * numbered from 1, as in the SQLite file format. The pager is thread-safe.
+ * <p>
+ * A database in WAL mode keeps its latest committed pages in
+ * {@code <db>-wal}. When that file is present the pager indexes it on
+ * open, see {@link WalIndex}, and serves each page from its newest
+ * committed frame, falling back to the database file for pages the log
+ * does not hold. Call {@link #refreshWal()} to pick up later commits.
+ * <p>
+ * The file and the committed log a pager reads are one view, numbered by
+ * a generation that {@link #refreshWal()} moves on when either changed.
+ * Cached pages are keyed by generation as well as page number, so pages
+ * of an older view stay valid for readers still using it. A reader that
+ * must not see a commit land half way through, such as a cursor, reads
+ * through a {@link #snapshot()}, which shares the cache but stays on the
+ * view it was taken from.
+ */
+public class Pager implements Closeable {
+
+    /** Default cache budget in bytes, see {@link #CACHE_SIZE_PROPERTY}. */
+    public static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+
+    /** System property overriding the cache budget in bytes. */
+    public static final String CACHE_SIZE_PROPERTY = "sqlite.cacheBytes";
+
+    // SQLite page numbers fit in 32 bits, which leaves the high bits of a cache key for the generation
+    private static final long MAX_PAGE_NUMBER = 0xFFFFFFFFL;
+
+    // The database file and committed log as of one refresh
+    private record View(long generation, PageSource source, WalIndex.State log) { }
+
+    // What a pager and its snapshots share: the cache, its counters and the open files
+    private static final class Shared {
+        final Object lock = new Object();
+        final LinkedHashMap<Long, Page> cache = new LinkedHashMap<>(16, 0.75f, true);
+        // Sources replaced after the file grew, kept open for readers still on an older view
+        final List<PageSource> retired = new ArrayList<>();
+        final ReentrantLock refreshLock = new ReentrantLock();
+        final int capacity;
+        String path;
+        WalIndex wal;
+        volatile View view;
+
+        // Statistics, guarded by lock except for bytesRead
+        long hits;
+        long misses;
+        long evictions;
+        final AtomicLong bytesRead = new AtomicLong();
+
+        // Page size less the reserved bytes at the end of each page, read on first use
+        volatile int usableSize;
+
+        Shared(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    final Object lock;
+
+    private final Shared shared;
+    // The view a snapshot stays on; null for the pager itself, which follows refreshWal()
+    private final View fixed;
+
+    public Pager(PageSource source, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least one page: " + capacity);
+        }
+        this.shared = new Shared(capacity);
+        this.shared.view = new View(0, source, null);
+        this.lock = shared.lock;
+        this.fixed = null;
+    }
+
+    private Pager(Shared shared, View fixed) {
+        this.shared = shared;
+        this.lock = shared.lock;
+        this.fixed = fixed;
+    }
+
+    /**
+     * Open a pager over the best available page source for the file, with a
+     * cache sized from {@link #CACHE_SIZE_PROPERTY}.
+     *
+     * @param dbPath filepath of .db file
+     */
+    public static Pager open(String dbPath) throws IOException {
+        PageSource source = PageSource.open(dbPath);
+        long budget = Long.getLong(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_BYTES);
+        int capacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budget / source.getPageSize()));
+        Pager pager = new Pager(source, capacity);
+        pager.shared.path = dbPath;
+        try {
+            WalIndex wal = WalIndex.open(dbPath, source.getPageSize());
+            pager.shared.wal = wal;
+            pager.shared.view = new View(0, source, wal != null ? wal.state() : null);
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+        return pager;
+    }
+
+    /**
+     * A pager that keeps reading the database as it is now, sharing this
+     * pager's cache, until it is dropped. Later calls to
+     * {@link #refreshWal()} do not move it. Closing a snapshot does
+     * nothing; the pager it was taken from owns the files.
+     */
+    public Pager snapshot() {
+        return fixed != null ? this : new Pager(shared, shared.view);
+    }
+
+    private View view() {
+        return fixed != null ? fixed : shared.view;
+    }
+
+    /**
+     * @return path of the database file, or null if the pager was built
+     *         over a page source directly
+     */
+    public String getPath() { return shared.path; }
+
+    public int getPageSize() { return view().source().getPageSize(); }
+    public long getPageCount() {
+        View view = view();
+        if (view.log() != null && view.log().databaseSize() > 0) {
+            return view.log().databaseSize();
+        }
+        return view.source().getPageCount();
+    }
+    public long getFileSize() { return view().source().size(); }
+    public int getCapacity() { return shared.capacity; }
+
+    /**
+     * @return the generation of the view this pager reads, which
+     *         {@link #refreshWal()} moves on whenever the database changed
+     */
+    public long getGeneration() { return view().generation(); }
+
+    /**
+     * @return the index of the database's write-ahead log, or null if it
+     *         has none
+     */
+    public WalIndex getWal() { return shared.wal; }
+
+    /**
+     * Read frames committed to the write-ahead log since it was indexed. A
+     * checkpoint may have grown the database file too, in which case it is
+     * opened again. Either change starts a new view: pages read from now on
+     * are cached under it, while snapshots taken before keep reading the
+     * old one. Concurrent calls are made one at a time.
+     * <p>
+     * A checkpoint that rewrites pages of the database file or restarts the
+     * log while an older snapshot is still reading can still pull its pages
+     * out from under it; a read of an overwritten frame fails rather than
+     * returning a page of the wrong commit.
+     *
+     * @return true if the log or the file changed
+     */
+    public boolean refreshWal() throws IOException {
+        WalIndex log = shared.wal;
+        if (log == null || fixed != null) {
+            return false;
+        }
+        shared.refreshLock.lock();
+        try {
+            View current = shared.view;
+            log.refresh();
+            // Compared with the view rather than taken from refresh(), so a change is never lost
+            boolean changed = log.state() != current.log();
+            PageSource source = current.source();
+            if (Files.size(Path.of(shared.path)) != source.size()) {
+                source = PageSource.open(shared.path);
+                synchronized (lock) {
+                    shared.retired.add(current.source());
+                }
+                changed = true;
+            }
+            if (changed) {
+                shared.view = new View(current.generation() + 1, source, log.state());
+            }
+            return changed;
+        } finally {
+            shared.refreshLock.unlock();
+        }
+    }
+
+    /**
+     * @return bytes of each page available to the b-tree layer: the page
+     * size less the reserved region named at offset 20 of the header
+     */
+    public int getUsableSize() throws IOException {
+        int size = shared.usableSize;
+        if (size == 0) {
+            int reserved = SegmentReader.readUnsignedByte(readPage(1), 20);
+            size = getPageSize() - reserved;
+            shared.usableSize = size;
+        }
+        return size;
+    }
+
+    /**
+     * @return the 100 byte database header at the start of page 1
+     */
+    public byte[] readHeader() throws IOException {
+        return SegmentReader.readBytes(readPage(1), 0, PageSource.SQLITE_HEADER_SIZE);
+    }
+
+    /**
+     * Read a page without pinning it. The returned segment stays valid after
+     * the page is evicted, it just may have to be read again next time.
+     *
+     * @param pageNumber 1-based page number
+     */
+    public MemorySegment readPage(long pageNumber) throws IOException {
+        return lookup(pageNumber, false).getData();
+    }
+
+    /**
+     * Read a page and pin it in the cache until the returned page is closed.
+     *
+     * @param pageNumber 1-based page number
+     */
+    public Page acquire(long pageNumber) throws IOException {
+        return lookup(pageNumber, true);
+    }
+
+    private Page lookup(long pageNumber, boolean pin) throws IOException {
+        if (pageNumber < 1 || pageNumber > MAX_PAGE_NUMBER) {
+            throw new IOException("Page " + pageNumber + " out of range (1-" + getPageCount() + ")");
+        }
+        View view = view();
+        Long key = (view.generation() << 32) | pageNumber;
+        synchronized (lock) {
+            Page page = shared.cache.get(key);
+            if (page != null) {
+                shared.hits++;
+                Metrics.Counter.PAGE_CACHE_HITS.increment();
+                if (pin) page.pinCount++;
+                return page;
+            }
+            shared.misses++;
+        }
+
+        // Read outside the lock so concurrent misses on different pages overlap
+        PageReadEvent event = new PageReadEvent();
+        event.begin();
+        long start = Metrics.Stage.PAGE_READ.start();
+        MemorySegment data = view.log() != null ? shared.wal.readPage(view.log(), pageNumber) : null;
+        if (data == null) {
+            data = view.source().readPage(pageNumber);
+        }
+        Metrics.Stage.PAGE_READ.stop(start);
+        shared.bytesRead.addAndGet(data.byteSize());
+        Metrics.Counter.PAGES_READ.increment();
+        Metrics.Counter.BYTES_READ.add(data.byteSize());
+        if (event.shouldCommit()) {
+            event.pageNumber = pageNumber;
+            event.bytes = data.byteSize();
+            event.commit();
+        }
+
+        synchronized (lock) {
+            Page page = shared.cache.get(key);
+            if (page == null) {
+                page = new Page(this, pageNumber, data);
+                shared.cache.put(key, page);
+                evictIfNeeded();
+            }
+            if (pin) page.pinCount++;
+            return page;
+        }
+    }
+
+    void release(Page page) {
+        synchronized (lock) {
+            if (page.pinCount <= 0) {
+                throw new IllegalStateException("Page " + page.getPageNumber() + " is not pinned");
+            }
+            page.pinCount--;
+            evictIfNeeded();
+        }
+    }
+
+    // Evict least recently used unpinned pages until the cache fits.
+    // Pinned pages are skipped, so the cache may briefly exceed its capacity.
+    private void evictIfNeeded() {
+        LinkedHashMap<Long, Page> cache = shared.cache;
+        Iterator<Map.Entry<Long, Page>> it = cache.entrySet().iterator();
+        while (cache.size() > shared.capacity && it.hasNext()) {
+            Page candidate = it.next().getValue();
+            if (candidate.pinCount == 0) {
+                it.remove();
+                shared.evictions++;
+            }
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(shared.hits, shared.misses, shared.evictions, shared.bytesRead.get(),
+                    shared.cache.size(), shared.capacity);
+        }
+    }
+
+    public void clearCache() {
+        synchronized (lock) {
+            shared.cache.values().removeIf(page -> page.pinCount == 0);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fixed != null) {
+            return;
+        }
+        synchronized (lock) {
+            shared.cache.clear();
+        }
+        try {
+            for (PageSource old : shared.retired) {
+                old.close();
+            }
+            if (shared.wal != null) {
+                shared.wal.close();
+            }
+        } finally {
+            shared.view.source().close();
+        }
+    }
+
+    // Snapshot of the cache counters
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long bytesRead;
+        public final int cachedPages;
+        public final int capacity;
+
+        public Stats(long hits, long misses, long evictions, long bytesRead,
+                     int cachedPages, int capacity) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.bytesRead = bytesRead;
+            this.cachedPages = cachedPages;
+            this.capacity = capacity;
+        }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Pager[hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d, bytesRead=%d, cached=%d/%d]",
+                    hits, misses, getHitRate() * 100, evictions, bytesRead, cachedPages, capacity);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package pager;
+
+import helpers.IntLongHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the write-ahead log of a database in WAL mode, {@code <db>-wal},
+ * and indexes the latest committed frame of every page in it.
+ * <p>
+ * The log is read in one sequential pass. A frame counts only if its
+ * salts match the WAL header and its running checksum checks out, and
+ * only frames up to the last commit frame (one with a database size) are
+ * indexed, so a transaction still being written is never seen. The index
+ * maps each page number to the file offset of its newest committed copy
+ * in an {@link IntLongHashMap}.
+ * <p>
+ * The index is built once and reused until {@link #refresh()} finds the
+ * log has grown, when only the new frames are read, or has been restarted
+ * after a checkpoint (new salts), when it is rebuilt. Reads of page data
+ * are positional and thread-safe; {@link #refresh()} swaps the index in
+ * atomically.
+ */
+public final class WalIndex implements Closeable {
+
+    static final int HEADER_SIZE = 32;
+    static final int FRAME_HEADER_SIZE = 24;
+
+    private static final int MAGIC_LITTLE_ENDIAN = 0x377F0682;
+    private static final int MAGIC_BIG_ENDIAN = 0x377F0683;
+    private static final int FORMAT_VERSION = 3007000;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int pageSize;
+
+    // The committed state, replaced whole by refresh()
+    private volatile State state;
+
+    // Package-private so a Pager can keep reading one committed state after a refresh
+    record State(int salt1, int salt2, boolean bigEndian, IntLongHashMap frames,
+                         long end, int checksum1, int checksum2, int frameCount, int databaseSize) { }
+
+    private WalIndex(Path path, FileChannel channel, int pageSize) {
+        this.path = path;
+        this.channel = channel;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Open and index the log of a database.
+     *
+     * @return the index, or null if there is no log or it holds no valid
+     *         header
+     */
+    public static WalIndex open(String dbPath, int pageSize) throws IOException {
+        Path path = Path.of(dbPath + "-wal");
+        if (!Files.isRegularFile(path) || Files.size(path) < HEADER_SIZE) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            WalIndex wal = new WalIndex(path, channel, pageSize);
+            wal.state = wal.build(null);
+            if (wal.state == null) {
+                channel.close();
+                return null;
+            }
+            return wal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getPath() { return path; }
+
+    /** Committed frames indexed so far. */
+    public int getFrameCount() { return state.frameCount(); }
+
+    /** Distinct pages that have a copy in the log. */
+    public int getPageCount() { return state.frames().size(); }
+
+    /** Database size in pages after the last commit, 0 if nothing is committed. */
+    public int getDatabaseSize() { return state.databaseSize(); }
+
+    public int getSalt1() { return state.salt1(); }
+    public int getSalt2() { return state.salt2(); }
+
+    /**
+     * @return the newest committed copy of the page, or null if the log
+     *         does not hold the page
+     */
+    public MemorySegment readPage(long pageNumber) throws IOException {
+        return readPage(state, pageNumber);
+    }
+
+    /**
+     * Read a page as of an earlier committed state. The frame header is
+     * read with the page, and a frame whose salts no longer match tells
+     * that a checkpoint restarted the log over it.
+     *
+     * @return the page, or null if the log did not hold it in that state
+     * @throws IOException if the frame has been overwritten since
+     */
+    MemorySegment readPage(State from, long pageNumber) throws IOException {
+        if (pageNumber > Integer.MAX_VALUE || pageNumber > from.databaseSize()) {
+            return null;
+        }
+        long offset = from.frames().get((int) pageNumber, -1);
+        if (offset < 0) {
+            return null;
+        }
+        byte[] frame = new byte[FRAME_HEADER_SIZE + pageSize];
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        readFully(buffer, offset - FRAME_HEADER_SIZE);
+        if (buffer.getInt(8) != from.salt1() || buffer.getInt(12) != from.salt2()) {
+            throw new IOException("The frame of page " + pageNumber + " in " + path
+                    + " was overwritten after a checkpoint restarted the log");
+        }
+        return MemorySegment.ofArray(frame).asSlice(FRAME_HEADER_SIZE, pageSize);
+    }
+
+    State state() { return state; }
+
+    /**
+     * Pick up frames committed since the index was built.
+     *
+     * @return true if the committed state changed
+     */
+    public synchronized boolean refresh() throws IOException {
+        State current = state;
+        State next = build(current);
+        if (next == null) {
+            // The log was truncated or reset: nothing in it is committed any more
+            next = new State(0, 0, false, new IntLongHashMap(), 0, 0, 0, 0, 0);
+        }
+        if (next.equals(current)) {
+            return false;
+        }
+        state = next;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Read the log from the end of {@code from}, or from the start when
+     * {@code from} is null or the header no longer matches it.
+     *
+     * @return the committed state, or null if the header is not valid
+     */
+    private State build(State from) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        int magic = header.getInt(0);
+        if (magic != MAGIC_LITTLE_ENDIAN && magic != MAGIC_BIG_ENDIAN) {
+            return null;
+        }
+        boolean bigEndian = magic == MAGIC_BIG_ENDIAN;
+        if (header.getInt(4) != FORMAT_VERSION || header.getInt(8) != pageSize) {
+            return null;
+        }
+        int salt1 = header.getInt(16);
+        int salt2 = header.getInt(20);
+        int[] checksum = checksum(header.array(), 0, 24, bigEndian, 0, 0);
+        if (checksum[0] != header.getInt(24) || checksum[1] != header.getInt(28)) {
+            return null;
+        }
+
+        State start;
+        if (from != null && from.salt1() == salt1 && from.salt2() == salt2 && from.end() <= size) {
+            if (from.end() == size) {
+                return from;
+            }
+            start = from;
+        } else {
+            start = new State(salt1, salt2, bigEndian, new IntLongHashMap(), HEADER_SIZE,
+                    checksum[0], checksum[1], 0, 0);
+        }
+        return readFrames(start, size);
+    }
+
+    // Sequential pass over the frames after start.end(). The frames of
+    // start are copied once, so the published index is never changed
+    private State readFrames(State start, long size) throws IOException {
+        IntLongHashMap frames = start.frames().copy();
+        IntLongHashMap pending = new IntLongHashMap();
+        int frameSize = FRAME_HEADER_SIZE + pageSize;
+        byte[] frame = new byte[frameSize];
+
+        int s1 = start.checksum1();
+        int s2 = start.checksum2();
+        long offset = start.end();
+        int frameCount = start.frameCount();
+
+        // Where the last commit frame left the log
+        long committedEnd = start.end();
+        int committed1 = s1;
+        int committed2 = s2;
+        int committedFrames = frameCount;
+        int committedSize = start.databaseSize();
+
+        InputStream raw = Channels.newInputStream(channel.position(offset));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(raw, Math.max(1 << 20, frameSize)));
+        while (offset + frameSize <= size) {
+            in.readFully(frame);
+            ByteBuffer frameHeader = ByteBuffer.wrap(frame, 0, FRAME_HEADER_SIZE);
+            int pageNumber = frameHeader.getInt(0);
+            int databaseSize = frameHeader.getInt(4);
+            if (frameHeader.getInt(8) != start.salt1() || frameHeader.getInt(12) != start.salt2() || pageNumber <= 0) {
+                break; // left over from before the last restart
+            }
+            int[] checksum = checksum(frame, 0, 8, start.bigEndian(), s1, s2);
+            checksum = checksum(frame, FRAME_HEADER_SIZE, pageSize, start.bigEndian(), checksum[0], checksum[1]);
+            if (checksum[0] != frameHeader.getInt(16) || checksum[1] != frameHeader.getInt(20)) {
+                break; // torn write
+            }
+            s1 = checksum[0];
+            s2 = checksum[1];
+            pending.put(pageNumber, offset + FRAME_HEADER_SIZE);
+            frameCount++;
+            offset += frameSize;
+
+            if (databaseSize != 0) {
+                // Commit frame: everything since the last commit becomes visible
+                mergeInto(frames, pending);
+                pending.clear();
+                committedEnd = offset;
+                committed1 = s1;
+                committed2 = s2;
+                committedFrames = frameCount;
+                committedSize = databaseSize;
+            }
+        }
+        if (committedEnd == start.end()) {
+            return start;
+        }
+        return new State(start.salt1(), start.salt2(), start.bigEndian(), frames, committedEnd,
+                committed1, committed2, committedFrames, committedSize);
+    }
+
+    // Later frames win, which put() already gives us
+    private static void mergeInto(IntLongHashMap frames, IntLongHashMap pending) {
+        pending.forEach(frames::put);
+    }
+
+    /**
+     * SQLite's WAL checksum: two 32-bit sums over the data as pairs of
+     * 32-bit words, in the byte order the magic number names.
+     */
+    static int[] checksum(byte[] data, int offset, int length, boolean bigEndian, int s1, int s2) {
+        ByteBuffer words = ByteBuffer.wrap(data, offset, length)
+                .order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < length; i += 8) {
+            s1 += words.getInt(offset + i) + s2;
+            s2 += words.getInt(offset + i + 4) + s1;
+        }
+        return new int[]{s1, s2};
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + path);
+            }
+        }
+    }
+}
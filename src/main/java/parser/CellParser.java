@@ -1,16 +1,22 @@
 package parser;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.lang.foreign.MemorySegment;
 
 import dataTypes.CellInfo;
 import dataTypes.SQLiteRecord;
-import helpers.VarintDecoder;
+import helpers.SegmentReader;
+import helpers.VarintReader;
+import pager.CellPayload;
+import pager.Pager;
 
 public class CellParser {
 
 
     public static void parseCell(byte[] page, int cellOffset, byte pageType) {
+        parseCell(MemorySegment.ofArray(page), cellOffset, pageType);
+    }
+
+    public static void parseCell(MemorySegment page, int cellOffset, byte pageType) {
         CellInfo cellInfo = parseCellInfo(page, cellOffset, pageType);
         if (cellInfo != null && !cellInfo.hasError()) {
             cellInfo.print();
@@ -19,12 +25,29 @@ public class CellParser {
 
 
     public static CellInfo parseCellInfo(byte[] page, int cellOffset, byte pageType) {
+        return parseCellInfo(MemorySegment.ofArray(page), cellOffset, pageType);
+    }
+
+    public static CellInfo parseCellInfo(MemorySegment page, int cellOffset, byte pageType) {
+        return parseCellInfo(page, cellOffset, pageType, null, (int) page.byteSize());
+    }
+
+    /**
+     * Parse a cell, reading the rest of a payload that does not fit in the
+     * cell from its overflow pages.
+     *
+     * @param pager pager to read overflow pages from; without one, values
+     *              stored on overflow pages cannot be read
+     * @param usableSize usable size of a page, see {@link Pager#getUsableSize()}
+     */
+    public static CellInfo parseCellInfo(MemorySegment page, int cellOffset, byte pageType,
+                                         Pager pager, int usableSize) {
         try {
             switch (pageType) {
-                case 0x0D -> { return parseTableLeafCellInfo(page, cellOffset); }
+                case 0x0D -> { return parseTableLeafCellInfo(page, cellOffset, pager, usableSize); }
                 case 0x05 -> { return parseTableInteriorCellInfo(page, cellOffset); }
-                case 0x0A -> { return parseIndexLeafCellInfo(page, cellOffset); }
-                case 0x02 -> { return parseIndexInteriorCellInfo(page, cellOffset); }
+                case 0x0A -> { return parseIndexLeafCellInfo(page, cellOffset, pager, usableSize); }
+                case 0x02 -> { return parseIndexInteriorCellInfo(page, cellOffset, pager, usableSize); }
                 default -> {
                     CellInfo cellInfo = new CellInfo();
                     cellInfo.setError("Unknown page type: 0x" + String.format("%02X", pageType));
@@ -38,101 +61,122 @@ public class CellParser {
         }
     }
 
+    /**
+     * Number of payload bytes stored in the cell itself; the rest goes to
+     * overflow pages. This is the split defined by the SQLite file format,
+     * which only depends on the payload size and the usable page size.
+     */
+    public static int localPayloadSize(long payloadSize, int usableSize, byte pageType) {
+        long maxLocal = pageType == 0x0D
+                ? usableSize - 35
+                : ((usableSize - 12) * 64L / 255) - 23;
+        if (payloadSize <= maxLocal) {
+            return (int) payloadSize;
+        }
+        long minLocal = ((usableSize - 12) * 32L / 255) - 23;
+        long local = minLocal + (payloadSize - minLocal) % (usableSize - 4);
+        return (int) (local <= maxLocal ? local : minLocal);
+    }
+
+    // Record in a cell payload, following overflow pages if it does not fit in the cell
+    private static SQLiteRecord parseRecord(MemorySegment page, int offset, long payloadSize, byte pageType,
+                                            Pager pager, int usableSize, CellInfo cellInfo) {
+        int localSize = localPayloadSize(payloadSize, usableSize, pageType);
+        if (localSize == payloadSize) {
+            return SQLiteRecord.parse(page, offset, (int) payloadSize);
+        }
+        CellPayload payload = CellPayload.inCell(pager, usableSize, page, offset, payloadSize, localSize);
+        cellInfo.setOverflowPage(payload.getFirstOverflowPage());
+        SQLiteRecord record = new SQLiteRecord();
+        record.reset(payload);
+        return record;
+    }
+
     // Table B-tree leaf cell (0x0D pages)
-    private static CellInfo parseTableLeafCellInfo(byte[] page, int cellOffset) {
+    private static CellInfo parseTableLeafCellInfo(MemorySegment page, int cellOffset,
+                                                   Pager pager, int usableSize) {
         CellInfo cellInfo = new CellInfo();
         cellInfo.setCellType((byte) 0x0D);
 
-        int pos = cellOffset;
+        VarintReader varints = new VarintReader(page, cellOffset);
 
         // Read payload size
-        long[] result = VarintDecoder.decodeVarint(page, pos);
-        long payloadSize = result[0];
-        int varintLen = (int)result[1];
-        pos += varintLen;
-
+        long payloadSize = varints.readVarint();
         cellInfo.setPayloadSize(payloadSize);
 
         // Read rowid
-        result = VarintDecoder.decodeVarint(page, pos);
-        long rowid = result[0];
-        varintLen = (int)result[1];
-        pos += varintLen;
-
+        long rowid = varints.readVarint();
         cellInfo.setRowId(rowid);
 
         // Parse the record
-        SQLiteRecord record = SQLiteRecord.parse(page, pos, (int)payloadSize);
+        SQLiteRecord record = parseRecord(page, (int) varints.position(), payloadSize, (byte) 0x0D,
+                pager, usableSize, cellInfo);
         cellInfo.setRecord(record);
 
         return cellInfo;
     }
 
     // Table B-tree interior cell (0x05 pages)
-    private static CellInfo parseTableInteriorCellInfo(byte[] page, int cellOffset) {
+    private static CellInfo parseTableInteriorCellInfo(MemorySegment page, int cellOffset) {
         CellInfo cellInfo = new CellInfo();
         cellInfo.setCellType((byte) 0x05);
 
         int pos = cellOffset;
 
         // Read 4-byte left child page number (big-endian)
-        int leftChild = ByteBuffer.wrap(page, pos, 4).order(ByteOrder.BIG_ENDIAN).getInt();
+        int leftChild = SegmentReader.readInt(page, pos);
         pos += 4;
 
         // Read integer key (rowid)
-        long[] result = VarintDecoder.decodeVarint(page, pos);
-        long rowid = result[0];
+        long rowid = new VarintReader(page, pos).readVarint();
 
         cellInfo.setRowId(rowid);
-        // For interior cells, we might want to store the left child page
-        // You could add a leftChildPage field to CellInfo if needed
+        cellInfo.setLeftChildPage(leftChild);
 
         return cellInfo;
     }
 
     // Index B-tree leaf cell (0x0A pages)
-    private static CellInfo parseIndexLeafCellInfo(byte[] page, int cellOffset) {
+    private static CellInfo parseIndexLeafCellInfo(MemorySegment page, int cellOffset,
+                                                   Pager pager, int usableSize) {
         CellInfo cellInfo = new CellInfo();
         cellInfo.setCellType((byte) 0x0A);
 
-        int pos = cellOffset;
+        VarintReader varints = new VarintReader(page, cellOffset);
 
         // Read payload size
-        long[] result = VarintDecoder.decodeVarint(page, pos);
-        long payloadSize = result[0];
-        int varintLen = (int)result[1];
-        pos += varintLen;
-
+        long payloadSize = varints.readVarint();
         cellInfo.setPayloadSize(payloadSize);
 
         // Parse the record
-        SQLiteRecord record = SQLiteRecord.parse(page, pos, (int)payloadSize);
+        SQLiteRecord record = parseRecord(page, (int) varints.position(), payloadSize, (byte) 0x0A,
+                pager, usableSize, cellInfo);
         cellInfo.setRecord(record);
 
         return cellInfo;
     }
 
     // Index B-tree interior cell (0x02 pages)
-    private static CellInfo parseIndexInteriorCellInfo(byte[] page, int cellOffset) {
+    private static CellInfo parseIndexInteriorCellInfo(MemorySegment page, int cellOffset,
+                                                       Pager pager, int usableSize) {
         CellInfo cellInfo = new CellInfo();
         cellInfo.setCellType((byte) 0x02);
 
         int pos = cellOffset;
 
         // Read 4-byte left child page number
-        int leftChild = ByteBuffer.wrap(page, pos, 4).order(ByteOrder.BIG_ENDIAN).getInt();
+        int leftChild = SegmentReader.readInt(page, pos);
         pos += 4;
+        cellInfo.setLeftChildPage(leftChild);
 
         // Read payload size
-        long[] result = VarintDecoder.decodeVarint(page, pos);
-        long payloadSize = result[0];
-        int varintLen = (int)result[1];
-        pos += varintLen;
-
+        VarintReader varints = new VarintReader(page, pos);
+        long payloadSize = varints.readVarint();
         cellInfo.setPayloadSize(payloadSize);
 
         // Parse the record
-        SQLiteRecord record = SQLiteRecord.parse(page, pos, (int)payloadSize);
+        SQLiteRecord record = parseRecord(page, (int) varints.position(), payloadSize, (byte) 0x02,
+                pager, usableSize, cellInfo);
         cellInfo.setRecord(record);
 
         return cellInfo;
@@ -140,9 +184,13 @@ public class CellParser {
 
     // Keep original print methods for backward compatibility
     public static void parseTableLeafCell(byte[] page, int cellOffset) {
+        parseTableLeafCell(MemorySegment.ofArray(page), cellOffset);
+    }
+
+    public static void parseTableLeafCell(MemorySegment page, int cellOffset) {
         System.out.println("=== Parsing table leaf cell at offset " + cellOffset + " ===");
 
-        CellInfo cellInfo = parseTableLeafCellInfo(page, cellOffset);
+        CellInfo cellInfo = parseTableLeafCellInfo(page, cellOffset, null, (int) page.byteSize());
 
         System.out.println("Payload size: " + cellInfo.getPayloadSize() + " bytes");
         System.out.println("Rowid: " + cellInfo.getRowId());
@@ -164,6 +212,10 @@ public class CellParser {
     }
 
     public static void parseTableInteriorCell(byte[] page, int cellOffset) {
+        parseTableInteriorCell(MemorySegment.ofArray(page), cellOffset);
+    }
+
+    public static void parseTableInteriorCell(MemorySegment page, int cellOffset) {
         System.out.println("=== Parsing table interior cell at offset " + cellOffset + " ===");
 
         CellInfo cellInfo = parseTableInteriorCellInfo(page, cellOffset);
@@ -172,9 +224,13 @@ public class CellParser {
     }
 
     public static void parseIndexLeafCell(byte[] page, int cellOffset) {
+        parseIndexLeafCell(MemorySegment.ofArray(page), cellOffset);
+    }
+
+    public static void parseIndexLeafCell(MemorySegment page, int cellOffset) {
         System.out.println("=== Parsing index leaf cell at offset " + cellOffset + " ===");
 
-        CellInfo cellInfo = parseIndexLeafCellInfo(page, cellOffset);
+        CellInfo cellInfo = parseIndexLeafCellInfo(page, cellOffset, null, (int) page.byteSize());
 
         System.out.println("Payload size: " + cellInfo.getPayloadSize() + " bytes");
 
@@ -195,9 +251,13 @@ public class CellParser {
     }
 
     public static void parseIndexInteriorCell(byte[] page, int cellOffset) {
+        parseIndexInteriorCell(MemorySegment.ofArray(page), cellOffset);
+    }
+
+    public static void parseIndexInteriorCell(MemorySegment page, int cellOffset) {
         System.out.println("=== Parsing index interior cell at offset " + cellOffset + " ===");
 
-        CellInfo cellInfo = parseIndexInteriorCellInfo(page, cellOffset);
+        CellInfo cellInfo = parseIndexInteriorCellInfo(page, cellOffset, null, (int) page.byteSize());
 
         System.out.println("Payload size: " + cellInfo.getPayloadSize() + " bytes");
 
@@ -72,7 +72,7 @@ public class HeaderParser {
      * @param header byte array of the header
      * @return page size as int
      */
-    private static int getPageSize(byte[] header) {
+    public static int getPageSize(byte[] header) {
         // Read 2 bytes at offset 16 as big-endian unsigned short
         int b1 = header[16] & 0xFF;
         int b2 = header[17] & 0xFF;
@@ -82,6 +82,26 @@ public class HeaderParser {
         return (pageSize == 1) ? 65536 : pageSize;
     }
 
+    /** File change counter, offset 24: bumped by every committed write. */
+    public static int getChangeCounter(byte[] header) {
+        return ByteBuffer.wrap(header, 24, 4).getInt();
+    }
+
+    /** Whether the file format versions, offsets 18 and 19, are 2: WAL mode. */
+    public static boolean isWalMode(byte[] header) {
+        return header[18] == 2 || header[19] == 2;
+    }
+
+    /** Database size in pages, offset 28. */
+    public static int getDatabaseSizeInPages(byte[] header) {
+        return ByteBuffer.wrap(header, 28, 4).getInt();
+    }
+
+    /** Schema cookie, offset 40: bumped whenever the schema changes. */
+    public static int getSchemaCookie(byte[] header) {
+        return ByteBuffer.wrap(header, 40, 4).getInt();
+    }
+
     /**
      * Get the encoding type
      *
@@ -2,7 +2,13 @@ package parser;
 
 import dataTypes.CellInfo;
 import dataTypes.SQLiteRecord;
+import helpers.SegmentReader;
+import metrics.Metrics;
+import metrics.PageParseEvent;
+import pager.Pager;
 
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,6 +21,7 @@ public class PageParser {
         public final int firstFreeblock;
         public final int cellContentStart;
         public final int fragmentedBytes;
+        public final int rightMostPointer;
         public final List<CellInfo> cells;
         public final boolean isFirstPage;
         public final int pageNumber;
@@ -22,11 +29,19 @@ public class PageParser {
         public PageInfo(byte pageType, int numCells, int firstFreeblock,
                         int cellContentStart, int fragmentedBytes,
                         boolean isFirstPage, int pageNumber) {
+            this(pageType, numCells, firstFreeblock, cellContentStart, fragmentedBytes,
+                    0, isFirstPage, pageNumber);
+        }
+
+        public PageInfo(byte pageType, int numCells, int firstFreeblock,
+                        int cellContentStart, int fragmentedBytes, int rightMostPointer,
+                        boolean isFirstPage, int pageNumber) {
             this.pageType = pageType;
             this.numCells = numCells;
             this.firstFreeblock = firstFreeblock;
             this.cellContentStart = cellContentStart;
             this.fragmentedBytes = fragmentedBytes;
+            this.rightMostPointer = rightMostPointer;
             this.cells = new ArrayList<>();
             this.isFirstPage = isFirstPage;
             this.pageNumber = pageNumber;
@@ -43,46 +58,77 @@ public class PageParser {
         public boolean isIndexLeafPage() {
             return pageType == 0x0A;
         }
+
+        public boolean isInteriorPage() {
+            return PageParser.isInteriorPage(pageType);
+        }
     }
 
 
     public static void parsePage(byte[] page, boolean isFirstPage) {
+        parsePage(MemorySegment.ofArray(page), isFirstPage);
+    }
+
+    public static void parsePage(MemorySegment page, boolean isFirstPage) {
         PageInfo pageInfo = parsePageInfo(page, isFirstPage, 0);
         printPageInfo(pageInfo);
     }
 
+    // Print a page, reading payloads that continue on overflow pages through the pager
+    public static void parsePage(MemorySegment page, boolean isFirstPage, Pager pager) throws IOException {
+        PageInfo pageInfo = parsePageInfo(page, isFirstPage, 0, pager, pager.getUsableSize());
+        printPageInfo(pageInfo);
+    }
+
 
     public static PageInfo parsePageInfo(byte[] page, boolean isFirstPage, int pageNumber) {
+        return parsePageInfo(MemorySegment.ofArray(page), isFirstPage, pageNumber);
+    }
+
+    public static PageInfo parsePageInfo(MemorySegment page, boolean isFirstPage, int pageNumber) {
+        return parsePageInfo(page, isFirstPage, pageNumber, null, (int) page.byteSize());
+    }
+
+    /**
+     * @param pager pager to read overflow pages from, or null
+     * @param usableSize usable size of a page, see {@link Pager#getUsableSize()}
+     */
+    public static PageInfo parsePageInfo(MemorySegment page, boolean isFirstPage, int pageNumber,
+                                         Pager pager, int usableSize) {
+        PageParseEvent event = new PageParseEvent();
+        event.begin();
+        long start = Metrics.Stage.PAGE_PARSE.start();
+
         // First page has 100-byte file header before B-tree header
         int btreeOffset = isFirstPage ? 100 : 0;
 
-        // Read B-tree page header (8 bytes)
-        byte pageType = page[btreeOffset];
-        int firstFreeblock = ((page[btreeOffset + 1] & 0xFF) << 8) |
-                (page[btreeOffset + 2] & 0xFF);
-        int numCells = ((page[btreeOffset + 3] & 0xFF) << 8) |
-                (page[btreeOffset + 4] & 0xFF);
-        int cellContentStart = ((page[btreeOffset + 5] & 0xFF) << 8) |
-                (page[btreeOffset + 6] & 0xFF);
-        int fragmentedBytes = page[btreeOffset + 7] & 0xFF;
+        // Read B-tree page header (8 bytes, 12 for interior pages)
+        byte pageType = SegmentReader.readByte(page, btreeOffset);
+        int firstFreeblock = SegmentReader.readUnsignedShort(page, btreeOffset + 1);
+        int numCells = SegmentReader.readUnsignedShort(page, btreeOffset + 3);
+        int cellContentStart = SegmentReader.readUnsignedShort(page, btreeOffset + 5);
+        int fragmentedBytes = SegmentReader.readUnsignedByte(page, btreeOffset + 7);
+        int rightMostPointer = isInteriorPage(pageType) ? SegmentReader.readInt(page, btreeOffset + 8) : 0;
 
         PageInfo pageInfo = new PageInfo(pageType, numCells, firstFreeblock,
-                cellContentStart, fragmentedBytes,
+                cellContentStart, fragmentedBytes, rightMostPointer,
                 isFirstPage, pageNumber);
 
         // Cell pointer array starts after B-tree header
-        int pointerArrayStart = btreeOffset + 8;
+        int pointerArrayStart = btreeOffset + getHeaderSize(pageType);
 
         // Read all cell pointers and parse cells
+        int errors = 0;
         for (int i = 0; i < numCells; i++) {
             int pointerAddr = pointerArrayStart + (i * 2);
-            int cellOffset = ((page[pointerAddr] & 0xFF) << 8) |
-                    (page[pointerAddr + 1] & 0xFF);
+            int cellOffset = SegmentReader.readUnsignedShort(page, pointerAddr);
 
             try {
-                // This will need to be updated when you show me CellParser
-                CellInfo cellInfo = CellParser.parseCellInfo(page, cellOffset, pageType);
+                CellInfo cellInfo = CellParser.parseCellInfo(page, cellOffset, pageType, pager, usableSize);
                 if (cellInfo != null) {
+                    if (cellInfo.hasError()) {
+                        errors++;
+                    }
                     cellInfo.setCellIndex(i);
                     cellInfo.setPageNumber(pageNumber);
                     pageInfo.cells.add(cellInfo);
@@ -93,9 +139,21 @@ public class PageParser {
                 errorCell.setCellIndex(i);
                 errorCell.setError(e.getMessage());
                 pageInfo.cells.add(errorCell);
+                errors++;
             }
         }
 
+        Metrics.Stage.PAGE_PARSE.stop(start);
+        Metrics.Counter.PAGES_PARSED.increment();
+        Metrics.Counter.CELLS_DECODED.add(numCells);
+        Metrics.Counter.DECODE_ERRORS.add(errors);
+        if (event.shouldCommit()) {
+            event.pageNumber = pageNumber;
+            event.pageType = pageType & 0xFF;
+            event.cells = numCells;
+            event.errors = errors;
+            event.commit();
+        }
         return pageInfo;
     }
 
@@ -107,6 +165,9 @@ public class PageParser {
         System.out.println("First freeblock: " + pageInfo.firstFreeblock);
         System.out.println("Cell content area starts at: " + pageInfo.cellContentStart);
         System.out.println("Fragmented free bytes: " + pageInfo.fragmentedBytes);
+        if (pageInfo.isInteriorPage()) {
+            System.out.println("Right-most pointer: " + pageInfo.rightMostPointer);
+        }
 
         System.out.println("\n=== Cell Contents ===");
         for (int i = 0; i < pageInfo.cells.size(); i++) {
@@ -123,6 +184,10 @@ public class PageParser {
 
     // Method to get all records from a page
     public static List<SQLiteRecord> getPageRecords(byte[] page, boolean isFirstPage, int pageNumber) {
+        return getPageRecords(MemorySegment.ofArray(page), isFirstPage, pageNumber);
+    }
+
+    public static List<SQLiteRecord> getPageRecords(MemorySegment page, boolean isFirstPage, int pageNumber) {
         PageInfo pageInfo = parsePageInfo(page, isFirstPage, pageNumber);
         List<SQLiteRecord> records = new ArrayList<>();
 
@@ -141,6 +206,15 @@ public class PageParser {
         return records;
     }
 
+    public static boolean isInteriorPage(byte pageType) {
+        return pageType == 0x02 || pageType == 0x05;
+    }
+
+    // Interior pages carry the 4-byte right-most pointer at header offset 8
+    public static int getHeaderSize(byte pageType) {
+        return isInteriorPage(pageType) ? 12 : 8;
+    }
+
     private static String getPageTypeName(byte pageType) {
         return switch (pageType) {
             case 0x02 -> "Interior index b-tree page";
@@ -0,0 +1,62 @@
+package query;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The type affinity of a column, worked out from its declared type the
+ * way SQLite does: INT gives INTEGER; CHAR, CLOB or TEXT give TEXT; BLOB
+ * or no type gives BLOB (no affinity); REAL, FLOA or DOUB give REAL; any
+ * other type is NUMERIC.
+ * <p>
+ * The engine applies affinity where SQLite's results depend on it: an
+ * integer read from a REAL column becomes a real, and a literal compared
+ * with a column is converted first, so {@code a = '3'} matches the
+ * integer 3 in an INTEGER column and {@code b = 3} the text '3' in a TEXT
+ * column.
+ */
+enum Affinity {
+    INTEGER, TEXT, BLOB, REAL, NUMERIC;
+
+    // A well-formed decimal number, as SQLite recognises one in TEXT
+    private static final Pattern NUMBER = Pattern.compile("[+-]?(\\d+(\\.\\d*)?|\\.\\d+)([eE][+-]?\\d+)?");
+
+    static Affinity of(String declaredType) {
+        String type = declaredType == null ? "" : declaredType.toUpperCase(Locale.ROOT);
+        if (type.contains("INT")) return INTEGER;
+        if (type.contains("CHAR") || type.contains("CLOB") || type.contains("TEXT")) return TEXT;
+        if (type.isEmpty() || type.contains("BLOB")) return BLOB;
+        if (type.contains("REAL") || type.contains("FLOA") || type.contains("DOUB")) return REAL;
+        return NUMERIC;
+    }
+
+    boolean isNumeric() {
+        return this == INTEGER || this == REAL || this == NUMERIC;
+    }
+
+    /**
+     * Convert a literal compared with a column of this affinity: TEXT that
+     * looks like a number becomes one for a numeric column, and a number
+     * becomes TEXT for a TEXT column. Anything else is returned as is.
+     */
+    Object convertOperand(Object value) {
+        if (isNumeric() && value instanceof String text) {
+            String s = text.strip();
+            if (!NUMBER.matcher(s).matches()) {
+                return value;
+            }
+            if (this != REAL && s.indexOf('.') < 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+                try {
+                    return Long.parseLong(s);
+                } catch (NumberFormatException tooLarge) {
+                    // falls through to a real
+                }
+            }
+            return Double.parseDouble(s);
+        }
+        if (this == TEXT && value instanceof Number number) {
+            return number instanceof Double d ? ValueFormatter.formatReal(d) : number.toString();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,331 @@
+package query;
+
+import dataTypes.ValueComparator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash aggregation. Consumes its whole input, then emits one row per
+ * group: the grouping values followed by the aggregate results. Groups
+ * come out in key order, as SQLite returns GROUP BY results, or in the
+ * order they were first seen, as for SELECT DISTINCT. Without grouping
+ * expressions there is exactly one group, even over no rows.
+ */
+public class AggregateOperator implements Operator {
+
+    /**
+     * One aggregate to compute.
+     *
+     * @param function COUNT, SUM, TOTAL, AVG, MIN, MAX, or ANY for a bare
+     *                 column, which takes the value of one row of the group
+     * @param argument expression over the input, or null for COUNT(*)
+     */
+    public record Aggregate(String function, Expr argument) { }
+
+    private final Operator input;
+    private final List<Expr> groupBy;
+    private final List<Aggregate> aggregates;
+    private final List<String> names;
+    private final boolean sortGroups;
+
+    private List<Group> groups;
+    private int emitted;
+    private Batch output;
+
+    public AggregateOperator(Operator input, List<Expr> groupBy, List<Aggregate> aggregates,
+                             List<String> names, boolean sortGroups) {
+        this.input = input;
+        this.groupBy = groupBy;
+        this.aggregates = aggregates;
+        this.names = names;
+        this.sortGroups = sortGroups;
+    }
+
+    @Override
+    public List<String> columnNames() {
+        return names;
+    }
+
+    @Override
+    public Batch next() throws IOException {
+        if (groups == null) {
+            groups = consume();
+            output = Batch.allocate(groupBy.size() + aggregates.size());
+        }
+        if (emitted >= groups.size()) {
+            return null;
+        }
+        int n = Math.min(Batch.CAPACITY, groups.size() - emitted);
+        for (int row = 0; row < n; row++) {
+            Group group = groups.get(emitted + row);
+            int c = 0;
+            for (Object key : group.keys) {
+                output.column(c++).set(row, key);
+            }
+            for (Accumulator accumulator : group.accumulators) {
+                accumulator.result(output.column(c++), row);
+            }
+        }
+        emitted += n;
+        output.setSize(n);
+        return output;
+    }
+
+    private List<Group> consume() throws IOException {
+        Map<Object, Group> byKey = new LinkedHashMap<>();
+        Group single = groupBy.isEmpty() ? new Group(new Object[0], newAccumulators()) : null;
+
+        ColumnVector[] keyVectors = new ColumnVector[groupBy.size()];
+        ColumnVector[] arguments = new ColumnVector[aggregates.size()];
+        Batch batch;
+        while ((batch = input.next()) != null) {
+            for (int k = 0; k < keyVectors.length; k++) {
+                keyVectors[k] = groupBy.get(k).evaluate(batch);
+            }
+            for (int a = 0; a < arguments.length; a++) {
+                Expr argument = aggregates.get(a).argument();
+                arguments[a] = argument == null ? null : argument.evaluate(batch);
+            }
+            for (int i = 0, n = batch.rowCount(); i < n; i++) {
+                int row = batch.row(i);
+                Group group = single != null ? single : findGroup(byKey, keyVectors, row);
+                Accumulator[] accumulators = group.accumulators;
+                for (int a = 0; a < accumulators.length; a++) {
+                    accumulators[a].add(arguments[a], row);
+                }
+            }
+        }
+        input.close();
+
+        if (single != null) {
+            return List.of(single);
+        }
+        List<Group> result = new ArrayList<>(byKey.values());
+        if (sortGroups) {
+            result.sort(AggregateOperator::compareKeys);
+        }
+        return result;
+    }
+
+    private Group findGroup(Map<Object, Group> byKey, ColumnVector[] keyVectors, int row) {
+        Object key;
+        if (keyVectors.length == 1) {
+            key = hashKey(keyVectors[0].get(row));
+        } else {
+            Object[] parts = new Object[keyVectors.length];
+            for (int k = 0; k < parts.length; k++) {
+                parts[k] = hashKey(keyVectors[k].get(row));
+            }
+            key = Arrays.asList(parts);
+        }
+        Group group = byKey.get(key);
+        if (group == null) {
+            Object[] keys = new Object[keyVectors.length];
+            for (int k = 0; k < keys.length; k++) {
+                keys[k] = keyVectors[k].get(row);
+            }
+            group = new Group(keys, newAccumulators());
+            byKey.put(key, group);
+        }
+        return group;
+    }
+
+    // Equal SQL values must hash alike: 1 and 1.0 are one group, BLOBs compare by content
+    private static Object hashKey(Object value) {
+        if (value instanceof Double d && d == Math.rint(d) && Math.abs(d) < 0x1p63) {
+            return (long) (double) d;
+        }
+        if (value instanceof byte[] blob) {
+            return ByteBuffer.wrap(blob);
+        }
+        return value;
+    }
+
+    private static int compareKeys(Group a, Group b) {
+        for (int k = 0; k < a.keys.length; k++) {
+            int c = ValueComparator.compareValues(a.keys[k], b.keys[k]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private Accumulator[] newAccumulators() {
+        Accumulator[] accumulators = new Accumulator[aggregates.size()];
+        for (int a = 0; a < accumulators.length; a++) {
+            accumulators[a] = switch (aggregates.get(a).function()) {
+                case "COUNT" -> new Count();
+                case "SUM" -> new Sum(false);
+                case "TOTAL" -> new Sum(true);
+                case "AVG" -> new Avg();
+                case "MIN" -> new Extreme(-1);
+                case "MAX" -> new Extreme(1);
+                case "ANY" -> new AnyValue();
+                default -> throw new SqlException("no such function: " + aggregates.get(a).function());
+            };
+        }
+        return accumulators;
+    }
+
+    @Override
+    public void close() {
+        input.close();
+    }
+
+    private record Group(Object[] keys, Accumulator[] accumulators) { }
+
+    // Running state of one aggregate within one group
+    private abstract static class Accumulator {
+        /** @param values the argument vector, null for COUNT(*) */
+        abstract void add(ColumnVector values, int row);
+
+        abstract void result(ColumnVector out, int row);
+    }
+
+    private static final class Count extends Accumulator {
+        private long count;
+
+        @Override
+        void add(ColumnVector values, int row) {
+            if (values == null || !values.isNull(row)) {
+                count++;
+            }
+        }
+
+        @Override
+        void result(ColumnVector out, int row) {
+            out.setLong(row, count);
+        }
+    }
+
+    // SUM stays an integer while every input is one, and like SQLite fails
+    // if such a sum overflows; TOTAL is always a real
+    private static final class Sum extends Accumulator {
+        private final boolean total;
+        private boolean any;
+        private boolean real;
+        private boolean realInput;
+        private boolean overflow;
+        private long longSum;
+        private double doubleSum;
+
+        Sum(boolean total) {
+            this.total = total;
+        }
+
+        @Override
+        void add(ColumnVector values, int row) {
+            byte type = Expr.Values.numericType(values, row);
+            if (type == ColumnVector.NULL) {
+                return;
+            }
+            any = true;
+            if (type == ColumnVector.INTEGER && !real) {
+                long v = Expr.Values.asLong(values, row);
+                long sum = longSum + v;
+                if (((longSum ^ sum) & (v ^ sum)) < 0) {
+                    // Overflow: carry on in floating point
+                    real = true;
+                    overflow = true;
+                    doubleSum = (double) longSum + v;
+                } else {
+                    longSum = sum;
+                }
+            } else {
+                if (!real) {
+                    real = true;
+                    doubleSum = longSum;
+                }
+                realInput |= type != ColumnVector.INTEGER;
+                doubleSum += Expr.Values.asDouble(values, row);
+            }
+        }
+
+        @Override
+        void result(ColumnVector out, int row) {
+            if (total) {
+                out.setDouble(row, real ? doubleSum : longSum);
+            } else if (!any) {
+                out.setNull(row);
+            } else if (overflow && !realInput) {
+                throw new SqlException("integer overflow");
+            } else if (real) {
+                out.setDouble(row, doubleSum);
+            } else {
+                out.setLong(row, longSum);
+            }
+        }
+    }
+
+    private static final class Avg extends Accumulator {
+        private long count;
+        private double sum;
+
+        @Override
+        void add(ColumnVector values, int row) {
+            if (Expr.Values.numericType(values, row) != ColumnVector.NULL) {
+                count++;
+                sum += Expr.Values.asDouble(values, row);
+            }
+        }
+
+        @Override
+        void result(ColumnVector out, int row) {
+            if (count == 0) {
+                out.setNull(row);
+            } else {
+                out.setDouble(row, sum / count);
+            }
+        }
+    }
+
+    // MIN (sign -1) or MAX (sign 1), ignoring NULLs
+    private static final class Extreme extends Accumulator {
+        private final int sign;
+        private final ColumnVector best = new ColumnVector(1);
+
+        Extreme(int sign) {
+            this.sign = sign;
+        }
+
+        @Override
+        void add(ColumnVector values, int row) {
+            if (values.isNull(row)) {
+                return;
+            }
+            if (best.isNull(0) || Integer.signum(ColumnVector.compare(values, row, best, 0)) == sign) {
+                best.copyFrom(values, row, 0);
+            }
+        }
+
+        @Override
+        void result(ColumnVector out, int row) {
+            out.copyFrom(best, 0, row);
+        }
+    }
+
+    private static final class AnyValue extends Accumulator {
+        private boolean seen;
+        private Object value;
+
+        @Override
+        void add(ColumnVector values, int row) {
+            if (!seen) {
+                seen = true;
+                value = values.get(row);
+            }
+        }
+
+        @Override
+        void result(ColumnVector out, int row) {
+            out.set(row, value);
+        }
+    }
+}
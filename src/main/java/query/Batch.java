@@ -0,0 +1,71 @@
+package query;
+
+/**
+ * A batch of up to {@link #CAPACITY} rows, stored column by column.
+ * <p>
+ * Filters do not move rows: they install a selection vector listing the
+ * rows still live, and every operator downstream iterates over
+ * {@link #row(int)} for {@code i < rowCount()}. A batch and its vectors
+ * belong to the operator that produced it and are only valid until that
+ * operator's next call to {@code next()}.
+ */
+public final class Batch {
+
+    public static final int CAPACITY = 1024;
+
+    private final ColumnVector[] columns;
+    private int size;
+    private int[] selection;
+    private int selected;
+
+    public Batch(ColumnVector[] columns, int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    public static Batch allocate(int columnCount) {
+        ColumnVector[] columns = new ColumnVector[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = new ColumnVector(CAPACITY);
+        }
+        return new Batch(columns, 0);
+    }
+
+    public ColumnVector column(int index) { return columns[index]; }
+    public int columnCount() { return columns.length; }
+
+    /** @return number of physical rows, selected or not */
+    public int size() { return size; }
+
+    public void setSize(int size) {
+        this.size = size;
+        this.selection = null;
+    }
+
+    /** @return number of live rows */
+    public int rowCount() {
+        return selection == null ? size : selected;
+    }
+
+    /** @return physical index of the i-th live row */
+    public int row(int i) {
+        return selection == null ? i : selection[i];
+    }
+
+    public int[] selection() { return selection; }
+
+    public void select(int[] selection, int selected) {
+        this.selection = selection;
+        this.selected = selected;
+    }
+
+    /**
+     * A batch over other vectors that keeps this batch's rows and selection.
+     */
+    public Batch withColumns(ColumnVector[] columns) {
+        Batch batch = new Batch(columns, size);
+        batch.selection = selection;
+        batch.selected = selected;
+        return batch;
+    }
+}
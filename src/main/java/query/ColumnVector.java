@@ -0,0 +1,169 @@
+package query;
+
+import dataTypes.SQLiteRecord;
+import dataTypes.ValueComparator;
+
+import java.util.Arrays;
+
+/**
+ * One column of a {@link Batch}.
+ * <p>
+ * SQLite values are typed per value, not per column, so every slot carries
+ * a type tag. Integers and reals live in primitive arrays and are never
+ * boxed; TEXT and BLOB values are held as {@code String} and
+ * {@code byte[]}.
+ */
+public final class ColumnVector {
+
+    public static final byte NULL = 0;
+    public static final byte INTEGER = 1;
+    public static final byte REAL = 2;
+    public static final byte TEXT = 3;
+    public static final byte BLOB = 4;
+
+    private byte[] types;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+
+    public ColumnVector(int capacity) {
+        types = new byte[capacity];
+        longs = new long[capacity];
+        doubles = new double[capacity];
+        objects = new Object[capacity];
+    }
+
+    public int capacity() { return types.length; }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > types.length) {
+            types = Arrays.copyOf(types, capacity);
+            longs = Arrays.copyOf(longs, capacity);
+            doubles = Arrays.copyOf(doubles, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+    }
+
+    public byte type(int row) { return types[row]; }
+    public boolean isNull(int row) { return types[row] == NULL; }
+    public boolean isNumeric(int row) { return types[row] == INTEGER || types[row] == REAL; }
+
+    public long getLong(int row) {
+        return types[row] == REAL ? (long) doubles[row] : longs[row];
+    }
+
+    public double getDouble(int row) {
+        return types[row] == INTEGER ? longs[row] : doubles[row];
+    }
+
+    public String getText(int row) {
+        return types[row] == TEXT ? (String) objects[row] : null;
+    }
+
+    public void setNull(int row) {
+        types[row] = NULL;
+        objects[row] = null;
+    }
+
+    public void setLong(int row, long value) {
+        types[row] = INTEGER;
+        longs[row] = value;
+        objects[row] = null;
+    }
+
+    public void setDouble(int row, double value) {
+        types[row] = REAL;
+        doubles[row] = value;
+        objects[row] = null;
+    }
+
+    public void setText(int row, String value) {
+        types[row] = value == null ? NULL : TEXT;
+        objects[row] = value;
+    }
+
+    public void setBlob(int row, byte[] value) {
+        types[row] = value == null ? NULL : BLOB;
+        objects[row] = value;
+    }
+
+    public void setBoolean(int row, boolean value) {
+        setLong(row, value ? 1 : 0);
+    }
+
+    // Set from a value as decoded by SQLiteRecord.getValue
+    public void set(int row, Object value) {
+        if (value == null) {
+            setNull(row);
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            setLong(row, ((Number) value).longValue());
+        } else if (value instanceof Number number) {
+            setDouble(row, number.doubleValue());
+        } else if (value instanceof byte[] blob) {
+            setBlob(row, blob);
+        } else {
+            setText(row, value.toString());
+        }
+    }
+
+    /**
+     * Set a slot from a record column, reading it with the typed accessors
+     * so integers and reals are not boxed on the way.
+     */
+    public void set(int row, SQLiteRecord record, int column) {
+        if (column >= record.getColumnCount()) {
+            // Rows written before an ALTER TABLE ADD COLUMN are shorter
+            setNull(row);
+            return;
+        }
+        long serialType = record.getSerialType(column);
+        if (serialType == 7) {
+            setDouble(row, record.getDouble(column));
+        } else if (serialType >= 12) {
+            if (serialType % 2 == 0) {
+                setBlob(row, record.getBlob(column));
+            } else {
+                setText(row, record.getText(column));
+            }
+        } else if (record.isNull(column)) {
+            setNull(row);
+        } else {
+            setLong(row, record.getLong(column));
+        }
+    }
+
+    public void copyFrom(ColumnVector source, int sourceRow, int row) {
+        types[row] = source.types[sourceRow];
+        longs[row] = source.longs[sourceRow];
+        doubles[row] = source.doubles[sourceRow];
+        objects[row] = source.objects[sourceRow];
+    }
+
+    /**
+     * @return the value boxed the way {@link SQLiteRecord#getValue} returns it
+     */
+    public Object get(int row) {
+        return switch (types[row]) {
+            case INTEGER -> longs[row];
+            case REAL -> doubles[row];
+            case TEXT, BLOB -> objects[row];
+            default -> null;
+        };
+    }
+
+    /**
+     * Compare two slots in SQLite order: NULL, numbers, TEXT, BLOB.
+     */
+    public static int compare(ColumnVector a, int rowA, ColumnVector b, int rowB) {
+        byte typeA = a.types[rowA];
+        byte typeB = b.types[rowB];
+        if (typeA == INTEGER && typeB == INTEGER) {
+            return Long.compare(a.longs[rowA], b.longs[rowB]);
+        }
+        if ((typeA == INTEGER || typeA == REAL) && (typeB == INTEGER || typeB == REAL)) {
+            return Double.compare(a.getDouble(rowA), b.getDouble(rowB));
+        }
+        return ValueComparator.compareValues(a.get(rowA), b.get(rowB));
+    }
+}
@@ -0,0 +1,768 @@
+package query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+/**
+ * Expression tree of the SQL front end.
+ * <p>
+ * Expressions are evaluated a batch at a time: {@link #evaluate(Batch)}
+ * computes the value for every live row of the batch into a vector owned
+ * by the node and reused for the next batch. Column references are parsed
+ * by name and bound to a batch column index by the planner.
+ */
+public abstract class Expr {
+
+    /**
+     * Evaluate for the live rows of {@code batch}. The result has one slot
+     * per physical row; slots of unselected rows are undefined.
+     */
+    public abstract ColumnVector evaluate(Batch batch);
+
+    public List<Expr> children() {
+        return List.of();
+    }
+
+    /**
+     * Rebuild this expression over new children, given in
+     * {@link #children()} order.
+     */
+    public Expr withChildren(List<Expr> children) {
+        return this;
+    }
+
+    /**
+     * Rewrite the tree top-down: where {@code f} returns a different node,
+     * that node is used as is; otherwise the children are rewritten.
+     */
+    public Expr rewrite(UnaryOperator<Expr> f) {
+        Expr replaced = f.apply(this);
+        if (replaced != this) {
+            return replaced;
+        }
+        List<Expr> children = children();
+        if (children.isEmpty()) {
+            return this;
+        }
+        List<Expr> rewritten = new ArrayList<>(children.size());
+        boolean changed = false;
+        for (Expr child : children) {
+            Expr r = child.rewrite(f);
+            changed |= r != child;
+            rewritten.add(r);
+        }
+        return changed ? withChildren(rewritten) : this;
+    }
+
+    public boolean containsAggregate() {
+        if (this instanceof Aggregate) {
+            return true;
+        }
+        for (Expr child : children()) {
+            if (child.containsAggregate()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The canonical text of an expression, used to match equal expressions
+    @Override
+    public abstract String toString();
+
+    // Output vector reused across batches
+    private ColumnVector result;
+
+    ColumnVector result(Batch batch) {
+        if (result == null || result.capacity() < batch.size()) {
+            result = new ColumnVector(Math.max(Batch.CAPACITY, batch.size()));
+        }
+        return result;
+    }
+
+    // ---- Leaves ----
+
+    public static final class Literal extends Expr {
+        final Object value;
+        private ColumnVector filled;
+
+        public Literal(Object value) {
+            this.value = value;
+        }
+
+        public Object getValue() { return value; }
+
+        @Override
+        public ColumnVector evaluate(Batch batch) {
+            if (filled == null || filled.capacity() < batch.size()) {
+                filled = new ColumnVector(Math.max(Batch.CAPACITY, batch.size()));
+                for (int i = 0; i < filled.capacity(); i++) {
+                    filled.set(i, value);
+                }
+            }
+            return filled;
+        }
+
+        @Override
+        public String toString() {
+            if (value == null) return "NULL";
+            if (value instanceof String s) return "'" + s.replace("'", "''") + "'";
+            if (value instanceof byte[] b) return "X'" + HexFormat.of().withUpperCase().formatHex(b) + "'";
+            return value.toString();
+        }
+    }
+
+    // A column by name, before binding
+    public static final class ColumnRef extends Expr {
+        final String qualifier; // table name before the dot, or null
+        final String name;
+
+        public ColumnRef(String qualifier, String name) {
+            this.qualifier = qualifier;
+            this.name = name;
+        }
+
+        public String getQualifier() { return qualifier; }
+        public String getName() { return name; }
+
+        @Override
+        public ColumnVector evaluate(Batch batch) {
+            throw new IllegalStateException("Column " + name + " is not bound");
+        }
+
+        @Override
+        public String toString() {
+            return name.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // A column of the input batch, by position
+    public static final class BoundColumn extends Expr {
+        final int index;
+        final String name;
+
+        public BoundColumn(int index, String name) {
+            this.index = index;
+            this.name = name;
+        }
+
+        public int getIndex() { return index; }
+
+        @Override
+        public ColumnVector evaluate(Batch batch) {
+            return batch.column(index); // no copy
+        }
+
+        @Override
+        public String toString() {
+            return name.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // ---- Operators ----
+
+    public static final class Not extends Expr {
+        final Expr operand;
+
+        public Not(Expr operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public List<Expr> children() { return List.of(operand); }
+
+        @Override
+        public Expr withChildren(List<Expr> children) { return new Not(children.get(0)); }
+
+        @Override
+        public ColumnVector evaluate(Batch batch) {
+            ColumnVector in = operand.evaluate(batch);
+            ColumnVector out = result(batch);
+            for (int i = 0, n = batch.rowCount(); i < n; i++) {
+                int row = batch.row(i);
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.setBoolean(row, !Values.isTrue(in, row));
+                }
+            }
+            return out;
+        }
+
+        @Override
+        public String toString() { return "NOT " + operand; }
+    }
+
+    public static final class Negate extends Expr {
+        final Expr operand;
+
+        public Negate(Expr operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public List<Expr> children() { return List.of(operand); }
+
+        @Override
+        public Expr withChildren(List<Expr> children) { return new Negate(children.get(0)); }
+
+        @Override
+        public ColumnVector evaluate(Batch batch) {
+            ColumnVector in = operand.evaluate(batch);
+            ColumnVector out = result(batch);
+            for (int i = 0, n = batch.rowCount(); i < n; i++) {
+                int row = batch.row(i);
+                switch (Values.numericType(in, row)) {
+                    case ColumnVector.INTEGER -> {
+                        long v = Values.asLong(in, row);
+                        if (v == Long.MIN_VALUE) out.setDouble(row, -(double) v);
+                        else out.setLong(row, -v);
+                    }
+                    case ColumnVector.REAL -> out.setDouble(row, -Values.asDouble(in, row));
+                    default -> out.setNull(row);
+                }
+            }
+            return out;
+        }
+
+        @Override
+        public String toString() { return "-" + operand; }
+    }
+
+    public static final class IsNull extends Expr {
+        final Expr operand;
+        final boolean negated;
+
+        public IsNull(Expr operand, boolean negated) {
+            this.operand = operand;
+            this.negated = negated;
+        }
+
+        @Override
+        public List<Expr> children() { return List.of(operand); }
+
+        @Override
+        public Expr withChildren(List<Expr> children) { return new IsNull(children.get(0), negated); }
+
+        @Override
+        public ColumnVector evaluate(Batch batch) {
+            ColumnVector in = operand.evaluate(batch);
+            ColumnVector out = result(batch);
+            for (int i = 0, n = batch.rowCount(); i < n; i++) {
+                int row = batch.row(i);
+                out.setBoolean(row, in.isNull(row) != negated);
+            }
+            return out;
+        }
+
+        @Override
+        public String toString() { return operand + (negated ? " IS NOT NULL" : " IS NULL"); }
+    }
+
+    public enum BinaryOp {
+        OR("OR"), AND("AND"),
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="),
+        LIKE("LIKE"), CONCAT("||"),
+        ADD("+"), SUB("-"), MUL("*"), DIV("/"), MOD("%");
+
+        final String symbol;
+
+        BinaryOp(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    public static final class Binary extends Expr {
+        final BinaryOp op;
+        final Expr left;
+        final Expr right;
+        private LikePattern likePattern;
+
+        public Binary(BinaryOp op, Expr left, Expr right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        public BinaryOp getOp() { return op; }
+        public Expr getLeft() { return left; }
+        public Expr getRight() { return right; }
+
+        @Override
+        public List<Expr> children() { return List.of(left, right); }
+
+        @Override
+        public Expr withChildren(List<Expr> children) {
+            return new Binary(op, children.get(0), children.get(1));
+        }
+
+        @Override
+        public ColumnVector evaluate(Batch batch) {
+            ColumnVector a = left.evaluate(batch);
+            ColumnVector b = right.evaluate(batch);
+            ColumnVector out = result(batch);
+            int n = batch.rowCount();
+            switch (op) {
+                case AND -> {
+                    for (int i = 0; i < n; i++) {
+                        int row = batch.row(i);
+                        // false wins over NULL, NULL over true
+                        boolean aFalse = !a.isNull(row) && !Values.isTrue(a, row);
+                        boolean bFalse = !b.isNull(row) && !Values.isTrue(b, row);
+                        if (aFalse || bFalse) out.setBoolean(row, false);
+                        else if (a.isNull(row) || b.isNull(row)) out.setNull(row);
+                        else out.setBoolean(row, true);
+                    }
+                }
+                case OR -> {
+                    for (int i = 0; i < n; i++) {
+                        int row = batch.row(i);
+                        boolean aTrue = !a.isNull(row) && Values.isTrue(a, row);
+                        boolean bTrue = !b.isNull(row) && Values.isTrue(b, row);
+                        if (aTrue || bTrue) out.setBoolean(row, true);
+                        else if (a.isNull(row) || b.isNull(row)) out.setNull(row);
+                        else out.setBoolean(row, false);
+                    }
+                }
+                case EQ, NE, LT, LE, GT, GE -> compare(batch, a, b, out);
+                case LIKE -> like(batch, a, b, out);
+                case CONCAT -> {
+                    for (int i = 0; i < n; i++) {
+                        int row = batch.row(i);
+                        if (a.isNull(row) || b.isNull(row)) out.setNull(row);
+                        else out.setText(row, ValueFormatter.format(a, row) + ValueFormatter.format(b, row));
+                    }
+                }
+                default -> {
+                    for (int i = 0; i < n; i++) {
+                        Values.arithmetic(op, a, b, batch.row(i), out);
+                    }
+                }
+            }
+            return out;
+        }
+
+        private void compare(Batch batch, ColumnVector a, ColumnVector b, ColumnVector out) {
+            for (int i = 0, n = batch.rowCount(); i < n; i++) {
+                int row = batch.row(i);
+                if (a.isNull(row) || b.isNull(row)) {
+                    out.setNull(row);
+                    continue;
+                }
+                int c = ColumnVector.compare(a, row, b, row);
+                boolean r = switch (op) {
+                    case EQ -> c == 0;
+                    case NE -> c != 0;
+                    case LT -> c < 0;
+                    case LE -> c <= 0;
+                    case GT -> c > 0;
+                    default -> c >= 0;
+                };
+                out.setBoolean(row, r);
+            }
+        }
+
+        private void like(Batch batch, ColumnVector a, ColumnVector b, ColumnVector out) {
+            for (int i = 0, n = batch.rowCount(); i < n; i++) {
+                int row = batch.row(i);
+                if (a.isNull(row) || b.isNull(row)) {
+                    out.setNull(row);
+                    continue;
+                }
+                String pattern = ValueFormatter.format(b, row);
+                if (likePattern == null || !likePattern.pattern.equals(pattern)) {
+                    likePattern = new LikePattern(pattern);
+                }
+                out.setBoolean(row, likePattern.matches(ValueFormatter.format(a, row)));
+            }
+        }
+
+        @Override
+        public String toString() { return "(" + left + " " + op.symbol + " " + right + ")"; }
+    }
+
+    public static final class InList extends Expr {
+        final Expr operand;
+        final List<Expr> values;
+        final boolean negated;
+
+        public InList(Expr operand, List<Expr> values, boolean negated) {
+            this.operand = operand;
+            this.values = values;
+            this.negated = negated;
+        }
+
+        @Override
+        public List<Expr> children() {
+            List<Expr> children = new ArrayList<>(values.size() + 1);
+            children.add(operand);
+            children.addAll(values);
+            return children;
+        }
+
+        @Override
+        public Expr withChildren(List<Expr> children) {
+            return new InList(children.get(0), children.subList(1, children.size()), negated);
+        }
+
+        @Override
+        public ColumnVector evaluate(Batch batch) {
+            ColumnVector in = operand.evaluate(batch);
+            ColumnVector[] candidates = new ColumnVector[values.size()];
+            for (int k = 0; k < candidates.length; k++) {
+                candidates[k] = values.get(k).evaluate(batch);
+            }
+            ColumnVector out = result(batch);
+            for (int i = 0, n = batch.rowCount(); i < n; i++) {
+                int row = batch.row(i);
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                    continue;
+                }
+                boolean found = false;
+                boolean sawNull = false;
+                for (ColumnVector candidate : candidates) {
+                    if (candidate.isNull(row)) {
+                        sawNull = true;
+                    } else if (ColumnVector.compare(in, row, candidate, row) == 0) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (found) out.setBoolean(row, !negated);
+                else if (sawNull) out.setNull(row);
+                else out.setBoolean(row, negated);
+            }
+            return out;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder().append(operand).append(negated ? " NOT IN (" : " IN (");
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values.get(i));
+            }
+            return sb.append(")").toString();
+        }
+    }
+
+    // Scalar function call
+    public static final class Function extends Expr {
+        final String name;
+        final List<Expr> args;
+
+        public Function(String name, List<Expr> args) {
+            this.name = name.toUpperCase(Locale.ROOT);
+            this.args = args;
+            int expected = switch (this.name) {
+                case "LENGTH", "UPPER", "LOWER", "ABS", "TYPEOF" -> 1;
+                case "COALESCE", "IFNULL" -> -1;
+                default -> throw new SqlException("no such function: " + name);
+            };
+            if (expected >= 0 && args.size() != expected) {
+                throw new SqlException("wrong number of arguments to function " + name + "()");
+            }
+            if (expected < 0 && args.size() < 2) {
+                throw new SqlException("wrong number of arguments to function " + name + "()");
+            }
+        }
+
+        @Override
+        public List<Expr> children() { return args; }
+
+        @Override
+        public Expr withChildren(List<Expr> children) { return new Function(name, children); }
+
+        @Override
+        public ColumnVector evaluate(Batch batch) {
+            ColumnVector[] in = new ColumnVector[args.size()];
+            for (int k = 0; k < in.length; k++) {
+                in[k] = args.get(k).evaluate(batch);
+            }
+            ColumnVector out = result(batch);
+            for (int i = 0, n = batch.rowCount(); i < n; i++) {
+                int row = batch.row(i);
+                ColumnVector a = in[0];
+                switch (name) {
+                    case "COALESCE", "IFNULL" -> {
+                        out.setNull(row);
+                        for (ColumnVector candidate : in) {
+                            if (!candidate.isNull(row)) {
+                                out.copyFrom(candidate, row, row);
+                                break;
+                            }
+                        }
+                    }
+                    case "TYPEOF" -> out.setText(row, switch (a.type(row)) {
+                        case ColumnVector.INTEGER -> "integer";
+                        case ColumnVector.REAL -> "real";
+                        case ColumnVector.TEXT -> "text";
+                        case ColumnVector.BLOB -> "blob";
+                        default -> "null";
+                    });
+                    default -> {
+                        if (a.isNull(row)) {
+                            out.setNull(row);
+                            continue;
+                        }
+                        switch (name) {
+                            case "LENGTH" -> out.setLong(row, switch (a.type(row)) {
+                                case ColumnVector.BLOB -> ((byte[]) a.get(row)).length;
+                                default -> {
+                                    String s = ValueFormatter.format(a, row);
+                                    yield s.codePointCount(0, s.length());
+                                }
+                            });
+                            case "UPPER" -> out.setText(row, ValueFormatter.format(a, row).toUpperCase(Locale.ROOT));
+                            case "LOWER" -> out.setText(row, ValueFormatter.format(a, row).toLowerCase(Locale.ROOT));
+                            default -> { // ABS
+                                if (Values.numericType(a, row) == ColumnVector.REAL) {
+                                    out.setDouble(row, Math.abs(Values.asDouble(a, row)));
+                                } else {
+                                    out.setLong(row, Math.abs(Values.asLong(a, row)));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return out;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(name.toLowerCase(Locale.ROOT)).append("(");
+            for (int i = 0; i < args.size(); i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(args.get(i));
+            }
+            return sb.append(")").toString();
+        }
+    }
+
+    /**
+     * Aggregate function call. Not evaluated directly: the planner computes
+     * aggregates in an aggregate operator and replaces each call with a
+     * reference to its output column.
+     */
+    public static final class Aggregate extends Expr {
+        final String name;
+        final Expr argument; // null for COUNT(*)
+
+        public Aggregate(String name, Expr argument) {
+            this.name = name.toUpperCase(Locale.ROOT);
+            this.argument = argument;
+            if (argument != null && argument.containsAggregate()) {
+                throw new SqlException("misuse of aggregate function " + name + "()");
+            }
+        }
+
+        public String getName() { return name; }
+        public Expr getArgument() { return argument; }
+
+        static boolean isAggregate(String name) {
+            return switch (name.toUpperCase(Locale.ROOT)) {
+                case "COUNT", "SUM", "TOTAL", "AVG", "MIN", "MAX" -> true;
+                default -> false;
+            };
+        }
+
+        @Override
+        public List<Expr> children() {
+            return argument == null ? List.of() : List.of(argument);
+        }
+
+        @Override
+        public Expr withChildren(List<Expr> children) {
+            return new Aggregate(name, children.get(0));
+        }
+
+        @Override
+        public ColumnVector evaluate(Batch batch) {
+            throw new IllegalStateException("Aggregate " + this + " evaluated outside an aggregate operator");
+        }
+
+        @Override
+        public String toString() {
+            return name.toLowerCase(Locale.ROOT) + "(" + (argument == null ? "*" : argument.toString()) + ")";
+        }
+    }
+
+    // SQL LIKE: % matches any run, _ one character, ASCII letters ignore case
+    static final class LikePattern {
+        final String pattern;
+        private final int[] codePoints;
+
+        LikePattern(String pattern) {
+            this.pattern = pattern;
+            this.codePoints = pattern.codePoints().map(LikePattern::fold).toArray();
+        }
+
+        boolean matches(String text) {
+            int[] s = text.codePoints().map(LikePattern::fold).toArray();
+            int p = 0, t = 0, starP = -1, starT = 0;
+            while (t < s.length) {
+                if (p < codePoints.length && (codePoints[p] == '_' || codePoints[p] == s[t])) {
+                    p++;
+                    t++;
+                } else if (p < codePoints.length && codePoints[p] == '%') {
+                    starP = p++;
+                    starT = t;
+                } else if (starP >= 0) {
+                    p = starP + 1;
+                    t = ++starT;
+                } else {
+                    return false;
+                }
+            }
+            while (p < codePoints.length && codePoints[p] == '%') p++;
+            return p == codePoints.length;
+        }
+
+        private static int fold(int c) {
+            return c >= 'A' && c <= 'Z' ? c + 32 : c;
+        }
+    }
+
+    // Numeric helpers shared by the operators
+    static final class Values {
+        private Values() { }
+
+        // SQLite truth: non-zero numbers; TEXT by its numeric prefix
+        static boolean isTrue(ColumnVector v, int row) {
+            return switch (v.type(row)) {
+                case ColumnVector.INTEGER -> v.getLong(row) != 0;
+                case ColumnVector.REAL -> v.getDouble(row) != 0.0;
+                case ColumnVector.NULL -> false;
+                default -> asDouble(v, row) != 0.0;
+            };
+        }
+
+        // INTEGER, REAL or NULL: the type a value takes in arithmetic
+        static byte numericType(ColumnVector v, int row) {
+            switch (v.type(row)) {
+                case ColumnVector.INTEGER: return ColumnVector.INTEGER;
+                case ColumnVector.REAL: return ColumnVector.REAL;
+                case ColumnVector.NULL: return ColumnVector.NULL;
+                default:
+                    String prefix = numericPrefix(textOf(v, row));
+                    return prefix.indexOf('.') >= 0 || prefix.indexOf('e') >= 0 || prefix.indexOf('E') >= 0
+                            ? ColumnVector.REAL : ColumnVector.INTEGER;
+            }
+        }
+
+        static long asLong(ColumnVector v, int row) {
+            return switch (v.type(row)) {
+                case ColumnVector.INTEGER, ColumnVector.REAL -> v.getLong(row);
+                case ColumnVector.NULL -> 0;
+                default -> {
+                    String prefix = numericPrefix(textOf(v, row));
+                    try {
+                        yield Long.parseLong(prefix);
+                    } catch (NumberFormatException e) {
+                        yield (long) asDouble(prefix);
+                    }
+                }
+            };
+        }
+
+        static double asDouble(ColumnVector v, int row) {
+            return switch (v.type(row)) {
+                case ColumnVector.INTEGER, ColumnVector.REAL -> v.getDouble(row);
+                case ColumnVector.NULL -> 0.0;
+                default -> asDouble(numericPrefix(textOf(v, row)));
+            };
+        }
+
+        private static double asDouble(String prefix) {
+            try {
+                return Double.parseDouble(prefix);
+            } catch (NumberFormatException e) {
+                return 0.0;
+            }
+        }
+
+        private static String textOf(ColumnVector v, int row) {
+            Object value = v.get(row);
+            return value instanceof byte[] blob ? new String(blob, StandardCharsets.UTF_8) : (String) value;
+        }
+
+        // The longest numeric prefix of a string, as SQLite converts TEXT
+        private static String numericPrefix(String text) {
+            String s = text.strip();
+            int end = 0;
+            int n = s.length();
+            if (end < n && (s.charAt(end) == '+' || s.charAt(end) == '-')) end++;
+            while (end < n && Character.isDigit(s.charAt(end))) end++;
+            if (end < n && s.charAt(end) == '.') {
+                end++;
+                while (end < n && Character.isDigit(s.charAt(end))) end++;
+            }
+            if (end < n && (s.charAt(end) == 'e' || s.charAt(end) == 'E')) {
+                int exp = end + 1;
+                if (exp < n && (s.charAt(exp) == '+' || s.charAt(exp) == '-')) exp++;
+                if (exp < n && Character.isDigit(s.charAt(exp))) {
+                    end = exp;
+                    while (end < n && Character.isDigit(s.charAt(end))) end++;
+                }
+            }
+            return s.substring(0, end);
+        }
+
+        static void arithmetic(BinaryOp op, ColumnVector a, ColumnVector b, int row, ColumnVector out) {
+            byte ta = numericType(a, row);
+            byte tb = numericType(b, row);
+            if (ta == ColumnVector.NULL || tb == ColumnVector.NULL) {
+                out.setNull(row);
+                return;
+            }
+            if (ta == ColumnVector.INTEGER && tb == ColumnVector.INTEGER) {
+                long x = asLong(a, row);
+                long y = asLong(b, row);
+                try {
+                    switch (op) {
+                        case ADD -> out.setLong(row, Math.addExact(x, y));
+                        case SUB -> out.setLong(row, Math.subtractExact(x, y));
+                        case MUL -> out.setLong(row, Math.multiplyExact(x, y));
+                        case DIV -> {
+                            if (y == 0) out.setNull(row);
+                            else if (x == Long.MIN_VALUE && y == -1) out.setDouble(row, -(double) x);
+                            else out.setLong(row, x / y);
+                        }
+                        default -> {
+                            if (y == 0) out.setNull(row);
+                            else out.setLong(row, y == -1 ? 0 : x % y);
+                        }
+                    }
+                } catch (ArithmeticException overflow) {
+                    // Integer overflow turns the result into a REAL, as in SQLite
+                    arithmeticReal(op, x, y, row, out);
+                }
+                return;
+            }
+            arithmeticReal(op, asDouble(a, row), asDouble(b, row), row, out);
+        }
+
+        private static void arithmeticReal(BinaryOp op, double x, double y, int row, ColumnVector out) {
+            switch (op) {
+                case ADD -> out.setDouble(row, x + y);
+                case SUB -> out.setDouble(row, x - y);
+                case MUL -> out.setDouble(row, x * y);
+                case DIV -> {
+                    if (y == 0.0) out.setNull(row);
+                    else out.setDouble(row, x / y);
+                }
+                default -> {
+                    long divisor = (long) y;
+                    if (divisor == 0) out.setNull(row);
+                    else out.setDouble(row, (long) x % divisor);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package query;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Keeps the rows for which a predicate is true, by narrowing the
+ * selection vector of each input batch.
+ */
+public class FilterOperator implements Operator {
+
+    private final Operator input;
+    private final Expr predicate;
+    private int[] selection = new int[Batch.CAPACITY];
+
+    public FilterOperator(Operator input, Expr predicate) {
+        this.input = input;
+        this.predicate = predicate;
+    }
+
+    @Override
+    public List<String> columnNames() {
+        return input.columnNames();
+    }
+
+    @Override
+    public Batch next() throws IOException {
+        Batch batch;
+        while ((batch = input.next()) != null) {
+            ColumnVector result = predicate.evaluate(batch);
+            int n = batch.rowCount();
+            if (selection.length < n) {
+                selection = new int[n];
+            }
+            int selected = 0;
+            for (int i = 0; i < n; i++) {
+                int row = batch.row(i);
+                if (!result.isNull(row) && Expr.Values.isTrue(result, row)) {
+                    selection[selected++] = row;
+                }
+            }
+            if (selected > 0) {
+                batch.select(selection, selected);
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        input.close();
+    }
+}
@@ -0,0 +1,116 @@
+package query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a SQL statement into tokens. Keywords are not distinguished from
+ * identifiers here; the parser matches words case-insensitively.
+ */
+class Lexer {
+
+    enum Kind { WORD, QUOTED_IDENTIFIER, STRING, BLOB, INTEGER, REAL, SYMBOL, END }
+
+    record Token(Kind kind, String text, int position) {
+        boolean isWord(String word) {
+            return kind == Kind.WORD && text.equalsIgnoreCase(word);
+        }
+
+        boolean isSymbol(String symbol) {
+            return kind == Kind.SYMBOL && text.equals(symbol);
+        }
+
+        @Override
+        public String toString() {
+            return kind == Kind.END ? "end of statement" : "\"" + text + "\"";
+        }
+    }
+
+    static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int n = sql.length();
+        while (i < n) {
+            char c = sql.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                // Comment to end of line
+                while (i < n && sql.charAt(i) != '\n') i++;
+            } else if ((c == 'x' || c == 'X') && i + 1 < n && sql.charAt(i + 1) == '\'') {
+                i = readQuoted(sql, i + 1, '\'', tokens, Kind.BLOB);
+                String hex = tokens.get(tokens.size() - 1).text();
+                if (hex.length() % 2 != 0 || !hex.chars().allMatch(h -> Character.digit(h, 16) >= 0)) {
+                    throw new SqlException("unrecognized token: \"" + sql.substring(start, i) + "\"");
+                }
+            } else if (Character.isLetter(c) || c == '_') {
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '$')) i++;
+                tokens.add(new Token(Kind.WORD, sql.substring(start, i), start));
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < n && Character.isDigit(sql.charAt(i + 1)))) {
+                boolean real = false;
+                while (i < n && Character.isDigit(sql.charAt(i))) i++;
+                if (i < n && sql.charAt(i) == '.') {
+                    real = true;
+                    i++;
+                    while (i < n && Character.isDigit(sql.charAt(i))) i++;
+                }
+                if (i < n && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+                    real = true;
+                    i++;
+                    if (i < n && (sql.charAt(i) == '+' || sql.charAt(i) == '-')) i++;
+                    while (i < n && Character.isDigit(sql.charAt(i))) i++;
+                }
+                tokens.add(new Token(real ? Kind.REAL : Kind.INTEGER, sql.substring(start, i), start));
+            } else if (c == '\'') {
+                i = readQuoted(sql, i, '\'', tokens, Kind.STRING);
+            } else if (c == '"' || c == '`') {
+                i = readQuoted(sql, i, c, tokens, Kind.QUOTED_IDENTIFIER);
+            } else if (c == '[') {
+                int end = sql.indexOf(']', i);
+                if (end == -1) {
+                    throw new SqlException("Unterminated identifier at position " + i);
+                }
+                tokens.add(new Token(Kind.QUOTED_IDENTIFIER, sql.substring(i + 1, end), start));
+                i = end + 1;
+            } else {
+                String two = i + 1 < n ? sql.substring(i, i + 2) : "";
+                if (two.equals("<=") || two.equals(">=") || two.equals("<>") || two.equals("!=")
+                        || two.equals("==") || two.equals("||")) {
+                    tokens.add(new Token(Kind.SYMBOL, two, start));
+                    i += 2;
+                } else if ("(),*=<>+-/%.;".indexOf(c) >= 0) {
+                    tokens.add(new Token(Kind.SYMBOL, String.valueOf(c), start));
+                    i++;
+                } else {
+                    throw new SqlException("Unexpected character '" + c + "' at position " + i);
+                }
+            }
+        }
+        tokens.add(new Token(Kind.END, "", n));
+        return tokens;
+    }
+
+    // Quoted string or identifier; a doubled quote stands for one quote
+    private static int readQuoted(String sql, int start, char quote, List<Token> tokens, Kind kind) {
+        StringBuilder text = new StringBuilder();
+        int i = start + 1;
+        while (true) {
+            if (i >= sql.length()) {
+                throw new SqlException("Unterminated quote at position " + start);
+            }
+            char c = sql.charAt(i);
+            if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    text.append(quote);
+                    i += 2;
+                    continue;
+                }
+                tokens.add(new Token(kind, text.toString(), start));
+                return i + 1;
+            }
+            text.append(c);
+            i++;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package query;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Skips the first {@code offset} rows and passes on at most {@code limit}
+ * rows after them, then stops pulling from its input.
+ */
+public class LimitOperator implements Operator {
+
+    private final Operator input;
+    private long toSkip;
+    private long remaining;
+    private int[] selection = new int[Batch.CAPACITY];
+
+    public LimitOperator(Operator input, long limit, long offset) {
+        this.input = input;
+        this.remaining = limit;
+        this.toSkip = offset;
+    }
+
+    @Override
+    public List<String> columnNames() {
+        return input.columnNames();
+    }
+
+    @Override
+    public Batch next() throws IOException {
+        while (remaining > 0) {
+            Batch batch = input.next();
+            if (batch == null) {
+                break;
+            }
+            int n = batch.rowCount();
+            if (toSkip >= n) {
+                toSkip -= n;
+                continue;
+            }
+            int from = (int) toSkip;
+            int count = (int) Math.min(n - from, remaining);
+            toSkip = 0;
+            remaining -= count;
+            if (from > 0 || count < n) {
+                if (selection.length < count) {
+                    selection = new int[count];
+                }
+                for (int i = 0; i < count; i++) {
+                    selection[i] = batch.row(from + i);
+                }
+                batch.select(selection, count);
+            }
+            return batch;
+        }
+        close();
+        return null;
+    }
+
+    @Override
+    public void close() {
+        input.close();
+    }
+}
@@ -0,0 +1,22 @@
+package query;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A stage of a query pipeline. Operators pull batches from their input
+ * and hand on batches of their own; {@link #next()} returns null once
+ * the input is exhausted.
+ */
+public interface Operator extends AutoCloseable {
+
+    List<String> columnNames();
+
+    /**
+     * @return the next batch with at least one live row, or null at the end
+     */
+    Batch next() throws IOException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,409 @@
+package query;
+
+import query.Expr.BinaryOp;
+import query.Lexer.Kind;
+import query.Lexer.Token;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Recursive-descent parser for single-table {@code SELECT} statements.
+ * <p>
+ * Operator precedence follows SQLite, lowest first: OR, AND, NOT,
+ * equality ({@code = != IS IN LIKE BETWEEN}), relational
+ * ({@code < <= > >=}), {@code + -}, {@code * / %}, {@code ||}, unary minus.
+ */
+class Parser {
+
+    // Words that end an expression or cannot be an implicit alias
+    private static final Set<String> RESERVED = Set.of(
+            "SELECT", "DISTINCT", "ALL", "FROM", "WHERE", "GROUP", "BY", "HAVING", "ORDER",
+            "LIMIT", "OFFSET", "AS", "ASC", "DESC", "AND", "OR", "NOT", "IS", "IN", "LIKE",
+            "BETWEEN", "NULL");
+
+    private final String sql;
+    private final List<Token> tokens;
+    private int pos;
+
+    private Parser(String sql) {
+        this.sql = sql;
+        this.tokens = Lexer.tokenize(sql);
+    }
+
+    static SelectStatement parse(String sql) {
+        Parser parser = new Parser(sql);
+        SelectStatement statement = parser.select();
+        parser.acceptSymbol(";");
+        if (parser.peek().kind() != Kind.END) {
+            throw parser.error();
+        }
+        return statement;
+    }
+
+    private SelectStatement select() {
+        expectWord("SELECT");
+        boolean distinct = acceptWord("DISTINCT");
+        if (!distinct) {
+            acceptWord("ALL");
+        }
+
+        List<SelectStatement.SelectItem> items = new ArrayList<>();
+        do {
+            items.add(selectItem());
+        } while (acceptSymbol(","));
+
+        expectWord("FROM");
+        String table = identifier();
+        String tableAlias = null;
+        if (acceptWord("AS") || isAlias(peek())) {
+            tableAlias = identifier();
+        }
+
+        Expr where = acceptWord("WHERE") ? expression() : null;
+
+        List<Expr> groupBy = new ArrayList<>();
+        Expr having = null;
+        if (acceptWord("GROUP")) {
+            expectWord("BY");
+            do {
+                groupBy.add(expression());
+            } while (acceptSymbol(","));
+        }
+        if (acceptWord("HAVING")) {
+            having = expression();
+        }
+
+        List<SelectStatement.OrderItem> orderBy = new ArrayList<>();
+        if (acceptWord("ORDER")) {
+            expectWord("BY");
+            do {
+                Expr expr = expression();
+                boolean descending = false;
+                if (acceptWord("DESC")) {
+                    descending = true;
+                } else {
+                    acceptWord("ASC");
+                }
+                orderBy.add(new SelectStatement.OrderItem(expr, descending));
+            } while (acceptSymbol(","));
+        }
+
+        Expr limit = null;
+        Expr offset = null;
+        if (acceptWord("LIMIT")) {
+            limit = expression();
+            if (acceptWord("OFFSET")) {
+                offset = expression();
+            } else if (acceptSymbol(",")) {
+                // LIMIT offset, count
+                offset = limit;
+                limit = expression();
+            }
+        }
+
+        return new SelectStatement(distinct, items, table, tableAlias, where,
+                groupBy, having, orderBy, limit, offset);
+    }
+
+    private SelectStatement.SelectItem selectItem() {
+        if (acceptSymbol("*")) {
+            return new SelectStatement.SelectItem(null, "*", true);
+        }
+        int start = peek().position();
+        Expr expr = expression();
+        String name = sql.substring(start, peek().position()).strip();
+        if (acceptWord("AS") || isAlias(peek())) {
+            name = identifier();
+        }
+        return new SelectStatement.SelectItem(expr, name, false);
+    }
+
+    // ---- Expressions, lowest precedence first ----
+
+    Expr expression() {
+        return or();
+    }
+
+    private Expr or() {
+        Expr left = and();
+        while (acceptWord("OR")) {
+            left = new Expr.Binary(BinaryOp.OR, left, and());
+        }
+        return left;
+    }
+
+    private Expr and() {
+        Expr left = not();
+        while (acceptWord("AND")) {
+            left = new Expr.Binary(BinaryOp.AND, left, not());
+        }
+        return left;
+    }
+
+    private Expr not() {
+        if (acceptWord("NOT")) {
+            return new Expr.Not(not());
+        }
+        return equality();
+    }
+
+    private Expr equality() {
+        Expr left = relational();
+        while (true) {
+            if (acceptSymbol("=") || acceptSymbol("==")) {
+                left = new Expr.Binary(BinaryOp.EQ, left, relational());
+            } else if (acceptSymbol("!=") || acceptSymbol("<>")) {
+                left = new Expr.Binary(BinaryOp.NE, left, relational());
+            } else if (acceptWord("IS")) {
+                boolean negated = acceptWord("NOT");
+                expectWord("NULL");
+                left = new Expr.IsNull(left, negated);
+            } else if (peek().isWord("NOTNULL") || peek().isWord("ISNULL")) {
+                left = new Expr.IsNull(left, next().isWord("NOTNULL"));
+            } else {
+                boolean negated = peek().isWord("NOT")
+                        && (peekAhead().isWord("LIKE") || peekAhead().isWord("IN") || peekAhead().isWord("BETWEEN"));
+                if (negated) {
+                    next();
+                }
+                if (acceptWord("LIKE")) {
+                    Expr like = new Expr.Binary(BinaryOp.LIKE, left, relational());
+                    left = negated ? new Expr.Not(like) : like;
+                } else if (acceptWord("IN")) {
+                    expectSymbol("(");
+                    List<Expr> values = new ArrayList<>();
+                    if (!peek().isSymbol(")")) {
+                        do {
+                            values.add(expression());
+                        } while (acceptSymbol(","));
+                    }
+                    expectSymbol(")");
+                    left = new Expr.InList(left, values, negated);
+                } else if (acceptWord("BETWEEN")) {
+                    Expr low = relational();
+                    expectWord("AND");
+                    Expr high = relational();
+                    Expr between = new Expr.Binary(BinaryOp.AND,
+                            new Expr.Binary(BinaryOp.GE, left, low),
+                            new Expr.Binary(BinaryOp.LE, left, high));
+                    left = negated ? new Expr.Not(between) : between;
+                } else {
+                    return left;
+                }
+            }
+        }
+    }
+
+    private Expr relational() {
+        Expr left = additive();
+        while (true) {
+            BinaryOp op;
+            if (acceptSymbol("<")) op = BinaryOp.LT;
+            else if (acceptSymbol("<=")) op = BinaryOp.LE;
+            else if (acceptSymbol(">")) op = BinaryOp.GT;
+            else if (acceptSymbol(">=")) op = BinaryOp.GE;
+            else return left;
+            left = new Expr.Binary(op, left, additive());
+        }
+    }
+
+    private Expr additive() {
+        Expr left = multiplicative();
+        while (true) {
+            if (acceptSymbol("+")) left = new Expr.Binary(BinaryOp.ADD, left, multiplicative());
+            else if (acceptSymbol("-")) left = new Expr.Binary(BinaryOp.SUB, left, multiplicative());
+            else return left;
+        }
+    }
+
+    private Expr multiplicative() {
+        Expr left = concat();
+        while (true) {
+            if (acceptSymbol("*")) left = new Expr.Binary(BinaryOp.MUL, left, concat());
+            else if (acceptSymbol("/")) left = new Expr.Binary(BinaryOp.DIV, left, concat());
+            else if (acceptSymbol("%")) left = new Expr.Binary(BinaryOp.MOD, left, concat());
+            else return left;
+        }
+    }
+
+    private Expr concat() {
+        Expr left = unary();
+        while (acceptSymbol("||")) {
+            left = new Expr.Binary(BinaryOp.CONCAT, left, unary());
+        }
+        return left;
+    }
+
+    private Expr unary() {
+        if (acceptSymbol("-")) {
+            Expr operand = unary();
+            // Fold negative literals so that -9223372036854775808 stays an integer
+            if (operand instanceof Expr.Literal literal && literal.getValue() instanceof Number number) {
+                return new Expr.Literal(negate(number));
+            }
+            return new Expr.Negate(operand);
+        }
+        if (acceptSymbol("+")) {
+            return unary();
+        }
+        return primary();
+    }
+
+    private Expr primary() {
+        int start = pos;
+        Token token = next();
+        switch (token.kind()) {
+            case INTEGER:
+                try {
+                    return new Expr.Literal(Long.parseLong(token.text()));
+                } catch (NumberFormatException e) {
+                    return new Expr.Literal(Double.parseDouble(token.text()));
+                }
+            case REAL:
+                return new Expr.Literal(Double.parseDouble(token.text()));
+            case STRING:
+                return new Expr.Literal(token.text());
+            case BLOB:
+                return new Expr.Literal(HexFormat.of().parseHex(token.text()));
+            case QUOTED_IDENTIFIER:
+                return columnRef(token.text());
+            case SYMBOL:
+                if (token.isSymbol("(")) {
+                    Expr inner = expression();
+                    expectSymbol(")");
+                    return inner;
+                }
+                break;
+            case WORD:
+                if (token.isWord("NULL")) {
+                    return new Expr.Literal(null);
+                }
+                if (peek().isSymbol("(")) {
+                    next();
+                    return call(token.text());
+                }
+                if (!RESERVED.contains(token.text().toUpperCase(Locale.ROOT))) {
+                    return columnRef(token.text());
+                }
+                break;
+            default:
+                break;
+        }
+        pos = start;
+        throw error();
+    }
+
+    private Expr columnRef(String first) {
+        if (acceptSymbol(".")) {
+            return new Expr.ColumnRef(first, identifier());
+        }
+        return new Expr.ColumnRef(null, first);
+    }
+
+    private Expr call(String name) {
+        if (Expr.Aggregate.isAggregate(name)) {
+            if (acceptSymbol("*")) {
+                expectSymbol(")");
+                if (!name.equalsIgnoreCase("COUNT")) {
+                    throw new SqlException("wrong number of arguments to function " + name + "()");
+                }
+                return new Expr.Aggregate(name, null);
+            }
+            if (peek().isWord("DISTINCT")) {
+                throw new SqlException("DISTINCT aggregates are not supported");
+            }
+        }
+        List<Expr> args = new ArrayList<>();
+        if (!peek().isSymbol(")")) {
+            do {
+                args.add(expression());
+            } while (acceptSymbol(","));
+        }
+        expectSymbol(")");
+        if (Expr.Aggregate.isAggregate(name)) {
+            if (args.size() != 1) {
+                throw new SqlException("wrong number of arguments to function " + name + "()");
+            }
+            return new Expr.Aggregate(name, args.get(0));
+        }
+        return new Expr.Function(name, args);
+    }
+
+    private static Object negate(Number number) {
+        if (number instanceof Long l) {
+            return -l;
+        }
+        double d = number.doubleValue();
+        // 9223372036854775808 only fits as a long once negated
+        return d == 0x1p63 ? Long.MIN_VALUE : -d;
+    }
+
+    // ---- Tokens ----
+
+    private Token peek() {
+        return tokens.get(pos);
+    }
+
+    private Token peekAhead() {
+        return tokens.get(Math.min(pos + 1, tokens.size() - 1));
+    }
+
+    private Token next() {
+        Token token = tokens.get(pos);
+        if (token.kind() != Kind.END) {
+            pos++;
+        }
+        return token;
+    }
+
+    private boolean acceptWord(String word) {
+        if (peek().isWord(word)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptSymbol(String symbol) {
+        if (peek().isSymbol(symbol)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expectWord(String word) {
+        if (!acceptWord(word)) {
+            throw error();
+        }
+    }
+
+    private void expectSymbol(String symbol) {
+        if (!acceptSymbol(symbol)) {
+            throw error();
+        }
+    }
+
+    private boolean isAlias(Token token) {
+        return token.kind() == Kind.QUOTED_IDENTIFIER || token.kind() == Kind.STRING
+                || (token.kind() == Kind.WORD && !RESERVED.contains(token.text().toUpperCase(Locale.ROOT)));
+    }
+
+    private String identifier() {
+        Token token = peek();
+        if (isAlias(token)) {
+            pos++;
+            return token.text();
+        }
+        throw error();
+    }
+
+    private SqlException error() {
+        Token token = peek();
+        return new SqlException("near " + token + ": syntax error");
+    }
+}
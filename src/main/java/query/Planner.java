@@ -0,0 +1,441 @@
+package query;
+
+import dataTypes.DatabaseSchema;
+import dataTypes.RowFilter;
+import dataTypes.TableInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns a {@link SelectStatement} into an operator pipeline:
+ * <pre>
+ *   scan → filter (WHERE) → aggregate → filter (HAVING) → project → sort → limit
+ * </pre>
+ * Column references are bound to batch positions on the way. The scan
+ * reads only the columns some clause refers to. WHERE conditions that
+ * compare a column with a constant are pushed into the scan as a
+ * {@link RowFilter}; the rest stay in the filter operator. A bare
+ * {@code COUNT(*)} over the whole table is answered from the B-tree's page
+ * headers by a {@link RowCountOperator}.
+ * <p>
+ * Before planning, a literal compared with a column is converted with the
+ * column's {@link Affinity}, as SQLite converts it before comparing.
+ * Comparisons between two columns use no affinity.
+ */
+class Planner {
+
+    private final SelectStatement statement;
+    private final TableInfo table;
+
+    // Columns the scan produces, by table column number (ScanOperator.ROWID for the rowid)
+    private final List<Integer> scanColumns = new ArrayList<>();
+    private final List<String> scanNames = new ArrayList<>();
+    private final Map<Integer, Integer> scanPositions = new HashMap<>();
+
+    // Aggregation state: output layout is grouping expressions, then aggregates
+    private final List<String> groupKeys = new ArrayList<>();
+    private final List<AggregateOperator.Aggregate> aggregates = new ArrayList<>();
+    private final List<String> aggregateKeys = new ArrayList<>();
+
+    private Planner(SelectStatement statement, TableInfo table) {
+        this.table = table;
+        this.statement = withAffinity(statement);
+    }
+
+    static Operator plan(SelectStatement statement, DatabaseSchema schema) {
+        return new Planner(statement, findTable(schema, statement.table())).build();
+    }
+
+    static TableInfo findTable(DatabaseSchema schema, String name) {
+        TableInfo table = schema.getTable(name);
+        if (table == null) {
+            for (TableInfo candidate : schema.getAllTables()) {
+                if (candidate.getName().equalsIgnoreCase(name)) {
+                    table = candidate;
+                }
+            }
+        }
+        if (table == null || table.getSql() == null) {
+            throw new SqlException("no such table: " + name);
+        }
+        return table;
+    }
+
+    private Operator build() {
+        // Expand * and name the result columns
+        List<Expr> items = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (SelectStatement.SelectItem item : statement.items()) {
+            if (item.star()) {
+                for (String column : table.getColumnNames()) {
+                    items.add(new Expr.ColumnRef(null, column));
+                    names.add(column);
+                }
+            } else {
+                items.add(item.expr());
+                names.add(item.name());
+            }
+        }
+
+        Expr where = null;
+        RowFilter pushed = new RowFilter();
+        if (statement.where() != null) {
+            if (statement.where().containsAggregate()) {
+                throw new SqlException("misuse of aggregate function in WHERE clause");
+            }
+            Expr residual = null;
+            for (Expr conjunct : conjuncts(statement.where(), new ArrayList<>())) {
+                if (!pushDown(conjunct, pushed)) {
+                    residual = residual == null ? conjunct : new Expr.Binary(Expr.BinaryOp.AND, residual, conjunct);
+                }
+            }
+            where = residual == null ? null : bindScan(residual);
+        }
+
+        boolean hasAggregates = items.stream().anyMatch(Expr::containsAggregate)
+                || (statement.having() != null && statement.having().containsAggregate())
+                || statement.orderBy().stream().anyMatch(o -> o.expr().containsAggregate());
+        List<Expr> groupBy = groupExpressions(items, names);
+        boolean grouped = hasAggregates || !groupBy.isEmpty();
+        if (statement.having() != null && !grouped) {
+            throw new SqlException("a GROUP BY clause is required before HAVING");
+        }
+
+        List<Expr> groupBound = new ArrayList<>();
+        for (Expr expr : groupBy) {
+            if (expr.containsAggregate()) {
+                throw new SqlException("aggregate functions are not allowed in the GROUP BY clause");
+            }
+            groupKeys.add(expr.toString());
+            groupBound.add(bindScan(expr));
+        }
+
+        List<Expr> outputs = new ArrayList<>();
+        for (Expr item : items) {
+            outputs.add(grouped ? bindAggregated(item) : bindScan(item));
+        }
+        Expr having = statement.having() == null ? null : bindAggregated(statement.having());
+
+        // ORDER BY terms name a result column, or become hidden result columns
+        int visible = outputs.size();
+        int[] sortKeys = new int[statement.orderBy().size()];
+        boolean[] descending = new boolean[sortKeys.length];
+        for (int k = 0; k < sortKeys.length; k++) {
+            SelectStatement.OrderItem term = statement.orderBy().get(k);
+            int column = resultColumn(term.expr(), items, names, "ORDER BY", k);
+            if (column < 0) {
+                column = outputs.size();
+                outputs.add(grouped ? bindAggregated(term.expr()) : bindScan(term.expr()));
+                names.add(term.expr().toString());
+            }
+            sortKeys[k] = column;
+            descending[k] = term.descending();
+        }
+
+        long limit = statement.limit() == null ? -1 : constant(statement.limit(), "LIMIT");
+        long offset = statement.offset() == null ? 0 : Math.max(0, constant(statement.offset(), "OFFSET"));
+
+        // Assemble the pipeline bottom up
+        Operator op;
+        List<String> aggregateNames = new ArrayList<>(groupKeys);
+        aggregateNames.addAll(aggregateKeys);
+        boolean countOnly = statement.where() == null && groupBound.isEmpty() && aggregates.size() == 1
+                && aggregates.get(0).function().equals("COUNT") && aggregates.get(0).argument() == null;
+        if (countOnly) {
+            op = new RowCountOperator(table, aggregateNames);
+        } else {
+            int[] columns = scanColumns.stream().mapToInt(Integer::intValue).toArray();
+            op = new ScanOperator(table, pushed.isEmpty() ? null : pushed, columns, List.copyOf(scanNames));
+            if (where != null) {
+                op = new FilterOperator(op, where);
+            }
+            if (grouped) {
+                boolean sortGroups = !statement.distinct() || hasAggregates;
+                op = new AggregateOperator(op, groupBound, List.copyOf(aggregates), aggregateNames, sortGroups);
+            }
+        }
+        if (having != null) {
+            op = new FilterOperator(op, having);
+        }
+        op = new ProjectOperator(op, outputs, List.copyOf(names));
+        if (sortKeys.length > 0) {
+            long needed = limit < 0 ? -1 : limit + offset;
+            op = new SortOperator(op, sortKeys, descending, needed);
+        }
+        if (limit >= 0 || offset > 0) {
+            op = new LimitOperator(op, limit < 0 ? Long.MAX_VALUE : limit, offset);
+        }
+        if (outputs.size() > visible) {
+            List<Expr> trimmed = new ArrayList<>();
+            for (int i = 0; i < visible; i++) {
+                trimmed.add(new Expr.BoundColumn(i, names.get(i)));
+            }
+            op = new ProjectOperator(op, trimmed, List.copyOf(names.subList(0, visible)));
+        }
+        return op;
+    }
+
+    // GROUP BY terms, or every result column for SELECT DISTINCT
+    private List<Expr> groupExpressions(List<Expr> items, List<String> names) {
+        if (statement.distinct()) {
+            if (!statement.groupBy().isEmpty() || items.stream().anyMatch(Expr::containsAggregate)) {
+                throw new SqlException("DISTINCT together with GROUP BY or aggregates is not supported");
+            }
+            return items;
+        }
+        List<Expr> groupBy = new ArrayList<>();
+        for (int k = 0; k < statement.groupBy().size(); k++) {
+            Expr term = statement.groupBy().get(k);
+            int column = resultColumn(term, items, names, "GROUP BY", k);
+            // A result column matched by position or alias groups by its expression
+            groupBy.add(column >= 0 ? items.get(column) : term);
+        }
+        return groupBy;
+    }
+
+    /**
+     * @return the result column an ORDER BY or GROUP BY term refers to by
+     *         position, alias or equal expression, or -1
+     */
+    private int resultColumn(Expr term, List<Expr> items, List<String> names, String clause, int k) {
+        if (term instanceof Expr.Literal literal && literal.getValue() instanceof Long position) {
+            if (position < 1 || position > items.size()) {
+                throw new SqlException(ordinal(k + 1) + " " + clause + " term out of range - should be between 1 and "
+                        + items.size());
+            }
+            return (int) (position - 1);
+        }
+        String text = term.toString();
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).toString().equals(text)) {
+                return i;
+            }
+        }
+        if (term instanceof Expr.ColumnRef ref && ref.getQualifier() == null
+                && table.getColumnIndex(ref.getName()) < 0) {
+            for (int i = 0; i < names.size() && i < items.size(); i++) {
+                if (names.get(i).equalsIgnoreCase(ref.getName())) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String ordinal(int n) {
+        if (n % 100 >= 11 && n % 100 <= 13) {
+            return n + "th";
+        }
+        return n + switch (n % 10) {
+            case 1 -> "st";
+            case 2 -> "nd";
+            case 3 -> "rd";
+            default -> "th";
+        };
+    }
+
+    // The statement with every column-versus-literal comparison's literal converted
+    private SelectStatement withAffinity(SelectStatement s) {
+        List<SelectStatement.SelectItem> items = new ArrayList<>();
+        for (SelectStatement.SelectItem item : s.items()) {
+            items.add(item.star() ? item : new SelectStatement.SelectItem(withAffinity(item.expr()), item.name(), false));
+        }
+        List<Expr> groupBy = new ArrayList<>();
+        for (Expr term : s.groupBy()) {
+            groupBy.add(withAffinity(term));
+        }
+        List<SelectStatement.OrderItem> orderBy = new ArrayList<>();
+        for (SelectStatement.OrderItem term : s.orderBy()) {
+            orderBy.add(new SelectStatement.OrderItem(withAffinity(term.expr()), term.descending()));
+        }
+        return new SelectStatement(s.distinct(), items, s.table(), s.tableAlias(), withAffinity(s.where()),
+                groupBy, withAffinity(s.having()), orderBy, s.limit(), s.offset());
+    }
+
+    private Expr withAffinity(Expr expr) {
+        if (expr == null) {
+            return null;
+        }
+        return expr.rewrite(e -> {
+            if (e instanceof Expr.Binary binary && isComparison(binary.getOp())) {
+                if (binary.getLeft() instanceof Expr.ColumnRef ref && binary.getRight() instanceof Expr.Literal literal) {
+                    return new Expr.Binary(binary.getOp(), ref, convert(ref, literal));
+                }
+                if (binary.getLeft() instanceof Expr.Literal literal && binary.getRight() instanceof Expr.ColumnRef ref) {
+                    return new Expr.Binary(binary.getOp(), convert(ref, literal), ref);
+                }
+            }
+            if (e instanceof Expr.InList in && in.operand instanceof Expr.ColumnRef ref) {
+                List<Expr> values = new ArrayList<>(in.values.size());
+                for (Expr value : in.values) {
+                    values.add(value instanceof Expr.Literal literal ? convert(ref, literal) : withAffinity(value));
+                }
+                return new Expr.InList(ref, values, in.negated);
+            }
+            return e;
+        });
+    }
+
+    private static boolean isComparison(Expr.BinaryOp op) {
+        return switch (op) {
+            case EQ, NE, LT, LE, GT, GE -> true;
+            default -> false;
+        };
+    }
+
+    private Expr.Literal convert(Expr.ColumnRef ref, Expr.Literal literal) {
+        Affinity affinity = affinity(ref);
+        if (affinity == null) {
+            return literal;
+        }
+        Object converted = affinity.convertOperand(literal.getValue());
+        return converted == literal.getValue() ? literal : new Expr.Literal(converted);
+    }
+
+    // Affinity of a table column or the rowid; null for a name that is neither, which binding reports
+    private Affinity affinity(Expr.ColumnRef ref) {
+        int column = table.getColumnIndex(ref.getName());
+        if (column >= 0) {
+            return Affinity.of(table.getDeclaredType(column));
+        }
+        String lower = ref.getName().toLowerCase(Locale.ROOT);
+        return lower.equals("rowid") || lower.equals("_rowid_") || lower.equals("oid") ? Affinity.INTEGER : null;
+    }
+
+    private static List<Expr> conjuncts(Expr expr, List<Expr> out) {
+        if (expr instanceof Expr.Binary binary && binary.getOp() == Expr.BinaryOp.AND) {
+            conjuncts(binary.getLeft(), out);
+            conjuncts(binary.getRight(), out);
+        } else {
+            out.add(expr);
+        }
+        return out;
+    }
+
+    // Add a column-versus-constant condition to the scan filter, if it is one
+    private boolean pushDown(Expr conjunct, RowFilter filter) {
+        if (conjunct instanceof Expr.IsNull isNull && isNull.operand instanceof Expr.ColumnRef ref) {
+            filter.where(tableColumn(ref), isNull.negated ? RowFilter.Op.IS_NOT_NULL : RowFilter.Op.IS_NULL, null);
+            return true;
+        }
+        if (!(conjunct instanceof Expr.Binary binary)) {
+            return false;
+        }
+        RowFilter.Op op = switch (binary.getOp()) {
+            case EQ -> RowFilter.Op.EQ;
+            case NE -> RowFilter.Op.NE;
+            case LT -> RowFilter.Op.LT;
+            case LE -> RowFilter.Op.LE;
+            case GT -> RowFilter.Op.GT;
+            case GE -> RowFilter.Op.GE;
+            default -> null;
+        };
+        if (op == null) {
+            return false;
+        }
+        if (binary.getLeft() instanceof Expr.ColumnRef ref && binary.getRight() instanceof Expr.Literal literal) {
+            filter.where(tableColumn(ref), op, literal.getValue());
+            return true;
+        }
+        if (binary.getLeft() instanceof Expr.Literal literal && binary.getRight() instanceof Expr.ColumnRef ref) {
+            // 5 < x is x > 5
+            RowFilter.Op flipped = switch (op) {
+                case LT -> RowFilter.Op.GT;
+                case LE -> RowFilter.Op.GE;
+                case GT -> RowFilter.Op.LT;
+                case GE -> RowFilter.Op.LE;
+                default -> op;
+            };
+            filter.where(tableColumn(ref), flipped, literal.getValue());
+            return true;
+        }
+        return false;
+    }
+
+    // Bind column references to scan output positions
+    private Expr bindScan(Expr expr) {
+        return expr.rewrite(e -> e instanceof Expr.ColumnRef ref ? scanColumn(ref) : e);
+    }
+
+    private Expr scanColumn(Expr.ColumnRef ref) {
+        int key = tableColumn(ref);
+        Integer position = scanPositions.computeIfAbsent(key, c -> {
+            scanColumns.add(c);
+            scanNames.add(ref.getName());
+            return scanColumns.size() - 1;
+        });
+        return new Expr.BoundColumn(position, ref.getName());
+    }
+
+    // Table column number of a reference, or ScanOperator.ROWID
+    private int tableColumn(Expr.ColumnRef ref) {
+        String qualifier = ref.getQualifier();
+        String tableName = statement.tableAlias() != null ? statement.tableAlias() : table.getName();
+        if (qualifier != null && !qualifier.equalsIgnoreCase(tableName)) {
+            throw new SqlException("no such column: " + qualifier + "." + ref.getName());
+        }
+        int column = table.getColumnIndex(ref.getName());
+        if (column < 0) {
+            String lower = ref.getName().toLowerCase(Locale.ROOT);
+            if (!lower.equals("rowid") && !lower.equals("_rowid_") && !lower.equals("oid")) {
+                throw new SqlException("no such column: " + ref.getName());
+            }
+            column = ScanOperator.ROWID;
+        }
+        return column;
+    }
+
+    /**
+     * Bind an expression over the aggregate output: grouping expressions and
+     * aggregate calls become column references, and bare columns become ANY
+     * aggregates.
+     */
+    private Expr bindAggregated(Expr expr) {
+        return expr.rewrite(e -> {
+            int group = groupKeys.indexOf(e.toString());
+            if (group >= 0) {
+                return new Expr.BoundColumn(group, e.toString());
+            }
+            if (e instanceof Expr.Aggregate call) {
+                return aggregateColumn(call.toString(), call.getName(),
+                        call.getArgument() == null ? null : bindScan(call.getArgument()));
+            }
+            if (e instanceof Expr.ColumnRef ref) {
+                return aggregateColumn("any(" + ref + ")", "ANY", bindScan(ref));
+            }
+            return e;
+        });
+    }
+
+    private Expr aggregateColumn(String key, String function, Expr argument) {
+        int index = aggregateKeys.indexOf(key);
+        if (index < 0) {
+            index = aggregateKeys.size();
+            aggregateKeys.add(key);
+            aggregates.add(new AggregateOperator.Aggregate(function, argument));
+        }
+        return new Expr.BoundColumn(groupKeys.size() + index, key);
+    }
+
+    // LIMIT and OFFSET take constant integer expressions
+    private static long constant(Expr expr, String clause) {
+        boolean[] columns = new boolean[1];
+        expr.rewrite(e -> {
+            columns[0] |= e instanceof Expr.ColumnRef || e instanceof Expr.Aggregate;
+            return e;
+        });
+        if (columns[0]) {
+            throw new SqlException(clause + " must be a constant expression");
+        }
+        Batch one = new Batch(new ColumnVector[0], 1);
+        ColumnVector value = expr.evaluate(one);
+        if (Expr.Values.numericType(value, 0) != ColumnVector.INTEGER) {
+            throw new SqlException("datatype mismatch in " + clause);
+        }
+        return Expr.Values.asLong(value, 0);
+    }
+}
@@ -0,0 +1,44 @@
+package query;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Computes the output columns from each input batch. The result shares
+ * the input's rows and selection, so plain column references cost nothing.
+ */
+public class ProjectOperator implements Operator {
+
+    private final Operator input;
+    private final List<Expr> expressions;
+    private final List<String> names;
+
+    public ProjectOperator(Operator input, List<Expr> expressions, List<String> names) {
+        this.input = input;
+        this.expressions = expressions;
+        this.names = names;
+    }
+
+    @Override
+    public List<String> columnNames() {
+        return names;
+    }
+
+    @Override
+    public Batch next() throws IOException {
+        Batch batch = input.next();
+        if (batch == null) {
+            return null;
+        }
+        ColumnVector[] columns = new ColumnVector[expressions.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = expressions.get(i).evaluate(batch);
+        }
+        return batch.withColumns(columns);
+    }
+
+    @Override
+    public void close() {
+        input.close();
+    }
+}
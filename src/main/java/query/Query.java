@@ -0,0 +1,133 @@
+package query;
+
+import dataTypes.DatabaseSchema;
+import metrics.Metrics;
+import metrics.QueryEvent;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * A prepared {@code SELECT} statement.
+ * <p>
+ * Supported: a single table, expressions with the usual operators,
+ * {@code WHERE}, {@code GROUP BY} / {@code HAVING} with COUNT, SUM, TOTAL,
+ * AVG, MIN and MAX, {@code SELECT DISTINCT}, {@code ORDER BY} and
+ * {@code LIMIT} / {@code OFFSET}. Every {@link #open()} plans a fresh
+ * pipeline, so one query can run several times, also concurrently.
+ * Each run is timed from {@link #open()} to closing the pipeline and
+ * recorded in {@link Metrics} and as a {@link QueryEvent}.
+ */
+public final class Query {
+
+    private final DatabaseSchema schema;
+    private final String sql;
+    private final SelectStatement statement;
+    private final List<String> columnNames;
+
+    private Query(DatabaseSchema schema, String sql, SelectStatement statement) {
+        this.schema = schema;
+        this.sql = sql;
+        this.statement = statement;
+        // Plan once up front so errors surface here rather than at open()
+        try (Operator plan = Planner.plan(statement, schema)) {
+            this.columnNames = plan.columnNames();
+        }
+    }
+
+    /**
+     * @throws SqlException if the statement cannot be parsed or refers to
+     *                      an unknown table or column
+     */
+    public static Query prepare(DatabaseSchema schema, String sql) {
+        return new Query(schema, sql, Parser.parse(sql));
+    }
+
+    public List<String> columnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @return the root operator of a new pipeline; the caller closes it
+     */
+    public Operator open() {
+        return new MeasuredOperator(Planner.plan(statement, schema), sql);
+    }
+
+    /**
+     * Run the query and print the rows as the sqlite3 shell does by
+     * default: values separated by '|', NULL as an empty string.
+     *
+     * @return number of rows printed
+     */
+    public long print(PrintStream out) throws IOException {
+        long rows = 0;
+        StringBuilder line = new StringBuilder();
+        try (Operator plan = open()) {
+            Batch batch;
+            while ((batch = plan.next()) != null) {
+                int columns = batch.columnCount();
+                for (int i = 0, n = batch.rowCount(); i < n; i++) {
+                    int row = batch.row(i);
+                    line.setLength(0);
+                    for (int c = 0; c < columns; c++) {
+                        if (c > 0) {
+                            line.append('|');
+                        }
+                        line.append(ValueFormatter.format(batch.column(c), row));
+                    }
+                    out.println(line);
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Counts the rows a pipeline returns and records the run when it closes
+    private static final class MeasuredOperator implements Operator {
+        private final Operator input;
+        private final QueryEvent event = new QueryEvent();
+        private final long start;
+        private long rows;
+        private boolean closed;
+
+        MeasuredOperator(Operator input, String sql) {
+            this.input = input;
+            event.sql = sql;
+            event.begin();
+            start = Metrics.Stage.QUERY.start();
+        }
+
+        @Override
+        public List<String> columnNames() {
+            return input.columnNames();
+        }
+
+        @Override
+        public Batch next() throws IOException {
+            Batch batch = input.next();
+            if (batch != null) {
+                rows += batch.rowCount();
+            }
+            return batch;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            input.close();
+            Metrics.Stage.QUERY.stop(start);
+            Metrics.Counter.QUERIES.increment();
+            Metrics.Counter.QUERY_ROWS.add(rows);
+            if (event.shouldCommit()) {
+                event.rows = rows;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package query;
+
+import dataTypes.RowCursor;
+import dataTypes.RowFilter;
+import dataTypes.SQLiteRecord;
+import dataTypes.TableInfo;
+import metrics.Metrics;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads a table into batches. Rows come straight off the leaf pages
+ * through the table's cursor; only the columns the query uses are
+ * decoded, and no record is copied. Conditions pushed down as a
+ * {@link RowFilter} are tested on the raw cells, so rows that fail them
+ * never reach a batch. An integer stored in a column of REAL
+ * {@link Affinity} is read as a real, as SQLite reads it.
+ */
+public class ScanOperator implements Operator {
+
+    /** Column number that stands for the rowid. */
+    public static final int ROWID = RowFilter.ROWID;
+
+    private final TableInfo table;
+    private final RowFilter filter;
+    private final int[] columns;
+    private final boolean[] real; // columns of REAL affinity
+    private final List<String> names;
+    private final Batch batch;
+    private RowCursor cursor;
+    private boolean finished;
+
+    /**
+     * @param filter  conditions rows must pass, or null
+     * @param columns table column numbers to read, or {@link #ROWID}
+     */
+    public ScanOperator(TableInfo table, RowFilter filter, int[] columns, List<String> names) {
+        this.table = table;
+        this.filter = filter;
+        this.columns = columns;
+        this.real = new boolean[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            real[c] = columns[c] != ROWID && Affinity.of(table.getDeclaredType(columns[c])) == Affinity.REAL;
+        }
+        this.names = names;
+        this.batch = Batch.allocate(columns.length);
+    }
+
+    @Override
+    public List<String> columnNames() {
+        return names;
+    }
+
+    @Override
+    public Batch next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (cursor == null) {
+            cursor = filter == null ? table.openCursor() : table.openCursor(filter);
+        }
+        int n = 0;
+        while (n < Batch.CAPACITY && cursor.next()) {
+            SQLiteRecord record = null;
+            for (int c = 0; c < columns.length; c++) {
+                ColumnVector vector = batch.column(c);
+                if (columns[c] == ROWID) {
+                    vector.setLong(n, cursor.rowid());
+                } else {
+                    if (record == null) {
+                        record = cursor.currentRecord();
+                    }
+                    vector.set(n, record, columns[c]);
+                    if (real[c] && vector.type(n) == ColumnVector.INTEGER) {
+                        vector.setDouble(n, vector.getLong(n));
+                    }
+                }
+            }
+            n++;
+        }
+        if (n == 0) {
+            finished = true;
+            close();
+            return null;
+        }
+        Metrics.Counter.ROWS_SCANNED.add(n);
+        batch.setSize(n);
+        return batch;
+    }
+
+    @Override
+    public void close() {
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package query;
+
+import java.util.List;
+
+/**
+ * A parsed {@code SELECT} statement over a single table.
+ *
+ * @param limit  LIMIT expression, or null
+ * @param offset OFFSET expression, or null
+ */
+public record SelectStatement(boolean distinct,
+                              List<SelectItem> items,
+                              String table,
+                              String tableAlias,
+                              Expr where,
+                              List<Expr> groupBy,
+                              Expr having,
+                              List<OrderItem> orderBy,
+                              Expr limit,
+                              Expr offset) {
+
+    /**
+     * One entry of the select list: {@code *}, or an expression with the
+     * name its result column gets (the alias, else the expression's text).
+     */
+    public record SelectItem(Expr expr, String name, boolean star) { }
+
+    public record OrderItem(Expr expr, boolean descending) { }
+}
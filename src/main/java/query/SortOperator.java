@@ -0,0 +1,219 @@
+package query;
+
+import dataTypes.ExternalSorter;
+import dataTypes.RecordWriter;
+import dataTypes.RowCursor;
+import dataTypes.SQLiteRecord;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorts its input on one or more columns.
+ * <p>
+ * With a row limit of up to {@value #MAX_TOP_N_ROWS} rows only the best
+ * {@code limit} rows are kept: they are buffered column by column, without
+ * boxing, and sorted through an index permutation, and the buffer is cut
+ * back to them whenever it fills up, so memory stays proportional to the
+ * limit rather than to the input.
+ * <p>
+ * Otherwise every row is encoded as a record and handed to an
+ * {@link ExternalSorter}, which spills sorted runs to temporary files once
+ * its memory budget is used and merges them, so any input sorts in the
+ * same memory.
+ */
+public class SortOperator implements Operator {
+
+    // Larger limits are sorted externally like a full sort
+    private static final long MAX_TOP_N_ROWS = 100_000;
+
+    private final Operator input;
+    private final int[] keys;
+    private final boolean[] descending;
+    private final long limit;
+
+    private ColumnVector[] rows;
+    private int rowCount;
+    private Integer[] order;
+    private int emitted;
+    private Batch output;
+    private ExternalSorter sorter;
+    private RowCursor sortedRows;
+
+    /**
+     * @param keys       input columns to sort on, most significant first
+     * @param descending per key, whether it sorts high to low
+     * @param limit      number of rows needed, or -1 for all
+     */
+    public SortOperator(Operator input, int[] keys, boolean[] descending, long limit) {
+        this.input = input;
+        this.keys = keys;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    @Override
+    public List<String> columnNames() {
+        return input.columnNames();
+    }
+
+    @Override
+    public Batch next() throws IOException {
+        if (limit < 0 || limit > MAX_TOP_N_ROWS) {
+            return nextSorted();
+        }
+        if (order == null) {
+            consume();
+            output = Batch.allocate(rows.length);
+        }
+        if (emitted >= order.length) {
+            return null;
+        }
+        int n = Math.min(Batch.CAPACITY, order.length - emitted);
+        for (int i = 0; i < n; i++) {
+            int source = order[emitted + i];
+            for (int c = 0; c < rows.length; c++) {
+                output.column(c).copyFrom(rows[c], source, i);
+            }
+        }
+        emitted += n;
+        output.setSize(n);
+        return output;
+    }
+
+    private Batch nextSorted() throws IOException {
+        if (sortedRows == null) {
+            sortAll();
+            output = Batch.allocate(input.columnNames().size());
+        }
+        int n = 0;
+        while (n < Batch.CAPACITY && (limit < 0 || emitted + n < limit) && sortedRows.next()) {
+            SQLiteRecord record = sortedRows.currentRecord();
+            for (int c = 0; c < output.columnCount(); c++) {
+                output.column(c).set(n, record, c);
+            }
+            n++;
+        }
+        if (n == 0) {
+            return null;
+        }
+        emitted += n;
+        output.setSize(n);
+        return output;
+    }
+
+    // Encode every input row as a record for the external sort
+    private void sortAll() throws IOException {
+        int columns = input.columnNames().size();
+        sorter = new ExternalSorter(keys, descending, -1);
+        RecordWriter writer = new RecordWriter();
+        Batch batch;
+        while ((batch = input.next()) != null) {
+            for (int i = 0; i < batch.rowCount(); i++) {
+                int row = batch.row(i);
+                writer.reset();
+                for (int c = 0; c < columns; c++) {
+                    ColumnVector vector = batch.column(c);
+                    switch (vector.type(row)) {
+                        case ColumnVector.INTEGER -> writer.addLong(vector.getLong(row));
+                        case ColumnVector.REAL -> writer.addDouble(vector.getDouble(row));
+                        case ColumnVector.TEXT -> writer.addText(vector.getText(row));
+                        case ColumnVector.BLOB -> writer.addBlob((byte[]) vector.get(row));
+                        default -> writer.addNull();
+                    }
+                }
+                sorter.add(0, writer.bytes(), writer.finish());
+            }
+        }
+        input.close();
+        sortedRows = sorter.sort();
+    }
+
+    private void consume() throws IOException {
+        int columns = input.columnNames().size();
+        rows = new ColumnVector[columns];
+        for (int c = 0; c < columns; c++) {
+            rows[c] = new ColumnVector(Batch.CAPACITY);
+        }
+        // Past this many buffered rows a top-N sort compacts
+        long threshold = limit >= 0 ? Math.max(2 * limit, Batch.CAPACITY) : Long.MAX_VALUE;
+
+        Batch batch;
+        while ((batch = input.next()) != null) {
+            int n = batch.rowCount();
+            ensureCapacity(rowCount + n);
+            for (int c = 0; c < columns; c++) {
+                ColumnVector source = batch.column(c);
+                ColumnVector target = rows[c];
+                for (int i = 0; i < n; i++) {
+                    target.copyFrom(source, batch.row(i), rowCount + i);
+                }
+            }
+            rowCount += n;
+            if (rowCount > threshold) {
+                compact((int) limit);
+            }
+        }
+        input.close();
+
+        order = sortedOrder();
+        if (limit >= 0 && order.length > limit) {
+            order = Arrays.copyOf(order, (int) limit);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > rows[0].capacity()) {
+            int grown = Math.max(capacity, rows[0].capacity() * 2);
+            for (ColumnVector column : rows) {
+                column.ensureCapacity(grown);
+            }
+        }
+    }
+
+    // Keep only the first `keep` rows in sort order
+    private void compact(int keep) {
+        Integer[] sorted = sortedOrder();
+        ColumnVector[] kept = new ColumnVector[rows.length];
+        for (int c = 0; c < rows.length; c++) {
+            kept[c] = new ColumnVector(rows[c].capacity());
+            for (int i = 0; i < keep; i++) {
+                kept[c].copyFrom(rows[c], sorted[i], i);
+            }
+        }
+        rows = kept;
+        rowCount = keep;
+    }
+
+    private Integer[] sortedOrder() {
+        Integer[] order = new Integer[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            order[i] = i;
+        }
+        // Stable, so equal keys keep their input order
+        Arrays.sort(order, this::compareRows);
+        return order;
+    }
+
+    private int compareRows(int a, int b) {
+        for (int k = 0; k < keys.length; k++) {
+            ColumnVector column = rows[keys[k]];
+            int c = ColumnVector.compare(column, a, column, b);
+            if (c != 0) {
+                return descending[k] ? -c : c;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        input.close();
+        if (sortedRows != null) {
+            sortedRows.close();
+        } else if (sorter != null) {
+            sorter.close();
+        }
+    }
+}
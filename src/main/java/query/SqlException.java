@@ -0,0 +1,13 @@
+package query;
+
+/**
+ * A SQL statement that cannot be parsed or planned: a syntax error, an
+ * unknown table or column, or an unsupported construct.
+ */
+public class SqlException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public SqlException(String message) {
+        super(message);
+    }
+}
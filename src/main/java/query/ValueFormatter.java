@@ -0,0 +1,49 @@
+package query;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Renders values as text the way SQLite converts them: integers in
+ * decimal, reals with 15 significant digits, BLOBs as their raw bytes.
+ */
+public final class ValueFormatter {
+
+    private ValueFormatter() { }
+
+    /**
+     * @return the text of a slot; NULL becomes the empty string
+     */
+    public static String format(ColumnVector vector, int row) {
+        return switch (vector.type(row)) {
+            case ColumnVector.INTEGER -> Long.toString(vector.getLong(row));
+            case ColumnVector.REAL -> formatReal(vector.getDouble(row));
+            case ColumnVector.TEXT -> vector.getText(row);
+            case ColumnVector.BLOB -> new String((byte[]) vector.get(row), StandardCharsets.UTF_8);
+            default -> "";
+        };
+    }
+
+    // printf("%!.15g"): a real always shows a decimal point or an exponent
+    public static String formatReal(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "Inf" : "-Inf";
+        }
+        if (value == 0.0) {
+            return "0.0";
+        }
+        BigDecimal rounded = new BigDecimal(value).round(new MathContext(15));
+        int exponent = rounded.precision() - rounded.scale() - 1;
+        if (exponent < -4 || exponent >= 15) {
+            BigDecimal mantissa = rounded.movePointLeft(exponent).stripTrailingZeros();
+            String digits = mantissa.toPlainString();
+            if (digits.indexOf('.') < 0) {
+                digits += ".0";
+            }
+            return digits + (exponent < 0 ? "e-" : "e+") + (Math.abs(exponent) < 10 ? "0" : "") + Math.abs(exponent);
+        }
+        String plain = rounded.stripTrailingZeros().toPlainString();
+        return plain.indexOf('.') < 0 ? plain + ".0" : plain;
+    }
+}
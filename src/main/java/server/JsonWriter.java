@@ -0,0 +1,139 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Minimal streaming JSON writer for server responses.
+ * <p>
+ * Commas between members and elements are inserted automatically. SQLite
+ * values map to JSON as: NULL to null, INTEGER and REAL to numbers (NaN
+ * and infinities to null), TEXT to strings and BLOB to base64 strings.
+ */
+class JsonWriter {
+    private final StringBuilder out = new StringBuilder(256);
+    // One flag per open container: does it need a comma before the next item
+    private boolean[] needsComma = new boolean[16];
+    private int depth;
+
+    JsonWriter beginObject() {
+        beforeValue();
+        out.append('{');
+        push();
+        return this;
+    }
+
+    JsonWriter endObject() {
+        depth--;
+        out.append('}');
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        beforeValue();
+        out.append('[');
+        push();
+        return this;
+    }
+
+    JsonWriter endArray() {
+        depth--;
+        out.append(']');
+        return this;
+    }
+
+    JsonWriter name(String name) {
+        beforeValue();
+        writeString(name);
+        out.append(':');
+        needsComma[depth] = false; // the value follows without a comma
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            out.append("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    JsonWriter value(double value) {
+        beforeValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append("null");
+        } else {
+            out.append(value);
+        }
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    // A column value as decoded from a record
+    JsonWriter sqlValue(Object value) {
+        if (value instanceof Long || value instanceof Integer) {
+            return value(((Number) value).longValue());
+        } else if (value instanceof Number number) {
+            return value(number.doubleValue());
+        } else if (value instanceof byte[] blob) {
+            return value(Base64.getEncoder().encodeToString(blob));
+        } else {
+            return value(value == null ? null : value.toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void push() {
+        depth++;
+        if (depth == needsComma.length) {
+            needsComma = Arrays.copyOf(needsComma, depth * 2);
+        }
+        needsComma[depth] = false;
+    }
+
+    private void beforeValue() {
+        if (needsComma[depth]) {
+            out.append(',');
+        }
+        needsComma[depth] = true;
+    }
+
+    private void writeString(String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
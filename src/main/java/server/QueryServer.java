@@ -0,0 +1,547 @@
+package server;
+
+import btree.SchemaReader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dataTypes.DatabaseSchema;
+import dataTypes.IndexInfo;
+import dataTypes.RowCursor;
+import dataTypes.SQLiteRecord;
+import dataTypes.TableInfo;
+import helpers.LatencyHistogram;
+import metrics.Metrics;
+import pager.Pager;
+import query.Batch;
+import query.Operator;
+import query.Query;
+import query.SqlException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Long-running HTTP server answering read-only queries against one or more
+ * open databases.
+ * <p>
+ * Each database is opened once; its {@link Pager} and schema are shared by
+ * every request, so the page cache stays warm across queries. Requests run
+ * on virtual threads, one per request. A request reads the database's
+ * current view, a pager snapshot and the schema read through it, without
+ * locking. At most every {@link #REFRESH_INTERVAL_MILLIS} ms one request
+ * checks the WAL for new commits and, if there are any, publishes a new
+ * view; requests arriving meanwhile keep using the old one. Endpoints, all
+ * GET, returning JSON:
+ * <pre>
+ * /databases                                       open databases
+ * /databases/{db}                                  schema: tables, columns, indexes
+ * /databases/{db}/tables/{table}/rows              table scan, ?offset=0&amp;limit=100
+ * /databases/{db}/tables/{table}/rows/{rowid}      one row by rowid
+ * /databases/{db}/tables/{table}/lookup            ?column=name&amp;value=v[&amp;limit=n]
+ * /databases/{db}/query                            ?sql=SELECT...[&amp;limit=n]
+ * /stats                                           request counts, latency percentiles and {@link Metrics}
+ * </pre>
+ */
+public class QueryServer implements AutoCloseable {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10_000;
+
+    /** How long a view is served before the WAL is checked for newer commits. */
+    public static final long REFRESH_INTERVAL_MILLIS = 100;
+
+    // Replaced whole when a database is added, so requests read it without locking
+    private volatile Map<String, OpenDatabase> databases = Map.of();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    // A served database; pager is the live pager, which only refreshes move on
+    private static final class OpenDatabase {
+        final String name;
+        final String path;
+        final Pager pager;
+        final boolean owned;
+        final ReentrantLock refreshLock = new ReentrantLock();
+        volatile View view;
+        volatile long checkedAt;
+
+        OpenDatabase(String name, String path, Pager pager, boolean owned) throws IOException {
+            this.name = name;
+            this.path = path;
+            this.pager = pager;
+            this.owned = owned;
+            this.view = View.of(pager);
+            this.checkedAt = System.nanoTime();
+        }
+    }
+
+    // One committed state of a database: a pager snapshot and the schema read through it
+    private record View(Pager pager, DatabaseSchema schema) {
+        static View of(Pager pager) throws IOException {
+            Pager snapshot = pager.snapshot();
+            return new View(snapshot, SchemaReader.read(snapshot));
+        }
+    }
+
+    // A request that fails with a client-visible status code
+    private static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Open a database and serve it under the name of its file, without the
+     * extension.
+     */
+    public void addDatabase(String dbPath) throws IOException {
+        Pager pager = Pager.open(dbPath);
+        try {
+            addDatabase(dbPath, pager, true);
+        } catch (IOException | RuntimeException e) {
+            pager.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Serve a database through a pager the caller already has open. The
+     * caller stays responsible for closing it.
+     */
+    public void addDatabase(String dbPath, Pager pager) throws IOException {
+        addDatabase(dbPath, pager, false);
+    }
+
+    private synchronized void addDatabase(String dbPath, Pager pager, boolean owned) throws IOException {
+        String fileName = Path.of(dbPath).getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String name = dot > 0 ? fileName.substring(0, dot) : fileName;
+        if (databases.containsKey(name)) {
+            throw new IllegalArgumentException("A database named " + name + " is already open");
+        }
+
+        Map<String, OpenDatabase> added = new LinkedHashMap<>(databases);
+        added.put(name, new OpenDatabase(name, dbPath, pager, owned));
+        databases = Collections.unmodifiableMap(added);
+    }
+
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public LatencyHistogram getLatency() { return latency; }
+    public long getRequestCount() { return requests.sum(); }
+    public long getErrorCount() { return errors.sum(); }
+
+    @Override
+    public void close() throws IOException {
+        if (server != null) {
+            server.stop(0);
+            executor.close();
+        }
+        for (OpenDatabase database : databases.values()) {
+            View view = database.view;
+            SchemaReader.saveCounts(view.pager(), view.schema());
+            if (database.owned) {
+                database.pager.close();
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        int status = 200;
+        String body;
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                throw new HttpError(405, "Only GET is supported");
+            }
+            body = route(exchange.getRequestURI().getPath(), parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (HttpError e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (RuntimeException | IOException e) {
+            status = 500;
+            body = error(e.toString());
+        }
+
+        try (exchange) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            requests.increment();
+            if (status >= 400) {
+                errors.increment();
+            }
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private String route(String path, Map<String, String> query) throws IOException {
+        String[] parts = path.split("/");
+        // parts[0] is the empty string before the leading slash
+        if (parts.length <= 1 || (parts.length == 2 && parts[1].equals("databases"))) {
+            return listDatabases();
+        }
+        if (parts.length == 2 && parts[1].equals("stats")) {
+            return stats();
+        }
+        if (!parts[1].equals("databases")) {
+            throw new HttpError(404, "No such endpoint: " + path);
+        }
+
+        OpenDatabase database = databases.get(parts[2]);
+        if (database == null) {
+            throw new HttpError(404, "No such database: " + parts[2]);
+        }
+        View view = view(database);
+        if (parts.length == 3) {
+            return schema(database.name, view);
+        }
+        if (parts.length == 4 && parts[3].equals("query")) {
+            return query(view, query);
+        }
+        if (parts.length < 6 || !parts[3].equals("tables")) {
+            throw new HttpError(404, "No such endpoint: " + path);
+        }
+
+        TableInfo table = view.schema().getTable(parts[4]);
+        if (table == null) {
+            throw new HttpError(404, "No such table: " + parts[4]);
+        }
+        if (parts.length == 6 && parts[5].equals("rows")) {
+            return scan(table, intParam(query, "offset", 0), limit(query));
+        }
+        if (parts.length == 7 && parts[5].equals("rows")) {
+            return rowById(table, parts[6]);
+        }
+        if (parts.length == 6 && parts[5].equals("lookup")) {
+            return lookup(table, query);
+        }
+        throw new HttpError(404, "No such endpoint: " + path);
+    }
+
+    /**
+     * The database's current view. Once the view is older than the refresh
+     * interval, the first request to find the refresh lock free checks the
+     * WAL and publishes a new view if a commit has reached it; any other
+     * request serves the current view rather than wait.
+     */
+    private View view(OpenDatabase database) throws IOException {
+        long now = System.nanoTime();
+        if (now - database.checkedAt < REFRESH_INTERVAL_MILLIS * 1_000_000 || !database.refreshLock.tryLock()) {
+            return database.view;
+        }
+        try {
+            database.checkedAt = now;
+            database.pager.refreshWal();
+            // Also retried when reading the schema of the last change failed
+            if (database.view.pager().getGeneration() != database.pager.getGeneration()) {
+                database.view = View.of(database.pager);
+            }
+            return database.view;
+        } finally {
+            database.refreshLock.unlock();
+        }
+    }
+
+    private String listDatabases() {
+        JsonWriter json = new JsonWriter().beginArray();
+        for (OpenDatabase database : databases.values()) {
+            View view = database.view;
+            json.beginObject()
+                    .name("name").value(database.name)
+                    .name("path").value(database.path)
+                    .name("pageSize").value(view.pager().getPageSize())
+                    .name("pageCount").value(view.pager().getPageCount())
+                    .name("tables").beginArray();
+            for (String tableName : view.schema().getTableNames()) {
+                json.value(tableName);
+            }
+            json.endArray().endObject();
+        }
+        return json.endArray().toString();
+    }
+
+    private String schema(String name, View view) {
+        JsonWriter json = new JsonWriter().beginObject()
+                .name("name").value(name)
+                .name("tables").beginArray();
+        for (TableInfo table : view.schema().getAllTables()) {
+            json.beginObject()
+                    .name("name").value(table.getName())
+                    .name("rootPage").value(table.getRootPage())
+                    .name("sql").value(table.getSql())
+                    .name("columns").beginArray();
+            List<String> names = table.getColumnNames();
+            List<String> types = table.getColumnTypes();
+            for (int i = 0; i < names.size(); i++) {
+                json.beginObject()
+                        .name("name").value(names.get(i))
+                        .name("type").value(types.get(i))
+                        .name("primaryKey").value(i == table.getPrimaryKeyColumn())
+                        .endObject();
+            }
+            json.endArray().name("indexes").beginArray();
+            for (IndexInfo index : table.getIndexes()) {
+                json.beginObject().name("name").value(index.getName()).name("columns").beginArray();
+                for (String column : index.getColumnNames()) {
+                    json.value(column);
+                }
+                json.endArray().endObject();
+            }
+            json.endArray().endObject();
+        }
+        return json.endArray().endObject().toString();
+    }
+
+    private String scan(TableInfo table, int offset, int limit) throws IOException {
+        JsonWriter json = rowsHeader(table);
+        try (RowCursor cursor = table.openCursor()) {
+            int skipped = 0;
+            int written = 0;
+            while (written < limit && cursor.next()) {
+                if (skipped < offset) {
+                    skipped++;
+                    continue;
+                }
+                json.beginArray();
+                for (int i = 0; i < cursor.columnCount(); i++) {
+                    json.sqlValue(cursor.column(i));
+                }
+                json.endArray();
+                written++;
+            }
+        }
+        return json.endArray().endObject().toString();
+    }
+
+    private String rowById(TableInfo table, String rowidText) {
+        long rowid;
+        try {
+            rowid = Long.parseLong(rowidText);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Rowid is not an integer: " + rowidText);
+        }
+        SQLiteRecord record = table.getRecordByRowid(rowid);
+        if (record == null) {
+            throw new HttpError(404, "No row " + rowid + " in table " + table.getName());
+        }
+        return rows(table, List.of(record), 1);
+    }
+
+    private String lookup(TableInfo table, Map<String, String> query) {
+        String column = query.get("column");
+        String valueText = query.get("value");
+        if (column == null || valueText == null) {
+            throw new HttpError(400, "lookup needs column and value parameters");
+        }
+        int index = table.getColumnIndex(column);
+        if (index == -1) {
+            throw new HttpError(404, "No column " + column + " in table " + table.getName());
+        }
+        Object value = parseValue(valueText, table.getColumnTypes().get(index));
+        int limit = limit(query);
+        return rows(table, table.getRecordsWhere(column, value, limit), limit);
+    }
+
+    // Runs a SELECT; "truncated" tells whether rows were cut off at the limit
+    private String query(View view, Map<String, String> query) throws IOException {
+        String sql = query.get("sql");
+        if (sql == null) {
+            throw new HttpError(400, "query needs an sql parameter");
+        }
+        Query prepared;
+        try {
+            prepared = Query.prepare(view.schema(), sql);
+        } catch (SqlException e) {
+            throw new HttpError(400, e.getMessage());
+        }
+
+        int limit = limit(query);
+        int written = 0;
+        boolean truncated = false;
+        JsonWriter json = new JsonWriter().beginObject().name("columns").beginArray();
+        for (String name : prepared.columnNames()) {
+            json.value(name);
+        }
+        json.endArray().name("rows").beginArray();
+        try (Operator plan = prepared.open()) {
+            Batch batch;
+            while (!truncated && (batch = plan.next()) != null) {
+                for (int i = 0; i < batch.rowCount(); i++) {
+                    if (written == limit) {
+                        truncated = true;
+                        break;
+                    }
+                    int row = batch.row(i);
+                    json.beginArray();
+                    for (int c = 0; c < batch.columnCount(); c++) {
+                        json.sqlValue(batch.column(c).get(row));
+                    }
+                    json.endArray();
+                    written++;
+                }
+            }
+        }
+        return json.endArray().name("truncated").value(truncated).endObject().toString();
+    }
+
+    private String rows(TableInfo table, List<SQLiteRecord> records, int limit) {
+        JsonWriter json = rowsHeader(table);
+        for (SQLiteRecord record : records.subList(0, Math.min(limit, records.size()))) {
+            json.beginArray();
+            for (int i = 0; i < record.getColumnCount(); i++) {
+                json.sqlValue(record.getValue(i));
+            }
+            json.endArray();
+        }
+        return json.endArray().endObject().toString();
+    }
+
+    // Opens {"columns": [...], "rows": [ for the caller to fill
+    private static JsonWriter rowsHeader(TableInfo table) {
+        JsonWriter json = new JsonWriter().beginObject().name("columns").beginArray();
+        for (String name : table.getColumnNames()) {
+            json.value(name);
+        }
+        return json.endArray().name("rows").beginArray();
+    }
+
+    private String stats() {
+        JsonWriter json = new JsonWriter().beginObject()
+                .name("requests").value(requests.sum())
+                .name("errors").value(errors.sum())
+                .name("latencyMicros").beginObject()
+                .name("mean").value(latency.getMean() / 1000)
+                .name("p50").value(latency.getPercentile(0.50) / 1000)
+                .name("p90").value(latency.getPercentile(0.90) / 1000)
+                .name("p99").value(latency.getPercentile(0.99) / 1000)
+                .name("p999").value(latency.getPercentile(0.999) / 1000)
+                .name("max").value(latency.getMax() / 1000)
+                .endObject()
+                .name("pagers").beginObject();
+        for (OpenDatabase database : databases.values()) {
+            Pager.Stats pagerStats = database.pager.getStats();
+            json.name(database.name).beginObject()
+                    .name("hits").value(pagerStats.hits)
+                    .name("misses").value(pagerStats.misses)
+                    .name("hitRate").value(pagerStats.getHitRate())
+                    .name("cachedPages").value(pagerStats.cachedPages)
+                    .endObject();
+        }
+        json.endObject().name("metrics").beginObject();
+        for (Map.Entry<String, Long> counter : Metrics.counters().entrySet()) {
+            json.name(counter.getKey()).value(counter.getValue());
+        }
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            LatencyHistogram histogram = stage.getHistogram();
+            json.name(stage.name().toLowerCase() + "Micros").beginObject()
+                    .name("count").value(histogram.getCount())
+                    .name("mean").value(histogram.getMean() / 1000)
+                    .name("p50").value(histogram.getPercentile(0.50) / 1000)
+                    .name("p99").value(histogram.getPercentile(0.99) / 1000)
+                    .name("max").value(histogram.getMax() / 1000)
+                    .endObject();
+        }
+        return json.endObject().endObject().toString();
+    }
+
+    /**
+     * @return one line with the request count and latency percentiles
+     */
+    public String latencySummary() {
+        return String.format("requests=%d errors=%d p50=%dus p90=%dus p99=%dus p999=%dus max=%dus",
+                requests.sum(), errors.sum(),
+                latency.getPercentile(0.50) / 1000, latency.getPercentile(0.90) / 1000,
+                latency.getPercentile(0.99) / 1000, latency.getPercentile(0.999) / 1000,
+                latency.getMax() / 1000);
+    }
+
+    // Parse a lookup value with the column's declared type affinity
+    private static Object parseValue(String text, String columnType) {
+        String type = columnType.toUpperCase();
+        try {
+            if (type.contains("INT")) {
+                return Long.parseLong(text);
+            }
+            if (type.contains("REAL") || type.contains("FLOA") || type.contains("DOUB")) {
+                return Double.parseDouble(text);
+            }
+        } catch (NumberFormatException e) {
+            // Not a number; SQLite would store it as TEXT too
+        }
+        return text;
+    }
+
+    private static int limit(Map<String, String> query) {
+        return Math.min(intParam(query, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String text = query.get(name);
+        if (text == null) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(text);
+            if (value < 0) {
+                throw new HttpError(400, name + " must not be negative");
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, name + " is not an integer: " + text);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq == -1 ? pair : pair.substring(0, eq);
+            String value = eq == -1 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String error(String message) {
+        return new JsonWriter().beginObject().name("error").value(message).endObject().toString();
+    }
+}
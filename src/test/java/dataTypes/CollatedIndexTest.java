@@ -0,0 +1,65 @@
+package dataTypes;
+
+import btree.IntegrityChecker;
+import btree.SchemaReader;
+import fixtures.Fixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pager.Pager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * collate.db: people(id, name, nick COLLATE NOCASE), 400 rows of
+ * three-letter mixed-case words, indexed on {@code name COLLATE NOCASE}
+ * and on {@code nick}, which inherits NOCASE. "acA" is stored six times.
+ */
+class CollatedIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void nocaseIndexesAreNotUsedForLookups() throws IOException {
+        try (Pager pager = Pager.open(Fixtures.copy("collate.db", directory).toString())) {
+            TableInfo people = SchemaReader.read(pager).getTable("people");
+
+            assertFalse(people.getIndexes().stream()
+                    .filter(index -> index.getName().equals("people_name"))
+                    .findFirst().orElseThrow().isUsableForLookups());
+            assertNull(people.findIndexOn("name"));
+            assertNull(people.findIndexOn("nick"));
+        }
+    }
+
+    @Test
+    void lookupFindsEveryRowOfANocaseColumn() throws IOException {
+        try (Pager pager = Pager.open(Fixtures.copy("collate.db", directory).toString())) {
+            TableInfo people = SchemaReader.read(pager).getTable("people");
+
+            for (String column : List.of("name", "nick")) {
+                List<SQLiteRecord> rows = people.getRecordsWhere(column, "acA");
+                assertEquals(6, rows.size(), column);
+                int index = people.getColumnIndex(column);
+                for (SQLiteRecord row : rows) {
+                    assertEquals("acA", row.getValue(index), column);
+                }
+            }
+        }
+    }
+
+    @Test
+    void integrityCheckAcceptsNocaseOrder() throws IOException {
+        try (Pager pager = Pager.open(Fixtures.copy("collate.db", directory).toString())) {
+            IntegrityChecker.Result result = new IntegrityChecker(pager).check();
+            assertTrue(result.isOk(), () -> result.problems().toString());
+        }
+    }
+}
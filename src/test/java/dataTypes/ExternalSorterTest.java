@@ -0,0 +1,78 @@
+package dataTypes;
+
+import btree.SchemaReader;
+import fixtures.Fixtures;
+import metrics.Metrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pager.Pager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * sort.db: events(id, day, label), 2000 rows where day is
+ * {@code id * 7 % 37}, so every day is shared by about 54 rows.
+ */
+class ExternalSorterTest {
+
+    private static final int ROWS = 2000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mergesSpilledRunsStablyOnDuplicateKeys() throws IOException {
+        sortAndCheck(false);
+    }
+
+    @Test
+    void mergesSpilledRunsStablyDescending() throws IOException {
+        sortAndCheck(true);
+    }
+
+    // Sort on day with the smallest budget, so the rows spill to several runs
+    private void sortAndCheck(boolean descending) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try (Pager pager = Pager.open(Fixtures.copy("sort.db", directory).toString())) {
+            TableInfo events = SchemaReader.read(pager).getTable("events");
+            int day = events.getColumnIndex("day");
+            long spills = Metrics.Counter.SORT_SPILLS.get();
+
+            ExternalSorter sorter = new ExternalSorter(new int[] {day}, new boolean[] {descending},
+                    events.getRowidColumn(), 0, pool);
+            try (RowCursor rows = events.openCursor()) {
+                while (rows.next()) {
+                    sorter.add(rows.rowid(), rows.currentRecord());
+                }
+            }
+
+            int count = 0;
+            long previousDay = descending ? Long.MAX_VALUE : Long.MIN_VALUE;
+            long previousRowid = 0;
+            try (RowCursor sorted = sorter.sort()) {
+                assertTrue(Metrics.Counter.SORT_SPILLS.get() - spills >= 2, "sort did not spill several runs");
+                while (sorted.next()) {
+                    long rowid = sorted.rowid();
+                    long value = ((Number) sorted.column(day)).longValue();
+                    assertEquals(rowid * 7 % 37, value);
+                    if (value == previousDay) {
+                        assertTrue(rowid > previousRowid, "rows with equal keys out of input order");
+                    } else {
+                        assertTrue(descending ? value < previousDay : value > previousDay, "keys out of order");
+                    }
+                    previousDay = value;
+                    previousRowid = rowid;
+                    count++;
+                }
+            }
+            assertEquals(ROWS, count);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package fixtures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Database files under {@code src/test/resources/fixtures}, copied to a
+ * test's temporary directory before it opens them, so the schema cache
+ * sidecar and any WAL recovery never touch the originals.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Copy a fixture and its {@code -wal} file, if it has one.
+     *
+     * @return path of the copied database file
+     */
+    public static Path copy(String name, Path directory) throws IOException {
+        Path database = directory.resolve(name);
+        copyResource(name, database);
+        copyResource(name + "-wal", directory.resolve(name + "-wal"));
+        return database;
+    }
+
+    private static void copyResource(String name, Path target) throws IOException {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in != null) {
+                Files.copy(in, target);
+            }
+        }
+    }
+}
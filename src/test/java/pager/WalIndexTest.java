@@ -0,0 +1,73 @@
+package pager;
+
+import btree.IntegrityChecker;
+import btree.SchemaReader;
+import dataTypes.SQLiteRecord;
+import dataTypes.TableInfo;
+import fixtures.Fixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * wal-tail.db: a 512-byte-page database whose rows are all in its
+ * {@code -wal} file. Frames 1-8 commit table t(id, v) with 100 rows
+ * "committed 1" to "committed 100"; frames 9-134 are an insert of 500
+ * more rows that was never committed.
+ */
+class WalIndexTest {
+
+    private static final int COMMITTED_FRAMES = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void stopsAtTheLastCommit() throws IOException {
+        Path database = Fixtures.copy("wal-tail.db", directory);
+        long logFrames = (Files.size(Path.of(database + "-wal")) - 32) / (512 + 24);
+        try (Pager pager = Pager.open(database.toString())) {
+            WalIndex wal = pager.getWal();
+            assertNotNull(wal);
+            assertTrue(logFrames > COMMITTED_FRAMES);
+            assertEquals(COMMITTED_FRAMES, wal.getFrameCount());
+            assertEquals(pager.getPageCount(), wal.getDatabaseSize());
+        }
+    }
+
+    @Test
+    void readsOnlyCommittedRows() throws IOException {
+        Path database = Fixtures.copy("wal-tail.db", directory);
+        try (Pager pager = Pager.open(database.toString())) {
+            TableInfo t = SchemaReader.read(pager).getTable("t");
+            assertEquals(100, t.countRows());
+
+            List<SQLiteRecord> rows = t.getRecordsWhere("v", "committed 100");
+            assertEquals(1, rows.size());
+            assertEquals(100L, rows.get(0).getRowId());
+            assertTrue(t.getRecordsWhere("id", 101L).isEmpty());
+
+            IntegrityChecker.Result result = new IntegrityChecker(pager).check();
+            assertTrue(result.isOk(), () -> result.problems().toString());
+        }
+    }
+
+    @Test
+    void refreshKeepsTheCommittedState() throws IOException {
+        Path database = Fixtures.copy("wal-tail.db", directory);
+        try (Pager pager = Pager.open(database.toString())) {
+            long generation = pager.getGeneration();
+            pager.refreshWal();
+            assertEquals(generation, pager.getGeneration());
+            assertEquals(COMMITTED_FRAMES, pager.getWal().getFrameCount());
+        }
+    }
+}
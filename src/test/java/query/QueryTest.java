@@ -0,0 +1,81 @@
+package query;
+
+import btree.SchemaReader;
+import dataTypes.DatabaseSchema;
+import fixtures.Fixtures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pager.Pager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Queries over sort.db (see {@code ExternalSorterTest}), with the results
+ * SQLite's own shell prints for them.
+ */
+class QueryTest {
+
+    @TempDir
+    Path directory;
+
+    private Pager pager;
+    private DatabaseSchema schema;
+
+    @BeforeEach
+    void open() throws IOException {
+        pager = Pager.open(Fixtures.copy("sort.db", directory).toString());
+        schema = SchemaReader.read(pager);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        pager.close();
+    }
+
+    @Test
+    void textLiteralTakesTheColumnsIntegerAffinity() throws IOException {
+        assertEquals(List.of("54"), run("SELECT count(*) FROM events WHERE day = '5'"));
+    }
+
+    @Test
+    void textSortsBeforeBlobLiterals() throws IOException {
+        assertEquals(List.of("2000"), run("SELECT count(*) FROM events WHERE label < x'00'"));
+    }
+
+    @Test
+    void ordersAndLimitsFilteredRows() throws IOException {
+        assertEquals(List.of("1972|event 1972", "1935|event 1935"),
+                run("SELECT id, label FROM events WHERE day = 3 ORDER BY label DESC LIMIT 2"));
+    }
+
+    @Test
+    void groupsWithHaving() throws IOException {
+        assertEquals(List.of("7|55", "14|55"),
+                run("SELECT day, count(*) FROM events GROUP BY day HAVING count(*) > 54 ORDER BY day LIMIT 3"));
+    }
+
+    @Test
+    void rejectsMalformedStatements() {
+        assertThrows(SqlException.class, () -> run("SELECT FROM events"));
+        assertThrows(SqlException.class, () -> run("SELECT count(*) FROM events WHERE label = x'abc'"));
+        assertThrows(SqlException.class, () -> run("SELECT nothing FROM events"));
+    }
+
+    private List<String> run(String sql) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+            Query.prepare(schema, sql).print(out);
+        }
+        return bytes.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+}